@@ -0,0 +1,98 @@
+package hello.aop.exam;
+
+import hello.aop.exam.annotation.Retry;
+import hello.aop.exam.annotation.Trace;
+import hello.aop.exam.aop.RetryAspect;
+import hello.aop.exam.aop.TraceAspect;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.aop.aspectj.annotation.AspectJProxyFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ExamService.request() -> ExamRepository.save() 경로에 TraceAspect, RetryAspect 를 적용했을 때의 비용
+ *
+ *  ./gradlew jmh -Pjmh.include=ExamAspectBenchmark
+ *
+ * ExamRepository 는 5번에 1번 실패하고 재시도 사이에 잠들기 때문에, 같은 어노테이션을 달고 실패하지 않는 StableExamRepository 를 쓴다.
+ * 그래서 재시도 없이 성공하는 호출에 붙는 어드바이스 비용만 잰다.
+ * aspects=none 이 프록시 없는 기준값이다.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ExamAspectBenchmark {
+
+    @Param({"none", "trace", "retry", "traceAndRetry"})
+    public String aspects;
+
+    private TraceAspect traceAspect;
+    private ExamService examService;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        List<Object> applied = new ArrayList<>();
+        if (aspects.startsWith("trace")) {
+            traceAspect = new TraceAspect();
+            applied.add(traceAspect);
+        }
+        if (aspects.equals("retry") || aspects.endsWith("AndRetry")) {
+            applied.add(new RetryAspect());
+        }
+        ExamRepository examRepository = proxy(new StableExamRepository(), applied);
+        examService = traceAspect == null ? new ExamService(examRepository) // 적용할 어드바이스가 없으면 빈도 프록시가 되지 않는다.
+                : proxy(new ExamService(examRepository), applied);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        if (traceAspect != null) {
+            traceAspect.destroy();
+        }
+    }
+
+    @Benchmark
+    public void request() {
+        examService.request("itemA");
+    }
+
+    private static <T> T proxy(T target, List<Object> aspects) {
+        if (aspects.isEmpty()) {
+            return target;
+        }
+        AspectJProxyFactory proxyFactory = new AspectJProxyFactory(target);
+        proxyFactory.setProxyTargetClass(true);
+        aspects.forEach(proxyFactory::addAspect);
+        return proxyFactory.getProxy();
+    }
+
+    /**
+     * ExamRepository.save() 와 같은 @Trace, @Retry 를 달고 항상 성공한다.
+     */
+    static class StableExamRepository extends ExamRepository {
+
+        @Trace
+        @Retry(value = 4)
+        @Override
+        public String save(String itemId) {
+            return "ok";
+        }
+    }
+}
@@ -0,0 +1,169 @@
+package hello.aop.jmh;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * JMH 결과(-rf csv)를 저장해 둔 기준 결과와 비교해서 나빠진 항목을 출력한다.
+ *
+ *  java hello.aop.jmh.BaselineComparison <baseline.csv> <results.csv> [threshold%]
+ *
+ * 비교하는 값은 벤치마크 점수와 호출 한번당 할당량(gc.alloc.rate.norm) 두가지이다.
+ *  - thrpt 는 낮아지면, avgt 와 할당량은 높아지면 나빠진 것이다.
+ *  - 차이가 threshold% 를 넘고, 두 결과의 오차(Score Error)를 합친 것보다 커야 나빠졌다고 본다.
+ *  - 할당량은 1 B/op 보다 작은 차이를 무시한다. (탈출 분석 여부에 따라 0 근처에서 흔들린다.)
+ * 나빠진 항목이 있으면 종료 코드 1 로 끝난다.
+ */
+public class BaselineComparison {
+
+    static final String ALLOC_NORM = "gc.alloc.rate.norm";
+    static final double MIN_ALLOC_DIFF = 1.0;
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("usage: BaselineComparison <baseline.csv> <results.csv> [threshold%]");
+            System.exit(2);
+        }
+        double threshold = args.length > 2 ? Double.parseDouble(args[2]) : 10;
+        Map<String, Row> baseline = read(Paths.get(args[0]));
+        Map<String, Row> current = read(Paths.get(args[1]));
+
+        int compared = 0;
+        List<String> regressions = new ArrayList<>();
+        for (Row row : current.values()) {
+            Row base = baseline.get(row.key);
+            if (base == null || !row.isCompared()) {
+                continue;
+            }
+            compared++;
+            double change = (row.score - base.score) / base.score * 100;
+            String line = String.format("%-100s %12.3f -> %12.3f %-8s %+7.1f%%", row.key, base.score, row.score, row.unit, change);
+            if (row.isWorseThan(base, threshold)) {
+                regressions.add(line);
+                System.out.println("[jmh] REGRESSION " + line);
+            } else {
+                System.out.println("[jmh]            " + line);
+            }
+        }
+        System.out.printf("[jmh] compared=%d regressions=%d threshold=%.1f%% baseline=%s%n", compared, regressions.size(), threshold, args[0]);
+        if (!regressions.isEmpty()) {
+            System.exit(1);
+        }
+    }
+
+    static Map<String, Row> read(Path path) throws IOException {
+        List<String> lines = Files.readAllLines(path, StandardCharsets.UTF_8);
+        Map<String, Row> rows = new LinkedHashMap<>();
+        if (lines.isEmpty()) {
+            return rows;
+        }
+        List<String> header = parseLine(lines.get(0));
+        int benchmark = header.indexOf("Benchmark");
+        int mode = header.indexOf("Mode");
+        int score = header.indexOf("Score");
+        int error = header.indexOf("Score Error (99.9%)");
+        int unit = header.indexOf("Unit");
+        for (String line : lines.subList(1, lines.size())) {
+            if (line.isBlank()) {
+                continue;
+            }
+            List<String> fields = parseLine(line);
+            StringBuilder key = new StringBuilder(fields.get(benchmark)).append(' ').append(fields.get(mode));
+            for (int i = 0; i < header.size(); i++) { // 벤치마크마다 @Param 이 달라서 빈 칸이 있다.
+                if (header.get(i).startsWith("Param: ") && i < fields.size() && !fields.get(i).isEmpty()) {
+                    key.append(' ').append(header.get(i).substring("Param: ".length())).append('=').append(fields.get(i));
+                }
+            }
+            Row row = new Row(key.toString(), fields.get(benchmark), fields.get(mode),
+                    parseDouble(fields.get(score)), parseDouble(fields.get(error)), fields.get(unit));
+            rows.put(row.key, row);
+        }
+        return rows;
+    }
+
+    /**
+     * 큰따옴표로 감싼 칸과 그 안의 "" 를 처리하는 CSV 한 줄 파서
+     */
+    static List<String> parseLine(String line) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    field.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+
+    private static double parseDouble(String value) {
+        try {
+            return Double.parseDouble(value);
+        } catch (NumberFormatException e) {
+            return Double.NaN; // 반복이 1번이면 오차가 NaN 이다.
+        }
+    }
+
+    static final class Row {
+        final String key;
+        final String benchmark;
+        final String mode;
+        final double score;
+        final double error;
+        final String unit;
+
+        Row(String key, String benchmark, String mode, double score, double error, String unit) {
+            this.key = key;
+            this.benchmark = benchmark;
+            this.mode = mode;
+            this.score = score;
+            this.error = Double.isNaN(error) ? 0 : error;
+            this.unit = unit;
+        }
+
+        boolean isAllocation() {
+            return benchmark.endsWith(ALLOC_NORM);
+        }
+
+        /**
+         * 벤치마크 점수와 할당량만 비교한다. (gc.count, gc.time 같은 보조 지표는 측정 시간에 따라 달라진다.)
+         */
+        boolean isCompared() {
+            return !Double.isNaN(score) && (benchmark.indexOf(':') < 0 || isAllocation());
+        }
+
+        boolean isWorseThan(Row base, double thresholdPercent) {
+            double diff = isAllocation() || !"thrpt".equals(mode) ? score - base.score : base.score - score; // 클수록 나쁘다.
+            if (diff <= error + base.error) {
+                return false;
+            }
+            if (isAllocation()) {
+                return diff >= MIN_ALLOC_DIFF && (base.score == 0 || diff / base.score * 100 > thresholdPercent);
+            }
+            return diff / base.score * 100 > thresholdPercent;
+        }
+    }
+}
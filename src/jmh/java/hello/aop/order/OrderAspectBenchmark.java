@@ -0,0 +1,109 @@
+package hello.aop.order;
+
+import hello.aop.order.aop.AspectV1;
+import hello.aop.order.aop.AspectV2;
+import hello.aop.order.aop.AspectV3;
+import hello.aop.order.aop.AspectV4Pointcut;
+import hello.aop.order.aop.AspectV5Order;
+import hello.aop.order.aop.AspectV6Advice;
+import hello.aop.order.store.OrderStore;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.aop.aspectj.annotation.AspectJProxyFactory;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * OrderService.orderItem() 를 그대로 부를 때와 AspectV1 ~ AspectV6Advice 를 하나씩 적용한 프록시로 부를 때의 비용
+ *
+ *  ./gradlew jmh -Pjmh.include=OrderAspectBenchmark
+ *
+ * 저장소는 파일에 쓰지 않는 NoopOrderRepository 로 바꿔서 어드바이스 체인의 비용만 남긴다.
+ * aspect=none 이 프록시 없는 기준값이다.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class OrderAspectBenchmark {
+
+    @Param({"none", "V1", "V2", "V3", "V4Pointcut", "V5Order", "V6Advice"})
+    public String aspect;
+
+    private OrderService target;
+    private OrderService orderService;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        OrderRepository orderRepository = new NoopOrderRepository();
+        target = new OrderService(orderRepository, new OrderChunkService(orderRepository), 1, 1);
+        orderService = "none".equals(aspect) ? target : proxy(target, aspect);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        target.destroy();
+    }
+
+    @Benchmark
+    public void orderItem() {
+        orderService.orderItem("itemA");
+    }
+
+    private static OrderService proxy(OrderService target, String aspect) {
+        AspectJProxyFactory proxyFactory = new AspectJProxyFactory(target);
+        proxyFactory.setProxyTargetClass(true); // 빈으로 등록했을 때와 같은 CGLIB 프록시
+        switch (aspect) {
+            case "V1":
+                proxyFactory.addAspect(AspectV1.class);
+                break;
+            case "V2":
+                proxyFactory.addAspect(AspectV2.class);
+                break;
+            case "V3":
+                proxyFactory.addAspect(AspectV3.class);
+                break;
+            case "V4Pointcut":
+                proxyFactory.addAspect(AspectV4Pointcut.class);
+                break;
+            case "V5Order":
+                proxyFactory.addAspect(AspectV5Order.LogAspect.class);
+                proxyFactory.addAspect(AspectV5Order.TxAspect.class);
+                break;
+            case "V6Advice":
+                proxyFactory.addAspect(AspectV6Advice.class);
+                break;
+            default:
+                throw new IllegalArgumentException("알 수 없는 aspect=" + aspect);
+        }
+        return proxyFactory.getProxy();
+    }
+
+    /**
+     * 파일 저장 비용이 어드바이스 비용을 덮지 않도록 저장하지 않는다.
+     */
+    static class NoopOrderRepository extends OrderRepository {
+
+        NoopOrderRepository() {
+            super((OrderStore) null);
+        }
+
+        @Override
+        public String save(String itemId) {
+            return "ok";
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package hello.aop.proxyvs;
+
+import hello.aop.member.MemberService;
+import hello.aop.member.MemberServiceImpl;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.aop.framework.ProxyFactory;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * MemberService.hello() 를 JDK 동적 프록시와 CGLIB 프록시로 부를 때의 비용
+ *
+ *  ./gradlew jmh -Pjmh.include=ProxyTypeBenchmark
+ *
+ * 프록시는 ProxyCastingTest 와 같은 방법(ProxyFactory, 어드바이스 없음)으로 만든다.
+ * 그래서 차이는 프록시가 호출을 대상에게 넘기는 방식(리플렉션 vs 생성된 서브클래스)에서만 생긴다.
+ * proxy=none 이 프록시 없는 기준값이다.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ProxyTypeBenchmark {
+
+    @Param({"none", "jdk", "cglib"})
+    public String proxy;
+
+    private MemberService memberService;
+
+    @Setup
+    public void setUp() {
+        MemberServiceImpl target = new MemberServiceImpl();
+        if ("none".equals(proxy)) {
+            memberService = target;
+            return;
+        }
+        ProxyFactory proxyFactory = new ProxyFactory(target);
+        proxyFactory.setProxyTargetClass("cglib".equals(proxy)); // false 면 JDK 동적 프록시
+        memberService = (MemberService) proxyFactory.getProxy();
+    }
+
+    @Benchmark
+    public String hello() {
+        return memberService.hello("helloA");
+    }
+}
@@ -0,0 +1,168 @@
+package hello.aop.support.pointcut;
+
+import hello.aop.order.aop.PointCuts;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.aop.aspectj.AspectJExpressionPointcut;
+import org.springframework.aop.support.AopUtils;
+import org.springframework.asm.ClassWriter;
+import org.springframework.asm.MethodVisitor;
+import org.springframework.asm.Opcodes;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 시작할 때 스프링이 하는 (빈 클래스, 포인트컷) 매칭을 AspectJExpressionPointcut 만으로 할 때와 PointcutPrefilter 를 먼저 거칠 때의 비용
+ *
+ *  ./gradlew jmh -Pjmh.include=PointcutPrefilterBenchmark
+ *
+ * 클래스는 synthetic.module{n}.{web,service,repository,domain} 패키지에 만든 1k/10k 개이고, 일부는 hello.aop.order 아래에 둔다.
+ * 실제 시작처럼 매번 새 포인트컷을 만들어서 AspectJ 의 파싱과 매칭 캐시가 비어 있는 상태에서 잰다. 필터를 만드는 시간도 포함한다.
+ * 두 방법이 맞다고 하는 조합 수가 다르면 시작하지 않는다.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PointcutPrefilterBenchmark {
+
+    static final List<String> EXPRESSIONS = List.of(
+            "hello.aop.order.aop.PointCuts.allOrder()",
+            "hello.aop.order.aop.PointCuts.orderAndService()",
+            "execution(* hello.aop.member..*.*(..))",
+            "within(hello.aop.internalcall..*)",
+            "execution(* synthetic.module1..*Service.save*(..))",
+            "within(synthetic.module2.repository.*)",
+            "execution(* synthetic..*Repository.delete(..))",
+            "execution(* *..*Controller.*(..))",
+            "@annotation(hello.aop.exam.annotation.Trace)"); // 거를 수 없는 식
+
+    static final String[] LAYERS = {"web", "service", "repository", "domain"};
+    static final String[] SUFFIXES = {"Controller", "Service", "Repository", "Entity"};
+    static final String[] METHODS = {"find", "save", "delete", "update", "validate", "toDto"};
+
+    @Param({"1000", "10000"})
+    public int classes;
+
+    private List<Class<?>> types;
+    private DefaultListableBeanFactory beanFactory;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        SyntheticClassLoader classLoader = new SyntheticClassLoader(getClass().getClassLoader());
+        types = new ArrayList<>(classes);
+        for (int i = 0; i < classes; i++) {
+            int layer = i % LAYERS.length;
+            String packageName = i % 100 == 0 ? "hello.aop.order.synthetic" : "synthetic.module" + (i / 100) + "." + LAYERS[layer];
+            types.add(classLoader.define(packageName + ".Type" + i + SUFFIXES[layer]));
+        }
+        beanFactory = new DefaultListableBeanFactory();
+        beanFactory.setBeanClassLoader(classLoader); // 빈 클래스 로더로 포인트컷을 해석한다.
+
+        int expected = aspectj();
+        int actual = prefiltered();
+        if (expected != actual || expected == 0) {
+            throw new IllegalStateException("matches aspectj=" + expected + " prefiltered=" + actual);
+        }
+    }
+
+    /**
+     * 스프링처럼 모든 (클래스, 포인트컷) 조합을 AopUtils.canApply 로 확인한다.
+     */
+    @Benchmark
+    public int aspectj() {
+        List<AspectJExpressionPointcut> pointcuts = pointcuts();
+        int matched = 0;
+        for (Class<?> type : types) {
+            for (AspectJExpressionPointcut pointcut : pointcuts) {
+                if (AopUtils.canApply(pointcut, type)) {
+                    matched++;
+                }
+            }
+        }
+        return matched;
+    }
+
+    /**
+     * 필터가 남긴 조합만 AopUtils.canApply 로 확인한다.
+     */
+    @Benchmark
+    public int prefiltered() {
+        List<AspectJExpressionPointcut> pointcuts = pointcuts();
+        PointcutPrefilter prefilter = PointcutPrefilter.of(EXPRESSIONS, Collections.nCopies(EXPRESSIONS.size(), PointCuts.class));
+        int matched = 0;
+        for (Class<?> type : types) {
+            BitSet candidates = prefilter.candidates(type);
+            for (int i = candidates.nextSetBit(0); i >= 0; i = candidates.nextSetBit(i + 1)) {
+                if (AopUtils.canApply(pointcuts.get(i), type)) {
+                    matched++;
+                }
+            }
+        }
+        return matched;
+    }
+
+    private List<AspectJExpressionPointcut> pointcuts() {
+        List<AspectJExpressionPointcut> pointcuts = new ArrayList<>();
+        for (String expression : EXPRESSIONS) {
+            AspectJExpressionPointcut pointcut = new AspectJExpressionPointcut();
+            pointcut.setPointcutDeclarationScope(PointCuts.class);
+            pointcut.setExpression(expression);
+            pointcut.setBeanFactory(beanFactory);
+            pointcuts.add(pointcut);
+        }
+        return pointcuts;
+    }
+
+    /**
+     * 메서드가 METHODS 인 public 클래스를 만들어서 로드한다.
+     */
+    static final class SyntheticClassLoader extends ClassLoader {
+
+        SyntheticClassLoader(ClassLoader parent) {
+            super(parent);
+        }
+
+        Class<?> define(String className) {
+            ClassWriter writer = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+            writer.visit(Opcodes.V11, Opcodes.ACC_PUBLIC | Opcodes.ACC_SUPER, className.replace('.', '/'), null, "java/lang/Object", null);
+
+            MethodVisitor constructor = writer.visitMethod(Opcodes.ACC_PUBLIC, "<init>", "()V", null, null);
+            constructor.visitCode();
+            constructor.visitVarInsn(Opcodes.ALOAD, 0);
+            constructor.visitMethodInsn(Opcodes.INVOKESPECIAL, "java/lang/Object", "<init>", "()V", false);
+            constructor.visitInsn(Opcodes.RETURN);
+            constructor.visitMaxs(0, 0);
+            constructor.visitEnd();
+
+            for (String name : METHODS) {
+                MethodVisitor method = writer.visitMethod(Opcodes.ACC_PUBLIC, name, "(Ljava/lang/String;)Ljava/lang/String;", null, null);
+                method.visitCode();
+                method.visitVarInsn(Opcodes.ALOAD, 1);
+                method.visitInsn(Opcodes.ARETURN);
+                method.visitMaxs(0, 0);
+                method.visitEnd();
+            }
+            writer.visitEnd();
+            byte[] bytes = writer.toByteArray();
+            return defineClass(className, bytes, 0, bytes.length);
+        }
+    }
+}
@@ -1,7 +1,13 @@
 package hello.aop.exam;
 
+import hello.aop.exam.annotation.Backoff;
+import hello.aop.exam.annotation.Bulkhead;
+import hello.aop.exam.annotation.CircuitBreaker;
+import hello.aop.exam.annotation.Coalesce;
 import hello.aop.exam.annotation.Retry;
+import hello.aop.exam.annotation.Timeout;
 import hello.aop.exam.annotation.Trace;
+import hello.aop.support.sequence.SequenceAllocator;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Repository;
 
@@ -9,15 +15,19 @@ import org.springframework.stereotype.Repository;
 @Repository
 public class ExamRepository {
 
-    private static int seq = 0;
+    private final SequenceAllocator sequence = SequenceAllocator.strict(); // 실패 패턴이 순서에 의존하므로 STRICT
 
     /**
      * 5번에 1번 실패하는 요청
      */
     @Trace
-    @Retry(value = 4) // default 3 이고 값을 줄 수도 있다., value = 은 생략가능
+    @Timeout(1000) // 재시도를 포함해서 1초 안에 끝나지 않으면 포기한다.
+    @Coalesce // 같은 itemId 로 동시에 들어온 저장은 한번만 실행한다.
+    @Retry(value = 4, backoff = Backoff.DECORRELATED_JITTER, initialDelay = 10, maxDelay = 100) // default 3 이고 값을 줄 수도 있다., value = 은 생략가능
+    @Bulkhead(maxConcurrentCalls = 10)
+    @CircuitBreaker
     public String save(String itemId) {
-        seq++;
+        long seq = sequence.next();
         log.info("[repository] seq={}", seq);
         if (seq % 5 == 0) {
             throw new IllegalStateException("예외 발생");
@@ -0,0 +1,15 @@
+package hello.aop.exam.annotation;
+
+/**
+ * Retry 사이의 대기 정책
+ *
+ *  - FIXED : 항상 initialDelay 만큼 대기
+ *  - EXPONENTIAL : initialDelay * 2^(n-1), maxDelay 를 넘지 않는다.
+ *  - DECORRELATED_JITTER : random(initialDelay, 이전 대기시간 * 3), maxDelay 를 넘지 않는다.
+ *    여러 요청이 동시에 실패해도 재시도 시점이 흩어지므로 장애 중인 대상에 요청이 한꺼번에 몰리지 않는다.
+ */
+public enum Backoff {
+    FIXED,
+    EXPONENTIAL,
+    DECORRELATED_JITTER
+}
@@ -0,0 +1,22 @@
+package hello.aop.exam.annotation;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * 인자가 하나인 메서드의 동시 호출을 모아서 묶음 메서드 한번으로 보낸다. (micro-batching)
+ *
+ * 묶음 메서드는 같은 클래스의 public 메서드로, 인자 목록(List)을 받아서 같은 순서의 결과 목록(List)을 반환해야 한다.
+ * 결과 원소가 Throwable 이면 그 원소에 해당하는 호출만 그 예외로 끝난다. 묶음 메서드가 예외를 던지면 묶음 전체가 실패한다.
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface Batched {
+    String value() default ""; // 묶음 메서드 이름, 비워두면 "메서드 이름 + All" (save -> saveAll)
+
+    int maxSize() default 100; // 이만큼 모이면 바로 보낸다.
+
+    long maxDelayMicros() default 1000; // 첫 호출이 들어온 뒤 이 시간이 지나면 모인 만큼 보낸다.
+}
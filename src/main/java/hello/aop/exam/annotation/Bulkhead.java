@@ -0,0 +1,28 @@
+package hello.aop.exam.annotation;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * 대상에 동시에 들어갈 수 있는 호출 수를 제한한다.
+ * 한도를 넘는 호출은 maxWaitDuration 만큼만 기다리고, 그래도 자리가 없으면 BulkheadFullException 으로 거절한다.
+ *
+ * adaptive = true 면 한도를 관측한 지연시간으로 조정한다. 지연시간이 부하 없을 때보다 늘어나면 줄이고, 그대로면 늘린다.
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface Bulkhead {
+    String name() default ""; // 같은 이름을 쓰는 메서드끼리 한도를 공유한다. 비워두면 메서드마다 따로
+
+    int maxConcurrentCalls() default 25; // 고정 한도, adaptive 이면 시작 한도
+
+    long maxWaitDuration() default 0; // 자리가 없을 때 기다리는 시간(ms), 0 이면 바로 거절
+
+    boolean adaptive() default false;
+
+    int minLimit() default 1; // adaptive 한도 하한
+
+    int maxLimit() default 200; // adaptive 한도 상한
+}
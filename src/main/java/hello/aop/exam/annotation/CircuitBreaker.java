@@ -0,0 +1,27 @@
+package hello.aop.exam.annotation;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * 최근 windowSize 번의 호출 중 실패율이 failureRateThreshold 이상이면 회로를 연다(OPEN).
+ * OPEN 상태에서는 대상을 호출하지 않고 바로 예외를 던지고, waitDurationInOpenState 가 지나면
+ * HALF_OPEN 상태에서 permittedCallsInHalfOpenState 번만 시험 호출을 해본 뒤 닫거나(CLOSED) 다시 연다.
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface CircuitBreaker {
+    String name() default ""; // 같은 이름을 쓰는 메서드끼리 회로를 공유한다. 비워두면 메서드마다 따로
+
+    int windowSize() default 20; // 실패율을 계산할 최근 호출 수
+
+    int minimumCalls() default 10; // 이 만큼 호출이 쌓이기 전에는 회로를 열지 않는다.
+
+    int failureRateThreshold() default 50; // 실패율(%)
+
+    long waitDurationInOpenState() default 1000; // OPEN 유지 시간(ms)
+
+    int permittedCallsInHalfOpenState() default 3; // HALF_OPEN 에서 허용할 시험 호출 수
+}
@@ -0,0 +1,16 @@
+package hello.aop.exam.annotation;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * 같은 인자로 동시에 들어온 호출을 하나로 합친다. (single-flight)
+ * 먼저 온 호출 하나만 대상을 호출하고, 그 동안 들어온 호출은 같은 결과(또는 예외)를 받는다.
+ * 끝난 뒤에 들어온 호출은 다시 대상을 호출한다. 결과를 저장해두려면 @Memoize 를 사용하자.
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface Coalesce {
+}
@@ -0,0 +1,22 @@
+package hello.aop.exam.annotation;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * 첫 호출이 delay 안에 끝나지 않으면 같은 호출을 한번 더 보내고(hedge), 먼저 성공한 결과를 사용한다.
+ * 두번 실행되어도 괜찮은(idempotent) 조회 메서드에만 사용하자.
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface Hedge {
+    long delay() default 50; // hedge 를 보내기 전 대기시간(ms)
+
+    boolean adaptive() default false; // true 면 최근 지연시간의 p95 를 delay 로 사용한다. (샘플이 모이기 전에는 delay)
+
+    double budget() default 0.1; // 전체 호출 대비 hedge 비율 상한
+
+    int maxTokens() default 10; // 한번에 몰아서 쓸 수 있는 hedge 수
+}
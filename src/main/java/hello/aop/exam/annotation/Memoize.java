@@ -0,0 +1,18 @@
+package hello.aop.exam.annotation;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * 같은 인자로 다시 호출하면 대상을 호출하지 않고 저장해둔 반환값을 돌려준다.
+ * 인자만으로 결과가 정해지는(부수효과 없는) 조회 메서드에만 사용하자.
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface Memoize {
+    int maxSize() default 1000; // 메서드별 최대 저장 개수, 넘으면 W-TinyLFU 정책으로 내보낸다.
+
+    long ttl() default 0; // 저장 후 유효 시간(ms), 0 이면 만료 없음
+}
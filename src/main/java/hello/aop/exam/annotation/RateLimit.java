@@ -0,0 +1,24 @@
+package hello.aop.exam.annotation;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * 초당 permitsPerSecond 번으로 호출을 제한한다. 쉬고 있었다면 burst 번까지는 한번에 허용한다.
+ * 한도를 넘으면 timeout 안에 차례가 오는 경우만 기다리고, 아니면 RateLimitExceededException 으로 바로 거절한다.
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface RateLimit {
+    double permitsPerSecond();
+
+    int burst() default 1; // 한번에 몰아서 허용할 수 있는 호출 수
+
+    long timeout() default 0; // 차례를 기다릴 수 있는 최대 시간(ms), 0 이면 기다리지 않고 거절한다.
+
+    String key() default ""; // 파라미터 이름, 주면 그 인자 값마다 따로 제한한다. (예: key = "itemId")
+
+    String name() default ""; // 같은 이름을 쓰는 메서드끼리 한도를 공유한다. 비워두면 메서드마다 따로
+}
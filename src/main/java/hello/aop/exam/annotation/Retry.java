@@ -9,4 +9,12 @@ import java.lang.annotation.Target;
 @Retention(RetentionPolicy.RUNTIME)
 public @interface Retry {
     int value() default 3; // retry 할 때는 횟수 제한을 항상 두도록하자
+
+    Backoff backoff() default Backoff.FIXED; // 재시도 사이 대기 정책
+
+    long initialDelay() default 0; // 첫 재시도 전 대기시간(ms), 0 이면 바로 재시도
+
+    long maxDelay() default 1000; // 대기시간 상한(ms)
+
+    String budget() default ""; // 재시도 예산 그룹 이름, 비워두면 메서드마다 따로 예산을 쓴다.
 }
@@ -0,0 +1,16 @@
+package hello.aop.exam.annotation;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * 호출을 다른 스레드에서 실행하고 value(ms) 안에 끝나지 않으면 기다리지 않고 CallTimeoutException 을 던진다.
+ * 끝나지 않은 호출은 인터럽트 한다.
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface Timeout {
+    long value(); // 제한 시간(ms)
+}
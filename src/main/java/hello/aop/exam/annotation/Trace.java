@@ -8,4 +8,5 @@ import java.lang.annotation.Target;
 @Target(ElementType.METHOD)
 @Retention(RetentionPolicy.RUNTIME)
 public @interface Trace {
+    double sampleRate() default 1.0; // 루트 span 일 때 남길 비율(0 ~ 1), 초당 목표 건수(AdaptiveSampler)를 넘으면 더 줄어든다. 에러와 느린 호출은 항상 남긴다.
 }
@@ -0,0 +1,34 @@
+package hello.aop.exam.aop;
+
+/**
+ * exam 애스펙트들의 @Order 값 (작을수록 바깥쪽에서 먼저 실행된다.)
+ *
+ * TraceAspect -> MemoizeAspect -> TimeoutAspect -> CoalesceAspect -> RateLimitAspect -> BatchedAspect -> RetryAspect -> BulkheadAspect -> CircuitBreakerAspect -> HedgeAspect -> target
+ *  - Trace 는 재시도를 포함한 전체 호출을 본다.
+ *  - Memoize 는 Trace 바로 안쪽이다. 캐시에서 꺼낸 호출도 trace 에는 남고, 그 아래(timeout, 한도, 재시도)는 건너뛴다.
+ *  - Timeout 은 Memoize 바로 안쪽이다. 제한 시간에는 한도 대기와 재시도가 모두 포함된다.
+ *  - Coalesce 는 RateLimit, Retry 바깥에 있어서, 합쳐진 호출들은 leader 의 재시도 결과를 함께 받고 한도도 한번만 쓴다.
+ *  - RateLimit 은 Retry 바깥에 있어서, 재시도를 포함한 호출 하나를 한번으로 계산한다.
+ *  - Batched 는 RateLimit 안쪽, Retry 바깥이다. 하나씩의 호출은 한도만 거치고, 재시도 등은 묶음 메서드에 붙여서 묶음 단위로 적용한다.
+ *  - Retry 는 CircuitBreaker 바깥에 있어서, 시도 하나하나가 회로에 성공/실패로 기록된다.
+ *    회로가 열려서 CircuitBreakerOpenException 이 나면 재시도 하지 않는다.
+ *  - Bulkhead 는 CircuitBreaker 바깥에 있어서, 한도 초과로 거절한 호출은 회로에 실패로 기록되지 않는다.
+ *    거절(BulkheadFullException)은 재시도 하지 않는다. 과부하일 때 재시도는 부하만 늘린다.
+ *  - Hedge 는 가장 안쪽에서 대상 호출만 다른 스레드로 보낸다. 회로에는 hedge 를 포함한 호출 1번이 기록된다.
+ */
+public final class AspectOrder {
+
+    public static final int TRACE = 100;
+    public static final int MEMOIZE = 150;
+    public static final int TIMEOUT = 200;
+    public static final int COALESCE = 250;
+    public static final int RATE_LIMIT = 300;
+    public static final int BATCHED = 350;
+    public static final int RETRY = 400;
+    public static final int BULKHEAD = 450;
+    public static final int CIRCUIT_BREAKER = 500;
+    public static final int HEDGE = 600;
+
+    private AspectOrder() {
+    }
+}
@@ -0,0 +1,156 @@
+package hello.aop.exam.aop;
+
+import hello.aop.exam.annotation.Batched;
+import hello.aop.exam.support.MicroBatcher;
+import lombok.extern.slf4j.Slf4j;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.core.annotation.Order;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * @Batched 메서드의 동시 호출을 모아서 묶음 메서드(saveAll 등) 한번으로 보낸다.
+ *
+ * 호출 한번의 비용은 대부분 왕복(네트워크, 커밋)이므로, 묶어서 보내면 같은 시간에 훨씬 많이 쓸 수 있다.
+ * 호출한 스레드는 자기 요청의 결과가 나올 때까지 기다린다. CompletableFuture 를 반환하는 메서드는 기다리지 않고 future 를 반환한다.
+ *
+ * 묶는 단위는 (대상 객체, 메서드)다. 같은 클래스의 빈이 여러개여도 각 빈의 호출은 그 빈의 묶음 메서드로만 보낸다.
+ *
+ * 묶음 메서드는 프록시를 통해 호출하므로 묶음 메서드에 붙은 @Retry, @Bulkhead 등이 묶음 단위로 적용된다.
+ * 대상 메서드는 호출되지 않으므로 이 애스펙트보다 안쪽(Retry, Bulkhead, CircuitBreaker ...)의 애스펙트는 하나씩의 호출에 적용되지 않는다.
+ * RateLimitAspect 는 바깥에 있어서 하나씩의 호출(상품별 제한 등)에 그대로 적용된다.
+ */
+@Slf4j
+@Aspect
+@Order(AspectOrder.BATCHED)
+public class BatchedAspect implements DisposableBean {
+
+    private final ScheduledExecutorService scheduler = createScheduler();
+    private final ConcurrentMap<BatcherKey, MicroBatcher<Object, Object>> batchers = new ConcurrentHashMap<>();
+
+    @Around("@annotation(batched)")
+    public Object doBatch(ProceedingJoinPoint joinPoint, Batched batched) throws Throwable {
+        Object[] args = joinPoint.getArgs();
+        if (args.length != 1) {
+            throw new IllegalStateException("@Batched 는 인자가 하나인 메서드에만 사용할 수 있습니다. method=" + joinPoint.getSignature());
+        }
+        CompletableFuture<Object> result = batcher(joinPoint, batched).submit(args[0]);
+        if (isAsync(joinPoint)) {
+            return result;
+        }
+        try {
+            return result.get();
+        } catch (ExecutionException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * 묶음 수, 평균 묶음 크기를 조회할 때 사용한다. 아직 호출된 적이 없으면 null
+     */
+    public MicroBatcher<Object, Object> getBatcher(Object target, Method method) {
+        return batchers.get(new BatcherKey(target, method));
+    }
+
+    @Override
+    public void destroy() {
+        scheduler.shutdownNow();
+    }
+
+    private MicroBatcher<Object, Object> batcher(ProceedingJoinPoint joinPoint, Batched batched) {
+        Method method = ((MethodSignature) joinPoint.getSignature()).getMethod();
+        BatcherKey batcherKey = new BatcherKey(joinPoint.getTarget(), method);
+        MicroBatcher<Object, Object> batcher = batchers.get(batcherKey);
+        if (batcher == null) {
+            Object proxy = joinPoint.getThis(); // 이 대상 객체의 프록시, 묶음 메서드도 이 프록시로 호출한다.
+            Method bulkMethod = bulkMethod(proxy.getClass(), method, batched);
+            String name = joinPoint.getSignature().toShortString();
+            batcher = batchers.computeIfAbsent(batcherKey, key -> {
+                log.info("[batched] {} -> {} maxSize={} maxDelay={}us", name, bulkMethod.getName(), batched.maxSize(),
+                        batched.maxDelayMicros());
+                return new MicroBatcher<>(name, batched.maxSize(), batched.maxDelayMicros(),
+                        items -> invoke(bulkMethod, proxy, items), scheduler);
+            });
+        }
+        return batcher;
+    }
+
+    private static Method bulkMethod(Class<?> type, Method method, Batched batched) {
+        String name = batched.value().isEmpty() ? method.getName() + "All" : batched.value();
+        try {
+            Method bulkMethod = type.getMethod(name, List.class);
+            if (!List.class.isAssignableFrom(bulkMethod.getReturnType())) {
+                throw new IllegalStateException("@Batched 묶음 메서드는 List 를 반환해야 합니다. method=" + bulkMethod);
+            }
+            return bulkMethod;
+        } catch (NoSuchMethodException e) {
+            throw new IllegalStateException("@Batched 묶음 메서드가 없습니다. " + name + "(List) method=" + method, e);
+        }
+    }
+
+    private static List<?> invoke(Method bulkMethod, Object proxy, List<Object> items) throws Throwable {
+        try {
+            return (List<?>) bulkMethod.invoke(proxy, items);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    private static boolean isAsync(ProceedingJoinPoint joinPoint) {
+        Class<?> returnType = ((MethodSignature) joinPoint.getSignature()).getReturnType();
+        return CompletionStage.class.isAssignableFrom(returnType) && returnType.isAssignableFrom(CompletableFuture.class);
+    }
+
+    private static ScheduledExecutorService createScheduler() {
+        AtomicInteger count = new AtomicInteger();
+        int poolSize = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+        ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(poolSize, runnable -> {
+            Thread thread = new Thread(runnable, "batch-flush-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.setRemoveOnCancelPolicy(true);
+        return executor;
+    }
+
+    /**
+     * 대상 객체는 equals 가 아니라 같은 객체인지(==)로 비교한다.
+     */
+    private static final class BatcherKey {
+        private final Object target;
+        private final Method method;
+
+        private BatcherKey(Object target, Method method) {
+            this.target = target;
+            this.method = method;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof BatcherKey)) {
+                return false;
+            }
+            BatcherKey other = (BatcherKey) o;
+            return target == other.target && method.equals(other.method);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * System.identityHashCode(target) + method.hashCode();
+        }
+    }
+}
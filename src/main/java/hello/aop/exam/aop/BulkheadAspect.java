@@ -0,0 +1,82 @@
+package hello.aop.exam.aop;
+
+import hello.aop.exam.annotation.Bulkhead;
+import hello.aop.exam.support.BulkheadFullException;
+import hello.aop.exam.support.ConcurrencyLimiter;
+import hello.aop.exam.support.GradientLimit;
+import lombok.extern.slf4j.Slf4j;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.springframework.core.annotation.Order;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * 대상에 동시에 들어가는 호출 수를 제한한다.
+ * 과부하일 때 대상 앞에 대기가 끝없이 쌓이는 대신 넘치는 호출을 바로(또는 잠깐 기다린 뒤) 거절해서 지연시간을 묶어둔다.
+ *
+ * CompletableFuture 를 반환하는 메서드는 결과가 완료될 때 자리를 반납한다.
+ */
+@Slf4j
+@Aspect
+@Order(AspectOrder.BULKHEAD)
+public class BulkheadAspect {
+
+    private final ConcurrentMap<String, ConcurrencyLimiter> limiters = new ConcurrentHashMap<>();
+    private final ConcurrentMap<Method, ConcurrencyLimiter> methodLimiters = new ConcurrentHashMap<>();
+
+    @Around("@annotation(bulkhead)")
+    public Object doBulkhead(ProceedingJoinPoint joinPoint, Bulkhead bulkhead) throws Throwable {
+        ConcurrencyLimiter limiter = limiter(joinPoint, bulkhead);
+
+        int inFlight = limiter.acquire(bulkhead.maxWaitDuration());
+        if (inFlight == 0) {
+            log.info("[bulkhead] {} rejected {}", joinPoint.getSignature(), limiter);
+            throw new BulkheadFullException(limiter.getName(), limiter.getLimit());
+        }
+
+        long start = System.nanoTime();
+        Object result;
+        try {
+            result = joinPoint.proceed();
+        } catch (Throwable e) {
+            limiter.release(System.nanoTime() - start, inFlight);
+            throw e;
+        }
+
+        if (result instanceof CompletionStage) {
+            ((CompletionStage<?>) result).whenComplete((value, ex) -> limiter.release(System.nanoTime() - start, inFlight));
+        } else {
+            limiter.release(System.nanoTime() - start, inFlight);
+        }
+        return result;
+    }
+
+    public ConcurrencyLimiter getBulkhead(String name) {
+        return limiters.get(name);
+    }
+
+    private ConcurrencyLimiter limiter(ProceedingJoinPoint joinPoint, Bulkhead bulkhead) {
+        Method method = ((MethodSignature) joinPoint.getSignature()).getMethod();
+        ConcurrencyLimiter limiter = methodLimiters.get(method);
+        if (limiter == null) {
+            String name = bulkhead.name().isEmpty() ? joinPoint.getSignature().toShortString() : bulkhead.name();
+            limiter = methodLimiters.computeIfAbsent(method,
+                    key -> limiters.computeIfAbsent(name, n -> createLimiter(n, bulkhead)));
+        }
+        return limiter;
+    }
+
+    private static ConcurrencyLimiter createLimiter(String name, Bulkhead bulkhead) {
+        if (!bulkhead.adaptive()) {
+            return new ConcurrencyLimiter(name, bulkhead.maxConcurrentCalls());
+        }
+        GradientLimit gradient = new GradientLimit(bulkhead.maxConcurrentCalls(), bulkhead.minLimit(), bulkhead.maxLimit());
+        return new ConcurrencyLimiter(name, bulkhead.maxConcurrentCalls(), gradient);
+    }
+}
@@ -0,0 +1,70 @@
+package hello.aop.exam.aop;
+
+import hello.aop.exam.annotation.CircuitBreaker;
+import hello.aop.exam.support.CircuitBreakerOpenException;
+import hello.aop.exam.support.CircuitBreakerState;
+import lombok.extern.slf4j.Slf4j;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.springframework.core.annotation.Order;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * 계속 실패하는 대상은 잠시 호출하지 않고 바로 실패시킨다. (fail fast)
+ * 어차피 실패할 호출을 기다리느라 스레드를 붙잡거나 지연시간이 늘어나는 것을 막는다.
+ */
+@Slf4j
+@Aspect
+@Order(AspectOrder.CIRCUIT_BREAKER)
+public class CircuitBreakerAspect {
+
+    private final ConcurrentMap<String, CircuitBreakerState> breakers = new ConcurrentHashMap<>();
+    private final ConcurrentMap<Method, CircuitBreakerState> methodBreakers = new ConcurrentHashMap<>();
+
+    @Around("@annotation(circuitBreaker)")
+    public Object doCircuitBreaker(ProceedingJoinPoint joinPoint, CircuitBreaker circuitBreaker) throws Throwable {
+        CircuitBreakerState breaker = breaker(joinPoint, circuitBreaker);
+
+        CircuitBreakerState.Phase phase = breaker.tryAcquire();
+        if (phase == null) {
+            log.info("[circuitBreaker] {} rejected {}", joinPoint.getSignature(), breaker);
+            throw new CircuitBreakerOpenException(breaker.getName());
+        }
+
+        Object result;
+        try {
+            result = joinPoint.proceed();
+        } catch (Throwable e) {
+            breaker.onResult(phase, true);
+            throw e;
+        }
+
+        if (result instanceof CompletionStage) {
+            ((CompletionStage<?>) result).whenComplete((value, ex) -> breaker.onResult(phase, ex != null));
+        } else {
+            breaker.onResult(phase, false);
+        }
+        return result;
+    }
+
+    public CircuitBreakerState getCircuitBreaker(String name) {
+        return breakers.get(name);
+    }
+
+    private CircuitBreakerState breaker(ProceedingJoinPoint joinPoint, CircuitBreaker circuitBreaker) {
+        Method method = ((MethodSignature) joinPoint.getSignature()).getMethod();
+        CircuitBreakerState breaker = methodBreakers.get(method);
+        if (breaker == null) {
+            String name = circuitBreaker.name().isEmpty() ? joinPoint.getSignature().toShortString() : circuitBreaker.name();
+            breaker = methodBreakers.computeIfAbsent(method,
+                    key -> breakers.computeIfAbsent(name, n -> new CircuitBreakerState(n, circuitBreaker)));
+        }
+        return breaker;
+    }
+}
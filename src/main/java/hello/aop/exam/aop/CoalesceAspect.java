@@ -0,0 +1,122 @@
+package hello.aop.exam.aop;
+
+import hello.aop.exam.annotation.Coalesce;
+import hello.aop.exam.support.ArgumentKey;
+import lombok.extern.slf4j.Slf4j;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.springframework.core.annotation.Order;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 같은 인자로 동시에 들어온 호출을 하나로 합친다. (single-flight)
+ *
+ * 메서드마다 ConcurrentHashMap<인자 키, CompletableFuture> 를 둔다.
+ * putIfAbsent 에 성공한 호출(leader)만 대상을 호출하고, 실패한 호출(waiter)은 leader 의 future 를 기다린다.
+ * leader 는 끝나면 결과나 예외로 future 를 완료하고 map 에서 지운다. waiter 는 leader 와 같은 예외 객체를 받는다.
+ * CompletableFuture 를 반환하는 메서드는 반환된 future 가 끝날 때까지를 한 호출로 보고, waiter 에게는 그 사본을 준다.
+ *
+ * RetryAspect 보다 바깥에서 실행된다. 재시도는 leader 안에서 한번만 돌고 waiter 는 그 최종 결과를 받는다.
+ * RateLimitAspect 보다도 바깥이라 합쳐진 호출은 한도를 한번만 쓴다.
+ */
+@Slf4j
+@Aspect
+@Order(AspectOrder.COALESCE)
+public class CoalesceAspect {
+
+    private final ConcurrentMap<Method, ConcurrentMap<Object, CompletableFuture<Object>>> inFlight = new ConcurrentHashMap<>();
+    private final LongAdder coalesced = new LongAdder();
+
+    @Around("@annotation(coalesce)")
+    public Object doCoalesce(ProceedingJoinPoint joinPoint, Coalesce coalesce) throws Throwable {
+        ConcurrentMap<Object, CompletableFuture<Object>> calls = calls(joinPoint);
+        Object key = ArgumentKey.of(joinPoint);
+
+        CompletableFuture<Object> call = new CompletableFuture<>();
+        CompletableFuture<Object> leader = calls.putIfAbsent(key, call);
+        if (leader != null) {
+            coalesced.increment();
+            log.info("[coalesce] {} key={} join in-flight call", joinPoint.getSignature(), key);
+            return isAsync(joinPoint) ? leader.copy() : await(leader);
+        }
+
+        if (isAsync(joinPoint)) {
+            return proceedAsync(joinPoint, calls, key, call);
+        }
+        Object result;
+        try {
+            result = joinPoint.proceed();
+        } catch (Throwable e) {
+            calls.remove(key, call);
+            call.completeExceptionally(e);
+            throw e;
+        }
+        calls.remove(key, call); // 완료 전에 지워야 완료 직후 들어온 호출이 끝난 결과를 받지 않고 새로 호출한다.
+        call.complete(result);
+        return result;
+    }
+
+    /**
+     * 합쳐져서 대상을 호출하지 않은 횟수
+     */
+    public long getCoalescedCount() {
+        return coalesced.sum();
+    }
+
+    private Object proceedAsync(ProceedingJoinPoint joinPoint, ConcurrentMap<Object, CompletableFuture<Object>> calls,
+                                Object key, CompletableFuture<Object> call) throws Throwable {
+        CompletionStage<?> stage;
+        try {
+            stage = (CompletionStage<?>) joinPoint.proceed();
+        } catch (Throwable e) {
+            calls.remove(key, call);
+            call.completeExceptionally(e);
+            throw e;
+        }
+        if (stage == null) {
+            calls.remove(key, call);
+            call.complete(null);
+            return null;
+        }
+        stage.whenComplete((value, ex) -> {
+            calls.remove(key, call);
+            if (ex == null) {
+                call.complete(value);
+            } else {
+                call.completeExceptionally(ex);
+            }
+        });
+        return stage;
+    }
+
+    private ConcurrentMap<Object, CompletableFuture<Object>> calls(ProceedingJoinPoint joinPoint) {
+        Method method = ((MethodSignature) joinPoint.getSignature()).getMethod();
+        ConcurrentMap<Object, CompletableFuture<Object>> calls = inFlight.get(method);
+        if (calls == null) {
+            calls = inFlight.computeIfAbsent(method, key -> new ConcurrentHashMap<>());
+        }
+        return calls;
+    }
+
+    private static Object await(CompletableFuture<Object> leader) throws Throwable {
+        try {
+            return leader.get();
+        } catch (ExecutionException e) {
+            throw e.getCause();
+        }
+    }
+
+    private static boolean isAsync(ProceedingJoinPoint joinPoint) {
+        Class<?> returnType = ((MethodSignature) joinPoint.getSignature()).getReturnType();
+        return CompletionStage.class.isAssignableFrom(returnType) && returnType.isAssignableFrom(CompletableFuture.class);
+    }
+}
@@ -0,0 +1,177 @@
+package hello.aop.exam.aop;
+
+import hello.aop.exam.annotation.Hedge;
+import hello.aop.exam.support.AsyncProceed;
+import hello.aop.exam.support.LatencyTracker;
+import hello.aop.exam.support.RetryBudget;
+import lombok.extern.slf4j.Slf4j;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.core.annotation.Order;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Hedged request
+ *
+ * 첫 호출이 @Hedge 의 delay(또는 p95) 안에 끝나지 않으면 같은 호출을 한번 더 보내고 먼저 성공한 쪽을 반환한다.
+ * 진 쪽은 cancel(true) 로 인터럽트 한다.
+ * RetryAspect 는 실패한 다음에야 다시 보내지만, hedge 는 느린 호출의 꼬리 지연시간(p99)을 줄인다.
+ *
+ * hedge 는 RetryBudget(토큰 버킷)으로 제한한다. 호출이 성공할 때마다 budget 비율만큼 토큰이 쌓이고 hedge 1번에 1개를 쓴다.
+ * 대상이 전체적으로 느려졌을 때 hedge 가 부하를 두배로 만드는 것을 막는다.
+ *
+ * 호출은 executor 스레드에서 AsyncProceed 로 실행한다. 안쪽 애스펙트의 파라미터 바인딩과 호출한 스레드의 span 이 그대로 이어진다.
+ */
+@Slf4j
+@Aspect
+@Order(AspectOrder.HEDGE)
+public class HedgeAspect implements DisposableBean {
+
+    private final ExecutorService executor = createExecutor();
+    private final ConcurrentMap<Method, HedgeState> states = new ConcurrentHashMap<>();
+    private final LongAdder hedged = new LongAdder();
+
+    @Around("@annotation(hedge)")
+    public Object doHedge(ProceedingJoinPoint joinPoint, Hedge hedge) throws Throwable {
+        HedgeState state = state(joinPoint, hedge);
+        Callable<Object> proceed = AsyncProceed.of(joinPoint);
+
+        HedgeCall call = new HedgeCall();
+        Future<?> primary;
+        try {
+            primary = submit(proceed, state, call);
+        } catch (RejectedExecutionException e) {
+            return proceed.call(); // 실행할 스레드가 없으면 호출한 스레드에서 그냥 호출한다.
+        }
+
+        Future<?> secondary = null;
+        try {
+            try {
+                return call.first.get(state.delayNanos(hedge), TimeUnit.NANOSECONDS);
+            } catch (TimeoutException e) {
+                if (state.budget.tryAcquire()) {
+                    log.info("[hedge] {} hedge request", joinPoint.getSignature());
+                    secondary = hedge(proceed, state, call);
+                }
+            }
+            return call.first.get();
+        } catch (ExecutionException e) {
+            throw e.getCause();
+        } finally {
+            primary.cancel(true); // 진 쪽은 인터럽트, 이미 끝났으면 아무 일도 하지 않는다.
+            if (secondary != null) {
+                secondary.cancel(true);
+            }
+        }
+    }
+
+    public long getHedgedCount() {
+        return hedged.sum();
+    }
+
+    @Override
+    public void destroy() {
+        executor.shutdownNow();
+    }
+
+    private Future<?> hedge(Callable<Object> proceed, HedgeState state, HedgeCall call) {
+        call.remaining.incrementAndGet();
+        try {
+            Future<?> secondary = submit(proceed, state, call);
+            hedged.increment();
+            return secondary;
+        } catch (RejectedExecutionException e) {
+            call.fail(null); // 스레드가 없으면 hedge 없이 첫 호출만 기다린다.
+            return null;
+        }
+    }
+
+    private Future<?> submit(Callable<Object> proceed, HedgeState state, HedgeCall call) {
+        return executor.submit(() -> {
+            long start = System.nanoTime();
+            try {
+                Object result = proceed.call();
+                state.latency.record(System.nanoTime() - start);
+                state.budget.onSuccess();
+                call.first.complete(result);
+            } catch (Throwable e) {
+                call.fail(e);
+            }
+        });
+    }
+
+    private HedgeState state(ProceedingJoinPoint joinPoint, Hedge hedge) {
+        Method method = ((MethodSignature) joinPoint.getSignature()).getMethod();
+        HedgeState state = states.get(method);
+        if (state == null) {
+            String name = joinPoint.getSignature().toShortString();
+            state = states.computeIfAbsent(method, key -> new HedgeState(name, hedge));
+        }
+        return state;
+    }
+
+    private static ExecutorService createExecutor() {
+        AtomicInteger count = new AtomicInteger();
+        return new ThreadPoolExecutor(0, 256, 60, TimeUnit.SECONDS, new SynchronousQueue<>(), runnable -> {
+            Thread thread = new Thread(runnable, "hedge-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * 먼저 성공한 결과로 first 를 완료한다. 실패는 모든 호출이 실패했을 때만 전달한다.
+     */
+    private static final class HedgeCall {
+        private final CompletableFuture<Object> first = new CompletableFuture<>();
+        private final AtomicInteger remaining = new AtomicInteger(1);
+        private final AtomicReference<Throwable> lastError = new AtomicReference<>();
+
+        private void fail(Throwable e) {
+            if (e != null) {
+                lastError.set(e);
+            }
+            if (remaining.decrementAndGet() == 0) {
+                first.completeExceptionally(lastError.get());
+            }
+        }
+    }
+
+    private static final class HedgeState {
+        private final LatencyTracker latency = new LatencyTracker();
+        private final RetryBudget budget;
+
+        private HedgeState(String name, Hedge hedge) {
+            this.budget = new RetryBudget(name, hedge.budget(), hedge.maxTokens());
+        }
+
+        private long delayNanos(Hedge hedge) {
+            if (hedge.adaptive()) {
+                long p95 = latency.getP95Nanos();
+                if (p95 > 0) {
+                    return p95;
+                }
+            }
+            return TimeUnit.MILLISECONDS.toNanos(hedge.delay());
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package hello.aop.exam.aop;
+
+import hello.aop.exam.annotation.Memoize;
+import hello.aop.exam.support.ArgumentKey;
+import hello.aop.exam.support.TinyLfuCache;
+import lombok.extern.slf4j.Slf4j;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.springframework.core.annotation.Order;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * @Memoize 메서드의 반환값을 인자별로 저장해두고, 같은 인자로 다시 호출되면 대상을 호출하지 않는다.
+ *
+ * 메서드마다 TinyLfuCache 를 하나씩 둔다. 캐시 키는 ArgumentKey 로 만든다. (인자가 하나면 그 값 그대로)
+ * null 반환값도 저장할 수 있도록 ArgumentKey.NULL 로 바꿔서 넣는다. 예외는 저장하지 않는다.
+ *
+ * TraceAspect 바로 안쪽에서 실행된다. 캐시에서 꺼낸 호출은 trace 에는 남지만 timeout, 재시도, 회로 등은 거치지 않는다.
+ */
+@Slf4j
+@Aspect
+@Order(AspectOrder.MEMOIZE)
+public class MemoizeAspect {
+
+    private final ConcurrentMap<Method, TinyLfuCache<Object, Object>> caches = new ConcurrentHashMap<>();
+
+    @Around("@annotation(memoize)")
+    public Object doMemoize(ProceedingJoinPoint joinPoint, Memoize memoize) throws Throwable {
+        TinyLfuCache<Object, Object> cache = cache(joinPoint, memoize);
+        Object key = ArgumentKey.of(joinPoint);
+
+        Object cached = cache.get(key);
+        if (cached != null) {
+            return cached == ArgumentKey.NULL ? null : cached;
+        }
+        Object result = joinPoint.proceed();
+        cache.put(key, result == null ? ArgumentKey.NULL : result);
+        return result;
+    }
+
+    /**
+     * 적중/실패/내보낸 횟수를 조회할 때 사용한다. 아직 호출된 적이 없으면 null
+     */
+    public TinyLfuCache<Object, Object> getCache(Method method) {
+        return caches.get(method);
+    }
+
+    private TinyLfuCache<Object, Object> cache(ProceedingJoinPoint joinPoint, Memoize memoize) {
+        Method method = ((MethodSignature) joinPoint.getSignature()).getMethod();
+        TinyLfuCache<Object, Object> cache = caches.get(method);
+        if (cache == null) {
+            cache = caches.computeIfAbsent(method, key -> {
+                log.info("[memoize] {} maxSize={} ttl={}ms", joinPoint.getSignature(), memoize.maxSize(), memoize.ttl());
+                return new TinyLfuCache<>(memoize.maxSize(), memoize.ttl());
+            });
+        }
+        return cache;
+    }
+}
@@ -0,0 +1,147 @@
+package hello.aop.exam.aop;
+
+import hello.aop.exam.annotation.RateLimit;
+import hello.aop.exam.support.RateLimitExceededException;
+import hello.aop.exam.support.RateLimiter;
+import lombok.extern.slf4j.Slf4j;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.springframework.core.annotation.Order;
+
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 초당 호출 수를 제한해서 뒤쪽 시스템을 보호한다.
+ *
+ * @RateLimit(key = "파라미터 이름") 을 주면 그 인자 값마다 따로 제한한다. (상품별, 사용자별 제한)
+ * 키별 limiter 는 MAX_KEYS 개를 넘으면 한동안 호출이 없던 것(버킷이 가득 찬 것)부터 정리한다.
+ * 가득 찬 limiter 는 새로 만든 것과 같으므로 정리해도 동작이 바뀌지 않는다.
+ * 정리는 전체를 훑으므로 새 키마다 하지 않고, 정리 후 남은 수의 1.5 배(최소 MAX_KEYS)에 닿았을 때 스레드 하나만 한다.
+ *
+ * RetryAspect 보다 바깥에서 실행된다. 재시도를 포함한 호출 하나가 한번으로 계산된다.
+ */
+@Slf4j
+@Aspect
+@Order(AspectOrder.RATE_LIMIT)
+public class RateLimitAspect {
+
+    static final int MAX_KEYS = 10_000;
+
+    private final ConcurrentMap<Method, Limits> methodLimits = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Limits> namedLimits = new ConcurrentHashMap<>();
+
+    @Around("@annotation(rateLimit)")
+    public Object doRateLimit(ProceedingJoinPoint joinPoint, RateLimit rateLimit) throws Throwable {
+        RateLimiter limiter = limits(joinPoint, rateLimit).limiter(joinPoint.getArgs());
+
+        if (!limiter.tryAcquire(TimeUnit.MILLISECONDS.toNanos(rateLimit.timeout()))) {
+            log.info("[rateLimit] {} rejected {}", joinPoint.getSignature(), limiter);
+            throw new RateLimitExceededException(limiter.getName());
+        }
+        return joinPoint.proceed();
+    }
+
+    /**
+     * @param key 키별 제한이면 인자 값, 아니면 null
+     */
+    public RateLimiter getRateLimiter(String name, Object key) {
+        Limits limits = namedLimits.get(name);
+        return limits == null ? null : limits.find(key);
+    }
+
+    private Limits limits(ProceedingJoinPoint joinPoint, RateLimit rateLimit) {
+        MethodSignature signature = (MethodSignature) joinPoint.getSignature();
+        Method method = signature.getMethod();
+        Limits limits = methodLimits.get(method);
+        if (limits == null) {
+            String name = rateLimit.name().isEmpty() ? signature.toShortString() : rateLimit.name();
+            int keyIndex = keyIndex(signature, rateLimit.key());
+            limits = methodLimits.computeIfAbsent(method,
+                    key -> namedLimits.computeIfAbsent(name, n -> new Limits(n, rateLimit, keyIndex)));
+        }
+        return limits;
+    }
+
+    private static int keyIndex(MethodSignature signature, String key) {
+        if (key.isEmpty()) {
+            return -1;
+        }
+        String[] parameterNames = signature.getParameterNames();
+        int index = parameterNames == null ? -1 : Arrays.asList(parameterNames).indexOf(key);
+        if (index < 0) {
+            throw new IllegalStateException("@RateLimit key 에 해당하는 파라미터가 없습니다. key=" + key + " method=" + signature);
+        }
+        return index;
+    }
+
+    /**
+     * 메서드(또는 name) 하나의 limiter, 키별 제한이면 키마다 하나씩
+     */
+    private static final class Limits {
+        private final String name;
+        private final double permitsPerSecond;
+        private final int burst;
+        private final int keyIndex;
+        private final RateLimiter shared;
+        private final ConcurrentMap<Object, RateLimiter> perKey;
+        private final AtomicBoolean sweeping = new AtomicBoolean();
+        private volatile int sweepAt = MAX_KEYS;
+
+        private Limits(String name, RateLimit rateLimit, int keyIndex) {
+            this.name = name;
+            this.permitsPerSecond = rateLimit.permitsPerSecond();
+            this.burst = rateLimit.burst();
+            this.keyIndex = keyIndex;
+            this.shared = keyIndex < 0 ? new RateLimiter(name, permitsPerSecond, burst) : null;
+            this.perKey = keyIndex < 0 ? null : new ConcurrentHashMap<>();
+        }
+
+        private RateLimiter limiter(Object[] args) {
+            if (shared != null) {
+                return shared;
+            }
+            Object key = args[keyIndex];
+            RateLimiter limiter = perKey.get(key == null ? NullKey.INSTANCE : key);
+            if (limiter != null) {
+                return limiter;
+            }
+            if (perKey.size() >= sweepAt) {
+                sweep();
+            }
+            return perKey.computeIfAbsent(key == null ? NullKey.INSTANCE : key,
+                    k -> new RateLimiter(name + "[" + key + "]", permitsPerSecond, burst));
+        }
+
+        /**
+         * 한동안 호출이 없던 limiter 를 정리한다. 다음 정리는 남은 수의 1.5 배가 되었을 때 한다.
+         * 남은 limiter 가 많아도 새 키 하나에 드는 정리 비용은 상수로 유지된다.
+         */
+        private void sweep() {
+            if (!sweeping.compareAndSet(false, true)) {
+                return; // 다른 스레드가 정리 중이다.
+            }
+            try {
+                perKey.values().removeIf(RateLimiter::isIdle);
+                int remaining = perKey.size();
+                sweepAt = Math.max(MAX_KEYS, remaining + remaining / 2);
+            } finally {
+                sweeping.set(false);
+            }
+        }
+
+        private RateLimiter find(Object key) {
+            return shared != null ? shared : perKey.get(key == null ? NullKey.INSTANCE : key);
+        }
+    }
+
+    private enum NullKey {
+        INSTANCE
+    }
+}
@@ -1,35 +1,201 @@
 package hello.aop.exam.aop;
 
 import hello.aop.exam.annotation.Retry;
+import hello.aop.exam.support.BulkheadFullException;
+import hello.aop.exam.support.CircuitBreakerOpenException;
+import hello.aop.exam.support.RetryBackoff;
+import hello.aop.exam.support.RetryBudget;
+import hello.aop.exam.support.RetryBudgetRegistry;
+import hello.aop.exam.support.RetryScheduler;
+import hello.aop.exam.trace.Tracer;
 import lombok.extern.slf4j.Slf4j;
 import org.aspectj.lang.ProceedingJoinPoint;
 import org.aspectj.lang.annotation.Around;
 import org.aspectj.lang.annotation.Aspect;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.springframework.core.annotation.Order;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
 
 /**
  * Retry 로직 ( request 재 요청시 주로 사용 )
+ *
+ * 재시도 사이에는 @Retry 의 backoff 정책만큼 대기한다.
+ *  - 일반 메서드 : 호출한 스레드에서 대기 후 재시도
+ *  - CompletableFuture 를 반환하는 메서드 : RetryScheduler 에 다음 시도를 예약하고 바로 반환한다. 대기 중 블로킹 되는 스레드가 없다.
+ *
+ * 재시도 전에는 RetryBudget 에서 토큰을 받아야 한다. 예산이 바닥나면 남은 횟수와 관계없이 재시도를 멈춘다.
+ * 예산은 메서드별로, @Retry(budget = "그룹명") 을 주면 같은 그룹끼리 공유한다.
+ *
+ * CircuitBreakerAspect 보다 바깥에서 실행된다. 회로가 열려서 바로 실패한 경우와 bulkhead 가 거절한 경우는 재시도 하지 않는다.
+ *
+ * 바깥의 @Trace span 이 열려 있으면 일반 메서드의 시도 한번 한번을 RETRY_ATTEMPT span 으로 기록한다.
+ * 비동기 재시도는 스케줄러 스레드에서 실행되므로 span 을 남기지 않는다.
  */
 @Slf4j
 @Aspect
+@Order(AspectOrder.RETRY)
 public class RetryAspect {
 
+    private final RetryBudgetRegistry retryBudgets;
+    private final ConcurrentMap<Method, RetryBudget> methodBudgets = new ConcurrentHashMap<>();
+
+    public RetryAspect() {
+        this(new RetryBudgetRegistry());
+    }
+
+    public RetryAspect(RetryBudgetRegistry retryBudgets) {
+        this.retryBudgets = retryBudgets;
+    }
+
 //    @Around("@annotation(hello.aop.exam.annotation.Retry")
     @Around("@annotation(retry)") // 이렇게 하면 파람의 타입정보가 @annotation 타입으로 들어가서 깔끔하게 사용 가능하다.
     public Object doRetry(ProceedingJoinPoint joinPoint, Retry retry) throws Throwable {
         log.info("[retry] {} retry={}", joinPoint.getSignature(), retry);
 
+        RetryBudget budget = budget(joinPoint, retry);
+
+        if (isAsync(joinPoint)) {
+            CompletableFuture<Object> result = new CompletableFuture<>();
+            tryAsync(joinPoint, retry, budget, 1, retry.initialDelay(), result);
+            return result;
+        }
+
         int maxRetry = retry.value(); // 어노테이션에 설정된 값을 불러온다., retry 할 때는 횟수 제한을 항상 두도록하자
+        long delay = retry.initialDelay();
         Exception exceptionHolder = null;
+        Tracer tracer = Tracer.current();
+        Method method = tracer == null ? null : ((MethodSignature) joinPoint.getSignature()).getMethod();
 
         for (int retryCount = 1; retryCount <= maxRetry; retryCount++) {
+            if (tracer != null) {
+                tracer.beginAttempt(method, retryCount);
+            }
+            boolean failed = true;
             try {
                 log.info("[retry] try count={}/{}", retryCount, maxRetry);
-                return joinPoint.proceed();
+                Object result = joinPoint.proceed();
+                failed = false;
+                budget.onSuccess();
+                return result;
             } catch (Exception e) { // Throwable 을 잡아도 되지만 이 것은 더 상위의 것으로 메모리 풀이 나거나 등등 시스템적이 터지면 그냥 위로 던지게끔 했다.
                 exceptionHolder = e; // 발생한 Exception 을 위의 홀더 변수에 넣고 다시 루프가 돈다.
+                if (!isRetryable(e)) {
+                    break;
+                }
+            } finally {
+                if (tracer != null) {
+                    tracer.end(failed);
+                }
+            }
+
+            if (retryCount < maxRetry) {
+                if (!budget.tryAcquire()) {
+                    log.info("[retry] budget exhausted {}", budget);
+                    break;
+                }
+                delay = RetryBackoff.nextDelay(retry, retryCount, delay);
+                if (!sleep(delay)) {
+                    break; // 인터럽트 되면 더 이상 재시도 하지 않는다.
+                }
             }
         }
         throw exceptionHolder; // retry 횟수까지 return 못하면 throw 던짐
     }
 
+    /**
+     * 한번 시도하고, 실패하면 다음 시도를 스케줄러에 예약한다.
+     * 스케줄러 스레드는 대기하지 않고 시도만 실행하므로 재시도 대기 중에 점유되는 스레드가 없다.
+     */
+    private void tryAsync(ProceedingJoinPoint joinPoint, Retry retry, RetryBudget budget, int retryCount, long delay,
+                          CompletableFuture<Object> result) {
+        int maxRetry = retry.value();
+        log.info("[retry] try count={}/{}", retryCount, maxRetry);
+
+        CompletionStage<?> stage;
+        try {
+            stage = (CompletionStage<?>) joinPoint.proceed();
+        } catch (Throwable e) {
+            stage = CompletableFuture.failedFuture(e);
+        }
+        if (stage == null) {
+            result.complete(null);
+            return;
+        }
+
+        stage.whenComplete((value, ex) -> {
+            if (ex == null) {
+                budget.onSuccess();
+                result.complete(value);
+                return;
+            }
+            Throwable cause = unwrap(ex);
+            if (!(cause instanceof Exception) || !isRetryable(cause) || retryCount >= maxRetry) {
+                result.completeExceptionally(cause);
+                return;
+            }
+            if (!budget.tryAcquire()) {
+                log.info("[retry] budget exhausted {}", budget);
+                result.completeExceptionally(cause);
+                return;
+            }
+            long nextDelay = RetryBackoff.nextDelay(retry, retryCount, delay);
+            RetryScheduler.schedule(() -> tryAsync(joinPoint, retry, budget, retryCount + 1, nextDelay, result), nextDelay);
+        });
+    }
+
+    /**
+     * 재시도 허용/거절 횟수 등 예산 현황을 조회할 때 사용한다.
+     */
+    public RetryBudgetRegistry getRetryBudgets() {
+        return retryBudgets;
+    }
+
+    private RetryBudget budget(ProceedingJoinPoint joinPoint, Retry retry) {
+        Method method = ((MethodSignature) joinPoint.getSignature()).getMethod();
+        RetryBudget budget = methodBudgets.get(method);
+        if (budget == null) {
+            String name = retry.budget().isEmpty() ? joinPoint.getSignature().toShortString() : retry.budget();
+            budget = methodBudgets.computeIfAbsent(method, key -> retryBudgets.budget(name));
+        }
+        return budget;
+    }
+
+    private boolean isAsync(ProceedingJoinPoint joinPoint) {
+        if (!(joinPoint.getSignature() instanceof MethodSignature)) {
+            return false;
+        }
+        Class<?> returnType = ((MethodSignature) joinPoint.getSignature()).getReturnType();
+        return CompletionStage.class.isAssignableFrom(returnType) && returnType.isAssignableFrom(CompletableFuture.class);
+    }
+
+    private static boolean isRetryable(Throwable e) {
+        return !(e instanceof CircuitBreakerOpenException) && !(e instanceof BulkheadFullException);
+    }
+
+    private static Throwable unwrap(Throwable ex) {
+        if ((ex instanceof CompletionException || ex instanceof ExecutionException) && ex.getCause() != null) {
+            return ex.getCause();
+        }
+        return ex;
+    }
+
+    private static boolean sleep(long delay) {
+        if (delay <= 0) {
+            return true;
+        }
+        try {
+            Thread.sleep(delay);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
 }
@@ -0,0 +1,65 @@
+package hello.aop.exam.aop;
+
+import hello.aop.exam.annotation.Timeout;
+import hello.aop.exam.support.AsyncProceed;
+import hello.aop.exam.support.TimeLimiter;
+import lombok.extern.slf4j.Slf4j;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.core.annotation.Order;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 호출자가 제한 시간(SLA)보다 오래 기다리지 않게 한다.
+ *
+ * 호출은 TimeLimiter 의 executor(JDK 21 이상이면 가상 스레드)에서 실행하고, 호출한 스레드는 제한 시간까지만 기다린다.
+ * CompletableFuture 를 반환하는 메서드는 다른 스레드로 넘기지 않고 반환된 결과에 제한 시간만 건다.
+ *
+ * RetryAspect 보다 바깥이라 제한 시간은 재시도를 모두 포함한 시간이다.
+ * 안쪽 애스펙트는 executor 스레드에서 실행되지만, 호출한 스레드의 span 을 넘겨받으므로 재시도 span 은 바깥 @Trace span 의 자식으로 남는다.
+ */
+@Slf4j
+@Aspect
+@Order(AspectOrder.TIMEOUT)
+public class TimeoutAspect implements DisposableBean {
+
+    private final TimeLimiter timeLimiter;
+
+    public TimeoutAspect() {
+        this(new TimeLimiter());
+    }
+
+    public TimeoutAspect(TimeLimiter timeLimiter) {
+        this.timeLimiter = timeLimiter;
+    }
+
+    @Around("@annotation(timeout)")
+    public Object doTimeout(ProceedingJoinPoint joinPoint, Timeout timeout) throws Throwable {
+        if (isAsync(joinPoint)) {
+            CompletionStage<?> stage = (CompletionStage<?>) joinPoint.proceed();
+            return stage == null ? null : stage.toCompletableFuture().thenApply(value -> (Object) value)
+                    .orTimeout(timeout.value(), TimeUnit.MILLISECONDS);
+        }
+        return timeLimiter.call(joinPoint.getSignature().toShortString(), AsyncProceed.of(joinPoint), timeout.value());
+    }
+
+    public TimeLimiter getTimeLimiter() {
+        return timeLimiter;
+    }
+
+    @Override
+    public void destroy() {
+        timeLimiter.close();
+    }
+
+    private boolean isAsync(ProceedingJoinPoint joinPoint) {
+        Class<?> returnType = ((MethodSignature) joinPoint.getSignature()).getReturnType();
+        return CompletionStage.class.isAssignableFrom(returnType) && returnType.isAssignableFrom(CompletableFuture.class);
+    }
+}
@@ -1,17 +1,80 @@
 package hello.aop.exam.aop;
 
+import hello.aop.exam.annotation.Trace;
+import hello.aop.exam.trace.TraceSink;
+import hello.aop.exam.trace.Tracer;
 import lombok.extern.slf4j.Slf4j;
-import org.aspectj.lang.JoinPoint;
+import org.aopalliance.intercept.MethodInvocation;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
 import org.aspectj.lang.annotation.Aspect;
-import org.aspectj.lang.annotation.Before;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.springframework.aop.aspectj.MethodInvocationProceedingJoinPoint;
+import org.springframework.aop.interceptor.ExposeInvocationInterceptor;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.core.annotation.Order;
 
+/**
+ * @Trace 메서드 호출 하나를 span 으로 기록한다.
+ *
+ * 호출 전후로 Tracer 의 span 스택에 push/pop 하므로 @Trace 메서드끼리의 호출 관계와 각 호출에 걸린 시간이 남는다.
+ * 걸린 시간은 시그니처별 히스토그램에 쌓이고, 주기적으로 p50/p99/p999 를 로그로 남긴다.
+ * 호출 스레드에서는 TraceSink 의 링 버퍼에 레코드만 넣고, 로그 출력은 백그라운드 스레드가 한다.
+ * 샘플링은 루트 span 에서 @Trace 의 sampleRate 와 AdaptiveSampler 로 정한다. 빠진 호출은 인자를 읽지 않는다.
+ *
+ * joinPoint.getArgs() 는 인자 배열을 복사하므로, 스프링 AOP 에서는 현재 MethodInvocation 의 인자 배열을 그대로 읽는다.
+ * 가장 바깥 aspect 라서 재시도(RetryAspect) 한번 한번이 이 span 의 자식이 된다.
+ */
 @Slf4j
 @Aspect
-public class TraceAspect {
+@Order(AspectOrder.TRACE)
+public class TraceAspect implements DisposableBean {
 
-    @Before("@annotation(hello.aop.exam.annotation.Trace)") // Trace 어노테이션이 붙어 있는 곳은 다 적용한다.(메서드 영역)
-    public void doTrace(JoinPoint joinPoint) {
-        Object[] args = joinPoint.getArgs();
-        log.info("[trace] {} args={}", joinPoint.getSignature(), args);
+    private final Tracer tracer;
+
+    public TraceAspect() {
+        this(new Tracer());
+    }
+
+    public TraceAspect(TraceSink traceSink) {
+        this(new Tracer(traceSink));
+    }
+
+    public TraceAspect(Tracer tracer) {
+        this.tracer = tracer;
+    }
+
+    @Around("@annotation(trace)") // Trace 어노테이션이 붙어 있는 곳은 다 적용한다.(메서드 영역)
+    public Object doTrace(ProceedingJoinPoint joinPoint, Trace trace) throws Throwable {
+        if (joinPoint instanceof MethodInvocationProceedingJoinPoint) {
+            MethodInvocation invocation = ExposeInvocationInterceptor.currentInvocation(); // 복사 없이 인자 배열 참조
+            if (tracer.begin(invocation.getMethod(), trace.sampleRate())) {
+                tracer.captureArgs(invocation.getArguments());
+            }
+        } else if (tracer.begin(((MethodSignature) joinPoint.getSignature()).getMethod(), trace.sampleRate())) {
+            tracer.captureArgs(joinPoint.getArgs());
+        }
+
+        boolean error = true;
+        try {
+            Object result = joinPoint.proceed();
+            error = false;
+            return result;
+        } finally {
+            tracer.end(error);
+        }
+    }
+
+    public Tracer getTracer() {
+        return tracer;
+    }
+
+    public TraceSink getTraceSink() {
+        return tracer.getSink();
+    }
+
+    @Override
+    public void destroy() {
+        tracer.close();
     }
 }
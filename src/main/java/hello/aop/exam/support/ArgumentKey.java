@@ -0,0 +1,74 @@
+package hello.aop.exam.support;
+
+import org.aspectj.lang.JoinPoint;
+import org.springframework.aop.aspectj.MethodInvocationProceedingJoinPoint;
+import org.springframework.aop.interceptor.ExposeInvocationInterceptor;
+
+import java.util.Arrays;
+
+/**
+ * 메서드 인자로 Map 키를 만든다. (MemoizeAspect, CoalesceAspect)
+ *  - 인자가 없으면 상수 하나
+ *  - 인자가 하나면 그 값 그대로 (배열로 감싸지 않는다.)
+ *  - 여러개이거나 배열 하나면 인자 배열을 감싼 키 (Arrays.deepEquals / deepHashCode)
+ * null 인자는 NULL 로 바꾼다. (ConcurrentHashMap 은 null 키를 허용하지 않는다.)
+ *
+ * 조인 포인트로 만들 때는 joinPoint.getArgs() 를 쓰지 않는다. getArgs() 는 호출마다 인자 배열을 복사한다.
+ */
+public final class ArgumentKey {
+
+    public static final Object NULL = new Object();
+    private static final Object NO_ARGS = new Object();
+
+    private final Object[] args;
+    private final int hash;
+
+    private ArgumentKey(Object[] args) {
+        this.args = args;
+        this.hash = Arrays.deepHashCode(args);
+    }
+
+    /**
+     * 스프링 AOP 프록시면 인자 배열을 복사하지 않고 읽는다. (TraceAspect 와 같다.)
+     * 키가 인자 배열을 붙잡는 경우(여러개이거나 배열 하나)에만 복사한다.
+     */
+    public static Object of(JoinPoint joinPoint) {
+        if (!(joinPoint instanceof MethodInvocationProceedingJoinPoint)) {
+            return of(joinPoint.getArgs());
+        }
+        Object[] args = ExposeInvocationInterceptor.currentInvocation().getArguments();
+        if (args.length > 1 || args.length == 1 && args[0] != null && args[0].getClass().isArray()) {
+            args = args.clone();
+        }
+        return of(args);
+    }
+
+    public static Object of(Object[] args) {
+        if (args.length == 0) {
+            return NO_ARGS;
+        }
+        if (args.length == 1) {
+            Object arg = args[0];
+            if (arg == null) {
+                return NULL;
+            }
+            return arg.getClass().isArray() ? new ArgumentKey(args) : arg;
+        }
+        return new ArgumentKey(args);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof ArgumentKey && Arrays.deepEquals(args, ((ArgumentKey) o).args);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    @Override
+    public String toString() {
+        return Arrays.deepToString(args);
+    }
+}
@@ -0,0 +1,151 @@
+package hello.aop.exam.support;
+
+import hello.aop.exam.trace.Tracer;
+import org.aopalliance.intercept.MethodInvocation;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.springframework.aop.ProxyMethodInvocation;
+import org.springframework.aop.interceptor.ExposeInvocationInterceptor;
+
+import java.lang.reflect.AccessibleObject;
+import java.lang.reflect.Method;
+import java.lang.reflect.UndeclaredThrowableException;
+import java.util.concurrent.Callable;
+
+/**
+ * joinPoint.proceed() 를 다른 스레드에서 실행할 수 있게 Callable 로 바꾼다.
+ *
+ * 안쪽 애스펙트의 포인트컷이 @annotation(retry) 처럼 파라미터를 바인딩하면, 스프링은 실행 시점에
+ * ExposeInvocationInterceptor 의 ThreadLocal 에서 현재 MethodInvocation 을 찾아 바인딩 결과를 저장한다.
+ * 다른 스레드에는 이 값이 없으므로, 호출한 스레드의 MethodInvocation 을 다른 스레드에서도 보이게 하고 proceed() 한다.
+ * 바인딩 결과(user attribute)는 MethodInvocation 과 그 복제본들이 공유하는 map 에 저장된다.
+ *
+ * 호출한 스레드에 열린 span(@Trace)도 같이 넘겨서, 안쪽 애스펙트가 남기는 span(재시도)이 호출한 스레드의 span 아래에 남게 한다.
+ */
+public final class AsyncProceed {
+
+    private AsyncProceed() {
+    }
+
+    /**
+     * 호출한 스레드(어드바이스 안)에서 만들어야 한다.
+     */
+    public static Callable<Object> of(ProceedingJoinPoint joinPoint) {
+        Tracer.Handoff handoff = Tracer.handoff();
+        MethodInvocation current = currentInvocation();
+        if (!(current instanceof ProxyMethodInvocation)) {
+            return traced(handoff, () -> proceed(joinPoint));
+        }
+        ExposedInvocation exposed = new ExposedInvocation((ProxyMethodInvocation) current, joinPoint);
+        return traced(handoff, () -> {
+            try {
+                return ExposeInvocationInterceptor.INSTANCE.invoke(exposed); // ThreadLocal 을 설정하고 exposed.proceed()
+            } catch (Exception | Error e) {
+                throw e;
+            } catch (Throwable e) {
+                throw new UndeclaredThrowableException(e);
+            }
+        });
+    }
+
+    private static Callable<Object> traced(Tracer.Handoff handoff, Callable<Object> callable) {
+        if (handoff == null) {
+            return callable;
+        }
+        return () -> {
+            boolean resumed = handoff.resume();
+            try {
+                return callable.call();
+            } finally {
+                if (resumed) {
+                    handoff.release();
+                }
+            }
+        };
+    }
+
+    private static MethodInvocation currentInvocation() {
+        try {
+            return ExposeInvocationInterceptor.currentInvocation();
+        } catch (IllegalStateException e) {
+            return null; // 스프링 AOP 프록시 밖 (AspectJ 위빙 등)
+        }
+    }
+
+    private static Object proceed(ProceedingJoinPoint joinPoint) throws Exception {
+        try {
+            return joinPoint.proceed();
+        } catch (Exception | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new UndeclaredThrowableException(e);
+        }
+    }
+
+    /**
+     * proceed() 만 joinPoint 로 보내고 나머지는 원래 MethodInvocation 에 위임한다.
+     */
+    private static final class ExposedInvocation implements ProxyMethodInvocation {
+        private final ProxyMethodInvocation delegate;
+        private final ProceedingJoinPoint joinPoint;
+
+        private ExposedInvocation(ProxyMethodInvocation delegate, ProceedingJoinPoint joinPoint) {
+            this.delegate = delegate;
+            this.joinPoint = joinPoint;
+        }
+
+        @Override
+        public Object proceed() throws Throwable {
+            return joinPoint.proceed();
+        }
+
+        @Override
+        public Object getProxy() {
+            return delegate.getProxy();
+        }
+
+        @Override
+        public MethodInvocation invocableClone() {
+            return delegate.invocableClone();
+        }
+
+        @Override
+        public MethodInvocation invocableClone(Object... arguments) {
+            return delegate.invocableClone(arguments);
+        }
+
+        @Override
+        public void setArguments(Object... arguments) {
+            delegate.setArguments(arguments);
+        }
+
+        @Override
+        public void setUserAttribute(String key, Object value) {
+            delegate.setUserAttribute(key, value);
+        }
+
+        @Override
+        public Object getUserAttribute(String key) {
+            return delegate.getUserAttribute(key);
+        }
+
+        @Override
+        public Method getMethod() {
+            return delegate.getMethod();
+        }
+
+        @Override
+        public Object[] getArguments() {
+            return delegate.getArguments();
+        }
+
+        @Override
+        public Object getThis() {
+            return delegate.getThis();
+        }
+
+        @Override
+        public AccessibleObject getStaticPart() {
+            return delegate.getStaticPart();
+        }
+    }
+}
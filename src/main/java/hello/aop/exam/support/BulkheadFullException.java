@@ -0,0 +1,11 @@
+package hello.aop.exam.support;
+
+/**
+ * 동시 호출 한도가 차서 대상을 호출하지 않고 거절한 경우
+ */
+public class BulkheadFullException extends IllegalStateException {
+
+    public BulkheadFullException(String name, int limit) {
+        super("bulkhead is full: " + name + " limit=" + limit);
+    }
+}
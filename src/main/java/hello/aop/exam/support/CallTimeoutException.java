@@ -0,0 +1,11 @@
+package hello.aop.exam.support;
+
+/**
+ * 제한 시간 안에 호출이 끝나지 않아서 기다리지 않고 실패한 경우
+ */
+public class CallTimeoutException extends IllegalStateException {
+
+    public CallTimeoutException(String name, long timeoutMillis) {
+        super("call timed out: " + name + " timeout=" + timeoutMillis + "ms");
+    }
+}
@@ -0,0 +1,11 @@
+package hello.aop.exam.support;
+
+/**
+ * 회로가 열려 있어서 대상을 호출하지 않고 바로 실패한 경우
+ */
+public class CircuitBreakerOpenException extends IllegalStateException {
+
+    public CircuitBreakerOpenException(String name) {
+        super("circuit breaker is open: " + name);
+    }
+}
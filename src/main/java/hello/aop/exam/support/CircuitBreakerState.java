@@ -0,0 +1,138 @@
+package hello.aop.exam.support;
+
+import hello.aop.exam.annotation.CircuitBreaker;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 회로 하나의 상태 (CLOSED -> OPEN -> HALF_OPEN -> CLOSED or OPEN)
+ *
+ * 상태와 그 상태에서 쓰는 값(결과 윈도우, OPEN 시각, HALF_OPEN 허용 수)을 불변 Phase 로 묶고
+ * 상태 전이는 AtomicReference 의 CAS 로만 한다.
+ * 성공 경로는 Phase 를 읽고 윈도우에 기록하는 것이 전부라 lock 을 잡지 않는다.
+ */
+public class CircuitBreakerState {
+
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    private final String name;
+    private final int windowSize;
+    private final int minimumCalls;
+    private final int failureRateThreshold;
+    private final long waitDurationNanos;
+    private final int permittedCallsInHalfOpenState;
+
+    private final AtomicReference<Phase> phase;
+
+    public CircuitBreakerState(String name, CircuitBreaker config) {
+        this(name, config.windowSize(), config.minimumCalls(), config.failureRateThreshold(),
+                config.waitDurationInOpenState(), config.permittedCallsInHalfOpenState());
+    }
+
+    public CircuitBreakerState(String name, int windowSize, int minimumCalls, int failureRateThreshold,
+                               long waitDurationInOpenState, int permittedCallsInHalfOpenState) {
+        this.name = name;
+        this.windowSize = windowSize;
+        this.minimumCalls = Math.max(1, Math.min(minimumCalls, windowSize));
+        this.failureRateThreshold = failureRateThreshold;
+        this.waitDurationNanos = TimeUnit.MILLISECONDS.toNanos(waitDurationInOpenState);
+        this.permittedCallsInHalfOpenState = Math.max(1, permittedCallsInHalfOpenState);
+        this.phase = new AtomicReference<>(closed());
+    }
+
+    /**
+     * 호출해도 되는지 확인한다.
+     *
+     * @return 허용되면 호출 결과를 기록할 Phase, 거절되면 null
+     */
+    public Phase tryAcquire() {
+        while (true) {
+            Phase current = phase.get();
+            switch (current.state) {
+                case CLOSED:
+                    return current;
+                case OPEN:
+                    if (System.nanoTime() - current.openedAt < waitDurationNanos) {
+                        return null;
+                    }
+                    phase.compareAndSet(current, halfOpen()); // 실패하면 다른 스레드가 전이한 것, 다시 읽는다.
+                    break;
+                case HALF_OPEN:
+                default:
+                    return current.permits.getAndDecrement() > 0 ? current : null;
+            }
+        }
+    }
+
+    /**
+     * tryAcquire 로 받은 Phase 에 호출 결과를 기록하고, 필요하면 상태를 전이한다.
+     */
+    public void onResult(Phase acquired, boolean failure) {
+        if (acquired.state == State.OPEN) {
+            return;
+        }
+        OutcomeWindow window = acquired.window;
+        window.record(failure);
+
+        int calls = window.getCalls();
+        if (acquired.state == State.CLOSED) {
+            if (failure && calls >= minimumCalls && window.getFailureRate() >= failureRateThreshold) {
+                phase.compareAndSet(acquired, open());
+            }
+            return;
+        }
+
+        // HALF_OPEN : 시험 호출이 모두 끝나면 판단한다.
+        if (calls >= permittedCallsInHalfOpenState) {
+            phase.compareAndSet(acquired, window.getFailureRate() >= failureRateThreshold ? open() : closed());
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public State getState() {
+        return phase.get().state;
+    }
+
+    public int getFailureRate() {
+        return phase.get().window.getFailureRate();
+    }
+
+    @Override
+    public String toString() {
+        Phase current = phase.get();
+        return "CircuitBreaker{name=" + name + ", state=" + current.state + ", failureRate=" + current.window.getFailureRate() + "%}";
+    }
+
+    private Phase closed() {
+        return new Phase(State.CLOSED, new OutcomeWindow(windowSize), 0, 0);
+    }
+
+    private Phase open() {
+        return new Phase(State.OPEN, new OutcomeWindow(1), System.nanoTime(), 0);
+    }
+
+    private Phase halfOpen() {
+        return new Phase(State.HALF_OPEN, new OutcomeWindow(permittedCallsInHalfOpenState), 0, permittedCallsInHalfOpenState);
+    }
+
+    public static final class Phase {
+        private final State state;
+        private final OutcomeWindow window;
+        private final long openedAt;
+        private final AtomicInteger permits;
+
+        private Phase(State state, OutcomeWindow window, long openedAt, int permits) {
+            this.state = state;
+            this.window = window;
+            this.openedAt = openedAt;
+            this.permits = new AtomicInteger(permits);
+        }
+    }
+}
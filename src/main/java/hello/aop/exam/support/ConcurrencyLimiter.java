@@ -0,0 +1,163 @@
+package hello.aop.exam.support;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 동시 호출 수 제한 (bulkhead)
+ *
+ * 자리가 있으면 실행 중인 호출 수(inFlight)를 CAS 로 증가시키는 것이 전부다. lock 도, 대기도 없다.
+ * 자리가 없을 때만 대기열에 들어가 park 하고, 호출이 끝나면(release) 대기열 맨 앞 스레드를 꺼내서 깨운다.
+ * 반납한 자리 하나에 한 스레드씩 깨우고, 한도가 늘어나면 늘어난 만큼 더 깨운다.
+ * 깨어난 스레드도 다시 CAS 로 자리를 받아야 하므로 새로 들어온 호출이 먼저 자리를 가져갈 수 있다.(공정하지 않음)
+ * 자리를 놓친 스레드는 대기열 맨 뒤에 다시 선다. 깨워졌지만 자리를 받지 않고 나가는 스레드(시간 초과)는 다음 스레드를 대신 깨운다.
+ *
+ * GradientLimit 을 주면 끝난 호출의 지연시간으로 한도를 계속 조정한다.
+ */
+public class ConcurrencyLimiter {
+
+    private final String name;
+    private final GradientLimit gradient;
+    private volatile int limit;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final Queue<Waiter> waiters = new ConcurrentLinkedQueue<>();
+    private final LongAdder rejected = new LongAdder();
+
+    /**
+     * 고정 한도
+     */
+    public ConcurrencyLimiter(String name, int limit) {
+        this(name, limit, null);
+    }
+
+    public ConcurrencyLimiter(String name, int initialLimit, GradientLimit gradient) {
+        this.name = name;
+        this.gradient = gradient;
+        this.limit = gradient == null ? Math.max(1, initialLimit) : gradient.getLimit();
+    }
+
+    /**
+     * @return 자리를 받았으면 시작 시점의 실행 중인 호출 수(자신 포함), 못 받았으면 0
+     */
+    public int tryAcquire() {
+        while (true) {
+            int current = inFlight.get();
+            if (current >= limit) {
+                return 0;
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                return current + 1;
+            }
+        }
+    }
+
+    /**
+     * 자리가 없으면 maxWaitMillis 까지 기다린다. 인터럽트 되면 기다리지 않고 거절한다.
+     *
+     * @return tryAcquire() 와 같다.
+     */
+    public int acquire(long maxWaitMillis) {
+        int acquired = tryAcquire();
+        if (acquired > 0 || maxWaitMillis <= 0) {
+            return countRejected(acquired);
+        }
+
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(maxWaitMillis);
+        Waiter waiter = new Waiter(Thread.currentThread());
+        waiters.add(waiter);
+        try {
+            while (true) {
+                acquired = tryAcquire(); // 대기열에 들어간 뒤 다시 확인해야 release 의 깨움을 놓치지 않는다.
+                long remaining = deadline - System.nanoTime();
+                if (acquired > 0 || remaining <= 0 || waiter.thread.isInterrupted()) {
+                    return countRejected(acquired);
+                }
+                if (waiter.signalled) { // 깨워졌지만 다른 호출이 자리를 먼저 가져갔다.
+                    waiter.signalled = false;
+                    waiters.add(waiter);
+                    continue;
+                }
+                LockSupport.parkNanos(this, remaining);
+            }
+        } finally {
+            if (!waiters.remove(waiter) && acquired == 0) {
+                signal(1); // 받은 깨움을 쓰지 않고 나간다.
+            }
+        }
+    }
+
+    /**
+     * acquire 로 받은 자리를 반납한다.
+     *
+     * @param rttNanos 호출에 걸린 시간
+     * @param inFlightAtStart acquire 가 반환한 값
+     */
+    public void release(long rttNanos, int inFlightAtStart) {
+        inFlight.decrementAndGet();
+        int permits = 1;
+        if (gradient != null) {
+            gradient.onSample(rttNanos, inFlightAtStart);
+            int oldLimit = limit;
+            int newLimit = gradient.getLimit();
+            limit = newLimit;
+            permits += Math.max(0, newLimit - oldLimit);
+        }
+        signal(permits);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    public long getRejected() {
+        return rejected.sum();
+    }
+
+    @Override
+    public String toString() {
+        return "Bulkhead{name=" + name + ", limit=" + limit + ", inFlight=" + inFlight.get() + ", rejected=" + rejected.sum() + "}";
+    }
+
+    /**
+     * 대기열에서 count 개의 스레드를 꺼내서 깨운다.
+     */
+    private void signal(int count) {
+        for (int i = 0; i < count; i++) {
+            Waiter waiter = waiters.poll();
+            if (waiter == null) {
+                return;
+            }
+            waiter.signalled = true;
+            LockSupport.unpark(waiter.thread);
+        }
+    }
+
+    private int countRejected(int acquired) {
+        if (acquired == 0) {
+            rejected.increment();
+        }
+        return acquired;
+    }
+
+    private static final class Waiter {
+        private final Thread thread;
+        private volatile boolean signalled;
+
+        private Waiter(Thread thread) {
+            this.thread = thread;
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package hello.aop.exam.support;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 지연시간 기울기(gradient)로 동시 호출 한도를 조정한다.
+ *
+ * 샘플을 window 단위(한도만큼, 최소 MIN_WINDOW 개)로 모아 평균 지연시간을 구하고
+ *   gradient = 부하 없을 때 지연시간(최소값) / 평균 지연시간   (0.5 ~ 1)
+ *   새 한도 = 한도 * gradient + sqrt(한도)
+ * 로 계산한다. 대상에 큐가 쌓여 지연시간이 늘면 gradient 가 1 보다 작아져 한도가 줄고(곱셈 감소),
+ * 지연시간이 그대로면 sqrt(한도) 만큼 늘어난다.(덧셈 증가)
+ * 한도의 절반도 쓰지 않은 window 에서는 늘리지 않는다. 부하가 없을 때 한도가 끝없이 커지는 것을 막는다.
+ *
+ * 부하 없을 때 지연시간은 RESET_WINDOWS 마다 다시 잰다. 대상이 전체적으로 느려져도 따라간다.
+ */
+public class GradientLimit {
+
+    private static final int MIN_WINDOW = 10;
+    private static final int RESET_WINDOWS = 100;
+    private static final double SMOOTHING = 0.2;
+
+    private final int minLimit;
+    private final int maxLimit;
+    private volatile double limit;
+
+    private final AtomicInteger samples = new AtomicInteger();
+    private final LongAdder rttSum = new LongAdder();
+    private final LongAccumulator rttMin = new LongAccumulator(Math::min, Long.MAX_VALUE);
+    private final LongAccumulator inFlightMax = new LongAccumulator(Math::max, 0);
+    private long noLoadRtt = Long.MAX_VALUE;
+    private int windows;
+
+    public GradientLimit(int initialLimit, int minLimit, int maxLimit) {
+        this.minLimit = Math.max(1, minLimit);
+        this.maxLimit = Math.max(this.minLimit, maxLimit);
+        this.limit = Math.max(this.minLimit, Math.min(initialLimit, this.maxLimit));
+    }
+
+    public int getLimit() {
+        return (int) limit;
+    }
+
+    /**
+     * @param inFlight 이 호출을 포함해서 호출 시작 시점에 실행 중이던 호출 수
+     */
+    public void onSample(long rttNanos, int inFlight) {
+        rttSum.add(rttNanos);
+        rttMin.accumulate(rttNanos);
+        inFlightMax.accumulate(inFlight);
+        if (samples.incrementAndGet() >= window()) { // 계산하는 사이 한도가 줄어서 샘플 수가 window 를 넘어도 계산한다.
+            update();
+        }
+    }
+
+    private int window() {
+        return Math.max(MIN_WINDOW, (int) limit);
+    }
+
+    /**
+     * 동시에 window 를 채운 스레드 중 하나만 계산한다. 나머지는 비워진 window 를 보고 돌아간다.
+     */
+    private synchronized void update() {
+        if (samples.get() < window()) {
+            return;
+        }
+        int count = samples.getAndSet(0); // window 를 넘은 샘플도 이번 window 에 포함한다.
+        long sum = rttSum.sumThenReset();
+        long windowMin = rttMin.getThenReset();
+        long maxInFlight = inFlightMax.getThenReset();
+
+        if (++windows % RESET_WINDOWS == 0 || windowMin < noLoadRtt) {
+            noLoadRtt = windowMin;
+        }
+        double averageRtt = (double) sum / count;
+        double gradient = Math.max(0.5, Math.min(1.0, noLoadRtt / averageRtt));
+
+        double current = limit;
+        double newLimit = current * gradient + Math.sqrt(current);
+        if (newLimit > current && maxInFlight < current / 2) {
+            newLimit = current;
+        }
+        newLimit = current * (1 - SMOOTHING) + newLimit * SMOOTHING;
+        limit = Math.max(minLimit, Math.min(newLimit, maxLimit));
+    }
+}
@@ -0,0 +1,50 @@
+package hello.aop.exam.support;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 최근 지연시간 샘플을 링 버퍼에 모아 p95 를 추정한다.
+ *
+ * 기록은 슬롯 하나에 set 하는 것이 전부이고,
+ * 분위수는 RECALCULATE_INTERVAL 번 기록할 때마다 한번 다시 계산해서 volatile 필드에 둔다.
+ */
+public class LatencyTracker {
+
+    private static final int SIZE = 256;
+    private static final int MIN_SAMPLES = 20;
+    private static final int RECALCULATE_INTERVAL = 32;
+
+    private final AtomicLongArray samples = new AtomicLongArray(SIZE);
+    private final AtomicLong count = new AtomicLong();
+    private volatile long p95Nanos = -1;
+
+    public void record(long nanos) {
+        long n = count.getAndIncrement();
+        samples.set((int) (n % SIZE), nanos);
+        if ((n + 1) >= MIN_SAMPLES && (n + 1) % RECALCULATE_INTERVAL == 0) {
+            p95Nanos = percentile(Math.min(n + 1, SIZE), 0.95);
+        }
+    }
+
+    /**
+     * @return p95(ns), 샘플이 부족하면 -1
+     */
+    public long getP95Nanos() {
+        if (p95Nanos < 0 && count.get() >= MIN_SAMPLES) {
+            p95Nanos = percentile(Math.min(count.get(), SIZE), 0.95);
+        }
+        return p95Nanos;
+    }
+
+    private long percentile(long size, double quantile) {
+        long[] copy = new long[(int) size];
+        for (int i = 0; i < copy.length; i++) {
+            copy[i] = samples.get(i);
+        }
+        Arrays.sort(copy);
+        int index = (int) Math.ceil(quantile * copy.length) - 1;
+        return copy[Math.max(0, Math.min(index, copy.length - 1))];
+    }
+}
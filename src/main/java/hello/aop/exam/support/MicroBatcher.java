@@ -0,0 +1,185 @@
+package hello.aop.exam.support;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 하나씩 들어오는 요청을 모아서 묶음 호출 한번으로 보낸다.
+ *
+ * submit() 은 요청을 큐(ConcurrentLinkedQueue)에 넣고 결과를 받을 future 를 돌려준다.
+ *  - 큐에 maxSize 개가 모이면 maxSize 번째 요청을 넣은 스레드가 직접 묶음 하나를 보낸다.
+ *    호출한 스레드는 묶음 하나만 보내고 돌아간다. 그 사이 쌓인 요청은 스케줄러 스레드가 보낸다. (호출한 스레드의 지연시간은 묶음 하나까지)
+ *  - 그 전에는 첫 요청이 maxDelay 뒤에 스케줄러 스레드에서 모인 만큼 보내도록 예약한다. (예약은 항상 최대 하나)
+ *    남은 요청이 maxSize 개 이상이면 기다리지 않고 바로 보내도록 예약한다.
+ * 묶음의 결과는 순서대로 각 요청의 future 에 나눠준다.
+ *
+ * 묶음 호출은 여러 스레드에서 동시에 일어날 수 있다. 묶음 크기는 maxSize 를 넘지 않는다.
+ */
+public class MicroBatcher<T, R> {
+
+    private final String name;
+    private final int maxSize;
+    private final long maxDelayNanos;
+    private final BulkCall<T, R> bulkCall;
+    private final ScheduledExecutorService scheduler;
+
+    private final ConcurrentLinkedQueue<Pending<T, R>> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger queued = new AtomicInteger();
+    private final AtomicBoolean flushScheduled = new AtomicBoolean();
+
+    private final LongAdder batches = new LongAdder();
+    private final LongAdder items = new LongAdder();
+
+    public MicroBatcher(String name, int maxSize, long maxDelayMicros, BulkCall<T, R> bulkCall,
+                        ScheduledExecutorService scheduler) {
+        this.name = name;
+        this.maxSize = Math.max(1, maxSize);
+        this.maxDelayNanos = TimeUnit.MICROSECONDS.toNanos(Math.max(0, maxDelayMicros));
+        this.bulkCall = bulkCall;
+        this.scheduler = scheduler;
+    }
+
+    public CompletableFuture<R> submit(T item) {
+        Pending<T, R> pending = new Pending<>(item);
+        queue.offer(pending);
+        if (queued.incrementAndGet() >= maxSize) {
+            flushBatch();
+        }
+        if (queued.get() > 0 && flushScheduled.compareAndSet(false, true)) {
+            scheduleFlush();
+        }
+        return pending.result;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public long getBatchCount() {
+        return batches.sum();
+    }
+
+    public long getItemCount() {
+        return items.sum();
+    }
+
+    /**
+     * 묶음 하나의 평균 요청 수
+     */
+    public double getAverageBatchSize() {
+        long batchCount = batches.sum();
+        return batchCount == 0 ? 0 : (double) items.sum() / batchCount;
+    }
+
+    @Override
+    public String toString() {
+        return "MicroBatcher{name=" + name + ", maxSize=" + maxSize + ", batches=" + batches.sum()
+                + ", items=" + items.sum() + "}";
+    }
+
+    private void scheduleFlush() {
+        try {
+            long delayNanos = queued.get() >= maxSize ? 0 : maxDelayNanos;
+            scheduler.schedule(this::timedFlush, delayNanos, TimeUnit.NANOSECONDS);
+        } catch (RejectedExecutionException e) { // 스케줄러가 종료되었으면 호출한 스레드에서 바로 보낸다.
+            timedFlush();
+        }
+    }
+
+    private void timedFlush() {
+        flushScheduled.set(false); // 보내는 중에 들어온 요청은 새로 예약한다.
+        flush();
+    }
+
+    /**
+     * 큐가 빌 때까지 maxSize 개씩 꺼내서 보낸다. 스케줄러 스레드에서만 호출한다.
+     */
+    private void flush() {
+        while (flushBatch()) {
+            // 다음 묶음
+        }
+    }
+
+    /**
+     * 큐에서 maxSize 개까지 꺼내서 보낸다.
+     *
+     * @return 큐가 비어 있어서 보내지 않았으면 false
+     */
+    private boolean flushBatch() {
+        List<Pending<T, R>> batch = new ArrayList<>(Math.min(maxSize, Math.max(1, queued.get())));
+        Pending<T, R> pending;
+        while (batch.size() < maxSize && (pending = queue.poll()) != null) {
+            queued.decrementAndGet();
+            batch.add(pending);
+        }
+        if (batch.isEmpty()) {
+            return false;
+        }
+        execute(batch);
+        return true;
+    }
+
+    private void execute(List<Pending<T, R>> batch) {
+        batches.increment();
+        items.add(batch.size());
+        List<T> request = new ArrayList<>(batch.size());
+        for (Pending<T, R> pending : batch) {
+            request.add(pending.item);
+        }
+
+        List<?> results;
+        try {
+            results = bulkCall.call(request);
+        } catch (Throwable e) {
+            for (Pending<T, R> pending : batch) {
+                pending.result.completeExceptionally(e);
+            }
+            return;
+        }
+        if (results == null || results.size() != batch.size()) {
+            IllegalStateException e = new IllegalStateException("묶음 호출의 결과 수가 요청 수와 다릅니다. name=" + name
+                    + " requests=" + batch.size() + " results=" + (results == null ? null : results.size()));
+            for (Pending<T, R> pending : batch) {
+                pending.result.completeExceptionally(e);
+            }
+            return;
+        }
+        for (int i = 0; i < batch.size(); i++) {
+            complete(batch.get(i).result, results.get(i));
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <R> void complete(CompletableFuture<R> future, Object result) {
+        if (result instanceof Throwable) {
+            future.completeExceptionally((Throwable) result);
+        } else {
+            future.complete((R) result);
+        }
+    }
+
+    /**
+     * 묶음 호출, 요청과 같은 순서의 결과 목록을 반환한다.
+     */
+    @FunctionalInterface
+    public interface BulkCall<T, R> {
+        List<?> call(List<T> items) throws Throwable;
+    }
+
+    private static final class Pending<T, R> {
+        private final T item;
+        private final CompletableFuture<R> result = new CompletableFuture<>();
+
+        private Pending(T item) {
+            this.item = item;
+        }
+    }
+}
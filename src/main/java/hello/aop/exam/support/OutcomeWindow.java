@@ -0,0 +1,70 @@
+package hello.aop.exam.support;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 최근 size 번의 호출 결과(성공/실패)를 담는 고정 크기 링 버퍼
+ *
+ * 기록할 때 슬롯을 getAndSet 으로 덮어쓰고, 밀려난 값과의 차이만 카운터에 반영한다.
+ * 모든 갱신이 atomic 연산이라 호출 경로에서 lock 을 잡지 않는다.
+ */
+public class OutcomeWindow {
+
+    private static final int EMPTY = 0;
+    private static final int SUCCESS = 1;
+    private static final int FAILURE = 2;
+
+    private final int size;
+    private final AtomicIntegerArray slots;
+    private final AtomicLong cursor = new AtomicLong();
+    private final AtomicInteger calls = new AtomicInteger();
+    private final AtomicInteger failures = new AtomicInteger();
+
+    public OutcomeWindow(int size) {
+        if (size <= 0) {
+            throw new IllegalArgumentException("size 는 1 이상이어야 합니다.");
+        }
+        this.size = size;
+        this.slots = new AtomicIntegerArray(size);
+    }
+
+    public void record(boolean failure) {
+        int index = (int) Math.floorMod(cursor.getAndIncrement(), (long) size);
+        int outcome = failure ? FAILURE : SUCCESS;
+        int old = slots.getAndSet(index, outcome);
+
+        if (old == EMPTY) {
+            calls.incrementAndGet();
+        }
+        if (old == FAILURE && !failure) {
+            failures.decrementAndGet();
+        } else if (old != FAILURE && failure) {
+            failures.incrementAndGet();
+        }
+    }
+
+    public int getCalls() {
+        return calls.get();
+    }
+
+    public int getFailures() {
+        return failures.get();
+    }
+
+    /**
+     * 실패율(%), 기록이 없으면 0
+     */
+    public int getFailureRate() {
+        int total = calls.get();
+        if (total == 0) {
+            return 0;
+        }
+        return (int) (Math.max(0, failures.get()) * 100L / total);
+    }
+
+    public int getSize() {
+        return size;
+    }
+}
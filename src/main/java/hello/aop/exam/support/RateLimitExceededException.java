@@ -0,0 +1,11 @@
+package hello.aop.exam.support;
+
+/**
+ * 호출 빈도 한도를 넘어서 대상을 호출하지 않고 거절한 경우
+ */
+public class RateLimitExceededException extends IllegalStateException {
+
+    public RateLimitExceededException(String name) {
+        super("rate limit exceeded: " + name);
+    }
+}
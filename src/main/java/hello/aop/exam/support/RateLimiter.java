@@ -0,0 +1,99 @@
+package hello.aop.exam.support;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 토큰 버킷과 같은 동작을 상태 값 하나(AtomicLong)로 구현한 rate limiter (GCRA, Generic Cell Rate Algorithm)
+ *
+ * 토큰 수와 마지막 충전 시각을 따로 두는 대신 "다음 호출이 제 속도로 도착했을 시각(tat)" 하나만 저장한다.
+ *  - 호출 한번은 tat 를 interval(1초 / permitsPerSecond) 만큼 미룬다.
+ *  - tat 가 현재 시각보다 burst * interval 이상 앞서 있으면 버킷이 빈 것이다.
+ * 상태 변경은 CAS 한번이라 synchronized 없이 여러 스레드가 동시에 호출할 수 있다.
+ *
+ * 기다리는 경우에는 먼저 CAS 로 차례(tat)를 예약하고 그 시각까지 park 한다.
+ * 예약이 끝난 뒤에는 다른 스레드와 경쟁하지 않는다.
+ * 기다리는 중에 인터럽트 되면 거절한다. 인터럽트 상태는 그대로 두고, 뒤에 예약한 스레드가 없으면 예약도 되돌린다.
+ */
+public class RateLimiter {
+
+    private final String name;
+    private final long intervalNanos;
+    private final long burstNanos;
+    private final AtomicLong tat;
+    private final LongAdder rejected = new LongAdder();
+
+    public RateLimiter(String name, double permitsPerSecond, int burst) {
+        if (permitsPerSecond <= 0) {
+            throw new IllegalArgumentException("permitsPerSecond 는 0 보다 커야 합니다.");
+        }
+        this.name = name;
+        this.intervalNanos = Math.max(1, (long) (TimeUnit.SECONDS.toNanos(1) / permitsPerSecond));
+        this.burstNanos = intervalNanos * Math.max(1, burst);
+        this.tat = new AtomicLong(System.nanoTime());
+    }
+
+    /**
+     * 기다리지 않는다.
+     */
+    public boolean tryAcquire() {
+        return tryAcquire(0);
+    }
+
+    /**
+     * timeoutNanos 안에 차례가 오면 그때까지 기다렸다가 true, 아니면 기다리지 않고 바로 false
+     * 기다리는 중에 인터럽트 되면 false
+     */
+    public boolean tryAcquire(long timeoutNanos) {
+        long wait;
+        long next;
+        while (true) {
+            long current = tat.get();
+            long now = System.nanoTime();
+            next = Math.max(current, now) + intervalNanos;
+            wait = next - burstNanos - now; // 0 보다 크면 그만큼 기다려야 차례가 온다.
+            if (wait > timeoutNanos) {
+                rejected.increment();
+                return false;
+            }
+            if (tat.compareAndSet(current, next)) {
+                break;
+            }
+        }
+        if (wait > 0) {
+            long deadline = System.nanoTime() + wait;
+            for (long remaining = wait; remaining > 0; remaining = deadline - System.nanoTime()) { // 일찍 깨어나면 다시 잔다.
+                if (Thread.currentThread().isInterrupted()) {
+                    tat.compareAndSet(next, next - intervalNanos); // 다른 스레드가 뒤에 예약했으면 그 차례는 그대로 둔다.
+                    rejected.increment();
+                    return false;
+                }
+                LockSupport.parkNanos(this, remaining);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 한동안 호출이 없어서 버킷이 가득 찬 상태면 true, 새로 만든 limiter 와 구별되지 않는다.
+     */
+    public boolean isIdle() {
+        return tat.get() - System.nanoTime() <= 0;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public long getRejected() {
+        return rejected.sum();
+    }
+
+    @Override
+    public String toString() {
+        return "RateLimiter{name=" + name + ", permitsPerSecond=" + TimeUnit.SECONDS.toNanos(1) / intervalNanos
+                + ", burst=" + burstNanos / intervalNanos + ", rejected=" + rejected.sum() + "}";
+    }
+}
@@ -0,0 +1,49 @@
+package hello.aop.exam.support;
+
+import hello.aop.exam.annotation.Backoff;
+import hello.aop.exam.annotation.Retry;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * @Retry 의 backoff 설정으로 다음 재시도까지 대기할 시간(ms)을 계산한다.
+ */
+public final class RetryBackoff {
+
+    private RetryBackoff() {
+    }
+
+    /**
+     * @param retryCount    방금 실패한 시도 횟수 (1 부터 시작)
+     * @param previousDelay 직전 대기시간, 첫 재시도라면 initialDelay
+     */
+    public static long nextDelay(Retry retry, int retryCount, long previousDelay) {
+        return nextDelay(retry.backoff(), retry.initialDelay(), retry.maxDelay(), retryCount, previousDelay);
+    }
+
+    public static long nextDelay(Backoff backoff, long initialDelay, long maxDelay, int retryCount, long previousDelay) {
+        if (initialDelay <= 0) {
+            return 0;
+        }
+        long cap = Math.max(initialDelay, maxDelay);
+
+        switch (backoff) {
+            case EXPONENTIAL:
+                int shift = Math.max(retryCount - 1, 0);
+                if (shift >= Long.numberOfLeadingZeros(initialDelay) - 1) {
+                    return cap; // overflow 방지
+                }
+                return Math.min(cap, initialDelay << shift);
+            case DECORRELATED_JITTER:
+                // AWS Architecture Blog - "Exponential Backoff And Jitter" 의 decorrelated jitter
+                long upper = Math.min(cap, Math.max(previousDelay, initialDelay) * 3);
+                if (upper <= initialDelay) {
+                    return initialDelay;
+                }
+                return ThreadLocalRandom.current().nextLong(initialDelay, upper + 1);
+            case FIXED:
+            default:
+                return Math.min(cap, initialDelay);
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package hello.aop.exam.support;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 재시도 예산 (token bucket)
+ *
+ * 성공한 호출마다 ratio 만큼 토큰이 쌓이고, 재시도 1번에 토큰 1개를 쓴다.
+ * 따라서 장기적으로 재시도는 전체 성공 호출의 ratio 비율을 넘지 못한다.
+ * 대상이 장애 상태면 성공이 없으니 토큰이 곧 바닥나고, 재시도가 부하를 몇배로 키우는 것을 막는다.
+ *
+ * 잔액은 AtomicLong 하나에 고정소수점(1 토큰 = SCALE)으로 두고 CAS 로만 갱신한다. (lock 없음)
+ */
+public class RetryBudget {
+
+    private static final long SCALE = 1000;
+
+    private final String name;
+    private final long deposit;
+    private final long maxBalance;
+    private final AtomicLong balance;
+
+    private final LongAdder granted = new LongAdder();
+    private final LongAdder denied = new LongAdder();
+
+    /**
+     * @param ratio     성공 호출 대비 허용할 재시도 비율 (0.1 = 10%)
+     * @param maxTokens 쌓아둘 수 있는 최대 토큰 수, 처음에는 가득 찬 상태로 시작한다.
+     */
+    public RetryBudget(String name, double ratio, int maxTokens) {
+        if (ratio < 0 || maxTokens < 0) {
+            throw new IllegalArgumentException("ratio, maxTokens 는 0 이상이어야 합니다.");
+        }
+        this.name = name;
+        this.deposit = Math.round(ratio * SCALE);
+        this.maxBalance = maxTokens * SCALE;
+        this.balance = new AtomicLong(maxBalance);
+    }
+
+    public void onSuccess() {
+        if (deposit == 0) {
+            return;
+        }
+        long current;
+        do {
+            current = balance.get();
+            if (current >= maxBalance) {
+                return;
+            }
+        } while (!balance.compareAndSet(current, Math.min(maxBalance, current + deposit)));
+    }
+
+    public boolean tryAcquire() {
+        long current;
+        do {
+            current = balance.get();
+            if (current < SCALE) {
+                denied.increment();
+                return false;
+            }
+        } while (!balance.compareAndSet(current, current - SCALE));
+        granted.increment();
+        return true;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public double getTokens() {
+        return (double) balance.get() / SCALE;
+    }
+
+    public long getGranted() {
+        return granted.sum();
+    }
+
+    public long getDenied() {
+        return denied.sum();
+    }
+
+    @Override
+    public String toString() {
+        return "RetryBudget{name=" + name + ", tokens=" + getTokens() + ", granted=" + getGranted() + ", denied=" + getDenied() + "}";
+    }
+}
@@ -0,0 +1,55 @@
+package hello.aop.exam.support;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * 이름(메서드 또는 @Retry(budget = "그룹명"))별 RetryBudget 보관소
+ *
+ * 같은 그룹 이름을 쓰는 메서드들은 하나의 예산을 함께 사용한다.
+ */
+public class RetryBudgetRegistry {
+
+    public static final double DEFAULT_RATIO = 0.2;
+    public static final int DEFAULT_MAX_TOKENS = 10;
+
+    private final double ratio;
+    private final int maxTokens;
+    private final ConcurrentMap<String, RetryBudget> budgets = new ConcurrentHashMap<>();
+
+    public RetryBudgetRegistry() {
+        this(DEFAULT_RATIO, DEFAULT_MAX_TOKENS);
+    }
+
+    public RetryBudgetRegistry(double ratio, int maxTokens) {
+        this.ratio = ratio;
+        this.maxTokens = maxTokens;
+    }
+
+    public RetryBudget budget(String name) {
+        return budgets.computeIfAbsent(name, key -> new RetryBudget(key, ratio, maxTokens));
+    }
+
+    /**
+     * 그룹별로 다른 비율을 쓰고 싶을 때 미리 등록한다.
+     */
+    public RetryBudget register(String name, double ratio, int maxTokens) {
+        RetryBudget budget = new RetryBudget(name, ratio, maxTokens);
+        budgets.put(name, budget);
+        return budget;
+    }
+
+    public Collection<RetryBudget> getBudgets() {
+        return Collections.unmodifiableCollection(budgets.values());
+    }
+
+    public long getGranted() {
+        return budgets.values().stream().mapToLong(RetryBudget::getGranted).sum();
+    }
+
+    public long getDenied() {
+        return budgets.values().stream().mapToLong(RetryBudget::getDenied).sum();
+    }
+}
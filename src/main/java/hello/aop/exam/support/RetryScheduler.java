@@ -0,0 +1,43 @@
+package hello.aop.exam.support;
+
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 비동기(CompletableFuture) 재시도를 예약하는 공용 스케줄러
+ *
+ * 대기 시간 동안 스레드를 붙잡고 있지 않고, 대기가 끝나면 스케줄러 스레드가 다음 시도만 실행한다.
+ * 데몬 스레드를 사용하므로 애플리케이션 종료를 막지 않는다.
+ */
+public final class RetryScheduler {
+
+    private static final ScheduledExecutorService SCHEDULER = create();
+
+    private RetryScheduler() {
+    }
+
+    public static ScheduledFuture<?> schedule(Runnable task, long delayMillis) {
+        return SCHEDULER.schedule(task, delayMillis, TimeUnit.MILLISECONDS);
+    }
+
+    public static ScheduledExecutorService getScheduler() {
+        return SCHEDULER;
+    }
+
+    private static ScheduledExecutorService create() {
+        AtomicInteger count = new AtomicInteger();
+        ThreadFactory threadFactory = runnable -> {
+            Thread thread = new Thread(runnable, "retry-scheduler-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+        int poolSize = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+        ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(poolSize, threadFactory);
+        executor.setRemoveOnCancelPolicy(true);
+        return executor;
+    }
+}
@@ -0,0 +1,131 @@
+package hello.aop.exam.support;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.lang.reflect.InvocationTargetException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 호출을 executor 에서 실행하고 제한 시간이 지나면 포기(인터럽트)한다.
+ *
+ * executor 는 시작할 때 한번 고른다.
+ *  - VIRTUAL : JDK 21 이상이면 호출마다 가상 스레드 하나. 대기 중인 호출이 플랫폼 스레드를 붙잡지 않는다.
+ *  - PLATFORM : 그 외에는 크기가 정해진 플랫폼 스레드 풀. 스레드와 대기열이 모두 차면 RejectedExecutionException
+ * 프로젝트는 Java 11 로 컴파일하므로 가상 스레드 API 는 리플렉션으로 찾는다.
+ * -Dtimeout.executor=platform|virtual 로 강제할 수 있다.
+ */
+@Slf4j
+public class TimeLimiter implements AutoCloseable {
+
+    public enum Mode {
+        VIRTUAL,
+        PLATFORM
+    }
+
+    public static final String MODE_PROPERTY = "timeout.executor";
+    public static final int DEFAULT_PLATFORM_THREADS = 256;
+    public static final int DEFAULT_QUEUE_SIZE = 10_000;
+
+    private final Mode mode;
+    private final ExecutorService executor;
+
+    public TimeLimiter() {
+        this(defaultMode());
+    }
+
+    public TimeLimiter(Mode mode) {
+        this.mode = mode == Mode.VIRTUAL && !isVirtualThreadSupported() ? Mode.PLATFORM : mode;
+        this.executor = this.mode == Mode.VIRTUAL ? virtualThreadExecutor() : platformExecutor(DEFAULT_PLATFORM_THREADS, DEFAULT_QUEUE_SIZE);
+        log.info("[timeout] executor={}", this.mode);
+    }
+
+    /**
+     * 제한 시간까지 기다린다. 시간이 지나면 호출을 인터럽트 하고 CallTimeoutException 을 던진다.
+     */
+    public Object call(String name, Callable<?> task, long timeoutMillis) throws Throwable {
+        Future<?> future = executor.submit(task);
+        try {
+            return future.get(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            throw new CallTimeoutException(name, timeoutMillis);
+        } catch (ExecutionException e) {
+            throw e.getCause();
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            throw e;
+        }
+    }
+
+    /**
+     * 기다리지 않는다. 제한 시간이 지나면 결과를 TimeoutException 으로 완료하고 호출을 인터럽트 한다.
+     */
+    public <T> CompletableFuture<T> callAsync(Callable<T> task, long timeoutMillis) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        Future<?> running = executor.submit(() -> {
+            try {
+                result.complete(task.call());
+            } catch (Throwable e) {
+                result.completeExceptionally(e);
+            }
+        });
+        result.orTimeout(timeoutMillis, TimeUnit.MILLISECONDS).whenComplete((value, ex) -> {
+            if (ex instanceof TimeoutException) {
+                running.cancel(true);
+            }
+        });
+        return result;
+    }
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+
+    public static boolean isVirtualThreadSupported() {
+        return Runtime.version().feature() >= 21;
+    }
+
+    private static Mode defaultMode() {
+        String mode = System.getProperty(MODE_PROPERTY);
+        if (mode != null && !mode.isEmpty()) {
+            return Mode.valueOf(mode.toUpperCase());
+        }
+        return isVirtualThreadSupported() ? Mode.VIRTUAL : Mode.PLATFORM;
+    }
+
+    private static ExecutorService virtualThreadExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (NoSuchMethodException | IllegalAccessException | InvocationTargetException e) {
+            log.warn("[timeout] virtual threads unavailable, use platform threads", e);
+            return platformExecutor(DEFAULT_PLATFORM_THREADS, DEFAULT_QUEUE_SIZE);
+        }
+    }
+
+    private static ExecutorService platformExecutor(int threads, int queueSize) {
+        AtomicInteger count = new AtomicInteger();
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueSize), runnable -> {
+            Thread thread = new Thread(runnable, "timeout-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+}
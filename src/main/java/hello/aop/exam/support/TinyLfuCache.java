@@ -0,0 +1,346 @@
+package hello.aop.exam.support;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 최대 maximum 개를 저장하는 W-TinyLFU 캐시 (Caffeine 의 정책을 단순화)
+ *
+ * 저장 공간을 세 구역으로 나눈다.
+ *  - window (1%) : 새로 들어온 키가 먼저 머무는 LRU, 잠깐 몰리는 호출(burst)을 받아준다.
+ *  - probation : window 에서 밀려난 키가 들어온다. 다시 읽히면 protected 로 올라간다.
+ *  - protected (나머지의 80%) : 두번 이상 읽힌 키, 넘치면 가장 오래된 것이 probation 으로 내려간다.
+ * 공간이 넘치면 window 에서 밀려난 키(candidate)와 probation 의 가장 오래된 키(victim)의 최근 빈도(FrequencySketch)를 비교해서
+ * 빈도가 낮은 쪽을 내보낸다. 한번만 읽히고 마는 키들이 쏟아져도(scan) 자주 쓰는 키가 밀려나지 않아서 LRU 보다 적중률이 높다.
+ *
+ * 읽기는 ConcurrentHashMap 조회와 읽기 버퍼(링 버퍼)에 노드를 넣는 것이 전부라 lock 을 잡지 않는다.
+ * 정책(구역 이동, 빈도 기록)은 쓰기할 때, 또는 읽기 버퍼가 반쯤 차면 lock 을 잡은 스레드 하나가 몰아서 반영한다.
+ * 버퍼가 가득 차면 읽기 기록은 버린다. (적중률에 거의 영향이 없다.)
+ */
+public class TinyLfuCache<K, V> {
+
+    private static final int READ_BUFFER_SIZE = 128;
+    private static final int READ_BUFFER_MASK = READ_BUFFER_SIZE - 1;
+    private static final int DRAIN_THRESHOLD = READ_BUFFER_SIZE / 2;
+
+    private final int maximum;
+    private final int windowMaximum;
+    private final int protectedMaximum;
+    private final long ttlNanos;
+
+    private final ConcurrentMap<K, Node<K, V>> data = new ConcurrentHashMap<>();
+    private final FrequencySketch sketch;
+
+    private final ReentrantLock evictionLock = new ReentrantLock();
+    private final AccessOrderDeque<K, V> window = new AccessOrderDeque<>();
+    private final AccessOrderDeque<K, V> probation = new AccessOrderDeque<>();
+    private final AccessOrderDeque<K, V> protectedQueue = new AccessOrderDeque<>();
+    private int windowSize;
+    private int protectedSize;
+    private int size;
+
+    private final AtomicReferenceArray<Node<K, V>> readBuffer = new AtomicReferenceArray<>(READ_BUFFER_SIZE);
+    private final AtomicLong readBufferWrite = new AtomicLong();
+    private volatile long readBufferRead;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * @param ttlMillis 저장 후 유효 시간, 0 이하면 만료 없음
+     */
+    public TinyLfuCache(int maximum, long ttlMillis) {
+        this.maximum = Math.max(1, maximum);
+        this.windowMaximum = Math.max(1, this.maximum / 100);
+        this.protectedMaximum = (this.maximum - windowMaximum) * 8 / 10;
+        this.ttlNanos = ttlMillis > 0 ? TimeUnit.MILLISECONDS.toNanos(ttlMillis) : 0;
+        this.sketch = new FrequencySketch(this.maximum);
+    }
+
+    /**
+     * @return 없거나 만료되었으면 null
+     */
+    public V get(K key) {
+        Node<K, V> node = data.get(key);
+        if (node == null) {
+            misses.increment();
+            return null;
+        }
+        if (ttlNanos > 0 && System.nanoTime() - node.expiresAt >= 0) {
+            misses.increment();
+            if (data.remove(key, node)) {
+                evictionLock.lock();
+                try {
+                    unlink(node);
+                } finally {
+                    evictionLock.unlock();
+                }
+            }
+            return null;
+        }
+        hits.increment();
+        afterRead(node);
+        return node.value;
+    }
+
+    public void put(K key, V value) {
+        Node<K, V> node = new Node<>(key, value, ttlNanos > 0 ? System.nanoTime() + ttlNanos : 0);
+        Node<K, V> prior = data.put(key, node);
+        evictionLock.lock();
+        try {
+            drainReadBuffer();
+            if (prior != null) {
+                unlink(prior);
+            }
+            onWrite(node);
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    public int size() {
+        return data.size();
+    }
+
+    public int getMaximum() {
+        return maximum;
+    }
+
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    public long getEvictionCount() {
+        return evictions.sum();
+    }
+
+    public double getHitRate() {
+        long hit = hits.sum();
+        long total = hit + misses.sum();
+        return total == 0 ? 0 : (double) hit / total;
+    }
+
+    @Override
+    public String toString() {
+        return "TinyLfuCache{size=" + data.size() + ", maximum=" + maximum + ", hits=" + hits.sum()
+                + ", misses=" + misses.sum() + ", evictions=" + evictions.sum() + "}";
+    }
+
+    private void afterRead(Node<K, V> node) {
+        long write;
+        do {
+            write = readBufferWrite.get();
+            if (write - readBufferRead >= READ_BUFFER_SIZE) {
+                tryDrain(); // 가득 찼으면 이번 기록은 버린다.
+                return;
+            }
+        } while (!readBufferWrite.compareAndSet(write, write + 1));
+        readBuffer.lazySet((int) write & READ_BUFFER_MASK, node);
+        if (write - readBufferRead >= DRAIN_THRESHOLD) {
+            tryDrain();
+        }
+    }
+
+    private void tryDrain() {
+        if (evictionLock.tryLock()) { // 다른 스레드가 반영 중이면 기다리지 않는다.
+            try {
+                drainReadBuffer();
+            } finally {
+                evictionLock.unlock();
+            }
+        }
+    }
+
+    private void drainReadBuffer() {
+        long read = readBufferRead;
+        long write = readBufferWrite.get();
+        for (; read < write; read++) {
+            Node<K, V> node = readBuffer.getAndSet((int) read & READ_BUFFER_MASK, null);
+            if (node == null) {
+                break; // 자리만 잡고 아직 쓰지 않은 생산자, 다음에 이어서 읽는다.
+            }
+            onAccess(node);
+        }
+        readBufferRead = read;
+    }
+
+    private void onAccess(Node<K, V> node) {
+        if (node.queue == Node.NONE) {
+            return; // 이미 내보낸 노드
+        }
+        sketch.increment(node.key);
+        if (node.queue == Node.WINDOW) {
+            window.moveToBack(node);
+        } else if (node.queue == Node.PROBATION) {
+            probation.remove(node);
+            node.queue = Node.PROTECTED;
+            protectedQueue.addLast(node);
+            protectedSize++;
+            while (protectedSize > protectedMaximum) {
+                Node<K, V> demoted = protectedQueue.pollFirst();
+                protectedSize--;
+                demoted.queue = Node.PROBATION;
+                probation.addLast(demoted);
+            }
+        } else {
+            protectedQueue.moveToBack(node);
+        }
+    }
+
+    private void onWrite(Node<K, V> node) {
+        if (node.retired) {
+            return; // 같은 키로 더 나중에 put 한 스레드가 먼저 반영했다.
+        }
+        sketch.increment(node.key);
+        node.queue = Node.WINDOW;
+        window.addLast(node);
+        windowSize++;
+        size++;
+
+        while (windowSize > windowMaximum) {
+            Node<K, V> candidate = window.pollFirst();
+            windowSize--;
+            candidate.queue = Node.PROBATION;
+            probation.addLast(candidate);
+        }
+        while (size > maximum) {
+            evictOne();
+        }
+    }
+
+    /**
+     * window 에서 막 넘어온 candidate(probation 의 마지막)와 victim(probation 의 처음) 중 빈도가 낮은 쪽을 내보낸다.
+     */
+    private void evictOne() {
+        Node<K, V> victim = probation.peekFirst();
+        Node<K, V> candidate = probation.peekLast();
+        if (victim == null) {
+            victim = protectedQueue.peekFirst() != null ? protectedQueue.peekFirst() : window.peekFirst();
+            evict(victim);
+            return;
+        }
+        if (candidate == victim || sketch.frequency(candidate.key) > sketch.frequency(victim.key)) {
+            evict(victim);
+        } else {
+            evict(candidate);
+        }
+    }
+
+    private void evict(Node<K, V> node) {
+        unlink(node);
+        if (data.remove(node.key, node)) {
+            evictions.increment();
+        }
+    }
+
+    private void unlink(Node<K, V> node) {
+        node.retired = true;
+        switch (node.queue) {
+            case Node.WINDOW:
+                window.remove(node);
+                windowSize--;
+                break;
+            case Node.PROBATION:
+                probation.remove(node);
+                break;
+            case Node.PROTECTED:
+                protectedQueue.remove(node);
+                protectedSize--;
+                break;
+            default:
+                return;
+        }
+        node.queue = Node.NONE;
+        size--;
+    }
+
+    private static final class Node<K, V> {
+        static final int NONE = 0;
+        static final int WINDOW = 1;
+        static final int PROBATION = 2;
+        static final int PROTECTED = 3;
+
+        final K key;
+        final V value;
+        final long expiresAt;
+
+        // 아래는 evictionLock 안에서만 사용
+        int queue = NONE;
+        boolean retired;
+        Node<K, V> prev;
+        Node<K, V> next;
+
+        Node(K key, V value, long expiresAt) {
+            this.key = key;
+            this.value = value;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    /**
+     * 노드에 prev/next 를 두는 양방향 리스트, 중간 노드 삭제와 맨 뒤로 이동이 O(1) 이다.
+     */
+    private static final class AccessOrderDeque<K, V> {
+        private Node<K, V> first;
+        private Node<K, V> last;
+
+        Node<K, V> peekFirst() {
+            return first;
+        }
+
+        Node<K, V> peekLast() {
+            return last;
+        }
+
+        void addLast(Node<K, V> node) {
+            node.prev = last;
+            node.next = null;
+            if (last == null) {
+                first = node;
+            } else {
+                last.next = node;
+            }
+            last = node;
+        }
+
+        Node<K, V> pollFirst() {
+            Node<K, V> node = first;
+            if (node != null) {
+                remove(node);
+            }
+            return node;
+        }
+
+        void remove(Node<K, V> node) {
+            if (node.prev == null) {
+                first = node.next;
+            } else {
+                node.prev.next = node.next;
+            }
+            if (node.next == null) {
+                last = node.prev;
+            } else {
+                node.next.prev = node.prev;
+            }
+            node.prev = null;
+            node.next = null;
+        }
+
+        void moveToBack(Node<K, V> node) {
+            if (node != last) {
+                remove(node);
+                addLast(node);
+            }
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package hello.aop.exam.trace;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 루트 span 시그니처별로 초당 targetPerSecond 건 정도만 trace 를 남기도록 샘플링 확률을 조정한다.
+ *
+ * 1초 구간마다 들어온 루트 호출 수를 세고, 다음 구간의 확률을 target / 호출 수 로 바꾼다.
+ * 호출이 target 보다 적으면 모두 남긴다. 트래픽이 늘어나도 남기는 trace 수는 거의 일정하다.
+ *
+ * 샘플링에서 빠진 trace 라도 에러가 났거나 slowThreshold 보다 오래 걸린 span 이 있으면 남긴다. (isSlow)
+ */
+public class AdaptiveSampler {
+
+    public static final int DEFAULT_TARGET_PER_SECOND = 10;
+    public static final long DEFAULT_SLOW_THRESHOLD_MILLIS = 500;
+
+    private static final long WINDOW_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private final int targetPerSecond;
+    private final long slowThresholdNanos;
+    private final AtomicReferenceArray<Window> windows = new AtomicReferenceArray<>(TraceMetrics.MAX_SIGNATURES);
+
+    public AdaptiveSampler() {
+        this(DEFAULT_TARGET_PER_SECOND, DEFAULT_SLOW_THRESHOLD_MILLIS);
+    }
+
+    public AdaptiveSampler(int targetPerSecond, long slowThresholdMillis) {
+        this.targetPerSecond = targetPerSecond;
+        this.slowThresholdNanos = TimeUnit.MILLISECONDS.toNanos(slowThresholdMillis);
+    }
+
+    /**
+     * 루트 span 에서 한번만 호출한다.
+     *
+     * @param sampleRate @Trace 의 sampleRate
+     */
+    public boolean sample(int signatureId, double sampleRate) {
+        if (sampleRate <= 0) {
+            return false;
+        }
+        if (signatureId >= TraceMetrics.MAX_SIGNATURES) {
+            return ThreadLocalRandom.current().nextDouble() < sampleRate;
+        }
+        Window window = windows.get(signatureId);
+        if (window == null) {
+            windows.compareAndSet(signatureId, null, new Window(System.nanoTime()));
+            window = windows.get(signatureId);
+        }
+        double probability = window.onCall(targetPerSecond) * sampleRate;
+        return probability >= 1.0 || ThreadLocalRandom.current().nextDouble() < probability;
+    }
+
+    public boolean isSlow(long durationNanos) {
+        return durationNanos >= slowThresholdNanos;
+    }
+
+    /**
+     * @return 현재 구간의 샘플링 확률, 아직 호출이 없었으면 1
+     */
+    public double probability(int signatureId) {
+        Window window = signatureId < TraceMetrics.MAX_SIGNATURES ? windows.get(signatureId) : null;
+        return window == null ? 1.0 : window.probability;
+    }
+
+    private static final class Window {
+        private final AtomicLong startedAt;
+        private final LongAdder calls = new LongAdder();
+        private volatile double probability = 1.0;
+
+        private Window(long now) {
+            this.startedAt = new AtomicLong(now);
+        }
+
+        private double onCall(int targetPerSecond) {
+            calls.increment();
+            long started = startedAt.get();
+            long now = System.nanoTime();
+            if (now - started >= WINDOW_NANOS && startedAt.compareAndSet(started, now)) {
+                // 구간을 넘긴 스레드 하나만 확률을 다시 계산한다.
+                double perSecond = calls.sumThenReset() * (double) WINDOW_NANOS / (now - started);
+                probability = perSecond <= targetPerSecond ? 1.0 : targetPerSecond / perSecond;
+            }
+            return probability;
+        }
+    }
+}
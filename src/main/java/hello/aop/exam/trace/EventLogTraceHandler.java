@@ -0,0 +1,29 @@
+package hello.aop.exam.trace;
+
+import hello.aop.support.eventlog.EventLogWriter;
+import hello.aop.support.eventlog.EventType;
+
+/**
+ * 끝난 span 을 로그 대신 메모리 맵 이벤트 로그(EventLogWriter)에 남긴다.
+ * TraceSink 의 백그라운드 스레드에서 호출되므로 호출 스레드의 비용은 그대로다.
+ */
+public class EventLogTraceHandler implements TraceRecordHandler, AutoCloseable {
+
+    private final EventLogWriter writer;
+
+    public EventLogTraceHandler(EventLogWriter writer) {
+        this.writer = writer;
+    }
+
+    @Override
+    public void handle(TraceRecord record, String signature) {
+        EventType type = record.getKind() == SpanKind.RETRY_ATTEMPT ? EventType.RETRY_ATTEMPT : EventType.SPAN;
+        writer.write(type, signature, record.getTimestamp(), record.getDurationNanos(),
+                record.getSpanId(), record.getParentSpanId(), record.getThreadId(), record.getDepth(), record.isError());
+    }
+
+    @Override
+    public void close() {
+        writer.close();
+    }
+}
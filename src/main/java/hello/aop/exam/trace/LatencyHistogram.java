@@ -0,0 +1,146 @@
+package hello.aop.exam.trace;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 고정 메모리 log-linear 히스토그램 (HdrHistogram 과 같은 방식)
+ *
+ * 2의 거듭제곱 구간마다 SUB_BUCKETS(32)개의 균등 구간을 둔다. 상대 오차는 약 1/32(3%) 이다.
+ * 1ns ~ 2^MAX_MAGNITUDE ns(약 9시간)를 BUCKETS 개의 카운터로 표현하고, 그보다 큰 값은 마지막 구간에 넣는다.
+ *
+ * 기록은 AtomicLongArray 증가 한번이다. snapshotAndReset() 은 카운터 묶음을 새것으로 바꿔치기 하고 이전 묶음을 읽는다.
+ * 바꾸는 순간 진행 중이던 기록 몇 건은 다음 구간으로 넘어가거나 누락될 수 있다.
+ */
+public class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int MAX_MAGNITUDE = 45;
+    static final int BUCKETS = SUB_BUCKETS * (MAX_MAGNITUDE - SUB_BUCKET_BITS + 2);
+
+    private final AtomicReference<Counts> counts = new AtomicReference<>(new Counts());
+
+    public void record(long nanos) {
+        counts.get().record(nanos);
+    }
+
+    /**
+     * 지금까지의 값을 스냅샷으로 돌려주고 0 부터 다시 센다.
+     */
+    public Snapshot snapshotAndReset() {
+        return counts.getAndSet(new Counts()).snapshot();
+    }
+
+    public Snapshot snapshot() {
+        return counts.get().snapshot();
+    }
+
+    static int index(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) Math.max(value, 0);
+        }
+        int magnitude = 63 - Long.numberOfLeadingZeros(value);
+        if (magnitude > MAX_MAGNITUDE) {
+            return BUCKETS - 1;
+        }
+        int shift = magnitude - SUB_BUCKET_BITS;
+        int sub = (int) (value >>> shift) - SUB_BUCKETS;
+        return SUB_BUCKETS * (shift + 1) + sub;
+    }
+
+    /**
+     * 해당 구간에 들어가는 가장 큰 값
+     */
+    static long highestValue(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        int shift = index / SUB_BUCKETS - 1;
+        long sub = index % SUB_BUCKETS;
+        return ((SUB_BUCKETS + sub) << shift) + (1L << shift) - 1;
+    }
+
+    private static final class Counts {
+        private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+        private final LongAdder total = new LongAdder();
+        private final LongAdder sum = new LongAdder();
+        private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+        private void record(long nanos) {
+            buckets.incrementAndGet(index(nanos));
+            total.increment();
+            sum.add(nanos);
+            max.accumulate(nanos);
+        }
+
+        private Snapshot snapshot() {
+            long[] copy = new long[BUCKETS];
+            long count = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                copy[i] = buckets.get(i);
+                count += copy[i];
+            }
+            return new Snapshot(copy, count, sum.sum(), max.get());
+        }
+    }
+
+    public static final class Snapshot {
+        private final long[] buckets;
+        private final long count;
+        private final long sum;
+        private final long max;
+
+        private Snapshot(long[] buckets, long count, long sum, long max) {
+            this.buckets = buckets;
+            this.count = count;
+            this.sum = sum;
+            this.max = max;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public long getMax() {
+            return max;
+        }
+
+        public long getMean() {
+            return count == 0 ? 0 : sum / count;
+        }
+
+        /**
+         * @param quantile 0.5 = p50, 0.99 = p99, 0.999 = p999
+         * @return 해당 분위수가 들어있는 구간의 상한 (기록이 없으면 0)
+         */
+        public long valueAt(double quantile) {
+            if (count == 0) {
+                return 0;
+            }
+            long target = Math.max(1, (long) Math.ceil(quantile * count));
+            long seen = 0;
+            for (int i = 0; i < buckets.length; i++) {
+                seen += buckets[i];
+                if (seen >= target) {
+                    return Math.min(highestValue(i), max);
+                }
+            }
+            return max;
+        }
+
+        public long getP50() {
+            return valueAt(0.5);
+        }
+
+        public long getP99() {
+            return valueAt(0.99);
+        }
+
+        public long getP999() {
+            return valueAt(0.999);
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package hello.aop.exam.trace;
+
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * 메서드 시그니처 문자열에 0 부터 번호를 붙인다.
+ * 레코드와 히스토그램에는 번호만 저장하고, 문자열은 출력할 때 번호로 찾는다.
+ */
+public class SignatureTable {
+
+    private final ConcurrentMap<Method, Integer> ids = new ConcurrentHashMap<>();
+    private volatile String[] signatures = new String[64];
+    private int count;
+
+    /**
+     * 메서드마다 번호를 한번만 발급하고, 이후에는 map 조회만 한다.
+     */
+    public int id(Method method) {
+        Integer id = ids.get(method);
+        if (id != null) {
+            return id;
+        }
+        return register(method);
+    }
+
+    public String signature(int id) {
+        String[] current = signatures;
+        return id >= 0 && id < current.length ? current[id] : null;
+    }
+
+    public int size() {
+        return ids.size();
+    }
+
+    private synchronized int register(Method method) {
+        Integer id = ids.get(method);
+        if (id != null) {
+            return id;
+        }
+        int newId = count++;
+        String[] current = signatures;
+        if (newId >= current.length) {
+            current = Arrays.copyOf(current, current.length * 2);
+        }
+        current[newId] = signatureString(method);
+        signatures = current; // volatile write 로 다른 스레드에 공개
+        ids.put(method, newId);
+        return newId;
+    }
+
+    private static String signatureString(Method method) {
+        // joinPoint.getSignature().toString() 과 같은 형식 (String hello.aop.exam.ExamRepository.save(String))
+        StringBuilder sb = new StringBuilder();
+        sb.append(method.getReturnType().getSimpleName()).append(' ')
+                .append(method.getDeclaringClass().getName()).append('.').append(method.getName()).append('(');
+        Class<?>[] parameterTypes = method.getParameterTypes();
+        for (int i = 0; i < parameterTypes.length; i++) {
+            if (i > 0) {
+                sb.append(',');
+            }
+            sb.append(parameterTypes[i].getSimpleName());
+        }
+        return sb.append(')').toString();
+    }
+}
@@ -0,0 +1,11 @@
+package hello.aop.exam.trace;
+
+/**
+ * span 종류
+ *  - METHOD : @Trace 메서드 호출
+ *  - RETRY_ATTEMPT : RetryAspect 의 시도 한번
+ */
+public enum SpanKind {
+    METHOD,
+    RETRY_ATTEMPT
+}
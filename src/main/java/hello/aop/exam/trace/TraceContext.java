@@ -0,0 +1,56 @@
+package hello.aop.exam.trace;
+
+/**
+ * 스레드별 span 스택
+ *
+ * span 마다 객체를 만들지 않도록 깊이별 값을 배열에 저장한다.
+ * MAX_DEPTH 보다 깊은 span 은 깊이만 세고 기록하지 않는다.
+ *
+ * 샘플링에서 빠진 trace 의 span 은 pending 에 모아두었다가, 루트 span 이 끝날 때 남길지(에러, 느린 호출) 정한다.
+ */
+final class TraceContext {
+
+    static final int MAX_DEPTH = 64;
+    static final int MAX_PENDING = 64;
+
+    final long[] spanIds = new long[MAX_DEPTH];
+    final long[] startNanos = new long[MAX_DEPTH];
+    final int[] signatureIds = new int[MAX_DEPTH];
+    final SpanKind[] kinds = new SpanKind[MAX_DEPTH];
+    final int[] argCounts = new int[MAX_DEPTH];
+    final Object[] firstArgs = new Object[MAX_DEPTH];
+
+    /**
+     * 끝난 span 을 TraceSink 에 넘길 때 재사용하는 레코드
+     */
+    final TraceRecord record = new TraceRecord();
+
+    /**
+     * 샘플링에서 빠진 trace 의 끝난 span, pendingCount 개만 유효하다.
+     */
+    final TraceRecord[] pending = new TraceRecord[MAX_PENDING];
+    int pendingCount;
+
+    int depth;
+
+    /**
+     * 루트 span 에서 정한 샘플링 결과, 자식 span 은 그대로 따른다.
+     */
+    boolean sampled;
+
+    /**
+     * 샘플링에서 빠졌지만 에러나 느린 span 이 있어서 남겨야 하는 trace
+     */
+    boolean keep;
+
+    /**
+     * 루트 span 을 연 Tracer, 열린 span 이 없으면 null
+     */
+    Tracer tracer;
+
+    TraceContext() {
+        for (int i = 0; i < MAX_PENDING; i++) {
+            pending[i] = new TraceRecord();
+        }
+    }
+}
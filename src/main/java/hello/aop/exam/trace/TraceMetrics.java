@@ -0,0 +1,117 @@
+package hello.aop.exam.trace;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 시그니처(+ span 종류)별 지연시간 히스토그램
+ *
+ * 히스토그램은 시그니처 번호로 바로 찾는 고정 크기 배열에 둔다. 처음 기록할 때만 CAS 로 만들고, 이후에는 조회만 한다.
+ * MAX_SIGNATURES 개를 넘는 시그니처는 기록하지 않고 개수만 센다.
+ */
+@Slf4j
+public class TraceMetrics {
+
+    public static final int MAX_SIGNATURES = 4096;
+    private static final SpanKind[] KINDS = SpanKind.values();
+
+    private final SignatureTable signatures;
+    private final AtomicReferenceArray<LatencyHistogram> histograms = new AtomicReferenceArray<>(MAX_SIGNATURES * KINDS.length);
+    private final LongAdder overflow = new LongAdder();
+
+    public TraceMetrics(SignatureTable signatures) {
+        this.signatures = signatures;
+    }
+
+    public void record(int signatureId, SpanKind kind, long nanos) {
+        if (signatureId >= MAX_SIGNATURES) {
+            overflow.increment();
+            return;
+        }
+        int index = signatureId * KINDS.length + kind.ordinal();
+        LatencyHistogram histogram = histograms.get(index);
+        if (histogram == null) {
+            histograms.compareAndSet(index, null, new LatencyHistogram());
+            histogram = histograms.get(index);
+        }
+        histogram.record(nanos);
+    }
+
+    /**
+     * @return 아직 기록이 없으면 null
+     */
+    public LatencyHistogram histogram(int signatureId, SpanKind kind) {
+        if (signatureId >= MAX_SIGNATURES) {
+            return null;
+        }
+        return histograms.get(signatureId * KINDS.length + kind.ordinal());
+    }
+
+    /**
+     * 모든 히스토그램의 스냅샷을 만들고 0 부터 다시 센다. 기록이 없던 것은 제외한다.
+     */
+    public List<Entry> snapshotAndReset() {
+        List<Entry> entries = new ArrayList<>();
+        int limit = Math.min(signatures.size(), MAX_SIGNATURES) * KINDS.length;
+        for (int i = 0; i < limit; i++) {
+            LatencyHistogram histogram = histograms.get(i);
+            if (histogram == null) {
+                continue;
+            }
+            LatencyHistogram.Snapshot snapshot = histogram.snapshotAndReset();
+            if (snapshot.getCount() > 0) {
+                entries.add(new Entry(signatures.signature(i / KINDS.length), KINDS[i % KINDS.length], snapshot));
+            }
+        }
+        return entries;
+    }
+
+    /**
+     * snapshotAndReset() 결과를 로그로 남긴다. TraceSink 의 백그라운드 스레드에서 주기적으로 호출한다.
+     */
+    public void report() {
+        for (Entry entry : snapshotAndReset()) {
+            LatencyHistogram.Snapshot snapshot = entry.getSnapshot();
+            log.info("[trace-metrics] {} {} count={} p50={}us p99={}us p999={}us max={}us",
+                    entry.getSignature(), entry.getKind(), snapshot.getCount(),
+                    micros(snapshot.getP50()), micros(snapshot.getP99()), micros(snapshot.getP999()), micros(snapshot.getMax()));
+        }
+    }
+
+    public long getOverflow() {
+        return overflow.sum();
+    }
+
+    private static long micros(long nanos) {
+        return TimeUnit.NANOSECONDS.toMicros(nanos);
+    }
+
+    public static final class Entry {
+        private final String signature;
+        private final SpanKind kind;
+        private final LatencyHistogram.Snapshot snapshot;
+
+        private Entry(String signature, SpanKind kind, LatencyHistogram.Snapshot snapshot) {
+            this.signature = signature;
+            this.kind = kind;
+            this.snapshot = snapshot;
+        }
+
+        public String getSignature() {
+            return signature;
+        }
+
+        public SpanKind getKind() {
+            return kind;
+        }
+
+        public LatencyHistogram.Snapshot getSnapshot() {
+            return snapshot;
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package hello.aop.exam.trace;
+
+/**
+ * 끝난 span 하나의 trace 레코드
+ *
+ * 생산자는 스레드마다 하나씩 두고 값을 채워 TraceRingBuffer.offer(record) 로 복사해 넣고,
+ * 소비자는 하나를 만들어두고 TraceRingBuffer.poll(record) 로 계속 덮어쓰며 재사용한다.
+ */
+public class TraceRecord {
+
+    int signatureId;
+    SpanKind kind;
+    long timestamp;
+    long threadId;
+    long spanId;
+    long parentSpanId;
+    int depth;
+    long durationNanos;
+    boolean error;
+    int argCount;
+    Object firstArg;
+
+    public int getSignatureId() {
+        return signatureId;
+    }
+
+    public SpanKind getKind() {
+        return kind;
+    }
+
+    /**
+     * span 시작 시각 (epoch us)
+     */
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public long getThreadId() {
+        return threadId;
+    }
+
+    public long getSpanId() {
+        return spanId;
+    }
+
+    /**
+     * 부모 span id, 루트 span 이면 0
+     */
+    public long getParentSpanId() {
+        return parentSpanId;
+    }
+
+    /**
+     * 루트 span 이 0
+     */
+    public int getDepth() {
+        return depth;
+    }
+
+    public long getDurationNanos() {
+        return durationNanos;
+    }
+
+    public boolean isError() {
+        return error;
+    }
+
+    public int getArgCount() {
+        return argCount;
+    }
+
+    public Object getFirstArg() {
+        return firstArg;
+    }
+
+    /**
+     * 인자 요약, 첫번째 인자와 나머지 인자 수만 남긴다.
+     */
+    public String argSummary() {
+        if (argCount == 0) {
+            return "[]";
+        }
+        if (argCount == 1) {
+            return "[" + firstArg + "]";
+        }
+        return "[" + firstArg + ", +" + (argCount - 1) + "]";
+    }
+
+    void copyFrom(TraceRecord other) {
+        signatureId = other.signatureId;
+        kind = other.kind;
+        timestamp = other.timestamp;
+        threadId = other.threadId;
+        spanId = other.spanId;
+        parentSpanId = other.parentSpanId;
+        depth = other.depth;
+        durationNanos = other.durationNanos;
+        error = other.error;
+        argCount = other.argCount;
+        firstArg = other.firstArg;
+    }
+}
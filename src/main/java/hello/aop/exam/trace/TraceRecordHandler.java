@@ -0,0 +1,11 @@
+package hello.aop.exam.trace;
+
+/**
+ * TraceSink 의 백그라운드 스레드가 꺼낸 레코드를 처리한다.
+ * record 는 재사용되는 객체이므로 보관하지 말고 필요한 값만 꺼내 쓴다.
+ */
+@FunctionalInterface
+public interface TraceRecordHandler {
+
+    void handle(TraceRecord record, String signature);
+}
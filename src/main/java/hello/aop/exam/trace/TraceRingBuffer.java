@@ -0,0 +1,92 @@
+package hello.aop.exam.trace;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 여러 생산자, 하나의 소비자(MPSC)용 고정 크기 링 버퍼
+ *
+ * 슬롯마다 TraceRecord 를 미리 만들어두고 값만 복사하므로 기록할 때 객체를 만들지 않는다.
+ *  1. 생산자는 tail 을 CAS 로 증가시켜 슬롯을 하나 차지한다. 버퍼가 가득 차 있으면 기다리지 않고 버린다.(dropped)
+ *  2. 필드를 채운 뒤 published[슬롯] 에 시퀀스를 lazySet 해서 공개한다.
+ *  3. 소비자는 published[head] 가 head 와 같아질 때만 읽고, head 를 증가시켜 슬롯을 반납한다.
+ */
+public class TraceRingBuffer {
+
+    private final int capacity;
+    private final int mask;
+
+    private final TraceRecord[] slots;
+    private final AtomicLongArray published;
+
+    private final AtomicLong tail = new AtomicLong();
+    private final AtomicLong head = new AtomicLong();
+    private final LongAdder dropped = new LongAdder();
+
+    /**
+     * @param capacity 2의 제곱수
+     */
+    public TraceRingBuffer(int capacity) {
+        if (capacity <= 0 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("capacity 는 2의 제곱수여야 합니다.");
+        }
+        this.capacity = capacity;
+        this.mask = capacity - 1;
+        this.slots = new TraceRecord[capacity];
+        this.published = new AtomicLongArray(capacity);
+        for (int i = 0; i < capacity; i++) {
+            slots[i] = new TraceRecord();
+            published.set(i, -1);
+        }
+    }
+
+    /**
+     * @return 기록했으면 true, 버퍼가 가득 차서 버렸으면 false
+     */
+    public boolean offer(TraceRecord record) {
+        long sequence;
+        do {
+            sequence = tail.get();
+            if (sequence - head.get() >= capacity) {
+                dropped.increment();
+                return false;
+            }
+        } while (!tail.compareAndSet(sequence, sequence + 1));
+
+        int index = (int) sequence & mask;
+        slots[index].copyFrom(record);
+        published.lazySet(index, sequence);
+        return true;
+    }
+
+    /**
+     * 소비자 스레드 하나에서만 호출해야 한다.
+     *
+     * @return 꺼낼 레코드가 있으면 record 에 채우고 true
+     */
+    public boolean poll(TraceRecord record) {
+        long sequence = head.get();
+        int index = (int) sequence & mask;
+        if (published.get(index) != sequence) {
+            return false;
+        }
+        TraceRecord slot = slots[index];
+        record.copyFrom(slot);
+        slot.firstArg = null; // 인자 객체를 붙잡고 있지 않도록
+        head.lazySet(sequence + 1);
+        return true;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public int size() {
+        return (int) (tail.get() - head.get());
+    }
+
+    public long getDropped() {
+        return dropped.sum();
+    }
+}
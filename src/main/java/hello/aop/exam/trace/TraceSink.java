@@ -0,0 +1,188 @@
+package hello.aop.exam.trace;
+
+import hello.aop.support.eventlog.EventLogWriter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.lang.reflect.Method;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 비동기 trace 출력
+ *
+ * 호출 스레드는 TraceRingBuffer 에 고정 크기 레코드를 넣기만 하고,
+ * 로그 출력(문자열 변환, appender I/O)은 백그라운드 스레드 하나가 버퍼를 비우면서 한다.
+ * 버퍼가 가득 차면 호출 스레드를 막지 않고 레코드를 버린 뒤 개수만 센다.
+ *
+ * 레코드는 span 이 끝날 때 들어오므로 자식 span 이 부모보다 먼저 출력된다.
+ * schedule() 로 등록한 주기 작업(히스토그램 출력)도 같은 백그라운드 스레드에서 실행한다.
+ *
+ * -Dtrace.event-log.dir=<디렉토리> 를 주면 기본 생성자는 텍스트 로그 대신 바이너리 이벤트 로그(EventLogWriter)에 쓴다.
+ */
+@Slf4j
+public class TraceSink implements AutoCloseable {
+
+    public static final int DEFAULT_CAPACITY = 8192;
+    public static final String EVENT_LOG_DIR_PROPERTY = "trace.event-log.dir";
+
+    private static final long MIN_IDLE_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+    private static final long MAX_IDLE_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+
+    private final TraceRingBuffer buffer;
+    private final TraceRecordHandler handler;
+    private final SignatureTable signatures = new SignatureTable();
+
+    private volatile Runnable periodicTask;
+    private volatile long periodNanos;
+
+    private final Thread drainer;
+    private volatile boolean running = true;
+
+    public TraceSink() {
+        this(DEFAULT_CAPACITY, defaultHandler());
+    }
+
+    public TraceSink(int capacity, TraceRecordHandler handler) {
+        this.buffer = new TraceRingBuffer(capacity);
+        this.handler = handler;
+        this.drainer = new Thread(this::drainLoop, "trace-sink");
+        this.drainer.setDaemon(true);
+        this.drainer.start();
+    }
+
+    /**
+     * 호출 경로에서 사용한다. record 의 값을 버퍼에 복사하므로 호출한 쪽은 record 를 바로 재사용해도 된다.
+     * 버퍼가 가득 차도 기다리지 않는다.
+     */
+    public boolean record(TraceRecord record) {
+        return buffer.offer(record);
+    }
+
+    /**
+     * task 를 intervalMillis 마다 백그라운드 스레드에서 실행한다. 하나만 등록할 수 있고, 다시 호출하면 교체한다.
+     */
+    public void schedule(Runnable task, long intervalMillis) {
+        periodNanos = TimeUnit.MILLISECONDS.toNanos(intervalMillis);
+        periodicTask = task;
+    }
+
+    public int signatureId(Method method) {
+        return signatures.id(method);
+    }
+
+    public String signature(int signatureId) {
+        return signatures.signature(signatureId);
+    }
+
+    public SignatureTable getSignatures() {
+        return signatures;
+    }
+
+    public long getDropped() {
+        return buffer.getDropped();
+    }
+
+    public int getPending() {
+        return buffer.size();
+    }
+
+    /**
+     * 남은 레코드를 모두 출력하고 백그라운드 스레드를 멈춘다. handler 가 AutoCloseable 이면 함께 닫는다.
+     */
+    @Override
+    public void close() {
+        running = false;
+        LockSupport.unpark(drainer);
+        try {
+            drainer.join(TimeUnit.SECONDS.toMillis(1));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (handler instanceof AutoCloseable) {
+            try {
+                ((AutoCloseable) handler).close();
+            } catch (Exception e) {
+                log.warn("[trace] handler close failed", e);
+            }
+        }
+    }
+
+    private void drainLoop() {
+        TraceRecord record = new TraceRecord();
+        long idleNanos = MIN_IDLE_NANOS;
+        Runnable scheduled = null;
+        long nextRunAt = 0;
+        while (running) {
+            Runnable task = periodicTask;
+            if (task != scheduled) { // 새로 등록되면 한 주기 뒤부터 실행
+                scheduled = task;
+                nextRunAt = System.nanoTime() + periodNanos;
+            } else if (task != null && System.nanoTime() - nextRunAt >= 0) {
+                runPeriodic(task);
+                nextRunAt = System.nanoTime() + periodNanos;
+            }
+            if (drain(record) > 0) {
+                idleNanos = MIN_IDLE_NANOS;
+            } else {
+                LockSupport.parkNanos(this, idleNanos);
+                idleNanos = Math.min(idleNanos * 2, MAX_IDLE_NANOS);
+            }
+        }
+        drain(record);
+    }
+
+    private void runPeriodic(Runnable task) {
+        try {
+            task.run();
+        } catch (RuntimeException e) {
+            log.warn("[trace] periodic task failed", e);
+        }
+    }
+
+    private int drain(TraceRecord record) {
+        int count = 0;
+        while (buffer.poll(record)) {
+            try {
+                handler.handle(record, signature(record.getSignatureId()));
+            } catch (RuntimeException e) {
+                log.warn("[trace] handler failed", e);
+            }
+            count++;
+        }
+        return count;
+    }
+
+    private static TraceRecordHandler defaultHandler() {
+        String directory = System.getProperty(EVENT_LOG_DIR_PROPERTY);
+        if (directory == null || directory.isEmpty()) {
+            return TraceSink::logRecord;
+        }
+        Path path = Paths.get(directory, "trace-" + System.currentTimeMillis());
+        log.info("[trace] event log={}", path);
+        return new EventLogTraceHandler(new EventLogWriter(path));
+    }
+
+    /**
+     * [trace] |   |-->String hello.aop.exam.ExamRepository.save(String) args=[itemA] time=120us span=3 parent=2 thread=1
+     */
+    private static void logRecord(TraceRecord record, String signature) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 1; i < record.getDepth(); i++) {
+            sb.append("|   ");
+        }
+        if (record.getDepth() > 0) {
+            sb.append("|-->");
+        }
+        sb.append(signature);
+        if (record.getKind() == SpanKind.RETRY_ATTEMPT) {
+            sb.append(" attempt=").append(record.getFirstArg());
+        } else {
+            sb.append(" args=").append(record.argSummary());
+        }
+        log.info("[trace] {} time={}us span={} parent={} thread={}{}", sb,
+                TimeUnit.NANOSECONDS.toMicros(record.getDurationNanos()), record.getSpanId(), record.getParentSpanId(),
+                record.getThreadId(), record.isError() ? " error" : "");
+    }
+}
@@ -0,0 +1,256 @@
+package hello.aop.exam.trace;
+
+import hello.aop.support.sequence.SequenceAllocator;
+
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * span 을 열고 닫는다.
+ *
+ * 스레드마다 span 스택(TraceContext)을 두고, begin() 이 push, end() 가 pop 이다.
+ * 스택의 바로 아래 span 이 부모가 되므로 같은 스레드 안의 호출 관계(ExamService.request -> ExamRepository.save -> 재시도)가 트리로 남는다.
+ * span 이 끝나면 걸린 시간을 시그니처별 히스토그램(TraceMetrics)에 기록하고, 레코드를 TraceSink 에 넘긴다.
+ *
+ * 샘플링은 루트 span 에서 한번 정하고 자식 span 은 그 결정을 따른다. 그래서 trace 는 조각나지 않고 통째로 남거나 빠진다.
+ *  - 샘플링 된 trace : 인자를 기록하고 span 이 끝날 때마다 TraceSink 에 넘긴다.
+ *  - 빠진 trace : 인자를 읽지 않고, span 은 스레드별 pending 에만 모아둔다.
+ *    루트 span 이 끝날 때 에러나 느린 span 이 있었으면 pending 을 TraceSink 에 넘기고, 아니면 버린다.
+ * 히스토그램은 샘플링과 관계없이 모든 호출을 기록한다.
+ *
+ * begin() 과 end() 는 반드시 같은 스레드에서 짝을 맞춰 호출해야 한다. (try - finally)
+ * 다른 스레드로 넘어간 호출(비동기 재시도)은 그 스레드의 루트 span 이 된다.
+ * 단, handoff() 로 넘긴 호출(TimeoutAspect, HedgeAspect)은 넘긴 스레드에 열려 있던 span 의 자식이 된다.
+ */
+public class Tracer implements AutoCloseable {
+
+    public static final long DEFAULT_REPORT_INTERVAL_MILLIS = 60_000;
+
+    private static final ThreadLocal<TraceContext> CONTEXT = ThreadLocal.withInitial(TraceContext::new);
+
+    private final TraceSink sink;
+    private final SignatureTable signatures;
+    private final TraceMetrics metrics;
+    private final AdaptiveSampler sampler;
+    private final SequenceAllocator spanIds = SequenceAllocator.highThroughput();
+
+    // 시작 시각은 nanoTime 기준으로 계산한다. (부모/자식 span 의 시각이 ms 단위로 뭉개지지 않도록)
+    private final long baseEpochMicros = TimeUnit.MILLISECONDS.toMicros(System.currentTimeMillis());
+    private final long baseNanos = System.nanoTime();
+
+    public Tracer() {
+        this(new TraceSink());
+    }
+
+    public Tracer(TraceSink sink) {
+        this(sink, DEFAULT_REPORT_INTERVAL_MILLIS, new AdaptiveSampler());
+    }
+
+    /**
+     * @param reportIntervalMillis 히스토그램을 로그로 남기고 초기화하는 주기, 0 이하면 남기지 않는다.
+     */
+    public Tracer(TraceSink sink, long reportIntervalMillis, AdaptiveSampler sampler) {
+        this.sink = sink;
+        this.signatures = sink.getSignatures();
+        this.metrics = new TraceMetrics(signatures);
+        this.sampler = sampler;
+        if (reportIntervalMillis > 0) {
+            sink.schedule(metrics::report, reportIntervalMillis);
+        }
+    }
+
+    /**
+     * @return 현재 스레드에서 span 을 열어둔 Tracer, 없으면 null
+     */
+    public static Tracer current() {
+        return CONTEXT.get().tracer;
+    }
+
+    /**
+     * 현재 스레드에 열린 span 을 다른 스레드로 넘길 준비를 한다. 넘기는 스레드에서 만들어야 한다.
+     *
+     * @return 열린 span 이 없으면 null
+     */
+    public static Handoff handoff() {
+        TraceContext context = CONTEXT.get();
+        return context.depth == 0 ? null : new Handoff(context);
+    }
+
+    /**
+     * span 을 연다. 루트 span 이면 여기서 샘플링 여부를 정한다.
+     *
+     * @param sampleRate 루트 span 일 때만 사용한다.
+     * @return 샘플링 된 trace 이면 true, 이때만 captureArgs() 로 인자를 남기면 된다.
+     */
+    public boolean begin(Method method, double sampleRate) {
+        TraceContext context = CONTEXT.get();
+        int signatureId = signatures.id(method);
+        if (context.depth == 0) {
+            context.sampled = sampler.sample(signatureId, sampleRate);
+            context.keep = false;
+            context.pendingCount = 0;
+        }
+        push(context, signatureId, SpanKind.METHOD, 0, null);
+        return context.sampled;
+    }
+
+    /**
+     * 방금 연 span 의 인자를 남긴다. 첫번째 인자와 인자 수만 저장한다.
+     */
+    public void captureArgs(Object[] args) {
+        TraceContext context = CONTEXT.get();
+        int depth = context.depth - 1;
+        if (depth < 0 || depth >= TraceContext.MAX_DEPTH || !context.sampled) {
+            return;
+        }
+        int argCount = args == null ? 0 : args.length;
+        context.argCounts[depth] = argCount;
+        context.firstArgs[depth] = argCount == 0 ? null : args[0];
+    }
+
+    /**
+     * 재시도 한번을 span 으로 연다. 레코드의 첫번째 인자 자리에 시도 횟수를 남긴다.
+     * 열린 span 안에서만 호출한다. (Tracer.current() != null)
+     */
+    public void beginAttempt(Method method, int attempt) {
+        push(CONTEXT.get(), signatures.id(method), SpanKind.RETRY_ATTEMPT, 1, attempt);
+    }
+
+    public void end(boolean error) {
+        TraceContext context = CONTEXT.get();
+        if (context.depth == 0) {
+            return;
+        }
+        int depth = --context.depth;
+        if (depth == 0) {
+            context.tracer = null;
+        }
+        if (depth >= TraceContext.MAX_DEPTH) {
+            return;
+        }
+        long duration = System.nanoTime() - context.startNanos[depth];
+        metrics.record(context.signatureIds[depth], context.kinds[depth], duration);
+
+        if (context.sampled) {
+            TraceRecord record = context.record;
+            fill(record, context, depth, duration, error);
+            sink.record(record);
+            record.firstArg = null; // 인자 객체를 붙잡고 있지 않도록
+        } else {
+            context.keep |= error || sampler.isSlow(duration);
+            if (context.pendingCount < TraceContext.MAX_PENDING) {
+                fill(context.pending[context.pendingCount++], context, depth, duration, error);
+            }
+            if (depth == 0) {
+                flushPending(context);
+            }
+        }
+        context.firstArgs[depth] = null;
+    }
+
+    public TraceSink getSink() {
+        return sink;
+    }
+
+    public TraceMetrics getMetrics() {
+        return metrics;
+    }
+
+    public AdaptiveSampler getSampler() {
+        return sampler;
+    }
+
+    @Override
+    public void close() {
+        sink.close();
+    }
+
+    private void flushPending(TraceContext context) {
+        if (context.keep) {
+            for (int i = 0; i < context.pendingCount; i++) {
+                sink.record(context.pending[i]);
+            }
+        }
+        context.pendingCount = 0;
+        context.keep = false;
+    }
+
+    /**
+     * 다른 스레드에서 resume() 하면 그 스레드의 span 이 넘긴 스레드의 span 의 자식으로 열린다.
+     * 샘플링 결정도 넘긴 스레드를 따른다. 빠진 trace 의 pending 은 스레드마다 따로 모으고, release() 할 때 에러나 느린 span 이 있었으면 남긴다.
+     * 같은 Handoff 를 여러 스레드에서 resume() 해도 된다.
+     */
+    public static final class Handoff {
+        private final Tracer tracer;
+        private final boolean sampled;
+        private final int depth;
+        private final long[] spanIds; // 부모 span 을 찾는 데만 쓴다.
+
+        private Handoff(TraceContext context) {
+            this.tracer = context.tracer;
+            this.sampled = context.sampled;
+            this.depth = context.depth;
+            this.spanIds = Arrays.copyOf(context.spanIds, Math.min(depth, TraceContext.MAX_DEPTH));
+        }
+
+        /**
+         * @return 이 스레드에 이미 열린 span 이 있으면 넘겨받지 않고 false
+         */
+        public boolean resume() {
+            TraceContext context = CONTEXT.get();
+            if (context.depth != 0) {
+                return false;
+            }
+            System.arraycopy(spanIds, 0, context.spanIds, 0, spanIds.length);
+            context.tracer = tracer;
+            context.sampled = sampled;
+            context.keep = false;
+            context.pendingCount = 0;
+            context.depth = depth;
+            return true;
+        }
+
+        /**
+         * resume() 이 true 를 반환한 스레드에서 호출한다. (try - finally)
+         */
+        public void release() {
+            TraceContext context = CONTEXT.get();
+            if (!sampled) {
+                tracer.flushPending(context);
+            }
+            context.depth = 0;
+            context.tracer = null;
+        }
+    }
+
+    private void push(TraceContext context, int signatureId, SpanKind kind, int argCount, Object firstArg) {
+        int depth = context.depth++;
+        if (depth == 0) {
+            context.tracer = this;
+        }
+        if (depth >= TraceContext.MAX_DEPTH) {
+            return;
+        }
+        context.spanIds[depth] = spanIds.next();
+        context.signatureIds[depth] = signatureId;
+        context.kinds[depth] = kind;
+        context.argCounts[depth] = argCount;
+        context.firstArgs[depth] = firstArg;
+        context.startNanos[depth] = System.nanoTime();
+    }
+
+    private void fill(TraceRecord record, TraceContext context, int depth, long duration, boolean error) {
+        record.signatureId = context.signatureIds[depth];
+        record.kind = context.kinds[depth];
+        record.timestamp = baseEpochMicros + (context.startNanos[depth] - baseNanos) / 1000;
+        record.threadId = Thread.currentThread().getId();
+        record.spanId = context.spanIds[depth];
+        record.parentSpanId = depth == 0 ? 0 : context.spanIds[depth - 1];
+        record.depth = depth;
+        record.durationNanos = duration;
+        record.error = error;
+        record.argCount = context.argCounts[depth];
+        record.firstArg = context.firstArgs[depth];
+    }
+}
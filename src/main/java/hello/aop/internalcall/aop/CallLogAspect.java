@@ -1,5 +1,6 @@
 package hello.aop.internalcall.aop;
 
+import hello.aop.support.eventlog.AdviceEventLog;
 import lombok.extern.slf4j.Slf4j;
 import org.aspectj.lang.JoinPoint;
 import org.aspectj.lang.annotation.Aspect;
@@ -13,6 +14,7 @@ public class CallLogAspect {
     @Before("execution(* hello.aop.internalcall..*.*(..))")
     public void doLog(JoinPoint joinPoint) {
         log.info("aop={}", joinPoint.getSignature());
+        AdviceEventLog.record("[callLog]", joinPoint.getSignature()); // -Dtrace.event-log.dir 을 줄 때만 남긴다.
 
     }
 }
@@ -1,5 +1,6 @@
 package hello.aop.member;
 
+import hello.aop.exam.annotation.Memoize;
 import hello.aop.member.annotation.ClassAop;
 import hello.aop.member.annotation.MethodAop;
 import org.springframework.stereotype.Component;
@@ -10,6 +11,7 @@ public class MemberServiceImpl implements MemberService {
 
     @Override
     @MethodAop("test value") // 어노테이션에 값을 넣음 value()
+    @Memoize(maxSize = 100) // MemoizeAspect 를 등록하면 같은 param 은 다시 호출하지 않는다.
     public String hello(String param) {
         return "ok";
     }
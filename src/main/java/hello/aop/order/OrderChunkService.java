@@ -0,0 +1,33 @@
+package hello.aop.order;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+
+/**
+ * OrderService.orderItems() 가 나눈 묶음(chunk) 하나를 저장한다.
+ *
+ * 클래스 이름이 *Service 이므로 PointCuts.orderAndService() 의 대상이다.
+ * OrderService 안에서 자기 메서드를 부르면 프록시를 거치지 않으므로(internalcall 참고) 별도 빈으로 분리했다.
+ * 덕분에 트랜잭션 어드바이스가 상품마다가 아니라 묶음마다 한번 실행된다.
+ */
+@Slf4j
+@Service
+public class OrderChunkService {
+
+    private final OrderRepository orderRepository;
+
+    public OrderChunkService(OrderRepository orderRepository) {
+        this.orderRepository = orderRepository;
+    }
+
+    /**
+     * 결과는 itemIds 와 같은 순서이고, 실패한 상품 자리에는 예외가 들어간다.
+     * 상품 하나가 실패해도 나머지는 저장한다. 묶음 전체가 실패하면 예외를 던진다.
+     */
+    public List<Object> orderChunk(List<String> itemIds) {
+        log.info("[orderChunkService] 실행 size={}", itemIds.size());
+        return orderRepository.saveAll(itemIds);
+    }
+}
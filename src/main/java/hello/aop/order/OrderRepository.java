@@ -1,16 +1,188 @@
 package hello.aop.order;
 
+import hello.aop.exam.annotation.Batched;
+import hello.aop.exam.annotation.Bulkhead;
+import hello.aop.exam.annotation.Coalesce;
+import hello.aop.exam.annotation.RateLimit;
+import hello.aop.order.store.OrderRecord;
+import hello.aop.order.store.OrderStore;
+import hello.aop.order.store.ShardedOrderStore;
+import hello.aop.support.sequence.BlockSequenceAllocator;
+import hello.aop.support.sequence.SequenceAllocator;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
 import org.springframework.stereotype.Repository;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * 주문 저장소
+ *
+ *  - 기본 : OrderStore 하나에 호출한 스레드가 직접 쓴다.
+ *  - 샤드 : -Dorder.store.shards=N 을 주면 ShardedOrderStore 에 itemId 별로 나눠서 샤드의 쓰기 스레드가 쓴다.
+ *          saveAsync() 는 기다리지 않고 future 를 반환하고, save() 는 저장될 때까지 기다린다.
+ */
 @Slf4j
 @Repository
-public class OrderRepository {
+public class OrderRepository implements DisposableBean {
+
+    private final OrderStore store; // 샤드 모드면 null
+    private final ShardedOrderStore shardedStore; // 기본 모드면 null
+    private final SequenceAllocator orderSequence; // 주문 번호는 중복만 없으면 된다. (샤드 모드는 샤드가 발급)
+
+    public OrderRepository() {
+        this(Integer.getInteger(ShardedOrderStore.SHARDS_PROPERTY, 0));
+    }
+
+    private OrderRepository(int shards) {
+        this(shards > 0 ? null : OrderStore.openDefault(), shards > 0 ? ShardedOrderStore.openDefault(shards) : null); // -Dorder.store.path 가 없으면 임시 디렉토리
+    }
+
+    public OrderRepository(OrderStore store) {
+        this(store, null);
+    }
 
-    public String save(String itemId) { log.info("[orderRepository] 실행");
+    public OrderRepository(ShardedOrderStore shardedStore) {
+        this(null, shardedStore);
+    }
+
+    private OrderRepository(OrderStore store, ShardedOrderStore shardedStore) {
+        this.store = store;
+        this.shardedStore = shardedStore;
+        this.orderSequence = store == null ? null
+                : new BlockSequenceAllocator(store.getLastOrderId(), SequenceAllocator.DEFAULT_BLOCK_SIZE); // 재시작해도 이어서 발급
+    }
+
+    @RateLimit(permitsPerSecond = 10, burst = 5, key = "itemId") // 상품별 제한
+    @Batched(maxSize = 100, maxDelayMicros = 1000) // BatchedAspect 를 등록하면 동시에 들어온 저장을 saveAll 로 묶는다.
+    public String save(String itemId) {
+        if (shardedStore != null) {
+            join(saveAsync(itemId));
+            return "ok";
+        }
+        long orderId = orderSequence.next();
+        log.info("[orderRepository] 실행 orderId={}", orderId);
         //저장 로직
         if (itemId.equals("ex")) {
             throw new IllegalStateException("예외 발생!"); }
+        store.save(new OrderRecord(orderId, itemId, System.currentTimeMillis()));
         return "ok";
     }
+
+    /**
+     * 저장된 주문으로 완료되는 future 를 반환한다. 기본 모드에서는 저장을 마친 뒤 완료된 future 를 반환한다.
+     */
+    public CompletableFuture<OrderRecord> saveAsync(String itemId) {
+        if (itemId.equals("ex")) {
+            return CompletableFuture.failedFuture(new IllegalStateException("예외 발생!"));
+        }
+        if (shardedStore != null) {
+            return shardedStore.submit(itemId);
+        }
+        OrderRecord record = new OrderRecord(orderSequence.next(), itemId, System.currentTimeMillis());
+        store.save(record);
+        return CompletableFuture.completedFuture(record);
+    }
+
+    /**
+     * 한번에 저장한다. 결과는 itemIds 와 같은 순서이고, 실패한 상품 자리에는 예외가 들어간다.
+     * 상품 하나가 실패해도(null, 너무 긴 itemId 등) 나머지는 저장한다. 이미 쓴 상품을 실패로 알리면 다시 주문하게 된다.
+     * 디스크 반영(force)은 묶음 전체에 한번만 한다. (샤드 모드는 샤드별로 한번)
+     */
+    @Bulkhead(adaptive = true) // BulkheadAspect 를 등록하면 적용된다.
+    public List<Object> saveAll(List<String> itemIds) {
+        log.info("[orderRepository] 묶음 실행 size={}", itemIds.size());
+        if (shardedStore != null) {
+            return saveAllSharded(itemIds);
+        }
+        long now = System.currentTimeMillis();
+        List<Object> results = new ArrayList<>(itemIds.size());
+        for (String itemId : itemIds) {
+            try {
+                if ("ex".equals(itemId)) {
+                    throw new IllegalStateException("예외 발생!");
+                }
+                long orderId = orderSequence.next();
+                log.info("[orderRepository] orderId={}", orderId);
+                store.append(new OrderRecord(orderId, itemId, now));
+                results.add("ok");
+            } catch (RuntimeException e) {
+                results.add(e);
+            }
+        }
+        store.sync();
+        return results;
+    }
+
+    /**
+     * 상품의 가장 최근 주문
+     */
+    @Coalesce // CoalesceAspect 를 등록하면 같은 상품의 동시 조회를 한번으로 합친다.
+    public Optional<OrderRecord> findByItemId(String itemId) {
+        return shardedStore != null ? shardedStore.findByItemId(itemId) : store.findByItemId(itemId);
+    }
+
+    public boolean exists(String itemId) {
+        return shardedStore != null ? shardedStore.exists(itemId) : store.exists(itemId);
+    }
+
+    /**
+     * 샤드 모드면 null
+     */
+    public OrderStore getStore() {
+        return store;
+    }
+
+    /**
+     * 기본 모드면 null
+     */
+    public ShardedOrderStore getShardedStore() {
+        return shardedStore;
+    }
+
+    @Override
+    public void destroy() {
+        if (store != null) {
+            store.close();
+        }
+        if (shardedStore != null) {
+            shardedStore.close();
+        }
+    }
+
+    private List<Object> saveAllSharded(List<String> itemIds) {
+        List<CompletableFuture<OrderRecord>> futures = new ArrayList<>(itemIds.size());
+        for (String itemId : itemIds) {
+            try {
+                futures.add(saveAsync(itemId));
+            } catch (RuntimeException e) {
+                futures.add(CompletableFuture.failedFuture(e));
+            }
+        }
+        List<Object> results = new ArrayList<>(itemIds.size());
+        for (CompletableFuture<OrderRecord> future : futures) {
+            try {
+                future.join();
+                results.add("ok");
+            } catch (CompletionException e) {
+                results.add(e.getCause());
+            }
+        }
+        return results;
+    }
+
+    private static <T> T join(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
 }
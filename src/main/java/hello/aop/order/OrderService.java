@@ -1,20 +1,119 @@
 package hello.aop.order;
 
+import hello.aop.exam.annotation.RateLimit;
+import hello.aop.order.store.OrderRecord;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
 @Slf4j
 @Service
-public class OrderService {
+public class OrderService implements DisposableBean {
+
+    public static final int DEFAULT_CHUNK_SIZE = 1000;
 
     private final OrderRepository orderRepository;
+    private final OrderChunkService orderChunkService;
+    private final int chunkSize;
+    private final ForkJoinPool pool;
+
+    @Autowired
+    public OrderService(OrderRepository orderRepository, OrderChunkService orderChunkService) {
+        this(orderRepository, orderChunkService, DEFAULT_CHUNK_SIZE, Runtime.getRuntime().availableProcessors());
+    }
 
-    public OrderService(OrderRepository orderRepository) {
+    public OrderService(OrderRepository orderRepository, OrderChunkService orderChunkService, int chunkSize, int parallelism) {
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("chunkSize 는 1 이상이어야 합니다.");
+        }
         this.orderRepository = orderRepository;
+        this.orderChunkService = orderChunkService;
+        this.chunkSize = chunkSize;
+        this.pool = new ForkJoinPool(parallelism);
     }
 
+    @RateLimit(permitsPerSecond = 100, burst = 10, timeout = 100) // RateLimitAspect 를 등록하면 적용된다.
     public void orderItem(String itemId) {
         log.info("[orderService] 실행");
         orderRepository.save(itemId);
     }
+
+    /**
+     * 기다리지 않고 future 를 반환한다. 결과가 필요하면 join() 으로 기다린다.
+     * -Dorder.store.shards=N 이면 샤드의 쓰기 스레드가 저장하므로 호출한 스레드는 바로 돌아간다.
+     */
+    public CompletableFuture<OrderRecord> orderItemAsync(String itemId) {
+        log.info("[orderService] 비동기 실행");
+        return orderRepository.saveAsync(itemId);
+    }
+
+    /**
+     * 대량 주문
+     *
+     * itemIds 를 chunkSize 개씩 나눠서 ForkJoinPool 에서 병렬로 OrderChunkService.orderChunk() 를 호출한다.
+     * 묶음 하나가 트랜잭션 하나이므로 orderAndService() 어드바이스는 묶음마다 한번 실행된다.
+     * 이 메서드는 PointCuts.bulkOrder() 로 orderAndService() 에서 빠져 있다. (모든 묶음을 감싸는 바깥 트랜잭션이 생기지 않도록)
+     *
+     * 결과는 itemIds 의 순서와 같고, 실패한 상품 자리에는 예외가 들어간다.
+     * 묶음 전체가 실패하면 그 묶음의 상품 자리에 모두 같은 예외가 들어가고, 다른 묶음은 계속 진행한다.
+     */
+    public List<Object> orderItems(Collection<String> itemIds) {
+        log.info("[orderService] 대량 실행 size={}", itemIds.size());
+        List<String> items = itemIds instanceof List ? (List<String>) itemIds : new ArrayList<>(itemIds);
+        Object[] results = new Object[items.size()];
+        pool.invoke(new ChunkAction(items, results, 0, items.size()));
+        return Arrays.asList(results);
+    }
+
+    @Override
+    public void destroy() {
+        pool.shutdown();
+    }
+
+    /**
+     * chunkSize 이하가 될 때까지 반으로 나눈다.
+     */
+    private final class ChunkAction extends RecursiveAction {
+        private final List<String> items;
+        private final Object[] results;
+        private final int from;
+        private final int to;
+
+        private ChunkAction(List<String> items, Object[] results, int from, int to) {
+            this.items = items;
+            this.results = results;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            int size = to - from;
+            if (size > chunkSize) {
+                int chunks = (size + chunkSize - 1) / chunkSize;
+                int middle = from + chunks / 2 * chunkSize; // 묶음 경계에서 나눠서 묶음 크기를 chunkSize 로 맞춘다.
+                invokeAll(new ChunkAction(items, results, from, middle), new ChunkAction(items, results, middle, to));
+                return;
+            }
+            List<String> chunk = new ArrayList<>(items.subList(from, to));
+            try {
+                List<Object> chunkResults = orderChunkService.orderChunk(chunk);
+                for (int i = 0; i < size; i++) {
+                    results[from + i] = chunkResults.get(i);
+                }
+            } catch (RuntimeException e) {
+                log.info("[orderService] 묶음 실패 from={} to={} ex={}", from, to, e.toString());
+                Arrays.fill(results, from, to, e);
+            }
+        }
+    }
 }
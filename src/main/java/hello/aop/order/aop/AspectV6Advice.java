@@ -1,5 +1,6 @@
 package hello.aop.order.aop;
 
+import hello.aop.support.eventlog.AdviceEventLog;
 import lombok.extern.slf4j.Slf4j;
 import org.aspectj.lang.JoinPoint;
 import org.aspectj.lang.ProceedingJoinPoint;
@@ -27,6 +28,7 @@ import org.aspectj.lang.annotation.*;
  *    - 어드바이스가 적용되는 순서는 이렇게 적용되지만, 호출 순서와 리턴 순서는 반대라는 점을 알아두자.
  *    - 물론 @Aspect 안에 동일한 종류의 어드바이스가 2개 있으면 순서가 보장되지 않는다. 이 경우 @Aspect 를 분리하고 @Order 를 적용하자.
  *
+ *  - -Dtrace.event-log.dir 을 주면 로그와 같은 시점을 이벤트 로그에 ADVICE 이벤트로도 남긴다. (AdviceEventLog)
  *
  */
 @Slf4j
@@ -54,17 +56,21 @@ public class AspectV6Advice {
         try {
             // @Before
             log.info("[트랜잭션 시작] {}", joinPoint.getSignature());
+            AdviceEventLog.record("[트랜잭션 시작]", joinPoint.getSignature());
             Object result = joinPoint.proceed();
             // @AfterReturning
             log.info("[트랜잭션 커밋] {}", joinPoint.getSignature());
+            AdviceEventLog.record("[트랜잭션 커밋]", joinPoint.getSignature());
             return result;
         } catch (Exception e) {
             // @AfterThrowing
             log.info("[트랜잭션 롤백] {}", joinPoint.getSignature());
+            AdviceEventLog.record("[트랜잭션 롤백]", joinPoint.getSignature());
             throw e;
         } finally {
             // @After
             log.info("[리소스 릴리즈] {}", joinPoint.getSignature());
+            AdviceEventLog.record("[리소스 릴리즈]", joinPoint.getSignature());
         }
     }
 
@@ -75,6 +81,7 @@ public class AspectV6Advice {
     @Before("hello.aop.order.aop.PointCuts.orderAndService()")
     public void doBefore(JoinPoint joinPoint) {
         log.info("[before] {}", joinPoint.getSignature());
+        AdviceEventLog.record("[before]", joinPoint.getSignature());
     }
 
     /**
@@ -88,6 +95,7 @@ public class AspectV6Advice {
     @AfterReturning(value = "hello.aop.order.aop.PointCuts.orderAndService()", returning = "result")
     public void doReturn(JoinPoint joinPoint, Object result) {
         log.info("[return] {} return={}", joinPoint.getSignature(), result);
+        AdviceEventLog.record("[return]", joinPoint.getSignature());
     }
 
     /**
@@ -98,6 +106,7 @@ public class AspectV6Advice {
     @AfterThrowing(value = "hello.aop.order.aop.PointCuts.orderAndService()", throwing = "ex")
     public void doThrowing(JoinPoint joinPoint, Exception ex) {
         log.info("[ex] {} message={}", joinPoint.getSignature(), ex);
+        AdviceEventLog.record("[ex]", joinPoint.getSignature());
     }
 
     /**
@@ -109,5 +118,6 @@ public class AspectV6Advice {
     @After(value = "hello.aop.order.aop.PointCuts.orderAndService()")
     public void doAfter(JoinPoint joinPoint) {
         log.info("[after] {}", joinPoint.getSignature());
+        AdviceEventLog.record("[after]", joinPoint.getSignature());
     }
 }
@@ -14,7 +14,12 @@ public class PointCuts {
     public void allService() {
     }
 
-    // allOrder && allService
-    @Pointcut("allOrder() && allService()")
+    // 대량 주문 ( 묶음마다 OrderChunkService 에서 트랜잭션을 시작하므로 바깥에서 한번 더 감싸지 않는다. )
+    @Pointcut("execution(* hello.aop.order.OrderService.orderItems(..))")
+    public void bulkOrder() {
+    }
+
+    // allOrder && allService, 대량 주문은 제외
+    @Pointcut("allOrder() && allService() && !bulkOrder()")
     public void orderAndService(){}
 }
@@ -0,0 +1,64 @@
+package hello.aop.order.store;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * 64bit 해시를 받는 Bloom filter, 비트 배열은 힙 밖(direct ByteBuffer)에 둔다.
+ *
+ * mightContain() 이 false 면 확실히 없다. true 면 fpp 확률로 틀릴 수 있다.
+ * 해시 하나에서 k 개의 위치를 만든다. (h1 + i * h2, Kirsch-Mitzenmacher)
+ * 비트 설정은 VarHandle 의 getAndBitwiseOr 라서 lock 없이 여러 스레드가 동시에 넣어도 된다.
+ *
+ * 크기는 만들 때 정한 expectedInsertions 로 고정이다. 그보다 많이 넣으면 오탐률이 올라간다.
+ */
+public class BloomFilter {
+
+    private static final VarHandle WORDS = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.nativeOrder());
+    private static final long MAX_BITS = 1L << 33; // 1GB, direct buffer 하나는 2GB 를 넘을 수 없다.
+
+    private final ByteBuffer bits;
+    private final long bitMask;
+    private final int hashCount;
+
+    public BloomFilter(long expectedInsertions, double fpp) {
+        long n = Math.max(1, expectedInsertions);
+        double optimalBits = -n * Math.log(fpp) / (Math.log(2) * Math.log(2));
+        long bitCount = Math.min(MAX_BITS, Math.max(64, Long.highestOneBit((long) optimalBits - 1) << 1));
+        this.bits = ByteBuffer.allocateDirect((int) (bitCount / 8)).order(ByteOrder.nativeOrder());
+        this.bitMask = (long) bits.capacity() * 8 - 1;
+        this.hashCount = Math.max(1, (int) Math.round((double) bitCount / n * Math.log(2)));
+    }
+
+    public void put(long hash) {
+        long h1 = hash;
+        long h2 = ItemHash.mix(hash) | 1;
+        for (int i = 0; i < hashCount; i++) {
+            long bit = (h1 + i * h2) & bitMask;
+            WORDS.getAndBitwiseOr(bits, (int) (bit >>> 6) * 8, 1L << bit);
+        }
+    }
+
+    public boolean mightContain(long hash) {
+        long h1 = hash;
+        long h2 = ItemHash.mix(hash) | 1;
+        for (int i = 0; i < hashCount; i++) {
+            long bit = (h1 + i * h2) & bitMask;
+            long word = (long) WORDS.getAcquire(bits, (int) (bit >>> 6) * 8);
+            if ((word & 1L << bit) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public int getHashCount() {
+        return hashCount;
+    }
+
+    public long getOffHeapBytes() {
+        return bits.capacity();
+    }
+}
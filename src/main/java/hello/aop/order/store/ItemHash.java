@@ -0,0 +1,37 @@
+package hello.aop.order.store;
+
+/**
+ * itemId 의 64bit 해시 (FNV-1a + murmur3 finalizer)
+ *
+ * String.hashCode() 는 32bit 라서 수천만 건이면 충돌이 흔하다. 64bit 면 사실상 충돌하지 않는다.
+ * 0 은 OffHeapHashIndex 의 빈 자리 표시이므로 반환하지 않는다.
+ */
+final class ItemHash {
+
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private ItemHash() {
+    }
+
+    static long hash(String itemId) {
+        long h = FNV_OFFSET;
+        for (int i = 0; i < itemId.length(); i++) {
+            h = (h ^ itemId.charAt(i)) * FNV_PRIME;
+        }
+        h = mix(h);
+        return h == 0 ? 1 : h;
+    }
+
+    /**
+     * murmur3 fmix64, 하위 비트까지 고르게 섞는다. (테이블 위치는 하위 비트로 정한다.)
+     */
+    static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
@@ -0,0 +1,84 @@
+package hello.aop.order.store;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * 여러 생산자, 하나의 소비자(MPSC)용 고정 크기 큐 (TraceRingBuffer 와 같은 방식, 객체 참조를 담는다.)
+ *
+ *  1. 생산자는 tail 을 CAS 로 증가시켜 슬롯을 하나 차지한다. 가득 차 있으면 false 를 반환한다.
+ *  2. 슬롯에 원소를 lazySet 으로 넣어서 공개한다.
+ *  3. 소비자는 head 슬롯에 원소가 보일 때만 꺼내고, 슬롯을 비운 뒤 head 를 증가시킨다.
+ *
+ * head 와 tail 은 서로 다른 스레드가 계속 쓰는 값이라 같은 캐시 라인에 있으면 서로의 캐시를 계속 무효화한다. (false sharing)
+ * 그래서 AtomicLongArray 하나에 128 byte 떨어뜨려 둔다.
+ */
+public class MpscArrayQueue<E> {
+
+    private static final int TAIL = 8;
+    private static final int HEAD = 24;
+
+    private final int capacity;
+    private final int mask;
+    private final AtomicReferenceArray<E> slots;
+    private final AtomicLongArray counters = new AtomicLongArray(32);
+
+    /**
+     * @param capacity 2의 제곱수
+     */
+    public MpscArrayQueue(int capacity) {
+        if (capacity <= 0 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("capacity 는 2의 제곱수여야 합니다.");
+        }
+        this.capacity = capacity;
+        this.mask = capacity - 1;
+        this.slots = new AtomicReferenceArray<>(capacity);
+    }
+
+    /**
+     * @return 넣었으면 true, 가득 찼으면 false
+     */
+    public boolean offer(E element) {
+        if (element == null) {
+            throw new NullPointerException();
+        }
+        long sequence;
+        do {
+            sequence = counters.get(TAIL);
+            if (sequence - counters.get(HEAD) >= capacity) {
+                return false;
+            }
+        } while (!counters.compareAndSet(TAIL, sequence, sequence + 1));
+        slots.lazySet((int) sequence & mask, element);
+        return true;
+    }
+
+    /**
+     * 소비자 스레드 하나에서만 호출해야 한다.
+     *
+     * @return 비어 있으면 null (자리를 차지한 생산자가 아직 원소를 넣지 않은 경우 포함)
+     */
+    public E poll() {
+        long sequence = counters.get(HEAD);
+        int index = (int) sequence & mask;
+        E element = slots.get(index);
+        if (element == null) {
+            return null;
+        }
+        slots.lazySet(index, null);
+        counters.lazySet(HEAD, sequence + 1);
+        return element;
+    }
+
+    public int size() {
+        return (int) Math.max(0, counters.get(TAIL) - counters.get(HEAD));
+    }
+
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+}
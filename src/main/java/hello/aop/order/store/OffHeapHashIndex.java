@@ -0,0 +1,245 @@
+package hello.aop.order.store;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * long 키 -> long 값 open addressing(linear probing) 해시 테이블, 내용은 힙 밖(direct ByteBuffer)에 둔다.
+ *
+ * 자리 하나는 16 byte [long key][long value] 이고, 키 0 은 빈 자리다.
+ * 수천만 건이어도 힙에는 페이지 배열만 있으므로 GC 가 훑을 객체가 늘지 않는다. (HashMap<Long, Long> 이면 항목마다 객체 3개)
+ * direct buffer 하나는 2GB 를 넘을 수 없으므로 PAGE_SLOTS 개씩 여러 페이지로 나눈다.
+ *
+ * 쓰기는 StampedLock 쓰기 lock 으로 하나씩, 읽기는 optimistic read 로 lock 없이 하고 그 사이 쓰기가 있었으면 읽기 lock 으로 다시 읽는다.
+ * 채워진 비율이 MAX_LOAD 를 넘으면 두배 크기의 새 테이블로 옮긴다. 이전 테이블의 메모리는 GC 가 buffer 를 수거할 때 반환된다.
+ */
+public class OffHeapHashIndex {
+
+    public static final long MISSING = -1;
+
+    private static final int SLOT_SIZE = 16;
+    private static final int PAGE_BITS = 16;
+    private static final int PAGE_SLOTS = 1 << PAGE_BITS;
+    private static final double MAX_LOAD = 0.5;
+
+    private final StampedLock lock = new StampedLock();
+    private volatile Table table;
+    private int size; // 쓰기 lock
+
+    public OffHeapHashIndex(long expectedKeys) {
+        long capacity = Long.highestOneBit(Math.max(16, (long) (expectedKeys / MAX_LOAD)) - 1) << 1;
+        this.table = new Table(capacity);
+    }
+
+    /**
+     * @param key 0 이 아닌 값
+     * @return 이전 값, 없었으면 MISSING
+     */
+    public long put(long key, long value) {
+        return put(key, value, false);
+    }
+
+    /**
+     * 이전 값보다 클 때만 바꾼다. 여러 스레드가 로그 위치를 넣을 때 늦게 도착한 이전 위치가 최신 위치를 덮지 않게 한다.
+     *
+     * @return 이전 값, 없었으면 MISSING
+     */
+    public long putIfGreater(long key, long value) {
+        return put(key, value, true);
+    }
+
+    private long put(long key, long value, boolean onlyIfGreater) {
+        checkKey(key);
+        long stamp = lock.writeLock();
+        try {
+            if (size + 1 > table.capacity * MAX_LOAD) {
+                table = table.resize();
+            }
+            long previous = table.put(key, value, onlyIfGreater);
+            if (previous == MISSING) {
+                size++;
+            }
+            return previous;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * @return 없으면 MISSING
+     */
+    public long get(long key) {
+        checkKey(key);
+        long stamp = lock.tryOptimisticRead();
+        if (stamp != 0) {
+            long value = table.get(key);
+            if (lock.validate(stamp)) {
+                return value;
+            }
+        }
+        stamp = lock.readLock();
+        try {
+            return table.get(key);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * 지금 내용의 사본, 페이지 하나를 복사하는 동안만 쓰기를 막는다. (fuzzy copy)
+     *
+     * snapshot() 을 부르기 전에 끝난 쓰기는 모두 들어 있고, 복사하는 도중의 쓰기는 들어 있을 수도 없을 수도 있다.
+     * 도중에 테이블이 늘어나면 늘어나기 전 테이블을 끝까지 복사한다. (이전 테이블은 그 뒤로 바뀌지 않는다.)
+     */
+    public Snapshot snapshot() {
+        Table source = table;
+        Table copy = new Table(source.capacity);
+        int size = 0;
+        for (int i = 0; i < source.pages.length; i++) {
+            long stamp = lock.readLock();
+            try {
+                copy.pages[i].put(source.pages[i].duplicate().clear());
+            } finally {
+                lock.unlockRead(stamp);
+            }
+            size += count(copy.pages[i]);
+        }
+        return new Snapshot(copy, size);
+    }
+
+    public int size() {
+        long stamp = lock.readLock();
+        try {
+            return size;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    public long getCapacity() {
+        return table.capacity;
+    }
+
+    /**
+     * 힙 밖에 잡은 메모리 (byte)
+     */
+    public long getOffHeapBytes() {
+        return table.capacity * SLOT_SIZE;
+    }
+
+    private static int count(ByteBuffer page) {
+        int count = 0;
+        for (int position = 0; position < page.capacity(); position += SLOT_SIZE) {
+            if (page.getLong(position) != 0) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private static void checkKey(long key) {
+        if (key == 0) {
+            throw new IllegalArgumentException("0 은 키로 사용할 수 없습니다.");
+        }
+    }
+
+    private static final class Table {
+        private final ByteBuffer[] pages;
+        private final long capacity;
+        private final long mask;
+
+        private Table(long capacity) {
+            this.capacity = capacity;
+            this.mask = capacity - 1;
+            int pageCount = (int) Math.max(1, capacity >>> PAGE_BITS);
+            int pageSlots = (int) Math.min(capacity, PAGE_SLOTS);
+            this.pages = new ByteBuffer[pageCount];
+            for (int i = 0; i < pageCount; i++) {
+                pages[i] = ByteBuffer.allocateDirect(pageSlots * SLOT_SIZE).order(ByteOrder.nativeOrder()); // 0 으로 채워져 있다.
+            }
+        }
+
+        private long put(long key, long value, boolean onlyIfGreater) {
+            for (long slot = ItemHash.mix(key) & mask; ; slot = (slot + 1) & mask) {
+                ByteBuffer page = pages[(int) (slot >>> PAGE_BITS)];
+                int position = (int) (slot & (PAGE_SLOTS - 1)) * SLOT_SIZE;
+                long current = page.getLong(position);
+                if (current == 0) {
+                    page.putLong(position + 8, value);
+                    page.putLong(position, key);
+                    return MISSING;
+                }
+                if (current == key) {
+                    long previous = page.getLong(position + 8);
+                    if (!onlyIfGreater || value > previous) {
+                        page.putLong(position + 8, value);
+                    }
+                    return previous;
+                }
+            }
+        }
+
+        /**
+         * optimistic read 중에는 값이 바뀌는 중일 수 있으므로 최대 capacity 자리까지만 찾는다.
+         */
+        private long get(long key) {
+            long slot = ItemHash.mix(key) & mask;
+            for (long probe = 0; probe < capacity; probe++, slot = (slot + 1) & mask) {
+                ByteBuffer page = pages[(int) (slot >>> PAGE_BITS)];
+                int position = (int) (slot & (PAGE_SLOTS - 1)) * SLOT_SIZE;
+                long current = page.getLong(position);
+                if (current == key) {
+                    return page.getLong(position + 8);
+                }
+                if (current == 0) {
+                    return MISSING;
+                }
+            }
+            return MISSING;
+        }
+
+        private void forEach(EntryConsumer consumer) {
+            for (ByteBuffer page : pages) {
+                for (int position = 0; position < page.capacity(); position += SLOT_SIZE) {
+                    long key = page.getLong(position);
+                    if (key != 0) {
+                        consumer.accept(key, page.getLong(position + 8));
+                    }
+                }
+            }
+        }
+
+        private Table resize() {
+            Table resized = new Table(capacity << 1);
+            forEach((key, value) -> resized.put(key, value, false));
+            return resized;
+        }
+    }
+
+    @FunctionalInterface
+    public interface EntryConsumer {
+        void accept(long key, long value);
+    }
+
+    /**
+     * snapshot() 이 반환하는 사본, 원본과 메모리를 공유하지 않는다.
+     */
+    public static final class Snapshot {
+        private final Table table;
+        private final int size;
+
+        private Snapshot(Table table, int size) {
+            this.table = table;
+            this.size = size;
+        }
+
+        public int size() {
+            return size;
+        }
+
+        public void forEach(EntryConsumer consumer) {
+            table.forEach(consumer);
+        }
+    }
+}
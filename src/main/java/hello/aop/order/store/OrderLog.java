@@ -0,0 +1,436 @@
+package hello.aop.order.store;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static hello.aop.order.store.OrderLogFormat.*;
+
+/**
+ * 세그먼트로 나눈 append-only 주문 로그 (형식은 OrderLogFormat)
+ *
+ * 세그먼트 파일을 segmentSize 만큼 만들어 MappedByteBuffer 로 매핑하고, 레코드는 메모리에 쓰듯이 이어 붙인다.
+ *  - append() 는 page cache 에 쓰기만 한다. 디스크에 내려갔다고 보장하려면 sync() 를 호출한다.
+ *  - sync() 는 group commit 이다. 동시에 sync() 를 부른 스레드 중 하나만 force() 를 하고,
+ *    그 force() 가 그때까지 쓴 모든 레코드를 내리므로 나머지는 force() 없이 돌아간다. 레코드마다 fsync 하지 않는다.
+ *  - 세그먼트가 가득 차면 force() 한 뒤 다음 세그먼트를 연다.
+ *
+ * open() 할 때 세그먼트를 처음부터 읽어서 crc 가 맞지 않거나 길이가 잘린 레코드(쓰다가 죽은 꼬리)를 찾으면
+ * 그 뒤를 0 으로 지우고 이후 세그먼트를 삭제한다.
+ *
+ * append 는 lock 하나로 순서를 정한다. (쓰기는 메모리 복사뿐이라 짧다.) read/replay 는 lock 없이 읽는다.
+ */
+@Slf4j
+public class OrderLog implements AutoCloseable {
+
+    public static final int DEFAULT_SEGMENT_SIZE = 64 * 1024 * 1024;
+
+    private final Path directory;
+    private final int segmentSize;
+
+    private final ReentrantLock appendLock = new ReentrantLock();
+    private final ReentrantLock syncLock = new ReentrantLock();
+    private volatile List<Segment> segments; // 바꿀 때는 새 목록으로 교체한다. (appendLock)
+    private Segment current;
+    private volatile long endOffset;
+    private volatile long durableOffset;
+    private volatile boolean closed;
+
+    private final long recoveredRecords;
+    private final long truncatedBytes;
+    private final LongAdder appended = new LongAdder();
+    private final LongAdder syncs = new LongAdder();
+
+    private OrderLog(Path directory, int segmentSize) throws IOException {
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        Files.createDirectories(directory);
+
+        List<Segment> opened = new ArrayList<>();
+        long records = 0;
+        long truncated = 0;
+        List<Path> paths = segmentPaths(directory);
+        for (int i = 0; i < paths.size(); i++) {
+            Segment segment = Segment.open(paths.get(i), i);
+            opened.add(segment);
+            Recovery recovery = segment.recover(i == paths.size() - 1);
+            records += recovery.records;
+            if (recovery.truncated > 0) {
+                truncated += recovery.truncated;
+                for (Path later : paths.subList(i + 1, paths.size())) { // 잘린 레코드 뒤의 세그먼트는 버린다.
+                    truncated += Files.size(later);
+                    Files.delete(later);
+                }
+                break;
+            }
+        }
+        if (opened.isEmpty()) {
+            opened.add(Segment.create(directory, 0, segmentSize));
+        }
+        this.segments = opened;
+        this.current = opened.get(opened.size() - 1);
+        this.endOffset = offset(current.index, current.position);
+        this.durableOffset = endOffset;
+        this.recoveredRecords = records;
+        this.truncatedBytes = truncated;
+        if (truncated > 0) {
+            log.warn("[orderLog] {} torn tail truncated bytes={}", directory, truncated);
+        }
+        log.info("[orderLog] {} opened segments={} records={}", directory, opened.size(), records);
+    }
+
+    public static OrderLog open(Path directory) {
+        return open(directory, DEFAULT_SEGMENT_SIZE);
+    }
+
+    /**
+     * @param segmentSize 새로 만드는 세그먼트 파일의 크기 (byte)
+     */
+    public static OrderLog open(Path directory, int segmentSize) {
+        if (segmentSize < HEADER_SIZE + RECORD_HEADER_SIZE + FIXED_PAYLOAD_SIZE + 256) {
+            throw new IllegalArgumentException("segmentSize 가 너무 작습니다. segmentSize=" + segmentSize);
+        }
+        try {
+            return new OrderLog(directory, segmentSize);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * page cache 에 레코드를 쓴다. 디스크 반영은 sync()
+     *
+     * @return 레코드의 로그 위치 (read 에 사용한다.)
+     */
+    public long append(OrderRecord record) {
+        return append(record, null);
+    }
+
+    /**
+     * @param onAppend null 이 아니면 레코드를 쓴 직후 append lock 안에서 호출한다.
+     *                 whileAppendsPaused() 안에서는 getEndOffset() 앞의 레코드가 모두 onAppend 를 거친 상태다.
+     */
+    public long append(OrderRecord record, RecordConsumer onAppend) {
+        byte[] item = record.getItemId().getBytes(StandardCharsets.UTF_8);
+        if (item.length > MAX_ITEM_LENGTH) {
+            throw new IllegalArgumentException("itemId 가 너무 깁니다. length=" + item.length);
+        }
+        int payloadSize = FIXED_PAYLOAD_SIZE + item.length;
+        int recordSize = RECORD_HEADER_SIZE + payloadSize;
+
+        appendLock.lock();
+        try {
+            if (closed) {
+                throw new IllegalStateException("닫힌 로그입니다. directory=" + directory);
+            }
+            if (current.position + recordSize > current.limit) {
+                roll();
+            }
+            Segment segment = current;
+            int position = segment.position;
+            ByteBuffer view = segment.writeView;
+            view.position(position + RECORD_HEADER_SIZE);
+            view.putLong(record.getOrderId());
+            view.putLong(record.getTimestampMillis());
+            view.putShort((short) item.length);
+            view.put(item);
+            segment.buffer.putInt(position + 4, crc(segment.buffer, position + RECORD_HEADER_SIZE, payloadSize));
+            segment.buffer.putInt(position, payloadSize); // 마지막에 써서 레코드를 완성한다.
+
+            segment.position = position + recordSize;
+            long offset = offset(segment.index, position);
+            if (onAppend != null) {
+                onAppend.accept(offset, record);
+            }
+            endOffset = offset(segment.index, segment.position);
+            appended.increment();
+            return offset;
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    /**
+     * append 를 잠시 막고 action 을 실행한다. 로그 위치와 메모리 상태를 같은 시점으로 맞출 때 사용한다. (스냅샷)
+     */
+    public <T> T whileAppendsPaused(Supplier<T> action) {
+        appendLock.lock();
+        try {
+            return action.get();
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    /**
+     * 지금까지 append 한 레코드를 디스크에 반영한다. (group commit)
+     * 다른 스레드의 force() 가 내 레코드까지 반영했으면 force() 없이 돌아간다.
+     */
+    public void sync() {
+        long target = endOffset;
+        if (durableOffset >= target) {
+            return;
+        }
+        syncLock.lock();
+        try {
+            if (durableOffset >= target || closed) {
+                return; // 기다리는 동안 앞 스레드가 내 레코드까지 반영했다.
+            }
+            long upTo = endOffset; // 기다리는 동안 다른 스레드가 쓴 레코드도 함께 반영한다.
+            segments.get(segment(upTo)).buffer.force(); // 이전 세그먼트는 넘어갈 때 이미 반영했다.
+            durableOffset = upTo;
+            syncs.increment();
+        } finally {
+            syncLock.unlock();
+        }
+    }
+
+    /**
+     * @param offset append 가 반환한 로그 위치
+     */
+    public OrderRecord read(long offset) {
+        List<Segment> current = segments;
+        int index = segment(offset);
+        if (index < 0 || index >= current.size()) {
+            throw new IllegalArgumentException("로그 위치가 범위를 벗어났습니다. offset=" + Long.toHexString(offset));
+        }
+        OrderRecord record = current.get(index).read(position(offset));
+        if (record == null) {
+            throw new IllegalArgumentException("로그 위치에 레코드가 없습니다. offset=" + Long.toHexString(offset));
+        }
+        return record;
+    }
+
+    /**
+     * fromOffset 부터 지금까지 쓴 레코드를 순서대로 읽는다. 0 이면 처음부터
+     */
+    public void replay(long fromOffset, RecordConsumer consumer) {
+        List<Segment> current = segments;
+        long end = endOffset;
+        for (int i = Math.max(0, segment(fromOffset)); i < current.size(); i++) {
+            Segment segment = current.get(i);
+            int position = i == segment(fromOffset) ? Math.max(HEADER_SIZE, position(fromOffset)) : HEADER_SIZE;
+            while (offset(i, position) < end && position + RECORD_HEADER_SIZE <= segment.limit) {
+                int length = segment.buffer.getInt(position);
+                if (length <= 0) {
+                    break; // 세그먼트의 끝
+                }
+                consumer.accept(offset(i, position), segment.read(position));
+                position += RECORD_HEADER_SIZE + length;
+            }
+        }
+    }
+
+    public long getEndOffset() {
+        return endOffset;
+    }
+
+    public long getDurableOffset() {
+        return durableOffset;
+    }
+
+    public int getSegmentCount() {
+        return segments.size();
+    }
+
+    public long getRecoveredRecords() {
+        return recoveredRecords;
+    }
+
+    public long getTruncatedBytes() {
+        return truncatedBytes;
+    }
+
+    public long getAppendCount() {
+        return appended.sum();
+    }
+
+    /**
+     * force() 를 실제로 호출한 횟수, append 횟수보다 훨씬 적으면 group commit 이 동작한 것이다.
+     */
+    public long getSyncCount() {
+        return syncs.sum();
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    @Override
+    public void close() {
+        appendLock.lock();
+        syncLock.lock();
+        try {
+            if (closed) {
+                return;
+            }
+            current.buffer.force();
+            durableOffset = endOffset;
+            closed = true;
+        } finally {
+            syncLock.unlock();
+            appendLock.unlock();
+        }
+    }
+
+    private void roll() {
+        Segment full = current;
+        full.buffer.force();
+        try {
+            Segment next = Segment.create(directory, full.index + 1, segmentSize);
+            List<Segment> rolled = new ArrayList<>(segments);
+            rolled.add(next);
+            segments = rolled;
+            current = next;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        log.info("[orderLog] {} segment rolled index={}", directory, current.index);
+    }
+
+    private static List<Path> segmentPaths(Path directory) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(path -> {
+                String name = path.getFileName().toString();
+                return name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX);
+            }).sorted().collect(Collectors.toList()); // 파일 이름에 0 을 채운 번호가 있으므로 이름순이 곧 쓴 순서
+        }
+    }
+
+    @FunctionalInterface
+    public interface RecordConsumer {
+        void accept(long offset, OrderRecord record);
+    }
+
+    private static final class Recovery {
+        private long records;
+        private long truncated;
+    }
+
+    private static final class Segment {
+        private final int index;
+        private final MappedByteBuffer buffer;
+        private final ByteBuffer writeView; // appendLock 안에서만 사용
+        private final int limit;
+        private int position = HEADER_SIZE; // appendLock
+
+        private Segment(int index, MappedByteBuffer buffer) {
+            this.index = index;
+            this.buffer = buffer;
+            this.writeView = buffer.duplicate();
+            this.limit = buffer.capacity();
+        }
+
+        private static Segment create(Path directory, int index, int size) throws IOException {
+            Path path = directory.resolve(segmentName(index));
+            try (FileChannel channel = FileChannel.open(path,
+                    StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size); // 매핑은 채널을 닫아도 유지된다.
+                buffer.putLong(0, MAGIC);
+                buffer.putInt(8, VERSION);
+                buffer.force();
+                return new Segment(index, buffer);
+            }
+        }
+
+        private static Segment open(Path path, int index) throws IOException {
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size());
+                if (buffer.capacity() < HEADER_SIZE || buffer.getLong(0) != MAGIC) {
+                    throw new IllegalStateException("주문 로그 파일이 아닙니다. path=" + path);
+                }
+                if (buffer.getInt(8) != VERSION) {
+                    throw new IllegalStateException("지원하지 않는 주문 로그 버전입니다. path=" + path + " version=" + buffer.getInt(8));
+                }
+                return new Segment(index, buffer);
+            }
+        }
+
+        /**
+         * 온전한 레코드 끝까지 position 을 옮긴다.
+         * 마지막 세그먼트이거나 온전하지 않은 레코드를 만났으면, 그 뒤에 남은 값(쓰다가 죽은 꼬리)을 0 으로 지운다.
+         */
+        private Recovery recover(boolean last) {
+            Recovery recovery = new Recovery();
+            int position = HEADER_SIZE;
+            boolean torn = false;
+            while (position + RECORD_HEADER_SIZE <= limit) {
+                int length = buffer.getInt(position);
+                if (length == 0) {
+                    break;
+                }
+                int payload = position + RECORD_HEADER_SIZE;
+                if (length < FIXED_PAYLOAD_SIZE || length > limit - payload
+                        || buffer.getInt(position + 4) != crc(buffer, payload, length)) {
+                    torn = true;
+                    break;
+                }
+                recovery.records++;
+                position = payload + length;
+            }
+            this.position = position;
+            if (last || torn) {
+                recovery.truncated = zeroFrom(position);
+            }
+            return recovery;
+        }
+
+        /**
+         * @return 0 으로 지운 범위의 크기 (0 이 아닌 마지막 byte 까지)
+         */
+        private int zeroFrom(int position) {
+            int dirtyEnd = position;
+            int i = position;
+            for (; i + 8 <= limit; i += 8) {
+                if (buffer.getLong(i) != 0) {
+                    dirtyEnd = i + 8;
+                }
+            }
+            for (; i < limit; i++) {
+                if (buffer.get(i) != 0) {
+                    dirtyEnd = i + 1;
+                }
+            }
+            if (dirtyEnd == position) {
+                return 0;
+            }
+            for (i = position; i < dirtyEnd; i++) {
+                buffer.put(i, (byte) 0);
+            }
+            buffer.force();
+            return dirtyEnd - position;
+        }
+
+        /**
+         * @return position 에 레코드가 없으면 null
+         */
+        private OrderRecord read(int position) {
+            int length = position >= HEADER_SIZE && position + RECORD_HEADER_SIZE <= limit ? buffer.getInt(position) : 0;
+            if (length < FIXED_PAYLOAD_SIZE) {
+                return null;
+            }
+            ByteBuffer view = buffer.duplicate();
+            view.position(position + RECORD_HEADER_SIZE);
+            long orderId = view.getLong();
+            long timestamp = view.getLong();
+            byte[] item = new byte[view.getShort()];
+            view.get(item);
+            return new OrderRecord(orderId, new String(item, StandardCharsets.UTF_8), timestamp);
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package hello.aop.order.store;
+
+import java.nio.ByteBuffer;
+import java.util.zip.CRC32C;
+
+/**
+ * 주문 로그 파일 형식
+ *
+ * 디렉토리 하나에 세그먼트 파일(orders-000000.log, orders-000001.log ...)을 둔다.
+ * 세그먼트는 미리 segmentSize 만큼 만들어 두므로 쓰지 않은 뒷부분은 0 이다.
+ *
+ * 세그먼트 : 헤더 16 byte [long MAGIC][int VERSION][int reserved] 뒤로 가변 길이 레코드가 이어진다.
+ * 레코드(big endian)
+ *   0  int   length      payload 길이, 0 이면 이 세그먼트의 끝
+ *   4  int   crc         payload 의 CRC32C
+ *   8  long  orderId     payload 시작
+ *   16 long  timestamp   epoch ms
+ *   24 short itemLength
+ *   26 byte[] itemId     UTF-8
+ * length 는 나머지를 모두 쓴 다음 마지막에 쓴다. 그래도 page cache 는 어떤 순서로든 디스크에 내려갈 수 있으므로
+ * 복구할 때는 crc 로 온전한 레코드인지 확인한다.
+ *
+ * 로그 위치(offset)는 (세그먼트 번호 << 32 | 세그먼트 안의 위치) 인 long 이다. 값의 순서가 곧 쓴 순서다.
+ */
+final class OrderLogFormat {
+
+    static final long MAGIC = 0x414F_504F_5244_4552L; // "AOPORDER"
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 16;
+    static final int RECORD_HEADER_SIZE = 8;
+    static final int FIXED_PAYLOAD_SIZE = 18;
+    static final int MAX_ITEM_LENGTH = Short.MAX_VALUE;
+
+    static final String SEGMENT_PREFIX = "orders-";
+    static final String SEGMENT_SUFFIX = ".log";
+
+    private OrderLogFormat() {
+    }
+
+    static String segmentName(int index) {
+        return String.format("%s%06d%s", SEGMENT_PREFIX, index, SEGMENT_SUFFIX);
+    }
+
+    static long offset(int segment, int position) {
+        return (long) segment << 32 | position;
+    }
+
+    static int segment(long offset) {
+        return (int) (offset >>> 32);
+    }
+
+    static int position(long offset) {
+        return (int) offset;
+    }
+
+    static int crc(ByteBuffer buffer, int position, int length) {
+        CRC32C crc = new CRC32C();
+        ByteBuffer view = buffer.duplicate();
+        view.limit(position + length).position(position);
+        crc.update(view);
+        return (int) crc.getValue();
+    }
+}
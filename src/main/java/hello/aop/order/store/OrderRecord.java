@@ -0,0 +1,34 @@
+package hello.aop.order.store;
+
+/**
+ * 주문 로그에 남기는 주문 한 건
+ */
+public final class OrderRecord {
+
+    private final long orderId;
+    private final String itemId;
+    private final long timestampMillis;
+
+    public OrderRecord(long orderId, String itemId, long timestampMillis) {
+        this.orderId = orderId;
+        this.itemId = itemId;
+        this.timestampMillis = timestampMillis;
+    }
+
+    public long getOrderId() {
+        return orderId;
+    }
+
+    public String getItemId() {
+        return itemId;
+    }
+
+    public long getTimestampMillis() {
+        return timestampMillis;
+    }
+
+    @Override
+    public String toString() {
+        return "OrderRecord{orderId=" + orderId + ", itemId=" + itemId + ", timestamp=" + timestampMillis + "}";
+    }
+}
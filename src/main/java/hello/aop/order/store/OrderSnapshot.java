@@ -0,0 +1,200 @@
+package hello.aop.order.store;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * OrderStore 의 메모리 상태(인덱스, 마지막 주문 번호)를 로그 위치 하나에 맞춰 저장한 파일
+ *
+ * 복구할 때 가장 최근 스냅샷을 읽고 그 로그 위치 뒤의 레코드만 다시 읽으면 되므로,
+ * 재시작 시간이 쌓인 로그 전체가 아니라 스냅샷 크기(상품 수)에 비례한다.
+ *
+ * 파일 : snapshot-<로그 위치 16자리 hex>.snap (이름순이 곧 로그 위치 순서)
+ *   [long MAGIC][int VERSION][int reserved][long logOffset][long lastOrderId][long entryCount]
+ *   [long key][long value] * entryCount
+ *   [int crc]  앞의 모든 byte 의 CRC32C
+ * 임시 파일에 모두 쓰고 force 한 뒤 이름을 바꾼다(atomic move). 쓰다가 죽어도 온전한 스냅샷만 남는다.
+ */
+@Slf4j
+final class OrderSnapshot {
+
+    static final long MAGIC = 0x414F_5053_4E41_5053L; // "AOPSNAPS"
+    static final int VERSION = 1;
+    static final int KEEP = 2;
+    static final int HEADER_SIZE = 40;
+
+    private static final String PREFIX = "snapshot-";
+    private static final String SUFFIX = ".snap";
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    private final long logOffset;
+    private final long lastOrderId;
+    private final long entryCount;
+
+    private OrderSnapshot(long logOffset, long lastOrderId, long entryCount) {
+        this.logOffset = logOffset;
+        this.lastOrderId = lastOrderId;
+        this.entryCount = entryCount;
+    }
+
+    long getLogOffset() {
+        return logOffset;
+    }
+
+    long getLastOrderId() {
+        return lastOrderId;
+    }
+
+    long getEntryCount() {
+        return entryCount;
+    }
+
+    static Path write(Path directory, long logOffset, long lastOrderId, OffHeapHashIndex.Snapshot index) throws IOException {
+        Path target = directory.resolve(String.format("%s%016x%s", PREFIX, logOffset, SUFFIX));
+        Path temp = directory.resolve(target.getFileName() + TEMP_SUFFIX);
+        CRC32C crc = new CRC32C();
+        try (FileOutputStream file = new FileOutputStream(temp.toFile());
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new CheckedOutputStream(file, crc), 64 * 1024))) {
+            out.writeLong(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(0);
+            out.writeLong(logOffset);
+            out.writeLong(lastOrderId);
+            out.writeLong(index.size());
+            IOException[] failure = new IOException[1];
+            index.forEach((key, value) -> {
+                if (failure[0] != null) {
+                    return;
+                }
+                try {
+                    out.writeLong(key);
+                    out.writeLong(value);
+                } catch (IOException e) {
+                    failure[0] = e;
+                }
+            });
+            if (failure[0] != null) {
+                throw failure[0];
+            }
+            out.flush(); // 버퍼를 비워야 crc 에 지금까지의 byte 가 모두 들어간다.
+            out.writeInt((int) crc.getValue());
+            out.flush();
+            file.getChannel().force(true);
+        }
+        Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        forceDirectory(directory);
+        deleteOld(directory);
+        return target;
+    }
+
+    /**
+     * 온전한 스냅샷 중 maxLogOffset 을 넘지 않는 가장 최근 것을 읽는다. 항목은 consumer 로 넘긴다.
+     *
+     * @return 없으면 null
+     */
+    static OrderSnapshot loadLatest(Path directory, long maxLogOffset, OffHeapHashIndex.EntryConsumer consumer) throws IOException {
+        List<Path> snapshots = list(directory);
+        for (int i = snapshots.size() - 1; i >= 0; i--) {
+            Path path = snapshots.get(i);
+            try {
+                OrderSnapshot snapshot = read(path, maxLogOffset, consumer);
+                if (snapshot != null) {
+                    return snapshot;
+                }
+            } catch (IOException | IllegalStateException e) {
+                log.warn("[orderSnapshot] 스냅샷을 읽지 못해서 이전 스냅샷을 사용합니다. path={} cause={}", path, e.toString());
+            }
+        }
+        return null;
+    }
+
+    /**
+     * crc 를 먼저 확인하고(한번 읽기), 맞으면 다시 읽으면서 항목을 consumer 로 넘긴다.
+     */
+    private static OrderSnapshot read(Path path, long maxLogOffset, OffHeapHashIndex.EntryConsumer consumer) throws IOException {
+        verifyCrc(path);
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path), 64 * 1024))) {
+            if (in.readLong() != MAGIC || in.readInt() != VERSION) {
+                throw new IllegalStateException("스냅샷 파일이 아닙니다. path=" + path);
+            }
+            in.readInt();
+            long logOffset = in.readLong();
+            long lastOrderId = in.readLong();
+            long entryCount = in.readLong();
+            if (logOffset > maxLogOffset) {
+                log.warn("[orderSnapshot] 로그보다 앞선 스냅샷은 사용하지 않습니다. path={}", path);
+                return null;
+            }
+            for (long i = 0; i < entryCount; i++) {
+                consumer.accept(in.readLong(), in.readLong());
+            }
+            return new OrderSnapshot(logOffset, lastOrderId, entryCount);
+        }
+    }
+
+    private static void verifyCrc(Path path) throws IOException {
+        long size = Files.size(path);
+        if (size < HEADER_SIZE + 4) {
+            throw new IllegalStateException("스냅샷 파일이 잘렸습니다. path=" + path);
+        }
+        CRC32C crc = new CRC32C();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path), 64 * 1024))) {
+            byte[] buffer = new byte[64 * 1024];
+            long remaining = size - 4;
+            while (remaining > 0) {
+                int read = in.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+                if (read < 0) {
+                    throw new IllegalStateException("스냅샷 파일이 잘렸습니다. path=" + path);
+                }
+                crc.update(buffer, 0, read);
+                remaining -= read;
+            }
+            if (in.readInt() != (int) crc.getValue()) {
+                throw new IllegalStateException("스냅샷 crc 가 맞지 않습니다. path=" + path);
+            }
+        }
+    }
+
+    static List<Path> list(Path directory) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(path -> {
+                String name = path.getFileName().toString();
+                return name.startsWith(PREFIX) && name.endsWith(SUFFIX);
+            }).sorted().collect(Collectors.toList());
+        }
+    }
+
+    private static void deleteOld(Path directory) throws IOException {
+        List<Path> snapshots = list(directory);
+        for (Path old : snapshots.subList(0, Math.max(0, snapshots.size() - KEEP))) {
+            Files.deleteIfExists(old);
+        }
+    }
+
+    /**
+     * 이름 바꾸기까지 디스크에 반영한다. 지원하지 않는 OS 에서는 무시한다.
+     */
+    private static void forceDirectory(Path directory) {
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            log.debug("[orderSnapshot] directory force not supported {}", e.toString());
+        }
+    }
+}
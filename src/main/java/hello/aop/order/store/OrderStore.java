@@ -0,0 +1,315 @@
+package hello.aop.order.store;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Comparator;
+import java.util.Optional;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+
+/**
+ * OrderRepository 가 사용하는 내장 주문 저장소
+ *
+ * 외부 DB 없이 로컬 디스크의 OrderLog 에 주문을 쌓는다. save() 는 group commit 으로 디스크 반영까지 기다린다.
+ * 여러 건을 한번에 반영하려면 append() 를 여러번 부른 뒤 sync() 를 한번 부른다.
+ *
+ * 조회(findByItemId, exists)는 itemId 의 64bit 해시 -> 가장 최근 주문의 로그 위치 인덱스(OffHeapHashIndex)로 한다.
+ * 인덱스 앞에 Bloom filter 를 두면 없는 상품 조회는 인덱스를 찾지 않고 바로 끝난다. (expectedItems 를 0 으로 주면 사용하지 않는다.)
+ * append() 한 주문은 sync() 전에도 조회된다.
+ *
+ * 인덱스는 메모리에만 있다. snapshot() 은 인덱스와 마지막 주문 번호를 로그 위치 하나에 맞춰 파일(OrderSnapshot)로 남기고,
+ * open() 할 때는 가장 최근 스냅샷을 읽은 뒤 그 위치 뒤의 로그만 다시 읽는다. (스냅샷이 없으면 로그 전체)
+ *  - 스냅샷은 append lock 안에서 로그 위치와 마지막 주문 번호만 읽는다. 인덱스는 lock 밖에서 페이지씩 복사하므로
+ *    그 위치 뒤의 주문이 일부 섞일 수 있지만, open() 이 그 위치부터 다시 읽으면서 putIfGreater 로 맞춘다.
+ *  - 스냅샷이 가리키는 레코드는 파일을 쓰기 전에 sync() 로 디스크에 반영한다.
+ *  - scheduleSnapshots() 로 주기적으로 찍고, close() 할 때도 한번 찍는다.
+ *
+ * -Dorder.store.path=<디렉토리> 를 주지 않으면 임시 디렉토리에 만들고, close() 할 때 지운다. (스냅샷도 찍지 않는다.)
+ * -Dorder.store.snapshot-interval=<ms> 로 openDefault() 의 스냅샷 주기를 바꾼다. (기본 60초, 0 이면 주기적으로 찍지 않는다.)
+ */
+@Slf4j
+public class OrderStore implements AutoCloseable {
+
+    public static final String PATH_PROPERTY = "order.store.path";
+    public static final String SNAPSHOT_INTERVAL_PROPERTY = "order.store.snapshot-interval";
+    public static final long DEFAULT_SNAPSHOT_INTERVAL_MILLIS = 60_000;
+    public static final int DEFAULT_EXPECTED_ITEMS = 1 << 20;
+    private static final double BLOOM_FPP = 0.01;
+    private static final int INITIAL_INDEX_SIZE = 4096;
+
+    private final OrderLog orderLog;
+    private final boolean temporary;
+    private final AtomicLong lastOrderId = new AtomicLong();
+    private final OrderLog.RecordConsumer onAppend = this::onAppend;
+
+    private final OffHeapHashIndex index;
+    private final BloomFilter bloomFilter;
+    private final LongAdder bloomRejected = new LongAdder();
+
+    private final long snapshotEntries;
+    private final long replayedRecords;
+    private long lastSnapshotOffset = -1; // synchronized snapshot()
+    private volatile ScheduledExecutorService snapshotScheduler;
+
+    private OrderStore(OrderLog orderLog, boolean temporary, int expectedItems) {
+        this.orderLog = orderLog;
+        this.temporary = temporary;
+        this.index = new OffHeapHashIndex(INITIAL_INDEX_SIZE); // 작게 시작해서 필요한 만큼 늘린다.
+        this.bloomFilter = expectedItems > 0 ? new BloomFilter(expectedItems, BLOOM_FPP) : null;
+
+        long start = System.nanoTime();
+        OrderSnapshot snapshot = loadSnapshot();
+        long from = 0;
+        if (snapshot != null) {
+            from = snapshot.getLogOffset();
+            lastOrderId.set(snapshot.getLastOrderId());
+            lastSnapshotOffset = from;
+        }
+        LongAdder replayed = new LongAdder();
+        orderLog.replay(from, (offset, record) -> {
+            onAppend(offset, record);
+            replayed.increment();
+        });
+        this.snapshotEntries = snapshot == null ? 0 : snapshot.getEntryCount();
+        this.replayedRecords = replayed.sum();
+        log.info("[orderStore] {} recovered snapshotEntries={} replayedRecords={} time={}ms", orderLog.getDirectory(),
+                snapshotEntries, replayedRecords, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+    }
+
+    public static OrderStore open(Path directory) {
+        return open(directory, OrderLog.DEFAULT_SEGMENT_SIZE, DEFAULT_EXPECTED_ITEMS);
+    }
+
+    /**
+     * @param expectedItems Bloom filter 크기를 정하는 예상 상품 수, 0 이면 Bloom filter 를 쓰지 않는다.
+     */
+    public static OrderStore open(Path directory, int segmentSize, int expectedItems) {
+        return new OrderStore(OrderLog.open(directory, segmentSize), false, expectedItems);
+    }
+
+    /**
+     * -Dorder.store.path 에 열고 주기적으로 스냅샷을 찍는다. 없으면 임시 디렉토리에 연다.
+     */
+    public static OrderStore openDefault() {
+        String path = System.getProperty(PATH_PROPERTY);
+        if (path != null && !path.isEmpty()) {
+            OrderStore store = open(Paths.get(path));
+            long interval = snapshotIntervalMillis();
+            if (interval > 0) {
+                store.scheduleSnapshots(interval);
+            }
+            return store;
+        }
+        try {
+            Path directory = Files.createTempDirectory("order-store");
+            log.info("[orderStore] {} 가 없어서 임시 디렉토리를 사용합니다. directory={}", PATH_PROPERTY, directory);
+            return new OrderStore(OrderLog.open(directory), true, DEFAULT_EXPECTED_ITEMS);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * openDefault() 의 스냅샷 주기 (ShardedOrderStore.openDefault() 도 같은 주기를 쓴다.)
+     */
+    static long snapshotIntervalMillis() {
+        return Long.getLong(SNAPSHOT_INTERVAL_PROPERTY, DEFAULT_SNAPSHOT_INTERVAL_MILLIS);
+    }
+
+    /**
+     * 디스크에 반영될 때까지 기다린다.
+     *
+     * @return 로그 위치
+     */
+    public long save(OrderRecord record) {
+        long offset = append(record);
+        orderLog.sync();
+        return offset;
+    }
+
+    /**
+     * page cache 에만 쓴다. 반영은 sync()
+     */
+    public long append(OrderRecord record) {
+        return orderLog.append(record, onAppend);
+    }
+
+    public void sync() {
+        orderLog.sync();
+    }
+
+    public OrderRecord read(long offset) {
+        return orderLog.read(offset);
+    }
+
+    /**
+     * @return 상품의 가장 최근 주문
+     */
+    public Optional<OrderRecord> findByItemId(String itemId) {
+        long hash = ItemHash.hash(itemId);
+        if (bloomFilter != null && !bloomFilter.mightContain(hash)) {
+            bloomRejected.increment();
+            return Optional.empty();
+        }
+        long offset = index.get(hash);
+        if (offset == OffHeapHashIndex.MISSING) {
+            return Optional.empty();
+        }
+        OrderRecord record = orderLog.read(offset);
+        return record.getItemId().equals(itemId) ? Optional.of(record) : Optional.empty(); // 64bit 해시 충돌
+    }
+
+    public boolean exists(String itemId) {
+        return findByItemId(itemId).isPresent();
+    }
+
+    /**
+     * Bloom filter 만으로 없다고 판단한 조회 수
+     */
+    public long getBloomRejectedCount() {
+        return bloomRejected.sum();
+    }
+
+    public OffHeapHashIndex getIndex() {
+        return index;
+    }
+
+    /**
+     * 저장된 주문 중 가장 큰 주문 번호, 재시작 후 주문 번호를 이어서 발급할 때 사용한다.
+     */
+    public long getLastOrderId() {
+        return lastOrderId.get();
+    }
+
+    /**
+     * 지금 상태를 스냅샷 파일로 남긴다. 마지막 스냅샷 뒤로 쓴 주문이 없으면 찍지 않는다.
+     *
+     * @return 만든 스냅샷 파일, 찍지 않았으면 null
+     */
+    public synchronized Path snapshot() {
+        if (orderLog.getEndOffset() == lastSnapshotOffset) {
+            return null;
+        }
+        long start = System.nanoTime();
+        Captured captured = orderLog.whileAppendsPaused( // 로그 위치와 마지막 주문 번호를 같은 시점으로 맞춘다.
+                () -> new Captured(orderLog.getEndOffset(), lastOrderId.get()));
+        long pausedNanos = System.nanoTime() - start;
+        OffHeapHashIndex.Snapshot entries = index.snapshot(); // logOffset 까지의 주문은 모두 들어 있다.
+        orderLog.sync(); // 스냅샷이 가리키는 레코드(logOffset 뒤에서 섞인 것 포함)가 모두 디스크에 있어야 한다.
+        try {
+            Path path = OrderSnapshot.write(orderLog.getDirectory(), captured.logOffset, captured.lastOrderId, entries);
+            lastSnapshotOffset = captured.logOffset;
+            log.info("[orderStore] snapshot {} entries={} paused={}us time={}ms", path.getFileName(), entries.size(),
+                    TimeUnit.NANOSECONDS.toMicros(pausedNanos), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+            return path;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * 백그라운드 스레드에서 intervalMillis 마다 snapshot() 을 호출한다.
+     */
+    public synchronized void scheduleSnapshots(long intervalMillis) {
+        if (snapshotScheduler != null) {
+            snapshotScheduler.shutdownNow();
+        }
+        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "order-snapshot");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                snapshot();
+            } catch (RuntimeException e) {
+                log.warn("[orderStore] snapshot failed", e);
+            }
+        }, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+        snapshotScheduler = scheduler;
+    }
+
+    /**
+     * open() 할 때 스냅샷에서 읽은 인덱스 항목 수
+     */
+    public long getSnapshotEntries() {
+        return snapshotEntries;
+    }
+
+    /**
+     * open() 할 때 스냅샷 뒤로 다시 읽은 로그 레코드 수
+     */
+    public long getReplayedRecords() {
+        return replayedRecords;
+    }
+
+    public OrderLog getLog() {
+        return orderLog;
+    }
+
+    /**
+     * append lock 안에서 호출된다. (복구할 때는 한 스레드에서)
+     */
+    private void onAppend(long offset, OrderRecord record) {
+        lastOrderId.accumulateAndGet(record.getOrderId(), Math::max);
+        index(ItemHash.hash(record.getItemId()), offset);
+    }
+
+    private void index(long hash, long offset) {
+        index.putIfGreater(hash, offset); // 로그 위치가 클수록 나중 주문
+        if (bloomFilter != null) {
+            bloomFilter.put(hash);
+        }
+    }
+
+    private OrderSnapshot loadSnapshot() {
+        try {
+            return OrderSnapshot.loadLatest(orderLog.getDirectory(), orderLog.getEndOffset(), this::index);
+        } catch (IOException e) {
+            log.warn("[orderStore] 스냅샷 없이 로그 전체를 읽습니다. cause={}", e.toString());
+            return null;
+        }
+    }
+
+    @Override
+    public void close() {
+        ScheduledExecutorService scheduler = snapshotScheduler;
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+        if (!temporary) {
+            snapshot(); // 다음 open() 이 읽을 로그를 줄인다.
+        }
+        orderLog.close();
+        if (temporary) {
+            delete(orderLog.getDirectory());
+        }
+    }
+
+    private static final class Captured {
+        private final long logOffset;
+        private final long lastOrderId;
+
+        private Captured(long logOffset, long lastOrderId) {
+            this.logOffset = logOffset;
+            this.lastOrderId = lastOrderId;
+        }
+    }
+
+    private static void delete(Path directory) {
+        try (Stream<Path> paths = Files.walk(directory)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        } catch (IOException e) {
+            log.warn("[orderStore] 임시 디렉토리를 지우지 못했습니다. directory={}", directory, e);
+        }
+    }
+}
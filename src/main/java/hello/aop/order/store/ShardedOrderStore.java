@@ -0,0 +1,300 @@
+package hello.aop.order.store;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * itemId 해시로 나눈 N 개의 샤드에 주문을 저장한다. 샤드마다 쓰기 스레드가 하나씩 있다. (single writer)
+ *
+ * 샤드는 자기 디렉토리(shard-00, shard-01 ...)의 OrderStore, 고정 크기 MPSC 큐, 쓰기 스레드, 주문 번호를 따로 가진다.
+ * 샤드끼리 공유하는 lock 이나 값이 없으므로 코어 수만큼 샤드를 두면 쓰기 처리량이 거의 코어 수에 비례해서 는다.
+ *  - submit() 은 큐에 넣고 바로 future 를 반환한다. 큐가 가득 차면 자리가 날 때까지 기다린다. (back pressure)
+ *  - 쓰기 스레드는 큐에 모인 만큼(최대 MAX_BATCH) append 한 뒤 sync() 를 한번 하고 future 들을 완료한다.
+ *    OrderStore 의 append lock 은 이 스레드와 (스냅샷을 찍을 때 잠깐) 스냅샷 스레드만 잡는다.
+ *  - 조회는 호출한 스레드에서 해당 샤드의 OrderStore 로 바로 한다.
+ *
+ * openDefault() 로 열면 샤드마다 단일 OrderStore.openDefault() 와 같은 주기로 스냅샷을 찍는다. (-Dorder.store.snapshot-interval)
+ * 그래서 재시작할 때 샤드마다 마지막 스냅샷 뒤의 로그만 다시 읽는다.
+ *
+ * 주문 번호는 샤드마다 shardIndex + 1 에서 시작해서 shardCount 씩 증가하므로 샤드끼리 겹치지 않는다.
+ * 그래서 한번 만든 디렉토리의 샤드 수는 바꿀 수 없다.
+ */
+@Slf4j
+public class ShardedOrderStore implements AutoCloseable {
+
+    public static final String SHARDS_PROPERTY = "order.store.shards";
+    public static final int DEFAULT_QUEUE_CAPACITY = 8192;
+    static final int MAX_BATCH = 512;
+
+    private static final String SHARD_PREFIX = "shard-";
+    private static final long MIN_IDLE_NANOS = TimeUnit.MICROSECONDS.toNanos(20);
+    private static final long MAX_IDLE_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private final Path directory;
+    private final boolean temporary;
+    private final Shard[] shards;
+
+    /**
+     * @param snapshotIntervalMillis 샤드마다 스냅샷을 찍는 주기, 0 이하면 주기적으로 찍지 않는다. (close() 할 때는 찍는다.)
+     */
+    private ShardedOrderStore(Path directory, int shardCount, int queueCapacity, long snapshotIntervalMillis,
+                              boolean temporary) throws IOException {
+        if (shardCount <= 0) {
+            throw new IllegalArgumentException("shardCount 는 1 이상이어야 합니다.");
+        }
+        Files.createDirectories(directory);
+        int existing = shardDirectories(directory).size();
+        if (existing > 0 && existing != shardCount) {
+            throw new IllegalStateException("샤드 수를 바꿀 수 없습니다. directory=" + directory
+                    + " existing=" + existing + " requested=" + shardCount);
+        }
+        this.directory = directory;
+        this.temporary = temporary;
+        this.shards = new Shard[shardCount];
+        for (int i = 0; i < shardCount; i++) {
+            Path shardDirectory = directory.resolve(String.format("%s%02d", SHARD_PREFIX, i));
+            OrderStore store = OrderStore.open(shardDirectory);
+            if (snapshotIntervalMillis > 0) {
+                store.scheduleSnapshots(snapshotIntervalMillis);
+            }
+            shards[i] = new Shard(i, shardCount, store, queueCapacity);
+        }
+        log.info("[shardedOrderStore] {} shards={} queueCapacity={} snapshotInterval={}ms", directory, shardCount,
+                queueCapacity, snapshotIntervalMillis);
+    }
+
+    public static ShardedOrderStore open(Path directory, int shardCount) {
+        return open(directory, shardCount, DEFAULT_QUEUE_CAPACITY);
+    }
+
+    /**
+     * @param queueCapacity 샤드별 큐 크기 (2의 제곱수)
+     */
+    public static ShardedOrderStore open(Path directory, int shardCount, int queueCapacity) {
+        try {
+            return new ShardedOrderStore(directory, shardCount, queueCapacity, 0, false);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * -Dorder.store.path 에 열고 샤드마다 주기적으로 스냅샷을 찍는다. 없으면 임시 디렉토리에 연다. (close() 할 때 지운다.)
+     */
+    public static ShardedOrderStore openDefault(int shardCount) {
+        String path = System.getProperty(OrderStore.PATH_PROPERTY);
+        try {
+            if (path != null && !path.isEmpty()) {
+                return new ShardedOrderStore(Paths.get(path), shardCount, DEFAULT_QUEUE_CAPACITY,
+                        OrderStore.snapshotIntervalMillis(), false);
+            }
+            return new ShardedOrderStore(Files.createTempDirectory("order-store"), shardCount, DEFAULT_QUEUE_CAPACITY, 0, true);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * 주문을 itemId 의 샤드 큐에 넣는다. future 는 디스크에 반영된 뒤 저장한 주문으로 완료된다.
+     */
+    public CompletableFuture<OrderRecord> submit(String itemId) {
+        return shard(itemId).submit(itemId);
+    }
+
+    public Optional<OrderRecord> findByItemId(String itemId) {
+        return shard(itemId).store.findByItemId(itemId);
+    }
+
+    public boolean exists(String itemId) {
+        return shard(itemId).store.exists(itemId);
+    }
+
+    public int shardOf(String itemId) {
+        return (int) Long.remainderUnsigned(ItemHash.hash(itemId), shards.length);
+    }
+
+    public int getShardCount() {
+        return shards.length;
+    }
+
+    public OrderStore getShard(int index) {
+        return shards[index].store;
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    /**
+     * 큐에 남은 주문을 모두 저장하고 쓰기 스레드를 멈춘다.
+     */
+    @Override
+    public void close() {
+        for (Shard shard : shards) {
+            shard.stop();
+        }
+        for (Shard shard : shards) {
+            shard.store.close();
+        }
+        if (temporary) {
+            try (Stream<Path> paths = Files.walk(directory)) {
+                paths.sorted((a, b) -> b.compareTo(a)).forEach(path -> path.toFile().delete());
+            } catch (IOException e) {
+                log.warn("[shardedOrderStore] 임시 디렉토리를 지우지 못했습니다. directory={}", directory, e);
+            }
+        }
+    }
+
+    private Shard shard(String itemId) {
+        return shards[shardOf(itemId)];
+    }
+
+    private static List<Path> shardDirectories(Path directory) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(path -> Files.isDirectory(path) && path.getFileName().toString().startsWith(SHARD_PREFIX))
+                    .collect(Collectors.toList());
+        }
+    }
+
+    private static final class Pending {
+        private final String itemId;
+        private final CompletableFuture<OrderRecord> result = new CompletableFuture<>();
+
+        private Pending(String itemId) {
+            this.itemId = itemId;
+        }
+    }
+
+    private static final class Shard {
+        private final int index;
+        private final int stride;
+        private final OrderStore store;
+        private final MpscArrayQueue<Pending> queue;
+        private final Thread writer;
+
+        private volatile boolean running = true;
+        private volatile boolean idle;
+        private long lastOrderId; // 쓰기 스레드만 사용
+
+        private Shard(int index, int stride, OrderStore store, int queueCapacity) {
+            this.index = index;
+            this.stride = stride;
+            this.store = store;
+            this.queue = new MpscArrayQueue<>(queueCapacity);
+            this.lastOrderId = store.getLastOrderId() == 0 ? index + 1 - stride : store.getLastOrderId();
+            this.writer = new Thread(this::writeLoop, "order-shard-" + index);
+            this.writer.setDaemon(true);
+            this.writer.start();
+        }
+
+        private CompletableFuture<OrderRecord> submit(String itemId) {
+            Pending pending = new Pending(itemId);
+            if (!running) {
+                pending.result.completeExceptionally(new IllegalStateException("닫힌 저장소입니다."));
+                return pending.result;
+            }
+            long parkNanos = MIN_IDLE_NANOS;
+            while (!queue.offer(pending)) { // 가득 찼으면 쓰기 스레드가 비울 때까지 기다린다.
+                LockSupport.unpark(writer);
+                LockSupport.parkNanos(this, parkNanos);
+                parkNanos = Math.min(parkNanos * 2, MAX_IDLE_NANOS);
+            }
+            if (idle) {
+                LockSupport.unpark(writer);
+            }
+            return pending.result;
+        }
+
+        private void writeLoop() {
+            List<Pending> batch = new ArrayList<>(MAX_BATCH);
+            long idleNanos = MIN_IDLE_NANOS;
+            while (running || !queue.isEmpty()) {
+                Pending pending;
+                while (batch.size() < MAX_BATCH && (pending = queue.poll()) != null) {
+                    batch.add(pending);
+                }
+                if (batch.isEmpty()) {
+                    idle = true;
+                    if (queue.isEmpty() && running) {
+                        LockSupport.parkNanos(this, idleNanos);
+                        idleNanos = Math.min(idleNanos * 2, MAX_IDLE_NANOS);
+                    }
+                    idle = false;
+                    continue;
+                }
+                idleNanos = MIN_IDLE_NANOS;
+                write(batch);
+                batch.clear();
+            }
+        }
+
+        /**
+         * 상품마다 따로 쓰고, 쓰지 못한 상품(너무 긴 itemId 등)의 future 만 실패시킨다.
+         * 쓴 레코드는 다음 묶음의 sync() 에서라도 디스크에 반영되므로 실패로 알리면 안 된다.
+         */
+        private void write(List<Pending> batch) {
+            long now = System.currentTimeMillis();
+            OrderRecord[] records = new OrderRecord[batch.size()];
+            boolean appended = false;
+            for (int i = 0; i < batch.size(); i++) {
+                Pending pending = batch.get(i);
+                try {
+                    OrderRecord record = new OrderRecord(lastOrderId + stride, pending.itemId, now);
+                    store.append(record);
+                    lastOrderId = record.getOrderId(); // 쓴 레코드만 번호를 쓴다.
+                    records[i] = record;
+                    appended = true;
+                } catch (RuntimeException e) {
+                    log.warn("[shardedOrderStore] shard={} write failed itemId={}", index, pending.itemId, e);
+                    pending.result.completeExceptionally(e);
+                }
+            }
+            if (!appended) {
+                return;
+            }
+            try {
+                store.sync(); // 묶음 전체에 force 한번
+            } catch (RuntimeException e) {
+                log.warn("[shardedOrderStore] shard={} sync failed", index, e);
+                for (int i = 0; i < batch.size(); i++) {
+                    if (records[i] != null) {
+                        batch.get(i).result.completeExceptionally(e);
+                    }
+                }
+                return;
+            }
+            for (int i = 0; i < batch.size(); i++) {
+                if (records[i] != null) {
+                    batch.get(i).result.complete(records[i]);
+                }
+            }
+        }
+
+        private void stop() {
+            running = false;
+            LockSupport.unpark(writer);
+            try {
+                writer.join(TimeUnit.SECONDS.toMillis(10));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            Pending pending;
+            while ((pending = queue.poll()) != null) { // 멈추는 중에 들어온 주문
+                pending.result.completeExceptionally(new IllegalStateException("닫힌 저장소입니다."));
+            }
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package hello.aop.support.eventlog;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 어드바이스 실행(before, after 등)을 이벤트 로그에 ADVICE 이벤트로 남긴다. (AspectV6Advice, CallLogAspect)
+ *
+ * -Dtrace.event-log.dir=<디렉토리> 를 줄 때만 남긴다. TraceSink 가 span 을 남기는 것과 같은 설정이고, 파일은 advice-<시각> 디렉토리에 쓴다.
+ * 설정이 없으면 record() 는 이름도 만들지 않고 바로 돌아간다.
+ * 프로세스가 끝날 때 닫는다. setWriter() 로 다른 writer 를 지정할 수도 있다. (테스트)
+ */
+@Slf4j
+public final class AdviceEventLog {
+
+    public static final String DIR_PROPERTY = "trace.event-log.dir"; // TraceSink.EVENT_LOG_DIR_PROPERTY 와 같다.
+
+    private static final long BASE_EPOCH_MICROS = TimeUnit.MILLISECONDS.toMicros(System.currentTimeMillis());
+    private static final long BASE_NANOS = System.nanoTime();
+
+    private static volatile EventLogWriter writer = fromProperty();
+
+    private AdviceEventLog() {
+    }
+
+    public static boolean isEnabled() {
+        return writer != null;
+    }
+
+    /**
+     * "tag subject" 이름으로 지금 시각의 ADVICE 이벤트를 남긴다.
+     */
+    public static void record(String tag, Object subject) {
+        EventLogWriter current = writer;
+        if (current == null) {
+            return;
+        }
+        long timestampMicros = BASE_EPOCH_MICROS + (System.nanoTime() - BASE_NANOS) / 1000;
+        current.write(tag + " " + subject, timestampMicros, Thread.currentThread().getId());
+    }
+
+    /**
+     * @param writer null 이면 남기지 않는다. 이전 writer 는 닫지 않는다.
+     * @return 이전 writer
+     */
+    public static EventLogWriter setWriter(EventLogWriter writer) {
+        EventLogWriter previous = AdviceEventLog.writer;
+        AdviceEventLog.writer = writer;
+        return previous;
+    }
+
+    private static EventLogWriter fromProperty() {
+        String directory = System.getProperty(DIR_PROPERTY);
+        if (directory == null || directory.isEmpty()) {
+            return null;
+        }
+        Path path = Paths.get(directory, "advice-" + System.currentTimeMillis());
+        EventLogWriter opened = new EventLogWriter(path);
+        Runtime.getRuntime().addShutdownHook(new Thread(opened::close, "advice-event-log"));
+        log.info("[adviceEventLog] event log={}", path);
+        return opened;
+    }
+}
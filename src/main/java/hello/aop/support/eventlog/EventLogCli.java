@@ -0,0 +1,116 @@
+package hello.aop.support.eventlog;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+
+/**
+ * 이벤트 로그를 텍스트나 Chrome trace event JSON 으로 바꿔 표준 출력에 쓴다.
+ *
+ *  java -cp ... hello.aop.support.eventlog.EventLogCli <디렉토리> [text|chrome]
+ *
+ * chrome 형식은 chrome://tracing 이나 https://ui.perfetto.dev 에서 열 수 있다.
+ */
+public class EventLogCli {
+
+    public static void main(String[] args) {
+        if (args.length < 1) {
+            System.err.println("usage: EventLogCli <directory> [text|chrome]");
+            System.exit(1);
+        }
+        EventLogReader reader = new EventLogReader(Paths.get(args[0]));
+        String format = args.length > 1 ? args[1] : "text";
+
+        PrintWriter out = new PrintWriter(new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8)));
+        if ("chrome".equals(format)) {
+            writeChromeTrace(reader, out);
+        } else {
+            writeText(reader, out);
+        }
+        out.flush();
+    }
+
+    /**
+     * 1700000000000000 thread=1 |-->String hello.aop.exam.ExamRepository.save(String) SPAN 120us span=3 parent=2
+     */
+    public static void writeText(EventLogReader reader, Writer writer) {
+        PrintWriter out = new PrintWriter(writer);
+        reader.forEach(event -> {
+            StringBuilder sb = new StringBuilder();
+            sb.append(event.getTimestampMicros()).append(" thread=").append(event.getThreadId()).append(' ');
+            for (int i = 1; i < event.getDepth(); i++) {
+                sb.append("|   ");
+            }
+            if (event.getDepth() > 0) {
+                sb.append("|-->");
+            }
+            sb.append(event.getName()).append(' ').append(event.getType());
+            if (event.getType() != EventType.ADVICE) {
+                sb.append(' ').append(event.getDurationNanos() / 1000).append("us")
+                        .append(" span=").append(event.getSpanId()).append(" parent=").append(event.getParentSpanId());
+            }
+            if (event.isError()) {
+                sb.append(" error");
+            }
+            out.println(sb);
+        });
+        out.flush();
+    }
+
+    /**
+     * Trace Event Format : span 은 완료 이벤트("ph":"X"), 어드바이스는 순간 이벤트("ph":"i")
+     */
+    public static void writeChromeTrace(EventLogReader reader, Writer writer) {
+        try {
+            writer.write("{\"traceEvents\":[");
+            boolean[] first = {true};
+            reader.forEach(event -> {
+                StringBuilder sb = new StringBuilder();
+                sb.append(first[0] ? "\n" : ",\n");
+                first[0] = false;
+                sb.append("{\"name\":");
+                appendJsonString(sb, event.getName());
+                sb.append(",\"cat\":\"").append(event.getType()).append('"');
+                if (event.getType() == EventType.ADVICE) {
+                    sb.append(",\"ph\":\"i\",\"s\":\"t\"");
+                } else {
+                    sb.append(",\"ph\":\"X\",\"dur\":").append(event.getDurationNanos() / 1000.0);
+                }
+                sb.append(",\"ts\":").append(event.getTimestampMicros())
+                        .append(",\"pid\":1,\"tid\":").append(event.getThreadId())
+                        .append(",\"args\":{\"span\":").append(event.getSpanId())
+                        .append(",\"parent\":").append(event.getParentSpanId())
+                        .append(",\"error\":").append(event.isError()).append("}}");
+                try {
+                    writer.write(sb.toString());
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            writer.write("\n]}\n");
+            writer.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void appendJsonString(StringBuilder sb, String value) {
+        sb.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                sb.append('\\').append(c);
+            } else if (c < 0x20) {
+                sb.append(String.format("\\u%04x", (int) c));
+            } else {
+                sb.append(c);
+            }
+        }
+        sb.append('"');
+    }
+}
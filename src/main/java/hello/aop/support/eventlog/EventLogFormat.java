@@ -0,0 +1,52 @@
+package hello.aop.support.eventlog;
+
+/**
+ * 이벤트 로그 파일 형식
+ *
+ * 디렉토리 하나에 세그먼트 파일(events-000000.bin, events-000001.bin ...)과 문자열 테이블(strings.bin)을 둔다.
+ *
+ * 세그먼트 : 헤더 16 byte [long MAGIC][int VERSION][int RECORD_SIZE] 뒤로 고정 크기 레코드가 이어진다.
+ * 레코드(48 byte, big endian)
+ *   0  int   marker      RECORD_MARKER | type << 8 | flags, 0 이면 아직 쓰지 않은 자리 (파일의 끝)
+ *   4  int   nameId      문자열 테이블 번호
+ *   8  long  timestamp   시작 시각 (epoch us)
+ *   16 long  duration    걸린 시간 (ns)
+ *   24 long  spanId
+ *   32 long  parentSpanId
+ *   40 int   threadId
+ *   44 short depth
+ *   46 short reserved
+ * marker 는 나머지 필드를 모두 쓴 다음 마지막에 쓴다. 중간에 프로세스가 죽어도 반쯤 쓴 레코드는 읽지 않는다.
+ *
+ * 문자열 테이블 : [int id][int length][UTF-8 bytes] 가 새 문자열이 나올 때마다 이어진다.
+ */
+final class EventLogFormat {
+
+    static final long MAGIC = 0x414F_5045_564C_4F47L; // "AOPEVLOG"
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 16;
+    static final int RECORD_SIZE = 48;
+
+    static final int RECORD_MARKER = 0x4556_0000; // "EV"
+    static final int MARKER_MASK = 0xFFFF_0000;
+    static final int FLAG_ERROR = 1;
+
+    static final String STRINGS_FILE = "strings.bin";
+    static final String SEGMENT_PREFIX = "events-";
+    static final String SEGMENT_SUFFIX = ".bin";
+
+    static final int OFFSET_NAME = 4;
+    static final int OFFSET_TIMESTAMP = 8;
+    static final int OFFSET_DURATION = 16;
+    static final int OFFSET_SPAN = 24;
+    static final int OFFSET_PARENT = 32;
+    static final int OFFSET_THREAD = 40;
+    static final int OFFSET_DEPTH = 44;
+
+    private EventLogFormat() {
+    }
+
+    static String segmentName(int index) {
+        return String.format("%s%06d%s", SEGMENT_PREFIX, index, SEGMENT_SUFFIX);
+    }
+}
@@ -0,0 +1,166 @@
+package hello.aop.support.eventlog;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static hello.aop.support.eventlog.EventLogFormat.*;
+
+/**
+ * EventLogWriter 가 남긴 디렉토리를 세그먼트 순서대로 읽는다. 오프라인 분석용이다.
+ */
+public class EventLogReader {
+
+    private static final EventType[] TYPES = EventType.values();
+
+    private final Path directory;
+
+    public EventLogReader(Path directory) {
+        this.directory = directory;
+    }
+
+    public List<Event> readAll() {
+        List<Event> events = new ArrayList<>();
+        forEach(events::add);
+        return events;
+    }
+
+    public void forEach(Consumer<Event> consumer) {
+        try {
+            Map<Integer, String> strings = readStrings();
+            for (Path segment : segments()) {
+                readSegment(segment, strings, consumer);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private List<Path> segments() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(path -> {
+                String name = path.getFileName().toString();
+                return name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX);
+            }).sorted().collect(Collectors.toList()); // 파일 이름에 0 을 채운 번호가 있으므로 이름순이 곧 쓴 순서
+        }
+    }
+
+    private Map<Integer, String> readStrings() throws IOException {
+        Map<Integer, String> strings = new HashMap<>();
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(directory.resolve(STRINGS_FILE)));
+        while (buffer.remaining() >= 8) {
+            int id = buffer.getInt();
+            int length = buffer.getInt();
+            if (length > buffer.remaining()) {
+                break; // 쓰다 만 항목
+            }
+            byte[] bytes = new byte[length];
+            buffer.get(bytes);
+            strings.put(id, new String(bytes, StandardCharsets.UTF_8));
+        }
+        return strings;
+    }
+
+    private void readSegment(Path path, Map<Integer, String> strings, Consumer<Event> consumer) throws IOException {
+        try (FileChannel channel = FileChannel.open(path)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.limit() < HEADER_SIZE || buffer.getLong(0) != MAGIC) {
+                throw new IllegalStateException("이벤트 로그 파일이 아닙니다. path=" + path);
+            }
+            if (buffer.getInt(8) != VERSION || buffer.getInt(12) != RECORD_SIZE) {
+                throw new IllegalStateException("지원하지 않는 버전입니다. path=" + path + " version=" + buffer.getInt(8));
+            }
+            for (int offset = HEADER_SIZE; offset + RECORD_SIZE <= buffer.limit(); offset += RECORD_SIZE) {
+                int marker = buffer.getInt(offset);
+                if ((marker & MARKER_MASK) != RECORD_MARKER) {
+                    // 아직 쓰지 않은 자리, 여러 스레드가 쓰다 멈춘 경우 사이사이에 빈 자리가 있을 수 있으므로 끝까지 본다.
+                    continue;
+                }
+                int nameId = buffer.getInt(offset + OFFSET_NAME);
+                consumer.accept(new Event(
+                        TYPES[(marker >>> 8) & 0xFF],
+                        strings.getOrDefault(nameId, "#" + nameId),
+                        buffer.getLong(offset + OFFSET_TIMESTAMP),
+                        buffer.getLong(offset + OFFSET_DURATION),
+                        buffer.getLong(offset + OFFSET_SPAN),
+                        buffer.getLong(offset + OFFSET_PARENT),
+                        buffer.getInt(offset + OFFSET_THREAD),
+                        buffer.getShort(offset + OFFSET_DEPTH),
+                        (marker & FLAG_ERROR) != 0));
+            }
+        }
+    }
+
+    public static final class Event {
+        private final EventType type;
+        private final String name;
+        private final long timestampMicros;
+        private final long durationNanos;
+        private final long spanId;
+        private final long parentSpanId;
+        private final int threadId;
+        private final int depth;
+        private final boolean error;
+
+        Event(EventType type, String name, long timestampMicros, long durationNanos, long spanId, long parentSpanId,
+              int threadId, int depth, boolean error) {
+            this.type = type;
+            this.name = name;
+            this.timestampMicros = timestampMicros;
+            this.durationNanos = durationNanos;
+            this.spanId = spanId;
+            this.parentSpanId = parentSpanId;
+            this.threadId = threadId;
+            this.depth = depth;
+            this.error = error;
+        }
+
+        public EventType getType() {
+            return type;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public long getTimestampMicros() {
+            return timestampMicros;
+        }
+
+        public long getDurationNanos() {
+            return durationNanos;
+        }
+
+        public long getSpanId() {
+            return spanId;
+        }
+
+        public long getParentSpanId() {
+            return parentSpanId;
+        }
+
+        public int getThreadId() {
+            return threadId;
+        }
+
+        public int getDepth() {
+            return depth;
+        }
+
+        public boolean isError() {
+            return error;
+        }
+    }
+}
@@ -0,0 +1,213 @@
+package hello.aop.support.eventlog;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import static hello.aop.support.eventlog.EventLogFormat.*;
+
+/**
+ * 어스펙트 이벤트를 메모리 맵 파일에 고정 크기 바이너리 레코드로 남긴다. (형식은 EventLogFormat)
+ *
+ * 세그먼트 파일을 미리 segmentSize 만큼 만들어 MappedByteBuffer 로 매핑해두고, 레코드는 메모리에 쓰듯이 쓴다.
+ * 이벤트마다 write 시스템 콜이 없고, 디스크 반영은 OS 의 page cache 가 알아서 한다.
+ *  - 여러 스레드가 동시에 써도 된다. 세그먼트 안의 자리는 AtomicInteger 로 나눠 가지고, 서로 다른 위치에만 쓴다.
+ *  - 세그먼트가 가득 차면 자리를 못 받은 스레드 하나가 다음 세그먼트를 연다. (이때만 lock)
+ *    이미 닫혔으면 다음 세그먼트를 열지 않고 이벤트를 버린다.
+ *  - 메서드 시그니처 같은 문자열은 한번만 문자열 테이블에 쓰고, 레코드에는 번호만 남긴다.
+ *
+ * 읽을 때는 EventLogReader, 텍스트/Chrome trace 로 바꿀 때는 EventLogCli 를 사용한다.
+ */
+public class EventLogWriter implements AutoCloseable {
+
+    public static final int DEFAULT_SEGMENT_SIZE = 64 * 1024 * 1024;
+
+    private final Path directory;
+    private final int segmentSize;
+
+    private final ConcurrentMap<String, Integer> stringIds = new ConcurrentHashMap<>();
+    private final FileChannel strings;
+    private int stringCount;
+
+    private volatile Segment current;
+    private volatile boolean closed;
+    private final LongAdder written = new LongAdder();
+
+    public EventLogWriter(Path directory) {
+        this(directory, DEFAULT_SEGMENT_SIZE);
+    }
+
+    /**
+     * @param segmentSize 세그먼트 파일 하나의 크기 (byte), 다 차면 다음 파일로 넘어간다.
+     */
+    public EventLogWriter(Path directory, int segmentSize) {
+        if (segmentSize < HEADER_SIZE + RECORD_SIZE) {
+            throw new IllegalArgumentException("segmentSize 가 너무 작습니다. segmentSize=" + segmentSize);
+        }
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        try {
+            Files.createDirectories(directory);
+            this.strings = FileChannel.open(directory.resolve(STRINGS_FILE),
+                    StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+            this.current = openSegment(0);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * 시작 시각과 걸린 시간이 있는 이벤트 (span)
+     */
+    public void write(EventType type, String name, long timestampMicros, long durationNanos,
+                      long spanId, long parentSpanId, long threadId, int depth, boolean error) {
+        if (closed) {
+            return;
+        }
+        int nameId = stringId(name);
+        while (true) {
+            Segment segment = current;
+            int offset = segment.reserve();
+            if (offset < 0) {
+                if (!roll(segment)) {
+                    return; // 닫혔다.
+                }
+                continue;
+            }
+            MappedByteBuffer buffer = segment.buffer;
+            buffer.putInt(offset + OFFSET_NAME, nameId);
+            buffer.putLong(offset + OFFSET_TIMESTAMP, timestampMicros);
+            buffer.putLong(offset + OFFSET_DURATION, durationNanos);
+            buffer.putLong(offset + OFFSET_SPAN, spanId);
+            buffer.putLong(offset + OFFSET_PARENT, parentSpanId);
+            buffer.putInt(offset + OFFSET_THREAD, (int) threadId);
+            buffer.putShort(offset + OFFSET_DEPTH, (short) depth);
+            buffer.putInt(offset, RECORD_MARKER | type.ordinal() << 8 | (error ? FLAG_ERROR : 0)); // 마지막에 써서 레코드를 완성한다.
+            written.increment();
+            return;
+        }
+    }
+
+    /**
+     * 한 시점에 일어난 이벤트 (어드바이스 실행 등, AdviceEventLog)
+     */
+    public void write(String name, long timestampMicros, long threadId) {
+        write(EventType.ADVICE, name, timestampMicros, 0, 0, 0, threadId, 0, false);
+    }
+
+    public long getWritten() {
+        return written.sum();
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    /**
+     * 매핑한 내용을 디스크에 반영하고 더 이상 쓰지 않는다.
+     */
+    @Override
+    public synchronized void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        current.buffer.force();
+        try {
+            strings.force(true);
+            strings.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private int stringId(String value) {
+        Integer id = stringIds.get(value);
+        if (id != null) {
+            return id;
+        }
+        return registerString(value);
+    }
+
+    private synchronized int registerString(String value) {
+        Integer id = stringIds.get(value);
+        if (id != null) {
+            return id;
+        }
+        int newId = stringCount++;
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer entry = ByteBuffer.allocate(8 + bytes.length).putInt(newId).putInt(bytes.length).put(bytes);
+        entry.flip();
+        try {
+            while (entry.hasRemaining()) {
+                strings.write(entry);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        stringIds.put(value, newId); // 테이블에 쓴 뒤에 공개한다.
+        return newId;
+    }
+
+    /**
+     * @return 다음 세그먼트에 다시 쓰면 되면 true, 닫혀서 더 쓸 수 없으면 false
+     */
+    private synchronized boolean roll(Segment full) {
+        if (closed) {
+            return false;
+        }
+        if (current != full) {
+            return true; // 다른 스레드가 이미 넘겼다.
+        }
+        try {
+            current = openSegment(full.index + 1);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        full.buffer.force(); // 아직 쓰고 있는 스레드가 있어도 page cache 에는 남는다.
+        return true;
+    }
+
+    private Segment openSegment(int index) throws IOException {
+        Path path = directory.resolve(segmentName(index));
+        try (FileChannel channel = FileChannel.open(path,
+                StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize); // 매핑은 채널을 닫아도 유지된다.
+            buffer.putLong(0, MAGIC);
+            buffer.putInt(8, VERSION);
+            buffer.putInt(12, RECORD_SIZE);
+            return new Segment(index, buffer, segmentSize);
+        }
+    }
+
+    private static final class Segment {
+        private final int index;
+        private final MappedByteBuffer buffer;
+        private final int limit;
+        private final AtomicInteger position = new AtomicInteger(HEADER_SIZE);
+
+        private Segment(int index, MappedByteBuffer buffer, int size) {
+            this.index = index;
+            this.buffer = buffer;
+            this.limit = size - (size - HEADER_SIZE) % RECORD_SIZE;
+        }
+
+        /**
+         * @return 레코드를 쓸 위치, 자리가 없으면 -1
+         */
+        private int reserve() {
+            int offset = position.getAndAdd(RECORD_SIZE);
+            return offset + RECORD_SIZE <= limit ? offset : -1;
+        }
+    }
+}
@@ -0,0 +1,10 @@
+package hello.aop.support.eventlog;
+
+/**
+ * 이벤트 로그 레코드 종류, ordinal 이 파일에 저장되므로 순서를 바꾸지 말고 뒤에 추가한다.
+ */
+public enum EventType {
+    SPAN,          // @Trace 메서드 호출 하나 (시작 시각 + 걸린 시간)
+    RETRY_ATTEMPT, // 재시도 한번
+    ADVICE         // 시간 없이 한 시점에 일어난 어드바이스 실행 (before, after 등)
+}
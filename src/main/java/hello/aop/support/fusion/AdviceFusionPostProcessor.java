@@ -0,0 +1,60 @@
+package hello.aop.support.fusion;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.aop.aspectj.annotation.AnnotationAwareAspectJAutoProxyCreator;
+import org.springframework.aop.config.AopConfigUtils;
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.beans.factory.config.ConfigurableListableBeanFactory;
+import org.springframework.beans.factory.support.BeanDefinitionRegistry;
+import org.springframework.beans.factory.support.BeanDefinitionRegistryPostProcessor;
+import org.springframework.context.EnvironmentAware;
+import org.springframework.core.Ordered;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+/**
+ * 어드바이스 합치기 모드
+ *
+ * aop.advice-fusion=true 이면 스프링 부트가 등록한 자동 프록시 생성기(AnnotationAwareAspectJAutoProxyCreator)를
+ * FusingAspectJAutoProxyCreator 로 바꾼다. 빈 정의의 클래스만 바꾸므로 proxyTargetClass 등 다른 설정은 그대로다.
+ * 생성기를 바꾸는 다른 후처리기보다 먼저 실행한다. (ORDER, 포인트컷 사전 필터는 이 결과를 보고 둘 다 하는 생성기로 바꾼다.)
+ *
+ *  -Daop.advice-fusion=true 또는 application.properties 에 aop.advice-fusion=true
+ */
+@Slf4j
+@Component
+public class AdviceFusionPostProcessor implements BeanDefinitionRegistryPostProcessor, EnvironmentAware, Ordered {
+
+    public static final String PROPERTY = "aop.advice-fusion";
+    public static final int ORDER = Ordered.LOWEST_PRECEDENCE - 100;
+
+    private boolean enabled;
+
+    @Override
+    public void setEnvironment(Environment environment) {
+        this.enabled = environment.getProperty(PROPERTY, Boolean.class, false);
+    }
+
+    @Override
+    public void postProcessBeanDefinitionRegistry(BeanDefinitionRegistry registry) {
+        if (!enabled || !registry.containsBeanDefinition(AopConfigUtils.AUTO_PROXY_CREATOR_BEAN_NAME)) {
+            return;
+        }
+        BeanDefinition definition = registry.getBeanDefinition(AopConfigUtils.AUTO_PROXY_CREATOR_BEAN_NAME);
+        if (AnnotationAwareAspectJAutoProxyCreator.class.getName().equals(definition.getBeanClassName())) {
+            definition.setBeanClassName(FusingAspectJAutoProxyCreator.class.getName());
+            log.info("[adviceFusion] enabled");
+        } else {
+            log.warn("[adviceFusion] 자동 프록시 생성기가 이미 바뀌어서 적용하지 않습니다. creator={}", definition.getBeanClassName());
+        }
+    }
+
+    @Override
+    public int getOrder() {
+        return ORDER;
+    }
+
+    @Override
+    public void postProcessBeanFactory(ConfigurableListableBeanFactory beanFactory) {
+    }
+}
@@ -0,0 +1,233 @@
+package hello.aop.support.fusion;
+
+import org.aopalliance.aop.Advice;
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+import org.aspectj.lang.JoinPoint;
+import org.aspectj.lang.annotation.AfterReturning;
+import org.aspectj.lang.annotation.AfterThrowing;
+import org.springframework.aop.ProxyMethodInvocation;
+import org.springframework.aop.aspectj.AbstractAspectJAdvice;
+import org.springframework.aop.aspectj.AspectInstanceFactory;
+import org.springframework.aop.aspectj.AspectJAfterAdvice;
+import org.springframework.aop.aspectj.AspectJAfterReturningAdvice;
+import org.springframework.aop.aspectj.AspectJAfterThrowingAdvice;
+import org.springframework.aop.aspectj.AspectJAroundAdvice;
+import org.springframework.aop.aspectj.AspectJMethodBeforeAdvice;
+import org.springframework.aop.aspectj.annotation.MetadataAwareAspectInstanceFactory;
+import org.springframework.core.annotation.AnnotationUtils;
+import org.springframework.util.ClassUtils;
+import org.springframework.util.ReflectionUtils;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.lang.reflect.Type;
+import java.util.List;
+
+/**
+ * 여러 어드바이스를 하나로 합친 인터셉터
+ *
+ * 스프링은 어드바이스마다 인터셉터를 하나씩 만들고, 호출할 때마다 인터셉터를 차례로 거치면서
+ * 어드바이스마다 JoinPoint 를 찾고(사용자 속성 맵), 인자를 바인딩하고, 어드바이스 메서드를 리플렉션으로 호출한다.
+ * 여기서는 프록시를 만들 때(체인을 만들 때) 어드바이스 메서드를 (JoinPoint, 값) 형태의 MethodHandle 로 맞춰두고,
+ * 호출할 때는 Step 배열을 순서대로 돌면서 바로 호출한다. JoinPoint 는 호출마다 하나를 만들어서 함께 쓴다.
+ *
+ * 실행 순서와 의미는 스프링 인터셉터와 같다.
+ *  - AROUND : ProceedingJoinPoint.proceed() 를 호출하면 다음 Step 으로 넘어간다. 여러번 호출해도 된다. (재시도)
+ *  - BEFORE : 어드바이스 실행 후 다음 Step
+ *  - AFTER : try { 다음 Step } finally { 어드바이스 }
+ *  - AFTER_RETURNING : 반환 값이 파라미터 타입에 맞을 때만 실행
+ *  - AFTER_THROWING : 예외가 파라미터 타입에 맞을 때만 실행하고 예외는 그대로 던진다.
+ */
+public class FusedAdviceInterceptor implements MethodInterceptor {
+
+    private final Step[] steps;
+    private final boolean around; // AROUND 가 있으면 proceed() 가 여러번 불릴 수 있다.
+
+    FusedAdviceInterceptor(List<Step> steps) {
+        this.steps = steps.toArray(new Step[0]);
+        boolean around = false;
+        for (Step step : this.steps) {
+            around |= step.kind == Kind.AROUND;
+        }
+        this.around = around;
+    }
+
+    @Override
+    public Object invoke(MethodInvocation invocation) throws Throwable {
+        if (!(invocation instanceof ProxyMethodInvocation)) {
+            throw new IllegalStateException("MethodInvocation is not a Spring ProxyMethodInvocation: " + invocation);
+        }
+        return invoke(new FusedJoinPoint(this, (ProxyMethodInvocation) invocation, steps.length), 0);
+    }
+
+    /**
+     * 합친 어드바이스 개수
+     */
+    public int getAdviceCount() {
+        return steps.length;
+    }
+
+    Object invoke(FusedJoinPoint joinPoint, int index) throws Throwable {
+        if (index == steps.length) {
+            return joinPoint.proceedInvocation(around);
+        }
+        Step step = steps[index];
+        switch (step.kind) {
+            case AROUND:
+                return step.handle.invokeExact((JoinPoint) joinPoint.next(index + 1), (Object) null);
+            case BEFORE:
+                Object ignored = step.handle.invokeExact((JoinPoint) joinPoint, (Object) null);
+                return invoke(joinPoint, index + 1);
+            case AFTER:
+                try {
+                    return invoke(joinPoint, index + 1);
+                } finally {
+                    Object unused = step.handle.invokeExact((JoinPoint) joinPoint, (Object) null);
+                }
+            case AFTER_RETURNING:
+                Object result = invoke(joinPoint, index + 1);
+                if (result == null ? step.acceptsNull : step.valueType.isInstance(result)) {
+                    Object unused = step.handle.invokeExact((JoinPoint) joinPoint, result);
+                }
+                return result;
+            case AFTER_THROWING:
+                try {
+                    return invoke(joinPoint, index + 1);
+                } catch (Throwable ex) {
+                    if (step.valueType.isInstance(ex)) {
+                        Object unused = step.handle.invokeExact((JoinPoint) joinPoint, (Object) ex);
+                    }
+                    throw ex;
+                }
+            default:
+                throw new IllegalStateException("unknown advice kind " + step.kind);
+        }
+    }
+
+    enum Kind {
+        AROUND, BEFORE, AFTER, AFTER_RETURNING, AFTER_THROWING
+    }
+
+    /**
+     * 어드바이스 하나. handle 의 타입은 (JoinPoint, Object)Object 로 통일한다.
+     */
+    static final class Step {
+
+        private static final MethodType TYPE = MethodType.methodType(Object.class, JoinPoint.class, Object.class);
+
+        private final Kind kind;
+        private final MethodHandle handle;
+        private final Class<?> valueType; // AFTER_RETURNING, AFTER_THROWING 의 값 타입
+        private final boolean acceptsNull;
+
+        private Step(Kind kind, MethodHandle handle, Class<?> valueType, boolean acceptsNull) {
+            this.kind = kind;
+            this.handle = handle;
+            this.valueType = valueType;
+            this.acceptsNull = acceptsNull;
+        }
+
+        /**
+         * 합칠 수 없는 어드바이스면 null
+         */
+        static Step of(Advice advice, Method method) {
+            if (!(advice instanceof AbstractAspectJAdvice)) {
+                return null;
+            }
+            AbstractAspectJAdvice aspectJAdvice = (AbstractAspectJAdvice) advice;
+            Kind kind = kind(aspectJAdvice);
+            if (kind == null || !isSingleton(aspectJAdvice.getAspectInstanceFactory())) {
+                return null;
+            }
+
+            Method adviceMethod = aspectJAdvice.getAspectJAdviceMethod();
+            String valueName = valueName(kind, adviceMethod);
+            Class<?>[] parameterTypes = adviceMethod.getParameterTypes();
+            Type[] genericTypes = adviceMethod.getGenericParameterTypes();
+            int[] reorder = new int[parameterTypes.length];
+            Class<?>[] erased = new Class<?>[parameterTypes.length];
+            Class<?> valueType = kind == Kind.AFTER_THROWING ? Throwable.class : Object.class;
+            int joinPoints = 0;
+            int values = 0;
+            for (int i = 0; i < parameterTypes.length; i++) {
+                if (JoinPoint.class.isAssignableFrom(parameterTypes[i])) {
+                    joinPoints++;
+                    reorder[i] = 0;
+                    erased[i] = JoinPoint.class;
+                } else {
+                    if (!(genericTypes[i] instanceof Class)) {
+                        return null; // 제네릭 타입 검사는 스프링에 맡긴다.
+                    }
+                    values++;
+                    valueType = parameterTypes[i];
+                    reorder[i] = 1;
+                    erased[i] = Object.class;
+                }
+            }
+            if (joinPoints > 1 || values != (valueName.isEmpty() ? 0 : 1) || (kind == Kind.AROUND && joinPoints == 0)) {
+                return null; // 포인트컷에서 값을 바인딩하는 어드바이스
+            }
+
+            ReflectionUtils.makeAccessible(adviceMethod);
+            MethodHandle handle;
+            try {
+                handle = MethodHandles.lookup().unreflect(adviceMethod);
+            } catch (IllegalAccessException e) {
+                return null;
+            }
+            handle = handle.bindTo(aspectJAdvice.getAspectInstanceFactory().getAspectInstance())
+                    .asType(MethodType.methodType(Object.class, erased));
+            handle = MethodHandles.permuteArguments(handle, TYPE, reorder);
+
+            boolean acceptsNull = (valueType == Object.class && method.getReturnType() == void.class)
+                    || ClassUtils.isAssignable(valueType, method.getReturnType());
+            return new Step(kind, handle, ClassUtils.resolvePrimitiveIfNecessary(valueType), acceptsNull);
+        }
+
+        private static Kind kind(AbstractAspectJAdvice advice) {
+            if (advice instanceof AspectJAroundAdvice) {
+                return Kind.AROUND;
+            }
+            if (advice instanceof AspectJMethodBeforeAdvice) {
+                return Kind.BEFORE;
+            }
+            if (advice instanceof AspectJAfterAdvice) {
+                return Kind.AFTER;
+            }
+            if (advice instanceof AspectJAfterReturningAdvice) {
+                return Kind.AFTER_RETURNING;
+            }
+            if (advice instanceof AspectJAfterThrowingAdvice) {
+                return Kind.AFTER_THROWING;
+            }
+            return null;
+        }
+
+        private static String valueName(Kind kind, Method adviceMethod) {
+            if (kind == Kind.AFTER_RETURNING) {
+                AfterReturning annotation = AnnotationUtils.findAnnotation(adviceMethod, AfterReturning.class);
+                return annotation == null ? "" : annotation.returning();
+            }
+            if (kind == Kind.AFTER_THROWING) {
+                AfterThrowing annotation = AnnotationUtils.findAnnotation(adviceMethod, AfterThrowing.class);
+                return annotation == null ? "" : annotation.throwing();
+            }
+            return "";
+        }
+
+        /**
+         * perthis, pertarget 처럼 대상마다 인스턴스가 다른 애스펙트는 합치지 않는다.
+         */
+        private static boolean isSingleton(AspectInstanceFactory factory) {
+            if (!(factory instanceof MetadataAwareAspectInstanceFactory)) {
+                return false;
+            }
+            MetadataAwareAspectInstanceFactory metadataAware = (MetadataAwareAspectInstanceFactory) factory;
+            return !metadataAware.getAspectMetadata().isPerThisOrPerTarget()
+                    && !metadataAware.getAspectMetadata().isPerTypeWithin();
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package hello.aop.support.fusion;
+
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+import org.springframework.aop.Advisor;
+import org.springframework.aop.IntroductionAdvisor;
+import org.springframework.aop.IntroductionAwareMethodMatcher;
+import org.springframework.aop.MethodMatcher;
+import org.springframework.aop.PointcutAdvisor;
+import org.springframework.aop.framework.Advised;
+import org.springframework.aop.framework.AdvisorChainFactory;
+import org.springframework.aop.framework.adapter.AdvisorAdapterRegistry;
+import org.springframework.aop.framework.adapter.GlobalAdvisorAdapterRegistry;
+import org.springframework.aop.interceptor.ExposeInvocationInterceptor;
+
+import java.io.Serializable;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 메서드 하나에 걸린 @Aspect 어드바이스들을 FusedAdviceInterceptor 하나로 합치는 AdvisorChainFactory
+ *
+ * DefaultAdvisorChainFactory 와 같은 순서로 어드바이저를 고른다. 다른 점은 연달아 있는 "합칠 수 있는" 어드바이스를 묶는 것뿐이다.
+ *  - 합칠 수 있는 어드바이스 : 싱글톤 @Aspect 의 @Around, @Before, @After, @AfterReturning, @AfterThrowing 중
+ *    포인트컷에 실행 시점 검사가 없고, 파라미터가 JoinPoint(ProceedingJoinPoint)와 returning/throwing 값뿐인 것
+ *  - AspectJProxyFactory 는 addAspect() 할 때마다 ExposeInvocationInterceptor 를 추가하는데, 두번째부터는 같은 호출을 다시 노출할 뿐이라 뺀다.
+ *  - 나머지(ExposeInvocationInterceptor, @annotation(retry) 처럼 값을 바인딩하는 어드바이스 등)는 기존 인터셉터 그대로 사이에 둔다.
+ *
+ * 체인은 AdvisedSupport 가 메서드별로 캐시하므로 프록시가 메서드를 처음 호출할 때 한번 만든다.
+ *
+ *  AspectJProxyFactory proxyFactory = new AspectJProxyFactory(target);
+ *  proxyFactory.setAdvisorChainFactory(new FusedAdvisorChainFactory());
+ */
+public class FusedAdvisorChainFactory implements AdvisorChainFactory, Serializable {
+
+    @Override
+    public List<Object> getInterceptorsAndDynamicInterceptionAdvice(Advised config, Method method, Class<?> targetClass) {
+        AdvisorAdapterRegistry registry = GlobalAdvisorAdapterRegistry.getInstance();
+        Advisor[] advisors = config.getAdvisors();
+        Class<?> actualClass = targetClass != null ? targetClass : method.getDeclaringClass();
+        Boolean hasIntroductions = null;
+
+        List<Object> chain = new ArrayList<>(advisors.length);
+        List<FusedAdviceInterceptor.Step> run = new ArrayList<>();
+        boolean exposed = false;
+        for (Advisor advisor : advisors) {
+            if (advisor == ExposeInvocationInterceptor.ADVISOR) {
+                if (exposed) {
+                    continue;
+                }
+                exposed = true;
+            }
+            if (advisor instanceof PointcutAdvisor) {
+                PointcutAdvisor pointcutAdvisor = (PointcutAdvisor) advisor;
+                if (!config.isPreFiltered() && !pointcutAdvisor.getPointcut().getClassFilter().matches(actualClass)) {
+                    continue;
+                }
+                MethodMatcher matcher = pointcutAdvisor.getPointcut().getMethodMatcher();
+                boolean match;
+                if (matcher instanceof IntroductionAwareMethodMatcher) {
+                    if (hasIntroductions == null) {
+                        hasIntroductions = hasMatchingIntroductions(advisors, actualClass);
+                    }
+                    match = ((IntroductionAwareMethodMatcher) matcher).matches(method, actualClass, hasIntroductions);
+                } else {
+                    match = matcher.matches(method, actualClass);
+                }
+                if (!match) {
+                    continue;
+                }
+                FusedAdviceInterceptor.Step step = matcher.isRuntime() ? null : FusedAdviceInterceptor.Step.of(advisor.getAdvice(), method);
+                if (step != null) {
+                    run.add(step);
+                    continue;
+                }
+                flush(run, chain);
+                for (MethodInterceptor interceptor : registry.getInterceptors(advisor)) {
+                    chain.add(matcher.isRuntime() ? new DynamicMatchInterceptor(interceptor, matcher, actualClass) : interceptor);
+                }
+            } else if (advisor instanceof IntroductionAdvisor) {
+                if (config.isPreFiltered() || ((IntroductionAdvisor) advisor).getClassFilter().matches(actualClass)) {
+                    flush(run, chain);
+                    chain.addAll(Arrays.asList(registry.getInterceptors(advisor)));
+                }
+            } else {
+                flush(run, chain);
+                chain.addAll(Arrays.asList(registry.getInterceptors(advisor)));
+            }
+        }
+        flush(run, chain);
+        return chain;
+    }
+
+    private static void flush(List<FusedAdviceInterceptor.Step> run, List<Object> chain) {
+        if (!run.isEmpty()) {
+            chain.add(new FusedAdviceInterceptor(run));
+            run.clear();
+        }
+    }
+
+    private static boolean hasMatchingIntroductions(Advisor[] advisors, Class<?> actualClass) {
+        for (Advisor advisor : advisors) {
+            if (advisor instanceof IntroductionAdvisor && ((IntroductionAdvisor) advisor).getClassFilter().matches(actualClass)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 실행 시점에 인자로 다시 검사해야 하는 포인트컷 (DefaultAdvisorChainFactory 의 InterceptorAndDynamicMethodMatcher 와 같다.)
+     */
+    private static final class DynamicMatchInterceptor implements MethodInterceptor {
+        private final MethodInterceptor interceptor;
+        private final MethodMatcher matcher;
+        private final Class<?> targetClass;
+
+        private DynamicMatchInterceptor(MethodInterceptor interceptor, MethodMatcher matcher, Class<?> targetClass) {
+            this.interceptor = interceptor;
+            this.matcher = matcher;
+            this.targetClass = targetClass;
+        }
+
+        @Override
+        public Object invoke(MethodInvocation invocation) throws Throwable {
+            if (matcher.matches(invocation.getMethod(), targetClass, invocation.getArguments())) {
+                return interceptor.invoke(invocation);
+            }
+            return invocation.proceed();
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package hello.aop.support.fusion;
+
+import org.springframework.aop.ProxyMethodInvocation;
+import org.springframework.aop.aspectj.MethodInvocationProceedingJoinPoint;
+
+/**
+ * FusedAdviceInterceptor 의 JoinPoint
+ *
+ * 시그니처, 인자 등은 스프링의 MethodInvocationProceedingJoinPoint 와 같고, proceed() 만 다음 Step 을 호출하도록 바꿨다.
+ * @Before, @After 등은 호출마다 하나를 함께 쓰고, @Around 는 다음 Step 위치를 가진 것을 따로 받는다.
+ */
+class FusedJoinPoint extends MethodInvocationProceedingJoinPoint {
+
+    private final FusedAdviceInterceptor interceptor;
+    private final ProxyMethodInvocation invocation;
+    private final int nextStep;
+
+    FusedJoinPoint(FusedAdviceInterceptor interceptor, ProxyMethodInvocation invocation, int nextStep) {
+        super(invocation);
+        this.interceptor = interceptor;
+        this.invocation = invocation;
+        this.nextStep = nextStep;
+    }
+
+    FusedJoinPoint next(int nextStep) {
+        return new FusedJoinPoint(interceptor, invocation, nextStep);
+    }
+
+    @Override
+    public Object proceed() throws Throwable {
+        return interceptor.invoke(this, nextStep);
+    }
+
+    /**
+     * 인자를 바꿔서 진행한다. 이후 Step 과 대상은 바뀐 인자를 본다.
+     */
+    @Override
+    public Object proceed(Object[] arguments) throws Throwable {
+        if (arguments.length != invocation.getArguments().length) {
+            throw new IllegalArgumentException("Expecting " + invocation.getArguments().length + " arguments to proceed, " +
+                    "but was passed " + arguments.length + " arguments");
+        }
+        ProxyMethodInvocation changed = (ProxyMethodInvocation) invocation.invocableClone(arguments);
+        return interceptor.invoke(new FusedJoinPoint(interceptor, changed, nextStep), nextStep);
+    }
+
+    /**
+     * 합친 어드바이스가 모두 끝나면 체인의 다음 인터셉터(또는 대상)로 넘어간다.
+     * proceed() 가 여러번 불릴 수 있으면 스프링의 @Around 처럼 복제본으로 진행한다.
+     */
+    Object proceedInvocation(boolean repeatable) throws Throwable {
+        if (repeatable) {
+            return invocation.invocableClone().proceed();
+        }
+        return invocation.proceed();
+    }
+}
@@ -0,0 +1,16 @@
+package hello.aop.support.fusion;
+
+import org.springframework.aop.aspectj.annotation.AnnotationAwareAspectJAutoProxyCreator;
+import org.springframework.aop.framework.ProxyFactory;
+
+/**
+ * 만드는 프록시마다 FusedAdvisorChainFactory 를 사용하는 자동 프록시 생성기
+ * 어드바이저를 찾고 정렬하는 것은 AnnotationAwareAspectJAutoProxyCreator 와 같다.
+ */
+public class FusingAspectJAutoProxyCreator extends AnnotationAwareAspectJAutoProxyCreator {
+
+    @Override
+    protected void customizeProxyFactory(ProxyFactory proxyFactory) {
+        proxyFactory.setAdvisorChainFactory(new FusedAdvisorChainFactory());
+    }
+}
@@ -0,0 +1,16 @@
+package hello.aop.support.pointcut;
+
+import hello.aop.support.fusion.FusedAdvisorChainFactory;
+import org.springframework.aop.framework.ProxyFactory;
+
+/**
+ * 포인트컷 사전 필터와 어드바이스 합치기(aop.advice-fusion)를 같이 켰을 때의 자동 프록시 생성기
+ * 어드바이저는 PrefilteringAspectJAutoProxyCreator 처럼 고르고, 프록시는 FusingAspectJAutoProxyCreator 처럼 만든다.
+ */
+public class FusingPrefilteringAspectJAutoProxyCreator extends PrefilteringAspectJAutoProxyCreator {
+
+    @Override
+    protected void customizeProxyFactory(ProxyFactory proxyFactory) {
+        proxyFactory.setAdvisorChainFactory(new FusedAdvisorChainFactory());
+    }
+}
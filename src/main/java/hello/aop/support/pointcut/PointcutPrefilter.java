@@ -0,0 +1,522 @@
+package hello.aop.support.pointcut;
+
+import org.aspectj.lang.annotation.Pointcut;
+import org.springframework.util.ClassUtils;
+import org.springframework.util.ReflectionUtils;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * AspectJExpressionPointcut 에 묻기 전에 클래스 단위로 "맞을 수 없는" 포인트컷 식을 걸러내는 필터
+ *
+ * 스프링은 시작할 때 빈마다 모든 어드바이저의 포인트컷을 빈의 모든 메서드에 맞춰 본다.(AopUtils.canApply)
+ * 빈과 어드바이저가 많으면 대부분은 패키지부터 다른 조합인데도 AspectJ 의 타입 정보를 만들고 메서드마다 매칭한다.
+ *
+ * 여기서는 식의 execution, within 타입 패턴을 패키지 이름 조각(hello -> aop -> order)으로 된 트라이에 넣는다.
+ * 클래스 하나는 이름을 따라 트라이를 한번 내려가면서 만나는 패턴만 확인한다. 패턴은 와일드카드 앞까지의 경로에 달린다.
+ *  - execution(* hello.aop.order..*(..)) : hello/aop/order 노드, 클래스 또는 부모 클래스/인터페이스 이름이 맞고 메서드 이름도 맞아야 한다.
+ *  - within(hello.aop.member.*Service*) : hello/aop/member 노드, 클래스(또는 바깥 클래스) 이름이 맞아야 한다.
+ *  - execution(* *..*Service.*(..)), execution(* hello(..)) : 루트 노드, 모든 클래스가 확인한다.
+ *  - a && b, a || b, 이름으로 참조한 포인트컷(PointCuts.allOrder())은 WeavingScope 와 같은 방식으로 읽는다.
+ *  - 패키지 없이 쓴 타입 이름(within(MemberServiceImpl))은 AspectJ 처럼 식을 선언한 클래스의 패키지와 java.lang 에서도 찾는다.
+ * 판단할 수 없는 식(!, this, target, args, bean, @annotation 등)은 모든 클래스에서 후보로 남긴다.
+ *
+ * 필터는 넓게 잡는다. 후보로 남은 식이 실제로 맞는지는 AspectJExpressionPointcut 이 정한다.
+ */
+public final class PointcutPrefilter {
+
+    private final Expr[] expressions;
+    private final BitSet unindexed = new BitSet(); // 트라이로 거를 수 없는 식
+    private final TrieNode root = new TrieNode();
+    private int leafCount;
+
+    private PointcutPrefilter(List<String> expressions, List<Class<?>> declaringTypes) {
+        this.expressions = new Expr[expressions.size()];
+        for (int i = 0; i < expressions.size(); i++) {
+            Expr expr = new Parser(expressions.get(i), declaringTypes.get(i), 0).parse();
+            this.expressions[i] = expr;
+            if (expr == Expr.ANY) {
+                unindexed.set(i);
+            }
+        }
+    }
+
+    /**
+     * @param expressions 포인트컷 식, candidates() 가 돌려주는 번호는 이 목록의 순서이다.
+     * @param declaringTypes 식을 선언한 클래스(애스펙트), 이름으로 참조한 포인트컷을 찾을 때 쓴다. 모르면 null
+     */
+    public static PointcutPrefilter of(List<String> expressions, List<Class<?>> declaringTypes) {
+        if (expressions.size() != declaringTypes.size()) {
+            throw new IllegalArgumentException("expressions 와 declaringTypes 의 크기가 다릅니다.");
+        }
+        return new PointcutPrefilter(expressions, declaringTypes);
+    }
+
+    /**
+     * @return targetClass 에 맞을 가능성이 있는 식의 번호
+     */
+    public BitSet candidates(Class<?> targetClass) {
+        BitSet leaves = new BitSet(leafCount);
+        MethodNames methodNames = new MethodNames(targetClass);
+        collectWithin(targetClass, leaves);
+        for (Class<?> type : hierarchy(targetClass)) {
+            collect(type, Leaf.Kind.EXECUTION, leaves, methodNames);
+        }
+        BitSet result = (BitSet) unindexed.clone();
+        for (int i = 0; i < expressions.length; i++) {
+            if (!result.get(i) && expressions[i].matches(leaves)) {
+                result.set(i);
+            }
+        }
+        return result;
+    }
+
+    public int size() {
+        return expressions.length;
+    }
+
+    /**
+     * index 번 식을 트라이로 거를 수 있으면 true
+     */
+    public boolean isIndexed(int index) {
+        return !unindexed.get(index);
+    }
+
+    @Override
+    public String toString() {
+        List<String> descriptions = new ArrayList<>();
+        for (Expr expr : expressions) {
+            descriptions.add(expr.toString());
+        }
+        return descriptions.toString();
+    }
+
+    /**
+     * within 은 코드가 들어 있는 클래스로 판단하므로 바깥 클래스에 있는 내부 클래스의 코드도 맞는다.
+     */
+    private void collectWithin(Class<?> targetClass, BitSet leaves) {
+        for (Class<?> type = targetClass; type != null; type = type.getEnclosingClass()) {
+            collect(type, Leaf.Kind.WITHIN, leaves, null);
+        }
+    }
+
+    private void collect(Class<?> type, Leaf.Kind kind, BitSet leaves, MethodNames methodNames) {
+        String binaryName = type.getName();
+        walk(binaryName, binaryName, kind, leaves, methodNames);
+        if (binaryName.indexOf('$') > 0) { // AspectJ 는 내부 클래스를 Outer.Inner 로도 쓴다.
+            String dotted = binaryName.replace('$', '.');
+            walk(dotted, dotted, kind, leaves, methodNames);
+        }
+    }
+
+    private void walk(String path, String typeName, Leaf.Kind kind, BitSet leaves, MethodNames methodNames) {
+        TrieNode node = root;
+        int start = 0;
+        while (node != null) {
+            node.check(typeName, kind, leaves, methodNames);
+            if (start > path.length()) {
+                break;
+            }
+            int end = path.indexOf('.', start);
+            end = end < 0 ? path.length() : end;
+            node = node.children.get(path.substring(start, end));
+            start = end + 1;
+        }
+    }
+
+    private static Set<Class<?>> hierarchy(Class<?> targetClass) {
+        Set<Class<?>> types = new LinkedHashSet<>();
+        for (Class<?> type = targetClass; type != null; type = type.getSuperclass()) { // Object 의 메서드도 대상이다.
+            types.add(type);
+        }
+        types.addAll(ClassUtils.getAllInterfacesForClassAsSet(targetClass));
+        return types;
+    }
+
+    /**
+     * AspectJ 는 패키지 없이 쓴 타입 이름(within(MemberServiceImpl), execution(* *Service.*(..)))을
+     * 포인트컷을 선언한 클래스의 패키지와 java.lang 에서도 찾는다. 그래서 그 이름들도 같은 패턴으로 트라이에 넣는다.
+     */
+    private Leaf addLeaf(Leaf.Kind kind, String typePattern, String methodPattern, Class<?> declaringType) {
+        List<String> patterns = new ArrayList<>();
+        patterns.add(typePattern);
+        if (!typePattern.startsWith("*..")) {
+            if (declaringType != null && !declaringType.getPackageName().isEmpty()) {
+                patterns.add(declaringType.getPackageName() + "." + typePattern);
+            }
+            patterns.add("java.lang." + typePattern);
+        }
+        Leaf leaf = new Leaf(leafCount++, kind, typePattern, patterns, methodPattern);
+        for (String pattern : patterns) {
+            TrieNode node = root;
+            for (String segment : pattern.split("\\.", -1)) {
+                if (segment.isEmpty() || segment.indexOf('*') >= 0) {
+                    break; // .. 나 와일드카드부터는 트라이에 넣지 않는다.
+                }
+                node = node.children.computeIfAbsent(segment, key -> new TrieNode());
+            }
+            node.leaves.add(leaf);
+        }
+        return leaf;
+    }
+
+    private static final class TrieNode {
+
+        private final Map<String, TrieNode> children = new HashMap<>();
+        private final List<Leaf> leaves = new ArrayList<>();
+
+        private void check(String typeName, Leaf.Kind kind, BitSet matched, MethodNames methodNames) {
+            for (Leaf leaf : leaves) {
+                if (leaf.kind == kind && !matched.get(leaf.id) && leaf.matches(typeName, methodNames)) {
+                    matched.set(leaf.id);
+                }
+            }
+        }
+    }
+
+    /**
+     * execution 또는 within 타입 패턴 하나
+     */
+    private static final class Leaf extends Expr {
+
+        enum Kind { EXECUTION, WITHIN }
+
+        private final int id;
+        private final Kind kind;
+        private final String typePattern;
+        private final Pattern type;
+        private final String methodPattern; // within 이면 null
+        private final Pattern method; // 모든 이름이면 null
+
+        private Leaf(int id, Kind kind, String typePattern, List<String> typePatterns, String methodPattern) {
+            this.id = id;
+            this.kind = kind;
+            this.typePattern = typePattern;
+            List<String> regexes = new ArrayList<>();
+            for (String pattern : typePatterns) {
+                regexes.add("(?:" + toRegex(pattern) + ")");
+            }
+            this.type = Pattern.compile(String.join("|", regexes));
+            this.methodPattern = methodPattern;
+            this.method = methodPattern == null || methodPattern.equals("*") ? null : Pattern.compile(toRegex(methodPattern));
+        }
+
+        private boolean matches(String typeName, MethodNames methodNames) {
+            return type.matcher(typeName).matches() && (method == null || methodNames.anyMatch(method));
+        }
+
+        @Override
+        boolean matches(BitSet leaves) {
+            return leaves.get(id);
+        }
+
+        @Override
+        public String toString() {
+            return kind == Kind.WITHIN ? "within(" + typePattern + ")" : "execution(" + typePattern + "." + methodPattern + ")";
+        }
+
+        /**
+         * AspectJ 이름 패턴을 정규식으로 바꾼다. * 는 . 을 제외한 아무 문자, .. 는 하위 패키지 아무것이나이다.
+         */
+        private static String toRegex(String pattern) {
+            StringBuilder regex = new StringBuilder();
+            int i = 0;
+            if (pattern.startsWith("*..")) {
+                regex.append("(?:.*\\.)?"); // *..*Service 는 기본 패키지의 FooService 도 맞는다.
+                i = 3;
+            }
+            for (; i < pattern.length(); i++) {
+                char c = pattern.charAt(i);
+                if (c == '.' && i + 1 < pattern.length() && pattern.charAt(i + 1) == '.') {
+                    regex.append("\\.(?:.*\\.)?");
+                    i++;
+                } else if (c == '*') {
+                    regex.append("[^.]*");
+                } else {
+                    regex.append(Pattern.quote(String.valueOf(c)));
+                }
+            }
+            return regex.toString();
+        }
+    }
+
+    /**
+     * 스프링이 프록시 대상 메서드를 찾는 범위(클래스, 부모 클래스, 인터페이스의 메서드)의 이름. 필요할 때 한번만 모은다.
+     */
+    private static final class MethodNames {
+
+        private final Class<?> targetClass;
+        private Set<String> names;
+
+        private MethodNames(Class<?> targetClass) {
+            this.targetClass = targetClass;
+        }
+
+        private boolean anyMatch(Pattern pattern) {
+            if (names == null) {
+                names = new HashSet<>();
+                for (Class<?> type : hierarchy(targetClass)) {
+                    for (Method method : ReflectionUtils.getDeclaredMethods(type)) {
+                        names.add(method.getName());
+                    }
+                }
+            }
+            for (String name : names) {
+                if (pattern.matcher(name).matches()) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    private abstract static class Expr {
+
+        static final Expr ANY = new Expr() {
+            @Override
+            boolean matches(BitSet leaves) {
+                return true;
+            }
+
+            @Override
+            public String toString() {
+                return "*";
+            }
+        };
+
+        abstract boolean matches(BitSet leaves);
+
+        static Expr and(Expr left, Expr right) {
+            if (left == ANY) {
+                return right;
+            }
+            if (right == ANY) {
+                return left;
+            }
+            return new Expr() {
+                @Override
+                boolean matches(BitSet leaves) {
+                    return left.matches(leaves) && right.matches(leaves);
+                }
+
+                @Override
+                public String toString() {
+                    return "(" + left + " && " + right + ")";
+                }
+            };
+        }
+
+        static Expr or(List<Expr> exprs) {
+            if (exprs.contains(ANY)) {
+                return ANY;
+            }
+            if (exprs.size() == 1) {
+                return exprs.get(0);
+            }
+            Expr[] children = exprs.toArray(new Expr[0]);
+            return new Expr() {
+                @Override
+                boolean matches(BitSet leaves) {
+                    for (Expr child : children) {
+                        if (child.matches(leaves)) {
+                            return true;
+                        }
+                    }
+                    return false;
+                }
+
+                @Override
+                public String toString() {
+                    return exprs.toString();
+                }
+            };
+        }
+    }
+
+    /**
+     * 포인트컷 식 파서. or := and ('||' and)*, and := unary ('&&' unary)*, unary := '!' unary | '(' or ')' | primitive
+     */
+    private final class Parser {
+
+        private static final int MAX_DEPTH = 16; // 서로 참조하는 포인트컷
+
+        private final String expression;
+        private final Class<?> declaringType;
+        private final int depth;
+        private int pos;
+
+        private Parser(String expression, Class<?> declaringType, int depth) {
+            this.expression = expression;
+            this.declaringType = declaringType;
+            this.depth = depth;
+        }
+
+        private Expr parse() {
+            try {
+                Expr expr = or();
+                skipSpaces();
+                return pos == expression.length() ? expr : Expr.ANY;
+            } catch (RuntimeException e) {
+                return Expr.ANY; // 읽지 못하는 식은 모든 클래스에서 후보로 남긴다.
+            }
+        }
+
+        private Expr or() {
+            List<Expr> exprs = new ArrayList<>();
+            exprs.add(and());
+            while (consume("||")) {
+                exprs.add(and());
+            }
+            return Expr.or(exprs);
+        }
+
+        private Expr and() {
+            Expr expr = unary();
+            while (consume("&&")) {
+                expr = Expr.and(expr, unary());
+            }
+            return expr;
+        }
+
+        private Expr unary() {
+            if (consume("!")) {
+                unary();
+                return Expr.ANY;
+            }
+            if (consume("(")) {
+                Expr expr = or();
+                if (!consume(")")) {
+                    throw new IllegalArgumentException(expression);
+                }
+                return expr;
+            }
+            return primitive();
+        }
+
+        private Expr primitive() {
+            skipSpaces();
+            int start = pos;
+            while (pos < expression.length() && expression.charAt(pos) != '(' && !Character.isWhitespace(expression.charAt(pos))) {
+                pos++;
+            }
+            String name = expression.substring(start, pos);
+            if (!consume("(")) {
+                throw new IllegalArgumentException(expression);
+            }
+            int argsStart = pos;
+            for (int level = 1; level > 0; pos++) {
+                char c = expression.charAt(pos);
+                level += c == '(' ? 1 : c == ')' ? -1 : 0;
+            }
+            String args = expression.substring(argsStart, pos - 1).trim();
+
+            switch (name) {
+                case "execution":
+                    return execution(args);
+                case "within":
+                    return within(args);
+                case "this":
+                case "target":
+                case "args":
+                case "bean":
+                case "@annotation":
+                case "@within":
+                case "@target":
+                case "@args":
+                    return Expr.ANY;
+                default:
+                    return reference(name);
+            }
+        }
+
+        /**
+         * execution([수식어] 반환타입 [선언타입.]메서드이름(파라미터) [throws 예외])
+         */
+        private Expr execution(String args) {
+            String head = args.substring(0, args.indexOf('(')).trim();
+            if (head.indexOf('@') >= 0) {
+                return Expr.ANY; // 어노테이션 패턴
+            }
+            String signature = head.substring(head.lastIndexOf(' ') + 1);
+            int lastDot = signature.lastIndexOf('.');
+            String type = lastDot <= 0 ? "*..*" : signature.substring(0, lastDot); // 타입이 없으면 모든 타입
+            if (type.endsWith(".")) {
+                type = type + ".*"; // hello.aop.order..*(..) 는 hello.aop.order 와 하위 패키지의 모든 타입
+            }
+            if (type.endsWith("+")) {
+                type = type.substring(0, type.length() - 1); // 부모 타입은 원래 확인한다.
+            }
+            String method = signature.substring(lastDot + 1);
+            if (!isNamePattern(type) || !isNamePattern(method)) {
+                return Expr.ANY;
+            }
+            return addLeaf(Leaf.Kind.EXECUTION, type, method, declaringType);
+        }
+
+        private Expr within(String args) {
+            return isNamePattern(args) ? addLeaf(Leaf.Kind.WITHIN, args, null, declaringType) : Expr.ANY; // within(Foo+) 등
+        }
+
+        /**
+         * 이름으로 참조한 포인트컷. allOrder() 는 같은 클래스에서, hello.aop.order.aop.PointCuts.allOrder() 는 해당 클래스에서 찾는다.
+         */
+        private Expr reference(String name) {
+            if (depth >= MAX_DEPTH || declaringType == null && name.lastIndexOf('.') < 0) {
+                return Expr.ANY;
+            }
+            Class<?> type = declaringType;
+            String methodName = name;
+            int lastDot = name.lastIndexOf('.');
+            if (lastDot > 0) {
+                ClassLoader classLoader = declaringType == null ? ClassUtils.getDefaultClassLoader() : declaringType.getClassLoader();
+                try {
+                    type = Class.forName(name.substring(0, lastDot), false, classLoader);
+                } catch (ClassNotFoundException e) {
+                    return Expr.ANY;
+                }
+                methodName = name.substring(lastDot + 1);
+            }
+            for (Method method : type.getDeclaredMethods()) {
+                Pointcut pointcut = method.getAnnotation(Pointcut.class);
+                if (pointcut != null && method.getName().equals(methodName)) {
+                    return new Parser(pointcut.value(), type, depth + 1).parse();
+                }
+            }
+            return Expr.ANY;
+        }
+
+        private boolean isNamePattern(String pattern) {
+            for (int i = 0; i < pattern.length(); i++) {
+                char c = pattern.charAt(i);
+                if (c != '.' && c != '*' && c != '$' && !Character.isJavaIdentifierPart(c)) {
+                    return false;
+                }
+            }
+            return !pattern.isEmpty() && !pattern.contains("...");
+        }
+
+        private boolean consume(String token) {
+            skipSpaces();
+            if (expression.startsWith(token, pos)) {
+                pos += token.length();
+                return true;
+            }
+            return false;
+        }
+
+        private void skipSpaces() {
+            while (pos < expression.length() && Character.isWhitespace(expression.charAt(pos))) {
+                pos++;
+            }
+        }
+    }
+}
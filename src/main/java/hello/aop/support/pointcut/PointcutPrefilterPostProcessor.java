@@ -0,0 +1,67 @@
+package hello.aop.support.pointcut;
+
+import hello.aop.support.fusion.AdviceFusionPostProcessor;
+import hello.aop.support.fusion.FusingAspectJAutoProxyCreator;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.aop.aspectj.annotation.AnnotationAwareAspectJAutoProxyCreator;
+import org.springframework.aop.config.AopConfigUtils;
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.beans.factory.config.ConfigurableListableBeanFactory;
+import org.springframework.beans.factory.support.BeanDefinitionRegistry;
+import org.springframework.beans.factory.support.BeanDefinitionRegistryPostProcessor;
+import org.springframework.context.EnvironmentAware;
+import org.springframework.core.Ordered;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+/**
+ * 포인트컷 사전 필터 모드
+ *
+ * aop.pointcut-prefilter=true 이면 스프링 부트가 등록한 자동 프록시 생성기(AnnotationAwareAspectJAutoProxyCreator)를
+ * PrefilteringAspectJAutoProxyCreator 로 바꾼다. 빈 정의의 클래스만 바꾸므로 proxyTargetClass 등 다른 설정은 그대로다.
+ * 어드바이스 합치기 모드(aop.advice-fusion)가 먼저 생성기를 바꿨으면 둘 다 하는 FusingPrefilteringAspectJAutoProxyCreator 로 바꾼다.
+ * 그래서 AdviceFusionPostProcessor 다음에 실행한다. (ORDER) 그 밖의 생성기는 그대로 두고 경고만 남긴다.
+ *
+ *  -Daop.pointcut-prefilter=true 또는 application.properties 에 aop.pointcut-prefilter=true
+ */
+@Slf4j
+@Component
+public class PointcutPrefilterPostProcessor implements BeanDefinitionRegistryPostProcessor, EnvironmentAware, Ordered {
+
+    public static final String PROPERTY = "aop.pointcut-prefilter";
+    public static final int ORDER = AdviceFusionPostProcessor.ORDER + 10;
+
+    private boolean enabled;
+
+    @Override
+    public void setEnvironment(Environment environment) {
+        this.enabled = environment.getProperty(PROPERTY, Boolean.class, false);
+    }
+
+    @Override
+    public void postProcessBeanDefinitionRegistry(BeanDefinitionRegistry registry) {
+        if (!enabled || !registry.containsBeanDefinition(AopConfigUtils.AUTO_PROXY_CREATOR_BEAN_NAME)) {
+            return;
+        }
+        BeanDefinition definition = registry.getBeanDefinition(AopConfigUtils.AUTO_PROXY_CREATOR_BEAN_NAME);
+        String creator = definition.getBeanClassName();
+        if (AnnotationAwareAspectJAutoProxyCreator.class.getName().equals(creator)) {
+            definition.setBeanClassName(PrefilteringAspectJAutoProxyCreator.class.getName());
+            log.info("[pointcutPrefilter] enabled");
+        } else if (FusingAspectJAutoProxyCreator.class.getName().equals(creator)) {
+            definition.setBeanClassName(FusingPrefilteringAspectJAutoProxyCreator.class.getName());
+            log.info("[pointcutPrefilter] enabled with advice fusion");
+        } else {
+            log.warn("[pointcutPrefilter] 자동 프록시 생성기가 이미 바뀌어서 적용하지 않습니다. creator={}", definition.getBeanClassName());
+        }
+    }
+
+    @Override
+    public int getOrder() {
+        return ORDER;
+    }
+
+    @Override
+    public void postProcessBeanFactory(ConfigurableListableBeanFactory beanFactory) {
+    }
+}
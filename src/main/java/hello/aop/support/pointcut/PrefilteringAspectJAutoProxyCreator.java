@@ -0,0 +1,109 @@
+package hello.aop.support.pointcut;
+
+import org.springframework.aop.Advisor;
+import org.springframework.aop.PointcutAdvisor;
+import org.springframework.aop.aspectj.AbstractAspectJAdvice;
+import org.springframework.aop.aspectj.AspectJExpressionPointcut;
+import org.springframework.aop.aspectj.annotation.AnnotationAwareAspectJAutoProxyCreator;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 빈마다 어드바이저를 고르기 전에 PointcutPrefilter 로 맞을 수 없는 어드바이저를 뺀다.
+ * 남은 어드바이저를 고르고 정렬하는 것은 AnnotationAwareAspectJAutoProxyCreator 와 같다.
+ *
+ * 필터는 후보 어드바이저 목록이 바뀌면(새 애스펙트 빈) 다시 만든다. 보통은 첫 빈에서 한번 만든다.
+ */
+public class PrefilteringAspectJAutoProxyCreator extends AnnotationAwareAspectJAutoProxyCreator {
+
+    private volatile Index index = new Index(List.of());
+
+    private final LongAdder checked = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+
+    @Override
+    protected List<Advisor> findAdvisorsThatCanApply(List<Advisor> candidateAdvisors, Class<?> beanClass, String beanName) {
+        Index current = index(candidateAdvisors);
+        BitSet candidates = current.prefilter.candidates(beanClass);
+        List<Advisor> advisors = new ArrayList<>(candidateAdvisors.size());
+        for (Advisor advisor : candidateAdvisors) {
+            Integer id = current.ids.get(advisor);
+            if (id == null || candidates.get(id)) {
+                advisors.add(advisor);
+            }
+        }
+        checked.add(candidateAdvisors.size());
+        rejected.add(candidateAdvisors.size() - advisors.size());
+        return super.findAdvisorsThatCanApply(advisors, beanClass, beanName);
+    }
+
+    /**
+     * @return 필터를 거친 (빈, 어드바이저) 조합 수
+     */
+    public long getCheckedCount() {
+        return checked.sum();
+    }
+
+    /**
+     * @return AspectJ 까지 가지 않고 뺀 (빈, 어드바이저) 조합 수
+     */
+    public long getRejectedCount() {
+        return rejected.sum();
+    }
+
+    private Index index(List<Advisor> candidateAdvisors) {
+        Index current = index;
+        if (current.covers(candidateAdvisors)) {
+            return current;
+        }
+        synchronized (this) {
+            if (!index.covers(candidateAdvisors)) {
+                index = new Index(candidateAdvisors);
+            }
+            return index;
+        }
+    }
+
+    /**
+     * 어드바이저와 필터의 식 번호. AspectJ 포인트컷 어드바이저만 번호가 있고, 나머지는 항상 AopUtils 로 확인한다.
+     */
+    private static final class Index {
+
+        private final Map<Advisor, Integer> ids = new IdentityHashMap<>();
+        private final Map<Advisor, Boolean> known = new IdentityHashMap<>();
+        private final PointcutPrefilter prefilter;
+
+        private Index(List<Advisor> advisors) {
+            List<String> expressions = new ArrayList<>();
+            List<Class<?>> declaringTypes = new ArrayList<>();
+            for (Advisor advisor : advisors) {
+                known.put(advisor, Boolean.TRUE);
+                if (!(advisor instanceof PointcutAdvisor) || !(advisor.getAdvice() instanceof AbstractAspectJAdvice)) {
+                    continue;
+                }
+                Object pointcut = ((PointcutAdvisor) advisor).getPointcut();
+                if (!(pointcut instanceof AspectJExpressionPointcut)) {
+                    continue; // perthis, pertarget 애스펙트
+                }
+                ids.put(advisor, expressions.size());
+                expressions.add(((AspectJExpressionPointcut) pointcut).getExpression());
+                declaringTypes.add(((AbstractAspectJAdvice) advisor.getAdvice()).getAspectJAdviceMethod().getDeclaringClass());
+            }
+            this.prefilter = PointcutPrefilter.of(expressions, declaringTypes);
+        }
+
+        private boolean covers(List<Advisor> advisors) {
+            for (Advisor advisor : advisors) {
+                if (!known.containsKey(advisor)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
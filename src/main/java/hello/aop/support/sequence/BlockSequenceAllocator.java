@@ -0,0 +1,45 @@
+package hello.aop.support.sequence;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 스레드마다 blockSize 크기의 번호 구간을 예약해두고, 구간 안에서는 스레드 로컬 값만 증가시킨다.
+ * 공유 값(AtomicLong)은 구간을 새로 예약할 때 getAndAdd 한번만 쓴다.
+ */
+public class BlockSequenceAllocator implements SequenceAllocator {
+
+    private final AtomicLong reserved;
+    private final int blockSize;
+    private final ThreadLocal<Block> blocks = ThreadLocal.withInitial(Block::new);
+
+    /**
+     * @param lastValue 마지막으로 발급된 값, 다음 구간은 lastValue + 1 부터 예약한다.
+     */
+    public BlockSequenceAllocator(long lastValue, int blockSize) {
+        if (blockSize <= 0) {
+            throw new IllegalArgumentException("blockSize 는 1 이상이어야 합니다.");
+        }
+        this.reserved = new AtomicLong(lastValue);
+        this.blockSize = blockSize;
+    }
+
+    @Override
+    public long next() {
+        Block block = blocks.get();
+        if (block.next == block.end) {
+            long start = reserved.getAndAdd(blockSize) + 1;
+            block.next = start;
+            block.end = start + blockSize;
+        }
+        return block.next++;
+    }
+
+    public int getBlockSize() {
+        return blockSize;
+    }
+
+    private static final class Block {
+        private long next;
+        private long end;
+    }
+}
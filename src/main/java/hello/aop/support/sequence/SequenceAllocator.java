@@ -0,0 +1,39 @@
+package hello.aop.support.sequence;
+
+/**
+ * 저장소에서 사용하는 1 부터 시작하는 long 시퀀스
+ *
+ *  - STRICT : 모든 스레드가 AtomicLong 하나를 증가시킨다. 발급 순서와 값의 순서가 같고 빈 번호가 없다.
+ *  - HIGH_THROUGHPUT : 스레드마다 blockSize 만큼 번호 구간을 한번에 예약해두고 그 안에서 나눠준다.
+ *    구간을 예약할 때만 공유 값을 쓰므로 스레드가 많아도 경합이 거의 없다.
+ *    대신 스레드 사이에는 순서가 보장되지 않고, 아직 다 쓰지 않은 구간은 그 스레드가 쓸 때까지 비어 있다.
+ *
+ * static int seq; seq++ 처럼 여러 스레드에서 증가시키면 값을 잃어버리거나 같은 번호가 중복될 수 있다.
+ */
+public interface SequenceAllocator {
+
+    enum Mode {
+        STRICT,
+        HIGH_THROUGHPUT
+    }
+
+    int DEFAULT_BLOCK_SIZE = 1024;
+
+    long next();
+
+    static SequenceAllocator strict() {
+        return new StrictSequenceAllocator(0);
+    }
+
+    static SequenceAllocator highThroughput() {
+        return highThroughput(DEFAULT_BLOCK_SIZE);
+    }
+
+    static SequenceAllocator highThroughput(int blockSize) {
+        return new BlockSequenceAllocator(0, blockSize);
+    }
+
+    static SequenceAllocator create(Mode mode) {
+        return mode == Mode.STRICT ? strict() : highThroughput();
+    }
+}
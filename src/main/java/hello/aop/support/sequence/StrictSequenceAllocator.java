@@ -0,0 +1,23 @@
+package hello.aop.support.sequence;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * AtomicLong 하나로 발급한다. 발급 순서대로 1, 2, 3 ... 빈 번호 없이 증가한다.
+ */
+public class StrictSequenceAllocator implements SequenceAllocator {
+
+    private final AtomicLong value;
+
+    /**
+     * @param lastValue 마지막으로 발급된 값, 다음 발급 값은 lastValue + 1
+     */
+    public StrictSequenceAllocator(long lastValue) {
+        this.value = new AtomicLong(lastValue);
+    }
+
+    @Override
+    public long next() {
+        return value.incrementAndGet();
+    }
+}
@@ -0,0 +1,138 @@
+package hello.aop.support.weaving;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationContextInitializer;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.core.Ordered;
+import org.springframework.core.OverridingClassLoader;
+import org.springframework.instrument.InstrumentationSavingAgent;
+import org.springframework.instrument.classloading.InstrumentationLoadTimeWeaver;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import java.io.InputStream;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 로드 시점 위빙 모드
+ *
+ * 빌드를 바꿀 수 없는 환경에서 에이전트만 추가해서 META-INF/aop.xml 의 애스펙트를 클래스 로드 시점에 위빙한다.
+ *
+ *  java -javaagent:spring-instrument.jar --add-opens=java.base/java.lang=ALL-UNNAMED -Daop.load-time-weaving=true -jar app.jar
+ *  ./gradlew test -Paop.mode=ltw
+ *
+ * 컨텍스트를 refresh 하기 전에 ScopedWeavingTransformer 를 등록한다. (META-INF/spring.factories 에 등록)
+ * 빈 후처리기로 등록하면 늦다. 스프링은 후처리기를 찾으면서(getBeanNamesForType) 빈 클래스를 모두 로드해 버린다.
+ * 이미 로드된 클래스는 다시 위빙하지 않는다. 애스펙트가 먼저 로드되어 있으면 위빙하지 않고 경고만 남긴다.
+ * 트랜스포머는 클래스 로더마다 한번만 등록한다. (--add-opens 는 JDK 16 이상에서 AspectJ 가 AjcClosure 클래스를 정의할 때 필요하다.)
+ * 컨텍스트가 뜨면 위빙한 클래스 수와 걸린 시간을 로그로 남긴다.
+ */
+@Slf4j
+public class LoadTimeWeavingInitializer implements ApplicationContextInitializer<ConfigurableApplicationContext>, Ordered {
+
+    public static final String PROPERTY = "aop.load-time-weaving";
+    public static final String AOP_XML = "META-INF/aop.xml";
+
+    private static final Map<ClassLoader, ScopedWeavingTransformer> TRANSFORMERS = new WeakHashMap<>();
+
+    @Override
+    public void initialize(ConfigurableApplicationContext context) {
+        if (!context.getEnvironment().getProperty(PROPERTY, Boolean.class, false)) {
+            return;
+        }
+        if (!InstrumentationLoadTimeWeaver.isInstrumentationAvailable()) {
+            log.warn("[weaving] {}=true 이지만 -javaagent:spring-instrument.jar 가 없어서 로드 시점 위빙을 하지 않습니다.", PROPERTY);
+            return;
+        }
+        ClassLoader classLoader = context.getClassLoader();
+        ScopedWeavingTransformer transformer = install(classLoader);
+        if (transformer == null) {
+            return;
+        }
+        context.addApplicationListener(event -> {
+            if (event instanceof ContextRefreshedEvent) {
+                log.info("[weaving] load-time woven={} inScope={} loaded={} weave={}ms scope={}ms",
+                        transformer.getWovenCount(), transformer.getInScopeCount(), transformer.getLoadedCount(),
+                        TimeUnit.NANOSECONDS.toMillis(transformer.getWeaveNanos()),
+                        TimeUnit.NANOSECONDS.toMillis(transformer.getScopeNanos()));
+            }
+        });
+    }
+
+    @Override
+    public int getOrder() {
+        return Ordered.HIGHEST_PRECEDENCE;
+    }
+
+    /**
+     * classLoader 에 등록된 트랜스포머, 로드 시점 위빙을 하지 않으면 null
+     */
+    public static synchronized ScopedWeavingTransformer getTransformer(ClassLoader classLoader) {
+        return TRANSFORMERS.get(classLoader);
+    }
+
+    private static synchronized ScopedWeavingTransformer install(ClassLoader classLoader) {
+        ScopedWeavingTransformer installed = TRANSFORMERS.get(classLoader);
+        if (installed != null) {
+            return installed;
+        }
+        List<String> aspectNames = aspectNames(classLoader);
+        for (Class<?> loaded : InstrumentationSavingAgent.getInstrumentation().getInitiatedClasses(classLoader)) {
+            if (aspectNames.contains(loaded.getName())) { // 위빙되지 않은 애스펙트를 호출하는 코드가 생기면 NoSuchMethodError(aspectOf) 가 난다.
+                log.warn("[weaving] {} 가 이미 로드되어 있어서 로드 시점 위빙을 하지 않습니다.", loaded.getName());
+                return null;
+            }
+        }
+        long start = System.nanoTime();
+        WeavingScope scope = WeavingScope.of(aspectTypes(classLoader, aspectNames));
+        ScopedWeavingTransformer transformer = new ScopedWeavingTransformer(scope);
+        new InstrumentationLoadTimeWeaver(classLoader).addTransformer(transformer);
+        TRANSFORMERS.put(classLoader, transformer);
+        log.info("[weaving] load-time weaving scope={} ({}ms)", scope,
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        return transformer;
+    }
+
+    private static List<String> aspectNames(ClassLoader classLoader) {
+        List<String> names = new ArrayList<>();
+        try {
+            Enumeration<URL> resources = classLoader.getResources(AOP_XML);
+            while (resources.hasMoreElements()) {
+                try (InputStream in = resources.nextElement().openStream()) {
+                    NodeList aspects = DocumentBuilderFactory.newInstance().newDocumentBuilder().parse(in)
+                            .getElementsByTagName("aspect");
+                    for (int i = 0; i < aspects.getLength(); i++) {
+                        names.add(((Element) aspects.item(i)).getAttribute("name"));
+                    }
+                }
+            }
+        } catch (Exception e) {
+            throw new IllegalStateException(AOP_XML + " 을 읽을 수 없습니다.", e);
+        }
+        return names;
+    }
+
+    /**
+     * 애스펙트를 임시 클래스 로더로 읽는다. 원래 클래스 로더로 읽으면 위빙되기 전에 로드되어 버린다.
+     */
+    private static List<Class<?>> aspectTypes(ClassLoader classLoader, List<String> aspectNames) {
+        ClassLoader tempLoader = new OverridingClassLoader(classLoader);
+        List<Class<?>> aspectTypes = new ArrayList<>();
+        for (String name : aspectNames) {
+            try {
+                aspectTypes.add(Class.forName(name, false, tempLoader));
+            } catch (ClassNotFoundException e) {
+                throw new IllegalStateException(AOP_XML + " 의 애스펙트를 찾을 수 없습니다. " + name, e);
+            }
+        }
+        return aspectTypes;
+    }
+}
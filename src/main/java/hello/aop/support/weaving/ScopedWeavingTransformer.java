@@ -0,0 +1,91 @@
+package hello.aop.support.weaving;
+
+import org.aspectj.weaver.loadtime.ClassPreProcessorAgentAdapter;
+
+import java.lang.instrument.ClassFileTransformer;
+import java.lang.instrument.IllegalClassFormatException;
+import java.security.ProtectionDomain;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * WeavingScope 에 들어가는 클래스만 AspectJ 위빙기(ClassPreProcessorAgentAdapter)에 넘기는 ClassFileTransformer
+ *
+ * 위빙기는 클래스마다 타입 정보를 만들고 모든 포인트컷과 맞춰 보므로, 범위 밖의 클래스는 건너뛰기만 해도 시작 시간이 준다.
+ * 로드한 클래스 수, 범위에 든 클래스 수, 실제로 바뀐 클래스 수와 각 단계에 쓴 시간을 센다.
+ */
+public class ScopedWeavingTransformer implements ClassFileTransformer {
+
+    private final WeavingScope scope;
+    private final ClassFileTransformer weaver;
+
+    private final LongAdder loaded = new LongAdder();
+    private final LongAdder inScope = new LongAdder();
+    private final LongAdder woven = new LongAdder();
+    private final LongAdder scopeNanos = new LongAdder();
+    private final LongAdder weaveNanos = new LongAdder();
+
+    public ScopedWeavingTransformer(WeavingScope scope) {
+        this(scope, new ClassPreProcessorAgentAdapter());
+    }
+
+    public ScopedWeavingTransformer(WeavingScope scope, ClassFileTransformer weaver) {
+        this.scope = scope;
+        this.weaver = weaver;
+    }
+
+    @Override
+    public byte[] transform(ClassLoader loader, String className, Class<?> classBeingRedefined,
+                            ProtectionDomain protectionDomain, byte[] classfileBuffer) throws IllegalClassFormatException {
+        if (className == null || classBeingRedefined != null || className.contains("$$")) {
+            return null; // 숨은 클래스, 재정의, CGLIB 프록시 같은 생성 클래스는 위빙하지 않는다. (부모 클래스가 이미 위빙되어 있다.)
+        }
+        loaded.increment();
+        long start = System.nanoTime();
+        boolean matched = scope.matches(className, classfileBuffer);
+        long checked = System.nanoTime();
+        scopeNanos.add(checked - start);
+        if (!matched) {
+            return null;
+        }
+        inScope.increment();
+        byte[] result = weaver.transform(loader, className, classBeingRedefined, protectionDomain, classfileBuffer);
+        weaveNanos.add(System.nanoTime() - checked);
+        if (result == null || result == classfileBuffer) {
+            return null;
+        }
+        woven.increment();
+        return result;
+    }
+
+    public WeavingScope getScope() {
+        return scope;
+    }
+
+    public long getLoadedCount() {
+        return loaded.sum();
+    }
+
+    public long getInScopeCount() {
+        return inScope.sum();
+    }
+
+    public long getWovenCount() {
+        return woven.sum();
+    }
+
+    public long getScopeNanos() {
+        return scopeNanos.sum();
+    }
+
+    public long getWeaveNanos() {
+        return weaveNanos.sum();
+    }
+
+    @Override
+    public String toString() {
+        return "ScopedWeavingTransformer{loaded=" + loaded.sum() + ", inScope=" + inScope.sum() + ", woven=" + woven.sum()
+                + ", scope=" + TimeUnit.NANOSECONDS.toMillis(scopeNanos.sum()) + "ms"
+                + ", weave=" + TimeUnit.NANOSECONDS.toMillis(weaveNanos.sum()) + "ms}";
+    }
+}
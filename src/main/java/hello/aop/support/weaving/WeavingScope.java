@@ -0,0 +1,512 @@
+package hello.aop.support.weaving;
+
+import org.aspectj.lang.annotation.After;
+import org.aspectj.lang.annotation.AfterReturning;
+import org.aspectj.lang.annotation.AfterThrowing;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Before;
+import org.aspectj.lang.annotation.Pointcut;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Method;
+import java.lang.reflect.Parameter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * 로드 시점 위빙에서 위빙기(weaver)에 넘길 클래스를 고르는 필터
+ *
+ * 애스펙트의 어드바이스 포인트컷을 읽어서 "맞을 가능성이 있는" 클래스만 남긴다. 나머지 클래스는 위빙기를 거치지 않는다.
+ *  - execution(* hello.aop.order..*(..)) : 이름이 hello/aop/order/ 로 시작하거나, 부모 클래스/인터페이스가 그런 클래스
+ *  - within(hello.aop.internalcall..*) : 이름이 hello/aop/internalcall/ 로 시작하는 클래스
+ *  - @annotation(trace), @within(Trace) : 클래스 파일에 Trace 어노테이션 타입이 나오는 클래스
+ *  - a && b 는 둘 다 맞는 클래스, a || b 는 둘 중 하나라도 맞는 클래스, 이름으로 참조한 포인트컷(PointCuts.allOrder())은 따라가서 읽는다.
+ * 판단할 수 없는 식(this, target, args, bean, !, 와일드카드로 시작하는 타입 등)은 모든 클래스로 본다.
+ *
+ * 필터는 넓게 잡는다. 남긴 클래스가 실제로 위빙되는지는 위빙기가 정한다.
+ * 단, 다른 패키지의 손자 클래스가 execution 타입 패턴의 메서드를 재정의한 경우는 직접 부모만 보므로 빠진다.
+ */
+public final class WeavingScope {
+
+    private static final List<Class<? extends Annotation>> ADVICE_TYPES =
+            List.of(Around.class, Before.class, After.class, AfterReturning.class, AfterThrowing.class);
+
+    private final Node root;
+
+    private WeavingScope(Node root) {
+        this.root = root;
+    }
+
+    /**
+     * 애스펙트 클래스의 어드바이스 포인트컷을 모두 합친 범위. 애스펙트 자신도 위빙 대상이라 범위에 넣는다.
+     */
+    public static WeavingScope of(Collection<Class<?>> aspectTypes) {
+        List<Node> nodes = new ArrayList<>();
+        for (Class<?> aspectType : aspectTypes) {
+            nodes.add(new TypeNode(internalName(aspectType.getName()), false, false));
+            for (Method method : aspectType.getDeclaredMethods()) {
+                String expression = adviceExpression(method);
+                if (expression != null) {
+                    nodes.add(new Parser(expression, aspectType, method).parse());
+                }
+            }
+        }
+        return new WeavingScope(Node.or(nodes));
+    }
+
+    /**
+     * @param className 내부 이름 (hello/aop/order/OrderService)
+     * @param classfile 클래스 파일 바이트
+     */
+    public boolean matches(String className, byte[] classfile) {
+        return root.matches(new ClassInfo(className, classfile));
+    }
+
+    /**
+     * 모든 클래스가 범위에 들어가면 true (필터가 아무것도 걸러내지 못한다.)
+     */
+    public boolean isUnbounded() {
+        return root == Node.ALL;
+    }
+
+    @Override
+    public String toString() {
+        return root.toString();
+    }
+
+    private static String adviceExpression(Method method) {
+        for (Class<? extends Annotation> adviceType : ADVICE_TYPES) {
+            Annotation advice = method.getAnnotation(adviceType);
+            if (advice instanceof Around) {
+                return ((Around) advice).value();
+            } else if (advice instanceof Before) {
+                return ((Before) advice).value();
+            } else if (advice instanceof After) {
+                return ((After) advice).value();
+            } else if (advice instanceof AfterReturning) {
+                AfterReturning afterReturning = (AfterReturning) advice;
+                return afterReturning.pointcut().isEmpty() ? afterReturning.value() : afterReturning.pointcut();
+            } else if (advice instanceof AfterThrowing) {
+                AfterThrowing afterThrowing = (AfterThrowing) advice;
+                return afterThrowing.pointcut().isEmpty() ? afterThrowing.value() : afterThrowing.pointcut();
+            }
+        }
+        return null;
+    }
+
+    private static String internalName(String className) {
+        return className.replace('.', '/');
+    }
+
+    /**
+     * 포인트컷 식 파서. or := and ('||' and)*, and := unary ('&&' unary)*, unary := '!' unary | '(' or ')' | primitive
+     */
+    private static final class Parser {
+
+        private final String expression;
+        private final Class<?> declaringType;
+        private final Method advice;
+        private int pos;
+
+        private Parser(String expression, Class<?> declaringType, Method advice) {
+            this.expression = expression;
+            this.declaringType = declaringType;
+            this.advice = advice;
+        }
+
+        private Node parse() {
+            try {
+                Node node = or();
+                skipSpaces();
+                return pos == expression.length() ? node : Node.ALL;
+            } catch (RuntimeException e) {
+                return Node.ALL; // 읽지 못하는 식은 모든 클래스로 본다.
+            }
+        }
+
+        private Node or() {
+            List<Node> nodes = new ArrayList<>();
+            nodes.add(and());
+            while (consume("||")) {
+                nodes.add(and());
+            }
+            return Node.or(nodes);
+        }
+
+        private Node and() {
+            Node node = unary();
+            while (consume("&&")) {
+                node = Node.and(node, unary());
+            }
+            return node;
+        }
+
+        private Node unary() {
+            if (consume("!")) {
+                unary();
+                return Node.ALL;
+            }
+            if (consume("(")) {
+                Node node = or();
+                if (!consume(")")) {
+                    throw new IllegalArgumentException(expression);
+                }
+                return node;
+            }
+            return primitive();
+        }
+
+        private Node primitive() {
+            skipSpaces();
+            int start = pos;
+            while (pos < expression.length() && expression.charAt(pos) != '(' && !Character.isWhitespace(expression.charAt(pos))) {
+                pos++;
+            }
+            String name = expression.substring(start, pos);
+            if (!consume("(")) {
+                throw new IllegalArgumentException(expression);
+            }
+            int argsStart = pos;
+            for (int depth = 1; depth > 0; pos++) {
+                char c = expression.charAt(pos);
+                depth += c == '(' ? 1 : c == ')' ? -1 : 0;
+            }
+            String args = expression.substring(argsStart, pos - 1).trim();
+
+            switch (name) {
+                case "execution":
+                    return executionType(args);
+                case "within":
+                    return TypeNode.of(args, false);
+                case "@annotation":
+                case "@within":
+                    return annotation(args);
+                case "this":
+                case "target":
+                case "args":
+                case "bean":
+                case "@target":
+                case "@args":
+                    return Node.ALL;
+                default:
+                    return reference(name);
+            }
+        }
+
+        /**
+         * execution 의 선언 타입 패턴. "* hello.aop.order..*(..)" 이면 hello.aop.order..*
+         */
+        private Node executionType(String args) {
+            String head = args.substring(0, args.indexOf('(')).trim();
+            String signature = head.substring(head.lastIndexOf(' ') + 1);
+            int lastDot = signature.lastIndexOf('.');
+            if (lastDot <= 0) {
+                return Node.ALL; // * *(..) 처럼 타입이 없다.
+            }
+            String type = signature.substring(0, lastDot);
+            if (type.endsWith(".")) {
+                type = type + "*"; // hello.aop.order..*(..) 는 hello.aop.order 와 하위 패키지의 모든 타입
+            }
+            return TypeNode.of(type, true);
+        }
+
+        /**
+         * @annotation(hello.aop.exam.annotation.Trace) 또는 어드바이스 파라미터 이름 @annotation(trace)
+         */
+        private Node annotation(String arg) {
+            if (arg.indexOf('.') > 0) {
+                return new AnnotationNode(arg);
+            }
+            Class<?> bound = null;
+            for (Parameter parameter : advice.getParameters()) {
+                if (parameter.getName().equals(arg)) {
+                    bound = parameter.getType();
+                }
+            }
+            if (bound == null) { // -parameters 없이 컴파일되었으면 어노테이션 타입 파라미터가 하나일 때만 쓴다.
+                for (Class<?> type : advice.getParameterTypes()) {
+                    if (type.isAnnotation()) {
+                        if (bound != null) {
+                            return Node.ALL;
+                        }
+                        bound = type;
+                    }
+                }
+            }
+            return bound != null && bound.isAnnotation() ? new AnnotationNode(bound.getName()) : Node.ALL;
+        }
+
+        /**
+         * 이름으로 참조한 포인트컷. allOrder() 는 같은 클래스에서, hello.aop.order.aop.PointCuts.allOrder() 는 해당 클래스에서 찾는다.
+         */
+        private Node reference(String name) {
+            Class<?> type = declaringType;
+            String methodName = name;
+            int lastDot = name.lastIndexOf('.');
+            if (lastDot > 0) {
+                try {
+                    type = Class.forName(name.substring(0, lastDot), false, declaringType.getClassLoader());
+                } catch (ClassNotFoundException e) {
+                    return Node.ALL;
+                }
+                methodName = name.substring(lastDot + 1);
+            }
+            for (Method method : type.getDeclaredMethods()) {
+                Pointcut pointcut = method.getAnnotation(Pointcut.class);
+                if (pointcut != null && method.getName().equals(methodName)) {
+                    return new Parser(pointcut.value(), type, method).parse();
+                }
+            }
+            return Node.ALL;
+        }
+
+        private boolean consume(String token) {
+            skipSpaces();
+            if (expression.startsWith(token, pos)) {
+                pos += token.length();
+                return true;
+            }
+            return false;
+        }
+
+        private void skipSpaces() {
+            while (pos < expression.length() && Character.isWhitespace(expression.charAt(pos))) {
+                pos++;
+            }
+        }
+    }
+
+    private abstract static class Node {
+
+        static final Node ALL = new Node() {
+            @Override
+            boolean matches(ClassInfo info) {
+                return true;
+            }
+
+            @Override
+            public String toString() {
+                return "*";
+            }
+        };
+
+        abstract boolean matches(ClassInfo info);
+
+        static Node and(Node left, Node right) {
+            if (left == ALL) {
+                return right;
+            }
+            if (right == ALL) {
+                return left;
+            }
+            return new Node() {
+                @Override
+                boolean matches(ClassInfo info) {
+                    return left.matches(info) && right.matches(info);
+                }
+
+                @Override
+                public String toString() {
+                    return "(" + left + " && " + right + ")";
+                }
+            };
+        }
+
+        static Node or(List<Node> nodes) {
+            if (nodes.contains(ALL)) {
+                return ALL;
+            }
+            if (nodes.size() == 1) {
+                return nodes.get(0);
+            }
+            Node[] children = nodes.toArray(new Node[0]);
+            return new Node() {
+                @Override
+                boolean matches(ClassInfo info) {
+                    for (Node child : children) {
+                        if (child.matches(info)) {
+                            return true;
+                        }
+                    }
+                    return false;
+                }
+
+                @Override
+                public String toString() {
+                    return nodes.toString();
+                }
+            };
+        }
+    }
+
+    /**
+     * 타입 패턴의 와일드카드 앞까지를 접두어로 쓴다. 와일드카드가 없으면 정확한 이름이다.
+     */
+    private static final class TypeNode extends Node {
+
+        private final String name;
+        private final boolean prefix;
+        private final boolean supertypes;
+
+        private TypeNode(String name, boolean prefix, boolean supertypes) {
+            this.name = name;
+            this.prefix = prefix;
+            this.supertypes = supertypes;
+        }
+
+        static Node of(String pattern, boolean supertypes) {
+            if (pattern.endsWith("+")) {
+                pattern = pattern.substring(0, pattern.length() - 1);
+                supertypes = true;
+            }
+            int star = pattern.indexOf('*');
+            int dots = pattern.indexOf("..");
+            int wildcard = star < 0 ? dots : dots < 0 ? star : Math.min(star, dots);
+            if (wildcard < 0) {
+                return new TypeNode(internalName(pattern), false, supertypes);
+            }
+            String literal = pattern.substring(0, wildcard) + (wildcard == dots ? "." : "");
+            if (literal.isEmpty() || literal.startsWith(".")) {
+                return ALL;
+            }
+            return new TypeNode(internalName(literal), true, supertypes);
+        }
+
+        @Override
+        boolean matches(ClassInfo info) {
+            if (matches(info.name)) {
+                return true;
+            }
+            if (supertypes) {
+                for (String supertype : info.supertypes()) {
+                    if (matches(supertype)) {
+                        return true;
+                    }
+                }
+            }
+            return false;
+        }
+
+        private boolean matches(String className) {
+            return prefix ? className.startsWith(name) : className.equals(name);
+        }
+
+        @Override
+        public String toString() {
+            return name + (prefix ? "*" : "") + (supertypes ? "+" : "");
+        }
+    }
+
+    /**
+     * 어노테이션 타입 디스크립터(Lhello/aop/exam/annotation/Trace;)가 클래스 파일 상수 풀에 있는지 본다.
+     */
+    private static final class AnnotationNode extends Node {
+
+        private final String annotationType;
+        private final byte[] descriptor;
+
+        private AnnotationNode(String annotationType) {
+            this.annotationType = annotationType;
+            this.descriptor = ("L" + internalName(annotationType) + ";").getBytes(StandardCharsets.UTF_8);
+        }
+
+        @Override
+        boolean matches(ClassInfo info) {
+            byte[] bytes = info.classfile;
+            outer:
+            for (int i = 0, last = bytes.length - descriptor.length; i <= last; i++) {
+                for (int j = 0; j < descriptor.length; j++) {
+                    if (bytes[i + j] != descriptor[j]) {
+                        continue outer;
+                    }
+                }
+                return true;
+            }
+            return false;
+        }
+
+        @Override
+        public String toString() {
+            return "@" + annotationType;
+        }
+    }
+
+    /**
+     * 클래스 이름과 바이트. 부모 클래스/인터페이스 이름은 필요할 때 상수 풀을 한번 읽어서 구한다.
+     */
+    private static final class ClassInfo {
+
+        private final String name;
+        private final byte[] classfile;
+        private List<String> supertypes;
+
+        private ClassInfo(String name, byte[] classfile) {
+            this.name = name;
+            this.classfile = classfile;
+        }
+
+        private List<String> supertypes() {
+            if (supertypes == null) {
+                supertypes = readSupertypes(classfile);
+            }
+            return supertypes;
+        }
+
+        private static List<String> readSupertypes(byte[] b) {
+            try {
+                int count = u2(b, 8);
+                int[] offsets = new int[count];
+                int pos = 10;
+                for (int i = 1; i < count; i++) {
+                    offsets[i] = pos;
+                    int tag = b[pos] & 0xff;
+                    switch (tag) {
+                        case 1: // Utf8
+                            pos += 3 + u2(b, pos + 1);
+                            break;
+                        case 5: // Long
+                        case 6: // Double
+                            pos += 9;
+                            i++;
+                            break;
+                        case 7: // Class
+                        case 8: // String
+                        case 16: // MethodType
+                        case 19: // Module
+                        case 20: // Package
+                            pos += 3;
+                            break;
+                        case 15: // MethodHandle
+                            pos += 4;
+                            break;
+                        default: // Integer, Float, Fieldref, Methodref, InterfaceMethodref, NameAndType, Dynamic, InvokeDynamic
+                            pos += 5;
+                    }
+                }
+                List<String> names = new ArrayList<>();
+                int superIndex = u2(b, pos + 4);
+                if (superIndex != 0) {
+                    names.add(className(b, offsets, superIndex));
+                }
+                int interfaces = u2(b, pos + 6);
+                for (int i = 0; i < interfaces; i++) {
+                    names.add(className(b, offsets, u2(b, pos + 8 + i * 2)));
+                }
+                return names;
+            } catch (RuntimeException e) {
+                return List.of();
+            }
+        }
+
+        private static String className(byte[] b, int[] offsets, int classIndex) {
+            int utf8 = offsets[u2(b, offsets[classIndex] + 1)];
+            return new String(b, utf8 + 3, u2(b, utf8 + 1), StandardCharsets.UTF_8); // NUL, 보조 문자가 없는 이름은 modified UTF-8 과 같다.
+        }
+
+        private static int u2(byte[] b, int pos) {
+            return ((b[pos] & 0xff) << 8) | (b[pos + 1] & 0xff);
+        }
+    }
+}
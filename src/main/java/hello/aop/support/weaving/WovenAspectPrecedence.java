@@ -0,0 +1,14 @@
+package hello.aop.support.weaving;
+
+import org.aspectj.lang.annotation.Aspect;
+import org.aspectj.lang.annotation.DeclarePrecedence;
+
+/**
+ * 위빙 모드(aop.mode=woven)에서 애스펙트 순서
+ *
+ * ajc 는 스프링의 @Order 를 보지 않으므로 AspectOrder 와 같은 순서(Trace 가 Retry 바깥)를 여기서 선언한다.
+ */
+@Aspect
+@DeclarePrecedence("hello.aop.support.weaving.WovenTraceAspect, hello.aop.support.weaving.WovenRetryAspect")
+public class WovenAspectPrecedence {
+}
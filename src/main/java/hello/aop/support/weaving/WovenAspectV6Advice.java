@@ -0,0 +1,59 @@
+package hello.aop.support.weaving;
+
+import hello.aop.order.aop.AspectV6Advice;
+import org.aspectj.lang.JoinPoint;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.After;
+import org.aspectj.lang.annotation.AfterReturning;
+import org.aspectj.lang.annotation.AfterThrowing;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.aspectj.lang.annotation.Before;
+
+/**
+ * AspectV6Advice(PointCuts.orderAndService() 기반)를 ajc 로 위빙할 때 쓰는 애스펙트
+ *
+ * 같은 애스펙트 안의 어드바이스 순서는 AspectJ 규칙을 따른다. (after 계열은 나중에 선언한 것이 먼저)
+ * 스프링 5.2.7 의 순서(@Around, @Before, @After, @AfterReturning, @AfterThrowing)와 같아지도록 선언 순서를 맞췄다.
+ */
+@Aspect
+public class WovenAspectV6Advice {
+
+    private final AspectV6Advice delegate = new AspectV6Advice();
+
+    @Around("hello.aop.order.aop.PointCuts.orderAndService()")
+    public Object doTransaction(ProceedingJoinPoint joinPoint) throws Throwable {
+        if (WovenAspects.appliedByProxy(joinPoint)) {
+            return joinPoint.proceed();
+        }
+        return delegate.doTransaction(joinPoint);
+    }
+
+    @Before("hello.aop.order.aop.PointCuts.orderAndService()")
+    public void doBefore(JoinPoint joinPoint) {
+        if (!WovenAspects.appliedByProxy(joinPoint)) {
+            delegate.doBefore(joinPoint);
+        }
+    }
+
+    @AfterThrowing(value = "hello.aop.order.aop.PointCuts.orderAndService()", throwing = "ex")
+    public void doThrowing(JoinPoint joinPoint, Exception ex) {
+        if (!WovenAspects.appliedByProxy(joinPoint)) {
+            delegate.doThrowing(joinPoint, ex);
+        }
+    }
+
+    @AfterReturning(value = "hello.aop.order.aop.PointCuts.orderAndService()", returning = "result")
+    public void doReturn(JoinPoint joinPoint, Object result) {
+        if (!WovenAspects.appliedByProxy(joinPoint)) {
+            delegate.doReturn(joinPoint, result);
+        }
+    }
+
+    @After("hello.aop.order.aop.PointCuts.orderAndService()")
+    public void doAfter(JoinPoint joinPoint) {
+        if (!WovenAspects.appliedByProxy(joinPoint)) {
+            delegate.doAfter(joinPoint);
+        }
+    }
+}
@@ -0,0 +1,187 @@
+package hello.aop.support.weaving;
+
+import hello.aop.exam.annotation.Batched;
+import hello.aop.exam.annotation.Bulkhead;
+import hello.aop.exam.annotation.CircuitBreaker;
+import hello.aop.exam.annotation.Coalesce;
+import hello.aop.exam.annotation.Hedge;
+import hello.aop.exam.annotation.Memoize;
+import hello.aop.exam.annotation.RateLimit;
+import hello.aop.exam.annotation.Retry;
+import hello.aop.exam.annotation.Timeout;
+import hello.aop.exam.annotation.Trace;
+import hello.aop.exam.aop.BatchedAspect;
+import hello.aop.exam.aop.BulkheadAspect;
+import hello.aop.exam.aop.CircuitBreakerAspect;
+import hello.aop.exam.aop.CoalesceAspect;
+import hello.aop.exam.aop.HedgeAspect;
+import hello.aop.exam.aop.MemoizeAspect;
+import hello.aop.exam.aop.RateLimitAspect;
+import hello.aop.exam.aop.RetryAspect;
+import hello.aop.exam.aop.TimeoutAspect;
+import hello.aop.exam.aop.TraceAspect;
+import hello.aop.internalcall.aop.CallLogAspect;
+import hello.aop.order.aop.AspectV6Advice;
+import org.aopalliance.intercept.MethodInvocation;
+import org.aspectj.lang.JoinPoint;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.springframework.aop.Advisor;
+import org.springframework.aop.ProxyMethodInvocation;
+import org.springframework.aop.aspectj.AbstractAspectJAdvice;
+import org.springframework.aop.framework.Advised;
+import org.springframework.aop.interceptor.ExposeInvocationInterceptor;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.AnnotationUtils;
+import org.springframework.core.annotation.OrderUtils;
+import org.springframework.util.ReflectionUtils;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * AspectJ 위빙 모드
+ *  - 컴파일 시점 위빙 : ./gradlew build -Paop.mode=woven
+ *  - 로드 시점 위빙 : -javaagent:spring-instrument.jar -Daop.load-time-weaving=true (LoadTimeWeavingInitializer)
+ *
+ * ajc 로 컴파일된 @Aspect 클래스는 스프링 AOP(AspectJProxyFactory 포함)가 받지 않는다.
+ * 그래서 기존 애스펙트는 그대로 두고, 기존 애스펙트에 위임하는 Woven* 애스펙트만 META-INF/aop.xml 에 등록해서 위빙한다.
+ * 기존 애스펙트는 테스트나 다른 설정에서 지금처럼 프록시로 사용할 수 있다.
+ *
+ * 위빙 여부는 설정 값이 아니라 Woven* 클래스에 AspectJ 가 넣은 필드로 판단한다. 빌드나 에이전트 설정과 어긋날 일이 없다.
+ *
+ * 위빙된 클래스를 다시 프록시로 감싸고 위빙 대상 애스펙트를 직접 추가하면(AspectJProxyFactory 등) 어드바이스가 두번 실행된다.
+ * 이 경우 Woven* 애스펙트는 appliedByProxy() 로 확인하고 그 호출을 프록시에 추가한 애스펙트 구성에 맡긴다.
+ *
+ * 위빙된 어드바이스는 대상 메서드 바로 바깥, 즉 모든 프록시 어드바이스보다 안쪽에서 실행된다.
+ * 그래서 AspectOrder 로는 안쪽이어야 하는 프록시 애스펙트(@Timeout, @CircuitBreaker 등)가 같은 메서드에 붙어 있으면 순서가 뒤집힌다.
+ * 이런 메서드가 있으면 WovenAspectsPostProcessor 가 exam 애스펙트를 프록시로도 적용하고(requiresProxy()), 위빙된 쪽은 appliedByProxy() 로 비켜선다.
+ */
+public final class WovenAspects {
+
+    private static final Map<Class<?>, Class<?>> ADAPTERS = Map.of(
+            TraceAspect.class, WovenTraceAspect.class,
+            RetryAspect.class, WovenRetryAspect.class,
+            CallLogAspect.class, WovenCallLogAspect.class,
+            AspectV6Advice.class, WovenAspectV6Advice.class);
+
+    // exam 애스펙트와 그 애스펙트를 적용하는 어노테이션
+    private static final Map<Class<?>, Class<? extends Annotation>> EXAM_ANNOTATIONS = Map.of(
+            TraceAspect.class, Trace.class,
+            MemoizeAspect.class, Memoize.class,
+            TimeoutAspect.class, Timeout.class,
+            CoalesceAspect.class, Coalesce.class,
+            RateLimitAspect.class, RateLimit.class,
+            BatchedAspect.class, Batched.class,
+            RetryAspect.class, Retry.class,
+            BulkheadAspect.class, Bulkhead.class,
+            CircuitBreakerAspect.class, CircuitBreaker.class,
+            HedgeAspect.class, Hedge.class);
+
+    private static final ThreadLocal<MethodInvocation> CURRENT_INVOCATION = currentInvocationHolder();
+
+    private WovenAspects() {
+    }
+
+    /**
+     * aspectClass 의 어드바이스가 바이트코드에 위빙되어 있으면 true (프록시로 또 적용하면 두번 실행된다.)
+     */
+    public static boolean isWoven(Class<?> aspectClass) {
+        Class<?> adapter = ADAPTERS.get(aspectClass);
+        return adapter != null && isCompiledByAjc(adapter);
+    }
+
+    /**
+     * 위빙 모드로 빌드되었으면 true
+     */
+    public static boolean isEnabled() {
+        return isCompiledByAjc(WovenAspectPrecedence.class);
+    }
+
+    /**
+     * AspectOrder 로 순서가 정해진 exam 애스펙트이면 true
+     */
+    public static boolean isExamAspect(Class<?> aspectClass) {
+        return EXAM_ANNOTATIONS.containsKey(aspectClass);
+    }
+
+    /**
+     * beanType 에 위빙된 wovenAspect 보다 안쪽이어야 하는 프록시 애스펙트가 같이 붙은 메서드가 있으면 그 메서드를 반환한다.
+     * 이때는 wovenAspect 도 프록시로 적용해야 AspectOrder 순서가 지켜진다.
+     *
+     * @param aspectTypes 컨텍스트에 등록된 애스펙트 타입, 이 중 위빙되지 않은 것이 프록시로 적용된다.
+     * @return 없으면 null
+     */
+    public static Method requiresProxy(Class<?> wovenAspect, Class<?> beanType, Collection<Class<?>> aspectTypes) {
+        Class<? extends Annotation> annotation = EXAM_ANNOTATIONS.get(wovenAspect);
+        if (annotation == null || !isWoven(wovenAspect) || !AnnotationUtils.isCandidateClass(beanType, annotation)) {
+            return null;
+        }
+        int order = OrderUtils.getOrder(wovenAspect, Ordered.LOWEST_PRECEDENCE);
+        for (Method method : ReflectionUtils.getUniqueDeclaredMethods(beanType)) {
+            if (!method.isAnnotationPresent(annotation)) {
+                continue;
+            }
+            for (Class<?> aspectType : aspectTypes) {
+                Class<? extends Annotation> inner = EXAM_ANNOTATIONS.get(aspectType);
+                if (inner != null && !isWoven(aspectType) && method.isAnnotationPresent(inner)
+                        && OrderUtils.getOrder(aspectType, Ordered.LOWEST_PRECEDENCE) > order) {
+                    return method;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 지금 실행 중인 조인 포인트가 위빙 대상 애스펙트를 직접 적용한 스프링 프록시를 거쳐서 호출되었으면 true
+     */
+    public static boolean appliedByProxy(JoinPoint joinPoint) {
+        MethodInvocation invocation = CURRENT_INVOCATION == null ? null : CURRENT_INVOCATION.get();
+        if (!(invocation instanceof ProxyMethodInvocation) || invocation.getThis() != joinPoint.getTarget()) {
+            return false; // 프록시 밖이거나, 프록시 호출 안에서 다른 객체를 호출하고 있다.
+        }
+        Method method = ((MethodSignature) joinPoint.getSignature()).getMethod();
+        Method invoked = invocation.getMethod();
+        if (!invoked.getName().equals(method.getName()) || !Arrays.equals(invoked.getParameterTypes(), method.getParameterTypes())) {
+            return false; // 프록시를 거친 메서드가 내부 호출한 메서드
+        }
+        Object proxy = ((ProxyMethodInvocation) invocation).getProxy();
+        if (!(proxy instanceof Advised)) {
+            return false;
+        }
+        for (Advisor advisor : ((Advised) proxy).getAdvisors()) {
+            if (advisor.getAdvice() instanceof AbstractAspectJAdvice
+                    && ADAPTERS.containsKey(((AbstractAspectJAdvice) advisor.getAdvice()).getAspectJAdviceMethod().getDeclaringClass())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * ExposeInvocationInterceptor.currentInvocation() 은 호출이 없으면 예외를 던지므로 ThreadLocal 을 직접 읽는다.
+     */
+    @SuppressWarnings("unchecked")
+    private static ThreadLocal<MethodInvocation> currentInvocationHolder() {
+        try {
+            Field field = ExposeInvocationInterceptor.class.getDeclaredField("invocation");
+            field.setAccessible(true);
+            return (ThreadLocal<MethodInvocation>) field.get(null);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    private static boolean isCompiledByAjc(Class<?> type) {
+        for (Field field : type.getDeclaredFields()) {
+            if (field.getName().startsWith("ajc$")) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
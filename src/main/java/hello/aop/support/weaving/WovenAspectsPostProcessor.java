@@ -0,0 +1,85 @@
+package hello.aop.support.weaving;
+
+import lombok.extern.slf4j.Slf4j;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.aop.config.AopConfigUtils;
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.beans.factory.config.BeanFactoryPostProcessor;
+import org.springframework.beans.factory.config.ConfigurableListableBeanFactory;
+import org.springframework.core.annotation.AnnotationUtils;
+import org.springframework.stereotype.Component;
+import org.springframework.util.ClassUtils;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * 위빙 모드에서 이미 위빙된 애스펙트 빈(예: @Import(TraceAspect.class))을 자동 프록시 대상에서 뺀다.
+ *
+ * 자동 프록시 생성기의 includePatterns(애스펙트 빈 이름 정규식)에 해당 빈 이름을 제외하는 패턴을 넣는다.
+ * 빈은 그대로 등록되므로 주입 받아서 쓰는 코드는 바뀌지 않는다.
+ *
+ * 단, 위빙된 애스펙트보다 안쪽이어야 하는 프록시 애스펙트와 같이 붙은 메서드가 있으면(ExamRepository.save 의 @Trace 와 @Timeout)
+ * 위빙된 exam 애스펙트(Trace, Retry)는 빼지 않고 프록시로도 적용한다. 프록시를 거친 호출에서는 위빙된 어드바이스가 비켜서므로 AspectOrder 순서대로 실행된다.
+ * (appliedByProxy() 는 프록시에 위빙 대상 애스펙트가 하나라도 있으면 비켜서므로, 하나만 프록시로 돌리면 나머지가 빠진다.)
+ */
+@Slf4j
+@Component
+public class WovenAspectsPostProcessor implements BeanFactoryPostProcessor {
+
+    @Override
+    public void postProcessBeanFactory(ConfigurableListableBeanFactory beanFactory) {
+        if (!WovenAspects.isEnabled() || !beanFactory.containsBeanDefinition(AopConfigUtils.AUTO_PROXY_CREATOR_BEAN_NAME)) {
+            return;
+        }
+        Map<String, Class<?>> wovenAspects = new LinkedHashMap<>();
+        List<Class<?>> aspectTypes = new ArrayList<>();
+        List<Class<?>> beanTypes = new ArrayList<>();
+        for (String beanName : beanFactory.getBeanDefinitionNames()) {
+            Class<?> type = beanFactory.getType(beanName, false);
+            if (type == null) {
+                continue;
+            }
+            type = ClassUtils.getUserClass(type);
+            beanTypes.add(type);
+            if (AnnotationUtils.findAnnotation(type, Aspect.class) != null) {
+                aspectTypes.add(type);
+            }
+            if (WovenAspects.isWoven(type)) {
+                wovenAspects.put(beanName, type);
+            }
+        }
+        List<String> woven = new ArrayList<>(wovenAspects.keySet());
+        Method conflict = conflict(wovenAspects.values(), beanTypes, aspectTypes);
+        if (conflict != null) {
+            woven.removeIf(beanName -> WovenAspects.isExamAspect(wovenAspects.get(beanName)));
+            log.info("[weaving] {} 에 위빙된 애스펙트보다 안쪽이어야 하는 프록시 애스펙트가 있어서 exam 애스펙트는 프록시로도 적용합니다.",
+                    conflict.toGenericString());
+        }
+        if (woven.isEmpty()) {
+            return;
+        }
+        String excluded = woven.stream().map(Pattern::quote).collect(Collectors.joining("|"));
+        BeanDefinition definition = beanFactory.getBeanDefinition(AopConfigUtils.AUTO_PROXY_CREATOR_BEAN_NAME);
+        definition.getPropertyValues().add("includePatterns", List.of("^(?!(" + excluded + ")$).*"));
+        log.info("[weaving] 위빙된 애스펙트는 프록시로 적용하지 않습니다. beans={}", woven);
+    }
+
+    private static Method conflict(Collection<Class<?>> wovenAspects, List<Class<?>> beanTypes, List<Class<?>> aspectTypes) {
+        for (Class<?> wovenAspect : wovenAspects) {
+            for (Class<?> beanType : beanTypes) {
+                Method method = WovenAspects.requiresProxy(wovenAspect, beanType, aspectTypes);
+                if (method != null) {
+                    return method;
+                }
+            }
+        }
+        return null;
+    }
+}
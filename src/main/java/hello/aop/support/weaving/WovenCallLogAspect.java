@@ -0,0 +1,25 @@
+package hello.aop.support.weaving;
+
+import hello.aop.internalcall.aop.CallLogAspect;
+import org.aspectj.lang.JoinPoint;
+import org.aspectj.lang.annotation.Aspect;
+import org.aspectj.lang.annotation.Before;
+
+/**
+ * CallLogAspect 를 ajc 로 위빙할 때 쓰는 애스펙트
+ *
+ * 바이트코드에 들어가므로 CallServiceV0 의 내부 호출(this.internal())에도 적용된다. 프록시 모드의 내부 호출 문제가 없다.
+ */
+@Aspect
+public class WovenCallLogAspect {
+
+    private final CallLogAspect delegate = new CallLogAspect();
+
+    @Before("execution(* hello.aop.internalcall..*.*(..))")
+    public void doLog(JoinPoint joinPoint) {
+        if (WovenAspects.appliedByProxy(joinPoint)) {
+            return;
+        }
+        delegate.doLog(joinPoint);
+    }
+}
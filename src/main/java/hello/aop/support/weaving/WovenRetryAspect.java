@@ -0,0 +1,28 @@
+package hello.aop.support.weaving;
+
+import hello.aop.exam.annotation.Retry;
+import hello.aop.exam.aop.RetryAspect;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+
+/**
+ * RetryAspect 를 ajc 로 위빙할 때 쓰는 애스펙트. 재시도는 RetryAspect 에 맡긴다.
+ */
+@Aspect
+public class WovenRetryAspect {
+
+    private final RetryAspect delegate = new RetryAspect();
+
+    @Around("execution(* *(..)) && @annotation(retry)")
+    public Object doRetry(ProceedingJoinPoint joinPoint, Retry retry) throws Throwable {
+        if (WovenAspects.appliedByProxy(joinPoint)) {
+            return joinPoint.proceed();
+        }
+        return delegate.doRetry(joinPoint, retry);
+    }
+
+    public RetryAspect getDelegate() {
+        return delegate;
+    }
+}
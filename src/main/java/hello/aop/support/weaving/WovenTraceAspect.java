@@ -0,0 +1,30 @@
+package hello.aop.support.weaving;
+
+import hello.aop.exam.annotation.Trace;
+import hello.aop.exam.aop.TraceAspect;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+
+/**
+ * TraceAspect 를 ajc 로 위빙할 때 쓰는 애스펙트. 기록은 TraceAspect 에 맡긴다.
+ *
+ * ajc 의 @annotation 은 호출(call)과 실행(execution) 조인 포인트에 모두 맞으므로 스프링 AOP 와 같게 execution 으로 제한한다.
+ */
+@Aspect
+public class WovenTraceAspect {
+
+    private final TraceAspect delegate = new TraceAspect();
+
+    @Around("execution(* *(..)) && @annotation(trace)")
+    public Object doTrace(ProceedingJoinPoint joinPoint, Trace trace) throws Throwable {
+        if (WovenAspects.appliedByProxy(joinPoint)) {
+            return joinPoint.proceed();
+        }
+        return delegate.doTrace(joinPoint, trace);
+    }
+
+    public TraceAspect getDelegate() {
+        return delegate;
+    }
+}
@@ -0,0 +1,193 @@
+package hello.aop.exam;
+
+import hello.aop.exam.aop.BatchedAspect;
+import hello.aop.exam.code.BatchedTarget;
+import hello.aop.exam.support.MicroBatcher;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.aop.aspectj.annotation.AspectJProxyFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.*;
+
+public class BatchedTest {
+
+    private final BatchedAspect aspect = new BatchedAspect();
+    private final BatchedTarget target = new BatchedTarget();
+    private final BatchedTarget proxy = proxy(target, aspect);
+
+    @AfterEach
+    void tearDown() {
+        aspect.destroy();
+    }
+
+    /**
+     * 동시에 들어온 호출은 maxSize 이하의 묶음으로 합쳐지고, 각 호출은 자기 결과를 받는다.
+     */
+    @Test
+    public void batch() throws Exception {
+        List<String> itemIds = new ArrayList<>();
+        for (int i = 0; i < 25; i++) {
+            itemIds.add("item" + i);
+        }
+
+        List<Object> results = saveConcurrently(itemIds);
+
+        for (int i = 0; i < itemIds.size(); i++) {
+            assertThat(results.get(i)).isEqualTo("saved-item" + i);
+        }
+        List<Integer> batchSizes = target.getBatchSizes();
+        assertThat(batchSizes.stream().mapToInt(Integer::intValue).sum()).isEqualTo(25);
+        assertThat(batchSizes).allMatch(size -> size <= 10);
+        assertThat(batchSizes.size()).isLessThan(25);
+
+        MicroBatcher<Object, Object> batcher = aspect.getBatcher(target, BatchedTarget.class.getMethod("save", String.class));
+        assertThat(batcher.getItemCount()).isEqualTo(25);
+        assertThat(batcher.getAverageBatchSize()).isGreaterThan(1);
+    }
+
+    /**
+     * maxSize 만큼 모이지 않으면 maxDelay 뒤에 모인 만큼 보낸다.
+     */
+    @Test
+    public void maxDelay() {
+        long start = System.nanoTime();
+        assertThat(proxy.save("itemA")).isEqualTo("saved-itemA");
+        assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)).isGreaterThanOrEqualTo(40);
+        assertThat(target.getBatchSizes()).containsExactly(1);
+    }
+
+    /**
+     * 묶음 결과의 원소가 예외면 그 호출만 실패한다.
+     */
+    @Test
+    public void itemFailure() throws Exception {
+        List<Object> results = saveConcurrently(List.of("itemA", "ex", "itemB"));
+
+        assertThat(results.get(0)).isEqualTo("saved-itemA");
+        assertThat(results.get(1)).isInstanceOf(IllegalStateException.class);
+        assertThat(results.get(2)).isEqualTo("saved-itemB");
+    }
+
+    /**
+     * 같은 클래스의 대상 객체가 여러개면 각 객체의 호출은 그 객체의 묶음 메서드로만 간다.
+     */
+    @Test
+    public void separateTargets() throws Exception {
+        BatchedTarget otherTarget = new BatchedTarget();
+        BatchedTarget otherProxy = proxy(otherTarget, aspect);
+
+        List<CompletableFuture<String>> futures = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            futures.add(proxy.load("item" + i));
+        }
+        for (int i = 0; i < 3; i++) {
+            futures.add(otherProxy.load("other" + i));
+        }
+        for (int i = 0; i < 5; i++) {
+            assertThat(futures.get(i).get(1, TimeUnit.SECONDS)).isEqualTo("item-item" + i);
+        }
+        assertThat(target.getBatchSizes()).containsExactly(5);
+        assertThat(otherTarget.getBatchSizes()).isEmpty(); // 아직 maxDelay 전이다.
+
+        for (int i = 5; i < 8; i++) {
+            assertThat(futures.get(i).get(2, TimeUnit.SECONDS)).isEqualTo("item-other" + (i - 5));
+        }
+        assertThat(otherTarget.getBatchSizes()).containsExactly(3);
+        assertThat(target.getBatchSizes()).containsExactly(5);
+    }
+
+    /**
+     * maxSize 에 닿은 호출 스레드는 묶음 하나만 보낸다. 그 사이 들어온 다른 호출의 요청은 보내지 않는다.
+     */
+    @Test
+    public void callerFlushesOneBatch() throws Exception {
+        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+        CountDownLatch entered = new CountDownLatch(1);
+        CountDownLatch proceed = new CountDownLatch(1);
+        List<String> flushThreads = new CopyOnWriteArrayList<>();
+        MicroBatcher<String, String> batcher = new MicroBatcher<>("test", 2, 10_000_000, items -> {
+            flushThreads.add(Thread.currentThread().getName());
+            entered.countDown();
+            proceed.await();
+            return items;
+        }, scheduler);
+        try {
+            List<CompletableFuture<String>> futures = new CopyOnWriteArrayList<>();
+            Thread caller = new Thread(() -> {
+                futures.add(batcher.submit("itemA"));
+                futures.add(batcher.submit("itemB")); // 이 스레드가 묶음을 보낸다.
+            }, "caller");
+            caller.start();
+            assertThat(entered.await(1, TimeUnit.SECONDS)).isTrue();
+
+            CompletableFuture<String> other = batcher.submit("itemC"); // 보내는 중에 들어온 요청
+            proceed.countDown();
+            caller.join(1000);
+
+            assertThat(caller.isAlive()).isFalse();
+            assertThat(futures).allMatch(CompletableFuture::isDone);
+            assertThat(flushThreads).containsExactly("caller");
+            assertThat(other).isNotDone(); // maxDelay 뒤에 스케줄러가 보낸다.
+            assertThat(batcher.getBatchCount()).isEqualTo(1);
+        } finally {
+            proceed.countDown();
+            scheduler.shutdownNow();
+        }
+    }
+
+    @Test
+    public void async() throws Exception {
+        List<CompletableFuture<String>> futures = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            futures.add(proxy.load("item" + i));
+        }
+        for (int i = 0; i < 5; i++) {
+            assertThat(futures.get(i).get(1, TimeUnit.SECONDS)).isEqualTo("item-item" + i);
+        }
+        assertThat(target.getBatchSizes()).containsExactly(5); // maxSize 에 닿은 호출 스레드가 바로 보낸다.
+    }
+
+    /**
+     * 예외가 나면 결과 대신 예외를 담는다.
+     */
+    private List<Object> saveConcurrently(List<String> itemIds) throws InterruptedException {
+        ExecutorService executor = Executors.newFixedThreadPool(itemIds.size());
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<String>> futures = new ArrayList<>();
+        for (String itemId : itemIds) {
+            futures.add(executor.submit(() -> {
+                start.await();
+                return proxy.save(itemId);
+            }));
+        }
+        start.countDown();
+        List<Object> results = new ArrayList<>();
+        for (Future<String> future : futures) {
+            try {
+                results.add(future.get());
+            } catch (ExecutionException e) {
+                results.add(e.getCause());
+            }
+        }
+        executor.shutdown();
+        return results;
+    }
+
+    private static BatchedTarget proxy(BatchedTarget target, BatchedAspect aspect) {
+        AspectJProxyFactory proxyFactory = new AspectJProxyFactory(target);
+        proxyFactory.addAspect(aspect);
+        return proxyFactory.getProxy();
+    }
+}
@@ -0,0 +1,200 @@
+package hello.aop.exam;
+
+import hello.aop.exam.aop.BulkheadAspect;
+import hello.aop.exam.code.BulkheadTarget;
+import hello.aop.exam.support.BulkheadFullException;
+import hello.aop.exam.support.ConcurrencyLimiter;
+import hello.aop.exam.support.GradientLimit;
+import org.junit.jupiter.api.Test;
+import org.springframework.aop.aspectj.annotation.AspectJProxyFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.*;
+
+public class BulkheadTest {
+
+    @Test
+    public void rejectWhenFull() throws Exception {
+        BulkheadTarget target = new BulkheadTarget();
+        BulkheadTarget proxy = proxy(target);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            CompletableFuture<String> first = CompletableFuture.supplyAsync(() -> proxy.save("itemA"), executor);
+            CompletableFuture<String> second = CompletableFuture.supplyAsync(() -> proxy.save("itemB"), executor);
+            awaitEntered(target, 2);
+
+            assertThatThrownBy(() -> proxy.save("itemC")).isInstanceOf(BulkheadFullException.class);
+            assertThat(target.getEntered()).isEqualTo(2);
+
+            target.release();
+            assertThat(first.get(1, TimeUnit.SECONDS)).isEqualTo("ok");
+            assertThat(second.get(1, TimeUnit.SECONDS)).isEqualTo("ok");
+            assertThat(proxy.save("itemD")).isEqualTo("ok"); // 자리를 반납했다.
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * maxWaitDuration 동안은 자리가 날 때까지 기다린다.
+     */
+    @Test
+    public void waitForPermit() throws Exception {
+        BulkheadTarget target = new BulkheadTarget();
+        BulkheadTarget proxy = proxy(target);
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        try {
+            CompletableFuture.supplyAsync(() -> proxy.saveWithWait("itemA"), executor);
+            CompletableFuture.supplyAsync(() -> proxy.saveWithWait("itemB"), executor);
+            awaitEntered(target, 2);
+
+            CompletableFuture<String> third = CompletableFuture.supplyAsync(() -> proxy.saveWithWait("itemC"), executor);
+            Thread.sleep(100);
+            assertThat(target.getEntered()).isEqualTo(2); // 아직 대기 중
+
+            target.release();
+            assertThat(third.get(1, TimeUnit.SECONDS)).isEqualTo("ok");
+            assertThat(target.getEntered()).isEqualTo(3);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * 자리를 연달아 반납하면 반납한 자리마다 대기 중인 스레드를 하나씩 깨운다.
+     */
+    @Test
+    public void wakeWaiterPerRelease() throws Exception {
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter("test", 4);
+        for (int i = 0; i < 4; i++) {
+            assertThat(limiter.tryAcquire()).isPositive();
+        }
+        List<CompletableFuture<Integer>> waiters = startWaiters(limiter, 4);
+
+        for (int i = 0; i < 4; i++) {
+            limiter.release(0, 4);
+        }
+        for (CompletableFuture<Integer> waiter : waiters) {
+            assertThat(waiter.get(1, TimeUnit.SECONDS)).isPositive(); // maxWait(5초)보다 훨씬 먼저 자리를 받는다.
+        }
+        assertThat(limiter.getInFlight()).isEqualTo(4);
+        assertThat(limiter.getRejected()).isZero();
+    }
+
+    /**
+     * 한도가 늘어나면 늘어난 만큼 대기 중인 스레드를 더 깨운다.
+     */
+    @Test
+    public void wakeWaitersWhenLimitGrows() throws Exception {
+        GradientLimit gradient = new GradientLimit(1, 1, 100);
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter("test", 1, gradient);
+        int inFlightAtStart = limiter.tryAcquire();
+        assertThat(inFlightAtStart).isPositive();
+        List<CompletableFuture<Integer>> waiters = startWaiters(limiter, 3);
+
+        for (int i = 0; i < 1000 && gradient.getLimit() < 4; i++) {
+            gradient.onSample(1_000_000, gradient.getLimit());
+        }
+        assertThat(gradient.getLimit()).isGreaterThanOrEqualTo(4);
+
+        limiter.release(1_000_000, inFlightAtStart);
+        for (CompletableFuture<Integer> waiter : waiters) {
+            assertThat(waiter.get(1, TimeUnit.SECONDS)).isPositive();
+        }
+        assertThat(limiter.getInFlight()).isEqualTo(3);
+    }
+
+    /**
+     * 지연시간이 그대로면 한도를 늘리고, 늘어나면 줄인다. 한도를 다 쓰지 않으면 늘리지 않는다.
+     */
+    @Test
+    public void gradientLimit() throws Exception {
+        GradientLimit limit = new GradientLimit(10, 1, 100);
+        feed(limit, 1_000_000, 10, 20);
+        int grown = limit.getLimit();
+        assertThat(grown).isGreaterThan(10);
+
+        feed(limit, 4_000_000, grown, 20); // 지연시간 4배
+        assertThat(limit.getLimit()).isLessThan(grown);
+
+        int shrunk = limit.getLimit();
+        feed(limit, 1_000_000, 1, 20); // 부하 없음
+        assertThat(limit.getLimit()).isLessThanOrEqualTo(shrunk);
+    }
+
+    /**
+     * 여러 스레드가 동시에 샘플을 넣다가 한도가 줄어서 샘플 수가 window 를 넘어도 계속 조정한다.
+     */
+    @Test
+    public void gradientLimitConcurrent() throws Exception {
+        GradientLimit limit = new GradientLimit(200, 1, 1000);
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            threads.add(new Thread(() -> {
+                for (int i = 0; i < 20_000; i++) {
+                    limit.onSample(1_000_000 + i * 1_000L, limit.getLimit()); // 지연시간이 계속 늘어난다.
+                }
+            }));
+        }
+        threads.forEach(Thread::start);
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        int shrunk = limit.getLimit();
+        assertThat(shrunk).isLessThan(200);
+
+        feed(limit, 1_000_000, 1000, 20); // 지연시간이 돌아오면 다시 늘어난다.
+        assertThat(limit.getLimit()).isGreaterThan(shrunk);
+    }
+
+    private static void feed(GradientLimit limit, long rttNanos, int inFlight, int windows) {
+        for (int w = 0; w < windows; w++) {
+            int samples = Math.max(10, limit.getLimit());
+            for (int i = 0; i < samples; i++) {
+                limit.onSample(rttNanos, Math.min(inFlight, limit.getLimit()));
+            }
+        }
+    }
+
+    /**
+     * 자리를 받을 때까지 maxWait(5초) 동안 기다리는 스레드를 count 개 띄우고, 모두 park 할 때까지 기다린다.
+     */
+    private static List<CompletableFuture<Integer>> startWaiters(ConcurrencyLimiter limiter, int count) throws InterruptedException {
+        List<CompletableFuture<Integer>> waiters = new ArrayList<>();
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            CompletableFuture<Integer> waiter = new CompletableFuture<>();
+            Thread thread = new Thread(() -> waiter.complete(limiter.acquire(5000)));
+            thread.setDaemon(true);
+            thread.start();
+            waiters.add(waiter);
+            threads.add(thread);
+        }
+        for (Thread thread : threads) {
+            while (thread.getState() != Thread.State.TIMED_WAITING) {
+                Thread.sleep(1);
+            }
+        }
+        return waiters;
+    }
+
+    private static BulkheadTarget proxy(BulkheadTarget target) {
+        AspectJProxyFactory proxyFactory = new AspectJProxyFactory(target);
+        proxyFactory.addAspect(new BulkheadAspect());
+        return proxyFactory.getProxy();
+    }
+
+    private static void awaitEntered(BulkheadTarget target, int count) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 1000;
+        while (target.getEntered() < count && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        assertThat(target.getEntered()).isEqualTo(count);
+    }
+}
@@ -0,0 +1,123 @@
+package hello.aop.exam;
+
+import hello.aop.exam.aop.CircuitBreakerAspect;
+import hello.aop.exam.aop.RetryAspect;
+import hello.aop.exam.code.CircuitBreakerTarget;
+import hello.aop.exam.support.CircuitBreakerOpenException;
+import hello.aop.exam.support.CircuitBreakerState;
+import hello.aop.exam.support.CircuitBreakerState.State;
+import hello.aop.exam.support.OutcomeWindow;
+import org.junit.jupiter.api.Test;
+import org.springframework.aop.aspectj.annotation.AspectJProxyFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.*;
+
+public class CircuitBreakerTest {
+
+    @Test
+    public void outcomeWindow() throws Exception {
+        OutcomeWindow window = new OutcomeWindow(4);
+        window.record(true);
+        window.record(true);
+        window.record(false);
+        assertThat(window.getCalls()).isEqualTo(3);
+        assertThat(window.getFailureRate()).isEqualTo(66);
+
+        window.record(false);
+        window.record(false); // 가장 오래된 실패를 밀어낸다.
+        assertThat(window.getCalls()).isEqualTo(4);
+        assertThat(window.getFailures()).isEqualTo(1);
+    }
+
+    /**
+     * 여러 스레드가 동시에 기록해도 카운터가 슬롯 내용과 일치해야 한다.
+     */
+    @Test
+    public void outcomeWindowConcurrent() throws Exception {
+        OutcomeWindow window = new OutcomeWindow(64);
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            boolean failure = i % 2 == 0;
+            threads.add(new Thread(() -> {
+                for (int n = 0; n < 10_000; n++) {
+                    window.record(failure);
+                }
+            }));
+        }
+        threads.forEach(Thread::start);
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertThat(window.getCalls()).isEqualTo(64);
+        assertThat(window.getFailures()).isBetween(0, 64);
+    }
+
+    @Test
+    public void stateTransition() throws Exception {
+        CircuitBreakerState breaker = new CircuitBreakerState("test", 4, 4, 50, 50, 2);
+
+        for (int i = 0; i < 4; i++) {
+            breaker.onResult(breaker.tryAcquire(), true);
+        }
+        assertThat(breaker.getState()).isEqualTo(State.OPEN);
+        assertThat(breaker.tryAcquire()).isNull();
+
+        Thread.sleep(60);
+        CircuitBreakerState.Phase first = breaker.tryAcquire();
+        CircuitBreakerState.Phase second = breaker.tryAcquire();
+        assertThat(breaker.getState()).isEqualTo(State.HALF_OPEN);
+        assertThat(breaker.tryAcquire()).isNull(); // 시험 호출은 2번까지
+
+        breaker.onResult(first, false);
+        breaker.onResult(second, false);
+        assertThat(breaker.getState()).isEqualTo(State.CLOSED);
+    }
+
+    @Test
+    public void halfOpenFailure() throws Exception {
+        CircuitBreakerState breaker = new CircuitBreakerState("test", 4, 4, 50, 50, 2);
+        for (int i = 0; i < 4; i++) {
+            breaker.onResult(breaker.tryAcquire(), true);
+        }
+        Thread.sleep(60);
+        CircuitBreakerState.Phase first = breaker.tryAcquire();
+        CircuitBreakerState.Phase second = breaker.tryAcquire();
+        breaker.onResult(first, true);
+        breaker.onResult(second, false);
+        assertThat(breaker.getState()).isEqualTo(State.OPEN);
+    }
+
+    /**
+     * RetryAspect 의 시도 하나하나가 회로에 기록되고, 회로가 열리면 대상을 호출하지 않는다.
+     */
+    @Test
+    public void withRetry() throws Exception {
+        CircuitBreakerTarget target = new CircuitBreakerTarget();
+        CircuitBreakerAspect circuitBreakerAspect = new CircuitBreakerAspect();
+
+        AspectJProxyFactory proxyFactory = new AspectJProxyFactory(target);
+        proxyFactory.setProxyTargetClass(true);
+        proxyFactory.addAspect(new RetryAspect());
+        proxyFactory.addAspect(circuitBreakerAspect);
+        CircuitBreakerTarget proxy = proxyFactory.getProxy();
+
+        // 2번 호출 x 2번 시도 = 4번 실패
+        assertThatThrownBy(proxy::call).isInstanceOf(IllegalStateException.class);
+        assertThatThrownBy(proxy::call).isInstanceOf(IllegalStateException.class);
+        assertThat(target.getCalls()).isEqualTo(4);
+        assertThat(circuitBreakerAspect.getCircuitBreaker("target").getState()).isEqualTo(State.OPEN);
+
+        assertThatThrownBy(proxy::call).isInstanceOf(CircuitBreakerOpenException.class);
+        assertThat(target.getCalls()).isEqualTo(4); // 대상은 호출되지 않음, 재시도도 하지 않음
+
+        Thread.sleep(120);
+        target.setFail(false);
+        assertThat(proxy.call()).isEqualTo("ok");
+        assertThat(proxy.call()).isEqualTo("ok");
+        assertThat(circuitBreakerAspect.getCircuitBreaker("target").getState()).isEqualTo(State.CLOSED);
+    }
+}
@@ -0,0 +1,106 @@
+package hello.aop.exam;
+
+import hello.aop.exam.aop.CoalesceAspect;
+import hello.aop.exam.aop.RetryAspect;
+import hello.aop.exam.code.CoalesceTarget;
+import org.junit.jupiter.api.Test;
+import org.springframework.aop.aspectj.annotation.AspectJProxyFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.*;
+
+public class CoalesceTest {
+
+    private static final int CALLERS = 10;
+
+    /**
+     * 동시에 들어온 같은 키의 호출은 대상을 한번만 호출하고 모두 같은 결과를 받는다.
+     * leader 가 한번 실패해도 재시도는 leader 안에서만 돈다.
+     */
+    @Test
+    public void coalesce() throws Exception {
+        CoalesceAspect aspect = new CoalesceAspect();
+        CoalesceTarget target = new CoalesceTarget(1);
+        CoalesceTarget proxy = proxy(target, aspect);
+
+        List<Object> results = callConcurrently(() -> proxy.find("itemA"));
+
+        assertThat(results).hasSize(CALLERS).allMatch("item-itemA"::equals);
+        assertThat(target.getAttempts()).isEqualTo(2); // 실패 1번 + 재시도 1번
+        assertThat(aspect.getCoalescedCount()).isEqualTo(CALLERS - 1);
+
+        proxy.find("itemA"); // 끝난 뒤의 호출은 다시 대상을 호출한다.
+        assertThat(target.getAttempts()).isEqualTo(3);
+    }
+
+    /**
+     * 재시도까지 모두 실패하면 기다리던 호출도 모두 같은 예외를 받는다.
+     */
+    @Test
+    public void exception() throws Exception {
+        CoalesceTarget target = new CoalesceTarget(Integer.MAX_VALUE);
+        CoalesceTarget proxy = proxy(target, new CoalesceAspect());
+
+        List<Object> results = callConcurrently(() -> proxy.find("itemA"));
+
+        assertThat(results).hasSize(CALLERS).allMatch(result -> result instanceof IllegalStateException);
+        assertThat(target.getAttempts()).isEqualTo(3);
+    }
+
+    @Test
+    public void async() throws Exception {
+        CoalesceTarget target = new CoalesceTarget(0);
+        CoalesceTarget proxy = proxy(target, new CoalesceAspect());
+
+        CompletableFuture<String> first = proxy.findAsync("itemA");
+        CompletableFuture<String> second = proxy.findAsync("itemA");
+        CompletableFuture<String> other = proxy.findAsync("itemB");
+
+        assertThat(first.get()).isEqualTo("item-itemA");
+        assertThat(second.get()).isEqualTo("item-itemA");
+        assertThat(other.get()).isEqualTo("item-itemB");
+        assertThat(target.getAttempts()).isEqualTo(2);
+    }
+
+    /**
+     * CALLERS 개의 스레드가 동시에 호출한다. 예외가 나면 결과 대신 예외를 담는다.
+     */
+    private static List<Object> callConcurrently(Callable<Object> call) throws InterruptedException {
+        ExecutorService executor = Executors.newFixedThreadPool(CALLERS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Object>> futures = new ArrayList<>();
+        for (int i = 0; i < CALLERS; i++) {
+            futures.add(executor.submit(() -> {
+                start.await();
+                return call.call();
+            }));
+        }
+        start.countDown();
+        List<Object> results = new ArrayList<>();
+        for (Future<Object> future : futures) {
+            try {
+                results.add(future.get());
+            } catch (ExecutionException e) {
+                results.add(e.getCause());
+            }
+        }
+        executor.shutdown();
+        return results;
+    }
+
+    private static CoalesceTarget proxy(CoalesceTarget target, CoalesceAspect aspect) {
+        AspectJProxyFactory proxyFactory = new AspectJProxyFactory(target);
+        proxyFactory.addAspect(aspect);
+        proxyFactory.addAspect(new RetryAspect());
+        return proxyFactory.getProxy();
+    }
+}
@@ -1,6 +1,10 @@
 package hello.aop.exam;
 
+import hello.aop.exam.aop.BulkheadAspect;
+import hello.aop.exam.aop.CircuitBreakerAspect;
+import hello.aop.exam.aop.CoalesceAspect;
 import hello.aop.exam.aop.RetryAspect;
+import hello.aop.exam.aop.TimeoutAspect;
 import hello.aop.exam.aop.TraceAspect;
 import lombok.extern.slf4j.Slf4j;
 import org.junit.jupiter.api.Test;
@@ -10,7 +14,7 @@ import org.springframework.context.annotation.Import;
 
 @Slf4j
 //@Import(TraceAspect.class)
-@Import({TraceAspect.class, RetryAspect.class})
+@Import({TraceAspect.class, TimeoutAspect.class, CoalesceAspect.class, RetryAspect.class, BulkheadAspect.class, CircuitBreakerAspect.class})
 @SpringBootTest // 스프링 컨테이너 기동
 public class ExamTest {
 
@@ -0,0 +1,107 @@
+package hello.aop.exam;
+
+import hello.aop.exam.annotation.Hedge;
+import hello.aop.exam.aop.AspectOrder;
+import hello.aop.exam.aop.HedgeAspect;
+import hello.aop.exam.code.HedgeTarget;
+import hello.aop.exam.support.LatencyTracker;
+import org.aspectj.lang.annotation.Aspect;
+import org.aspectj.lang.annotation.Before;
+import org.junit.jupiter.api.Test;
+import org.springframework.aop.aspectj.annotation.AspectJProxyFactory;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.EnableAspectJAutoProxy;
+import org.springframework.context.annotation.Import;
+import org.springframework.core.annotation.Order;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.assertj.core.api.Assertions.*;
+
+public class HedgeTest {
+
+    /**
+     * 첫 호출이 느리면 hedge 호출의 결과를 받고, 느린 첫 호출은 인터럽트 된다.
+     */
+    @Test
+    public void hedge() throws Exception {
+        HedgeTarget target = new HedgeTarget();
+        HedgeAspect hedgeAspect = new HedgeAspect();
+        HedgeTarget proxy = proxy(target, hedgeAspect);
+
+        long start = System.currentTimeMillis();
+        assertThat(proxy.find("itemA")).isEqualTo("fast");
+        assertThat(System.currentTimeMillis() - start).isLessThan(500);
+
+        assertThat(target.getCalls()).isEqualTo(2);
+        assertThat(hedgeAspect.getHedgedCount()).isEqualTo(1);
+        Thread.sleep(50);
+        assertThat(target.getInterrupted()).isEqualTo(1);
+    }
+
+    /**
+     * 예산이 없으면 hedge 하지 않고 첫 호출을 기다린다.
+     */
+    @Test
+    public void noBudget() throws Exception {
+        HedgeTarget target = new HedgeTarget();
+        HedgeAspect hedgeAspect = new HedgeAspect();
+        HedgeTarget proxy = proxy(target, hedgeAspect);
+
+        assertThat(proxy.findWithoutBudget("itemA")).isEqualTo("slow");
+        assertThat(target.getCalls()).isEqualTo(1);
+        assertThat(hedgeAspect.getHedgedCount()).isZero();
+    }
+
+    /**
+     * executor 스레드에서 실행되는 안쪽 애스펙트도 @annotation(hedge) 파라미터를 바인딩 받는다.
+     */
+    @Test
+    public void innerAspectBinding() throws Exception {
+        // AspectJProxyFactory 는 addAspect 마다 ExposeInvocationInterceptor 를 넣으므로 자동 프록시로 만든다.
+        try (AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext(InnerAspectConfig.class)) {
+            HedgeTarget proxy = context.getBean(HedgeTarget.class);
+
+            assertThat(proxy.find("itemA")).isEqualTo("fast");
+            assertThat(context.getBean(HedgeAspect.class).getHedgedCount()).isEqualTo(1);
+            assertThat(context.getBean(InnerAspect.class).threads).hasSize(2).allMatch(name -> name.startsWith("hedge-"));
+        }
+    }
+
+    @Test
+    public void latencyTracker() throws Exception {
+        LatencyTracker tracker = new LatencyTracker();
+        assertThat(tracker.getP95Nanos()).isEqualTo(-1);
+
+        for (int i = 1; i <= 128; i++) {
+            tracker.record(i);
+        }
+        assertThat(tracker.getP95Nanos()).isEqualTo(122); // ceil(128 * 0.95) 번째 값
+    }
+
+    private HedgeTarget proxy(HedgeTarget target, HedgeAspect hedgeAspect) {
+        AspectJProxyFactory proxyFactory = new AspectJProxyFactory(target);
+        proxyFactory.setProxyTargetClass(true);
+        proxyFactory.addAspect(hedgeAspect);
+        return proxyFactory.getProxy();
+    }
+
+    @Configuration
+    @EnableAspectJAutoProxy(proxyTargetClass = true)
+    @Import({HedgeAspect.class, InnerAspect.class, HedgeTarget.class})
+    static class InnerAspectConfig {
+    }
+
+    @Aspect
+    @Order(AspectOrder.HEDGE + 1)
+    static class InnerAspect {
+        final List<String> threads = new CopyOnWriteArrayList<>();
+
+        @Before("@annotation(hedge)") // @Before 는 실행 시점에 ExposeInvocationInterceptor 에서 바인딩 결과를 찾는다.
+        public void doInner(Hedge hedge) {
+            threads.add(Thread.currentThread().getName());
+        }
+    }
+}
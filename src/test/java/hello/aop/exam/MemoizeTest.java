@@ -0,0 +1,148 @@
+package hello.aop.exam;
+
+import hello.aop.exam.aop.MemoizeAspect;
+import hello.aop.exam.code.MemoizeTarget;
+import hello.aop.exam.support.TinyLfuCache;
+import org.junit.jupiter.api.Test;
+import org.springframework.aop.aspectj.annotation.AspectJProxyFactory;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.*;
+
+public class MemoizeTest {
+
+    @Test
+    public void memoize() throws Exception {
+        MemoizeAspect aspect = new MemoizeAspect();
+        MemoizeTarget target = new MemoizeTarget();
+        MemoizeTarget proxy = proxy(target, aspect);
+
+        assertThat(proxy.find("itemA")).isEqualTo("item-itemA");
+        assertThat(proxy.find("itemA")).isEqualTo("item-itemA");
+        assertThat(proxy.find(null)).isNull();
+        assertThat(proxy.find(null)).isNull();
+        assertThat(target.getCalls()).isEqualTo(2);
+
+        assertThat(proxy.findByRange("itemA", 1, 2)).isEqualTo("itemA[1..2]");
+        assertThat(proxy.findByRange("itemA", 1, 2)).isEqualTo("itemA[1..2]");
+        assertThat(proxy.findByRange("itemA", 1, 3)).isEqualTo("itemA[1..3]");
+        assertThat(target.getCalls()).isEqualTo(4);
+
+        TinyLfuCache<Object, Object> cache = aspect.getCache(MemoizeTarget.class.getMethod("find", String.class));
+        assertThat(cache.getHitCount()).isEqualTo(2);
+        assertThat(cache.getMissCount()).isEqualTo(2);
+    }
+
+    @Test
+    public void ttl() throws Exception {
+        MemoizeTarget target = new MemoizeTarget();
+        MemoizeTarget proxy = proxy(target, new MemoizeAspect());
+        proxy.findWithTtl("itemA");
+        proxy.findWithTtl("itemA");
+        assertThat(target.getCalls()).isEqualTo(1);
+
+        Thread.sleep(150);
+        proxy.findWithTtl("itemA");
+        assertThat(target.getCalls()).isEqualTo(2);
+    }
+
+    /**
+     * 최대 개수를 넘지 않고, 한번씩만 읽히는 키가 쏟아져도 자주 쓰는 키는 남는다.
+     */
+    @Test
+    public void scanResistance() {
+        TinyLfuCache<Integer, Integer> cache = new TinyLfuCache<>(100, 0);
+        for (int round = 0; round < 20; round++) {
+            for (int key = 0; key < 50; key++) {
+                if (cache.get(key) == null) {
+                    cache.put(key, key);
+                }
+            }
+        }
+        for (int key = 1000; key < 11_000; key++) { // scan
+            cache.put(key, key);
+        }
+        assertThat(cache.size()).isLessThanOrEqualTo(100);
+        assertThat(cache.getEvictionCount()).isGreaterThan(0);
+
+        int hot = 0;
+        for (int key = 0; key < 50; key++) {
+            if (cache.get(key) != null) {
+                hot++;
+            }
+        }
+        assertThat(hot).isGreaterThanOrEqualTo(45);
+    }
+
+    /**
+     * Zipf 분포 + 중간중간 scan 이 섞인 접근에서 같은 크기의 LRU 보다 적중률이 높다.
+     */
+    @Test
+    public void hitRateAgainstLru() {
+        int maximum = 500;
+        TinyLfuCache<Integer, Integer> tinyLfu = new TinyLfuCache<>(maximum, 0);
+        Lru lru = new Lru(maximum);
+        long lruHits = 0;
+
+        double[] cdf = zipfCdf(50_000, 0.9);
+        Random random = new Random(42);
+        int scanKey = 1_000_000;
+        int total = 500_000;
+        for (int i = 0; i < total; i++) {
+            int key = (i % 10_000) < 1_000 ? scanKey++ : sample(cdf, random);
+            if (tinyLfu.get(key) == null) {
+                tinyLfu.put(key, key);
+            }
+            if (lru.get(key) != null) {
+                lruHits++;
+            } else {
+                lru.put(key, key);
+            }
+        }
+        double lruHitRate = (double) lruHits / total;
+        assertThat(tinyLfu.size()).isLessThanOrEqualTo(maximum);
+        assertThat(tinyLfu.getHitRate()).isGreaterThan(lruHitRate);
+    }
+
+    private static double[] zipfCdf(int n, double skew) {
+        double[] cdf = new double[n];
+        double sum = 0;
+        for (int i = 0; i < n; i++) {
+            sum += 1 / Math.pow(i + 1, skew);
+            cdf[i] = sum;
+        }
+        for (int i = 0; i < n; i++) {
+            cdf[i] /= sum;
+        }
+        return cdf;
+    }
+
+    private static int sample(double[] cdf, Random random) {
+        int index = Arrays.binarySearch(cdf, random.nextDouble());
+        return index >= 0 ? index : Math.min(-index - 1, cdf.length - 1);
+    }
+
+    private static MemoizeTarget proxy(MemoizeTarget target, MemoizeAspect aspect) {
+        AspectJProxyFactory proxyFactory = new AspectJProxyFactory(target);
+        proxyFactory.addAspect(aspect);
+        return proxyFactory.getProxy();
+    }
+
+    private static final class Lru extends LinkedHashMap<Integer, Integer> {
+        private final int maximum;
+
+        private Lru(int maximum) {
+            super(16, 0.75f, true);
+            this.maximum = maximum;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, Integer> eldest) {
+            return size() > maximum;
+        }
+    }
+}
@@ -0,0 +1,154 @@
+package hello.aop.exam;
+
+import hello.aop.exam.aop.RateLimitAspect;
+import hello.aop.exam.code.RateLimitTarget;
+import hello.aop.exam.support.RateLimitExceededException;
+import hello.aop.exam.support.RateLimiter;
+import org.junit.jupiter.api.Test;
+import org.springframework.aop.aspectj.annotation.AspectJProxyFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.*;
+
+public class RateLimitTest {
+
+    /**
+     * burst 만큼은 바로 허용하고, 그 다음은 interval(1초 / permitsPerSecond) 마다 하나씩 허용한다.
+     */
+    @Test
+    public void failFast() throws Exception {
+        RateLimitTarget proxy = proxy(new RateLimitAspect());
+        for (int i = 0; i < 3; i++) {
+            assertThat(proxy.save("itemA")).isEqualTo("ok");
+        }
+        assertThatThrownBy(() -> proxy.save("itemA")).isInstanceOf(RateLimitExceededException.class);
+
+        Thread.sleep(120); // 100ms 마다 하나
+        assertThat(proxy.save("itemA")).isEqualTo("ok");
+    }
+
+    /**
+     * timeout 안에 차례가 오면 기다렸다가 호출한다.
+     */
+    @Test
+    public void waitWithTimeout() throws Exception {
+        RateLimitTarget proxy = proxy(new RateLimitAspect());
+        long start = System.nanoTime();
+        for (int i = 0; i < 4; i++) {
+            assertThat(proxy.saveWithTimeout("itemA")).isEqualTo("ok");
+        }
+        assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)).isGreaterThanOrEqualTo(250);
+
+
+        RateLimiter limiter = new RateLimiter("test", 10, 1);
+        assertThat(limiter.tryAcquire()).isTrue();
+        assertThat(limiter.tryAcquire(TimeUnit.MILLISECONDS.toNanos(50))).isFalse(); // 다음 차례는 100ms 뒤
+        assertThat(limiter.tryAcquire(TimeUnit.MILLISECONDS.toNanos(500))).isTrue();
+    }
+
+    /**
+     * 기다리는 중에 인터럽트 되면 거절하고, 인터럽트 상태는 남겨둔다.
+     */
+    @Test
+    public void interruptedWhileWaiting() throws Exception {
+        RateLimiter limiter = new RateLimiter("test", 1, 1);
+        assertThat(limiter.tryAcquire()).isTrue();
+
+        Thread.currentThread().interrupt();
+        try {
+            assertThat(limiter.tryAcquire(TimeUnit.SECONDS.toNanos(5))).isFalse(); // 다음 차례는 1초 뒤
+            assertThat(Thread.currentThread().isInterrupted()).isTrue();
+        } finally {
+            Thread.interrupted();
+        }
+        assertThat(limiter.getRejected()).isEqualTo(1);
+
+        RateLimitTarget proxy = proxy(new RateLimitAspect());
+        for (int i = 0; i < 3; i++) {
+            proxy.saveWithTimeout("itemA");
+        }
+        Thread.currentThread().interrupt();
+        try {
+            assertThatThrownBy(() -> proxy.saveWithTimeout("itemA")).isInstanceOf(RateLimitExceededException.class);
+        } finally {
+            Thread.interrupted();
+        }
+    }
+
+    @Test
+    public void perKey() throws Exception {
+        RateLimitAspect aspect = new RateLimitAspect();
+        RateLimitTarget proxy = proxy(aspect);
+        proxy.saveByItem("itemA", 1);
+        proxy.saveByItem("itemA", 1);
+        assertThatThrownBy(() -> proxy.saveByItem("itemA", 1)).isInstanceOf(RateLimitExceededException.class);
+        assertThat(proxy.saveByItem("itemB", 1)).isEqualTo("ok"); // 다른 키는 따로 센다.
+
+        RateLimiter limiter = aspect.getRateLimiter("RateLimitTarget.saveByItem(..)", "itemA");
+        assertThat(limiter.getRejected()).isEqualTo(1);
+    }
+
+    /**
+     * 키가 MAX_KEYS(10,000) 개를 넘으면 호출이 없던 키의 limiter 를 정리하고, 호출 중인 키의 limiter 는 남긴다.
+     */
+    @Test
+    public void sweepIdleKeys() throws Exception {
+        RateLimitAspect aspect = new RateLimitAspect();
+        RateLimitTarget proxy = proxy(aspect);
+        String name = "RateLimitTarget.find(..)";
+        for (int i = 0; i < 10_000; i++) {
+            proxy.find("user" + i);
+        }
+        proxy.saveByItem("itemA", 1); // 다른 메서드의 키는 따로 센다.
+        Thread.sleep(50); // 10ms 마다 하나씩 차므로 모두 가득 찬다.
+
+        proxy.find("user0");
+        RateLimiter active = aspect.getRateLimiter(name, "user0");
+        for (int i = 10_000; i < 10_100; i++) {
+            proxy.find("user" + i);
+        }
+
+        assertThat(aspect.getRateLimiter(name, "user1")).isNull(); // 정리되었다.
+        assertThat(aspect.getRateLimiter(name, "user0")).isSameAs(active); // 방금 호출되어서 남았다.
+        assertThat(aspect.getRateLimiter(name, "user10099")).isNotNull();
+        assertThat(aspect.getRateLimiter("RateLimitTarget.saveByItem(..)", "itemA")).isNotNull();
+    }
+
+    /**
+     * 여러 스레드가 동시에 호출해도 burst + 경과시간 * permitsPerSecond 를 넘게 허용하지 않는다.
+     */
+    @Test
+    public void concurrent() throws Exception {
+        RateLimiter limiter = new RateLimiter("test", 1000, 10);
+        AtomicInteger granted = new AtomicInteger();
+        long start = System.nanoTime();
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            threads.add(new Thread(() -> {
+                for (int n = 0; n < 10_000; n++) {
+                    if (limiter.tryAcquire()) {
+                        granted.incrementAndGet();
+                    }
+                }
+            }));
+        }
+        threads.forEach(Thread::start);
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        assertThat(granted.get()).isGreaterThanOrEqualTo(10);
+        assertThat((long) granted.get()).isLessThanOrEqualTo(10 + elapsedMillis + 1);
+    }
+
+    private static RateLimitTarget proxy(RateLimitAspect aspect) {
+        AspectJProxyFactory proxyFactory = new AspectJProxyFactory(new RateLimitTarget());
+        proxyFactory.addAspect(aspect);
+        return proxyFactory.getProxy();
+    }
+}
@@ -0,0 +1,66 @@
+package hello.aop.exam;
+
+import hello.aop.exam.annotation.Backoff;
+import hello.aop.exam.aop.RetryAspect;
+import hello.aop.exam.code.RetryTarget;
+import hello.aop.exam.support.RetryBackoff;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Test;
+import org.springframework.aop.aspectj.annotation.AspectJProxyFactory;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import static org.assertj.core.api.Assertions.*;
+
+@Slf4j
+public class RetryAspectTest {
+
+    @Test
+    public void backoff() throws Exception {
+        assertThat(RetryBackoff.nextDelay(Backoff.FIXED, 10, 100, 3, 10)).isEqualTo(10);
+        assertThat(RetryBackoff.nextDelay(Backoff.EXPONENTIAL, 10, 100, 1, 10)).isEqualTo(10);
+        assertThat(RetryBackoff.nextDelay(Backoff.EXPONENTIAL, 10, 100, 3, 20)).isEqualTo(40);
+        assertThat(RetryBackoff.nextDelay(Backoff.EXPONENTIAL, 10, 100, 100, 100)).isEqualTo(100); // 상한
+        assertThat(RetryBackoff.nextDelay(Backoff.EXPONENTIAL, 0, 100, 3, 0)).isZero();
+
+        long delay = 10;
+        for (int retryCount = 1; retryCount < 100; retryCount++) {
+            delay = RetryBackoff.nextDelay(Backoff.DECORRELATED_JITTER, 10, 100, retryCount, delay);
+            assertThat(delay).isBetween(10L, 100L);
+        }
+    }
+
+    /**
+     * 실패하면 호출한 스레드를 붙잡지 않고 바로 future 를 반환한 뒤, 스케줄러에서 재시도한다.
+     */
+    @Test
+    public void asyncRetry() throws Exception {
+        RetryTarget target = new RetryTarget(2);
+        RetryTarget proxy = proxy(target);
+
+        CompletableFuture<String> future = proxy.saveAsync("itemA");
+        assertThat(future).isNotDone(); // 첫 시도 실패 후 재시도 대기중
+
+        assertThat(future.join()).isEqualTo("ok");
+        assertThat(target.getAttempts()).isEqualTo(3);
+    }
+
+    @Test
+    public void asyncRetryExhausted() throws Exception {
+        RetryTarget target = new RetryTarget(10);
+        RetryTarget proxy = proxy(target);
+
+        assertThatThrownBy(() -> proxy.saveAsync("itemA").join())
+                .isInstanceOf(CompletionException.class)
+                .hasCauseInstanceOf(IllegalStateException.class);
+        assertThat(target.getAttempts()).isEqualTo(3);
+    }
+
+    private RetryTarget proxy(RetryTarget target) {
+        AspectJProxyFactory proxyFactory = new AspectJProxyFactory(target);
+        proxyFactory.setProxyTargetClass(true); // CGLIB 프록시
+        proxyFactory.addAspect(RetryAspect.class);
+        return proxyFactory.getProxy();
+    }
+}
@@ -0,0 +1,61 @@
+package hello.aop.exam;
+
+import hello.aop.exam.aop.RetryAspect;
+import hello.aop.exam.code.RetryTarget;
+import hello.aop.exam.support.RetryBudget;
+import hello.aop.exam.support.RetryBudgetRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.aop.aspectj.annotation.AspectJProxyFactory;
+
+import static org.assertj.core.api.Assertions.*;
+
+public class RetryBudgetTest {
+
+    @Test
+    public void tokenBucket() throws Exception {
+        RetryBudget budget = new RetryBudget("test", 0.1, 2);
+
+        assertThat(budget.tryAcquire()).isTrue();
+        assertThat(budget.tryAcquire()).isTrue();
+        assertThat(budget.tryAcquire()).isFalse(); // 토큰 소진
+
+        for (int i = 0; i < 10; i++) {
+            budget.onSuccess(); // 성공 10번 = 토큰 1개
+        }
+        assertThat(budget.tryAcquire()).isTrue();
+        assertThat(budget.tryAcquire()).isFalse();
+
+        assertThat(budget.getGranted()).isEqualTo(3);
+        assertThat(budget.getDenied()).isEqualTo(2);
+    }
+
+    @Test
+    public void maxTokens() throws Exception {
+        RetryBudget budget = new RetryBudget("test", 1.0, 1);
+        for (int i = 0; i < 100; i++) {
+            budget.onSuccess();
+        }
+        assertThat(budget.getTokens()).isEqualTo(1.0);
+    }
+
+    /**
+     * 예산이 바닥나면 @Retry 의 횟수가 남아있어도 재시도 하지 않는다.
+     */
+    @Test
+    public void retryDeniedByBudget() throws Exception {
+        RetryBudgetRegistry registry = new RetryBudgetRegistry(0.0, 1);
+        RetryTarget target = new RetryTarget(10);
+
+        AspectJProxyFactory proxyFactory = new AspectJProxyFactory(target);
+        proxyFactory.setProxyTargetClass(true);
+        proxyFactory.addAspect(new RetryAspect(registry));
+        RetryTarget proxy = proxyFactory.getProxy();
+
+        assertThatThrownBy(() -> proxy.save("itemA")).isInstanceOf(IllegalStateException.class);
+        assertThat(target.getAttempts()).isEqualTo(2); // 첫 시도 + 토큰 1개로 재시도 1번
+
+        RetryBudget budget = registry.budget("retryTarget");
+        assertThat(budget.getGranted()).isEqualTo(1);
+        assertThat(budget.getDenied()).isEqualTo(1);
+    }
+}
@@ -0,0 +1,77 @@
+package hello.aop.exam;
+
+import hello.aop.exam.support.TimeLimiter;
+import hello.aop.exam.trace.LatencyHistogram;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 10,000 개의 제한 시간 호출(각 50ms 대기)을 한번에 보냈을 때 플랫폼 스레드 수와 p99 지연시간
+ *
+ *  ./gradlew benchmark --tests hello.aop.exam.TimeoutBenchmark
+ *
+ * 가상 스레드는 JDK 21 이상에서만 측정한다. 가상 스레드는 ThreadMXBean 의 스레드 수에 잡히지 않는다.
+ */
+@Slf4j
+@Tag("benchmark")
+public class TimeoutBenchmark {
+
+    static final int CALLS = 10_000;
+    static final long CALL_MILLIS = 50;
+    static final long TIMEOUT_MILLIS = 30_000;
+
+    @Test
+    public void platformThreads() throws Exception {
+        run(TimeLimiter.Mode.PLATFORM);
+    }
+
+    @Test
+    public void virtualThreads() throws Exception {
+        if (!TimeLimiter.isVirtualThreadSupported()) {
+            log.info("[benchmark] virtual threads need JDK 21+, current={}", Runtime.version());
+            return;
+        }
+        run(TimeLimiter.Mode.VIRTUAL);
+    }
+
+    private void run(TimeLimiter.Mode mode) throws Exception {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        try (TimeLimiter timeLimiter = new TimeLimiter(mode)) {
+            for (int round = 0; round < 2; round++) { // 첫 라운드는 워밍업
+                threads.resetPeakThreadCount();
+                int threadsBefore = threads.getThreadCount();
+                LatencyHistogram histogram = new LatencyHistogram();
+
+                long start = System.nanoTime();
+                List<CompletableFuture<Long>> calls = new ArrayList<>(CALLS);
+                for (int i = 0; i < CALLS; i++) {
+                    long submitted = System.nanoTime();
+                    calls.add(timeLimiter.callAsync(() -> {
+                        Thread.sleep(CALL_MILLIS);
+                        return submitted;
+                    }, TIMEOUT_MILLIS).thenApply(s -> {
+                        histogram.record(System.nanoTime() - s);
+                        return s;
+                    }));
+                }
+                CompletableFuture.allOf(calls.toArray(new CompletableFuture[0])).get();
+                long elapsed = System.nanoTime() - start;
+
+                LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+                log.info("[benchmark] mode={} round={} calls={} elapsed={}ms threads(before={}, peak={}) p50={}ms p99={}ms max={}ms",
+                        mode, round, snapshot.getCount(), TimeUnit.NANOSECONDS.toMillis(elapsed),
+                        threadsBefore, threads.getPeakThreadCount(),
+                        TimeUnit.NANOSECONDS.toMillis(snapshot.getP50()), TimeUnit.NANOSECONDS.toMillis(snapshot.getP99()),
+                        TimeUnit.NANOSECONDS.toMillis(snapshot.getMax()));
+            }
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package hello.aop.exam;
+
+import hello.aop.exam.aop.TimeoutAspect;
+import hello.aop.exam.code.TimeoutTarget;
+import hello.aop.exam.support.CallTimeoutException;
+import hello.aop.exam.support.TimeLimiter;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.aop.aspectj.annotation.AspectJProxyFactory;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.assertj.core.api.Assertions.*;
+
+public class TimeoutTest {
+
+    TimeoutAspect aspect;
+    TimeoutTarget target;
+    TimeoutTarget proxy;
+
+    @BeforeEach
+    void setUp() {
+        aspect = new TimeoutAspect();
+        target = new TimeoutTarget();
+        AspectJProxyFactory proxyFactory = new AspectJProxyFactory(target);
+        proxyFactory.addAspect(aspect);
+        proxy = proxyFactory.getProxy();
+    }
+
+    @AfterEach
+    void tearDown() {
+        aspect.destroy();
+    }
+
+    @Test
+    public void withinTimeout() throws Exception {
+        assertThat(proxy.save(10)).isEqualTo("ok");
+        assertThatThrownBy(() -> proxy.fail()).isInstanceOf(IllegalStateException.class).hasMessage("예외 발생");
+    }
+
+    /**
+     * 제한 시간이 지나면 기다리지 않고 실패하고, 실행 중인 호출은 인터럽트 한다.
+     */
+    @Test
+    public void abandonAfterTimeout() throws Exception {
+        long start = System.nanoTime();
+        assertThatThrownBy(() -> proxy.save(5000)).isInstanceOf(CallTimeoutException.class);
+        assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)).isLessThan(1000);
+
+        long deadline = System.currentTimeMillis() + 1000;
+        while (target.getInterrupted() == 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        assertThat(target.getInterrupted()).isEqualTo(1);
+    }
+
+    @Test
+    public void asyncTimeout() throws Exception {
+        assertThatThrownBy(() -> proxy.saveAsync().get(1, TimeUnit.SECONDS))
+                .isInstanceOf(ExecutionException.class)
+                .hasCauseInstanceOf(TimeoutException.class);
+    }
+
+    @Test
+    public void executorMode() throws Exception {
+        TimeLimiter.Mode expected = TimeLimiter.isVirtualThreadSupported() ? TimeLimiter.Mode.VIRTUAL : TimeLimiter.Mode.PLATFORM;
+        if (System.getProperty(TimeLimiter.MODE_PROPERTY) == null) {
+            assertThat(aspect.getTimeLimiter().getMode()).isEqualTo(expected);
+        }
+        try (TimeLimiter platform = new TimeLimiter(TimeLimiter.Mode.PLATFORM)) {
+            assertThat(platform.callAsync(() -> "ok", 100).get(1, TimeUnit.SECONDS)).isEqualTo("ok");
+        }
+    }
+}
@@ -0,0 +1,194 @@
+package hello.aop.exam;
+
+import hello.aop.exam.aop.RetryAspect;
+import hello.aop.exam.aop.TimeoutAspect;
+import hello.aop.exam.aop.TraceAspect;
+import hello.aop.exam.code.RetryTarget;
+import hello.aop.exam.trace.AdaptiveSampler;
+import hello.aop.exam.trace.LatencyHistogram;
+import hello.aop.exam.trace.SpanKind;
+import hello.aop.exam.trace.TraceSink;
+import hello.aop.exam.trace.Tracer;
+import org.junit.jupiter.api.Test;
+import org.springframework.aop.aspectj.annotation.AspectJProxyFactory;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.assertj.core.api.Assertions.*;
+
+public class TraceSinkTest {
+
+    @Test
+    public void traceAspect() throws Exception {
+        List<String> lines = new CopyOnWriteArrayList<>();
+        TraceSink sink = new TraceSink(1024, (record, signature) -> lines.add(signature + " " + record.argSummary()));
+
+        AspectJProxyFactory proxyFactory = new AspectJProxyFactory(new ExamRepository());
+        proxyFactory.addAspect(new TraceAspect(sink));
+        ExamRepository proxy = proxyFactory.getProxy();
+        proxy.save("itemA");
+        sink.close();
+
+        assertThat(lines).containsExactly("String hello.aop.exam.ExamRepository.save(String) [itemA]");
+        assertThat(sink.getDropped()).isZero();
+    }
+
+    /**
+     * ExamService.request -> ExamRepository.save 호출이 부모/자식 span 으로 남고 시그니처별 히스토그램에 기록된다.
+     */
+    @Test
+    public void nestedSpans() throws Exception {
+        List<String> lines = new CopyOnWriteArrayList<>();
+        TraceSink sink = new TraceSink(1024, (record, signature) ->
+                lines.add(record.getDepth() + " " + signature + " span=" + record.getSpanId() + " parent=" + record.getParentSpanId()));
+        TraceAspect traceAspect = new TraceAspect(new Tracer(sink, 0, new AdaptiveSampler()));
+
+        AspectJProxyFactory repositoryFactory = new AspectJProxyFactory(new ExamRepository());
+        repositoryFactory.addAspect(traceAspect);
+        ExamRepository repository = repositoryFactory.getProxy();
+        AspectJProxyFactory serviceFactory = new AspectJProxyFactory(new ExamService(repository));
+        serviceFactory.setProxyTargetClass(true);
+        serviceFactory.addAspect(traceAspect);
+        ExamService service = serviceFactory.getProxy();
+
+        service.request("itemA");
+        sink.close();
+
+        assertThat(lines).hasSize(2); // 자식 span 이 먼저 끝난다.
+        String[] child = lines.get(0).split(" ");
+        String[] parent = lines.get(1).split(" ");
+        assertThat(child[0]).isEqualTo("1");
+        assertThat(parent[0]).isEqualTo("0");
+        assertThat(parent[parent.length - 1]).isEqualTo("parent=0");
+        assertThat(child[child.length - 1]).isEqualTo("parent=" + parent[parent.length - 2].substring("span=".length()));
+        assertThat(Tracer.current()).isNull(); // 스택이 비었다.
+
+        int saveId = sink.signatureId(ExamRepository.class.getMethod("save", String.class));
+        LatencyHistogram histogram = traceAspect.getTracer().getMetrics().histogram(saveId, SpanKind.METHOD);
+        assertThat(histogram.snapshot().getCount()).isEqualTo(1);
+    }
+
+    /**
+     * 재시도 한번 한번이 @Trace span 의 자식 RETRY_ATTEMPT span 이 된다.
+     */
+    @Test
+    public void retryAttemptSpans() throws Exception {
+        List<String> lines = new CopyOnWriteArrayList<>();
+        TraceSink sink = new TraceSink(1024, (record, signature) ->
+                lines.add(record.getDepth() + " " + record.getKind() + " " + record.getFirstArg() + " " + record.isError()));
+        Tracer tracer = new Tracer(sink, 0, new AdaptiveSampler());
+
+        AspectJProxyFactory proxyFactory = new AspectJProxyFactory(new RetryTarget(2));
+        proxyFactory.addAspect(new RetryAspect());
+        RetryTarget proxy = proxyFactory.getProxy();
+
+        assertThat(tracer.begin(RetryTarget.class.getMethod("save", String.class), 1.0)).isTrue();
+        tracer.captureArgs(new Object[]{"itemA"});
+        try {
+            proxy.save("itemA");
+        } finally {
+            tracer.end(false);
+        }
+        sink.close();
+
+        assertThat(lines).containsExactly(
+                "1 RETRY_ATTEMPT 1 true",
+                "1 RETRY_ATTEMPT 2 true",
+                "1 RETRY_ATTEMPT 3 false",
+                "0 METHOD itemA false");
+    }
+
+    /**
+     * TimeoutAspect 가 executor 스레드로 넘긴 호출에서도 재시도 span 이 바깥 @Trace span 의 자식으로 남는다.
+     */
+    @Test
+    public void retryAttemptSpansAcrossTimeout() throws Exception {
+        List<String> lines = new CopyOnWriteArrayList<>();
+        TraceSink sink = new TraceSink(1024, (record, signature) -> lines.add(record.getKind() + " " + record.getDepth()
+                + " " + record.getSpanId() + " " + record.getParentSpanId() + " " + record.isError()));
+        TimeoutAspect timeoutAspect = new TimeoutAspect();
+
+        AspectJProxyFactory proxyFactory = new AspectJProxyFactory(new ExamRepository());
+        proxyFactory.addAspect(new TraceAspect(new Tracer(sink, 0, new AdaptiveSampler())));
+        proxyFactory.addAspect(timeoutAspect);
+        proxyFactory.addAspect(new RetryAspect());
+        ExamRepository proxy = proxyFactory.getProxy();
+        try {
+            for (int i = 0; i < 5; i++) {
+                proxy.save("item" + i); // 다섯번째는 한번 실패하고 재시도한다.
+            }
+        } finally {
+            timeoutAspect.destroy();
+        }
+        sink.close();
+
+        Set<String> methodSpans = new HashSet<>();
+        List<String[]> attempts = new ArrayList<>();
+        for (String line : lines) {
+            String[] fields = line.split(" ");
+            if (SpanKind.METHOD.name().equals(fields[0])) {
+                methodSpans.add(fields[2]);
+            } else {
+                attempts.add(fields);
+            }
+        }
+        assertThat(methodSpans).hasSize(5);
+        assertThat(attempts).hasSize(6);
+        assertThat(attempts).allSatisfy(attempt -> {
+            assertThat(attempt[1]).isEqualTo("1");
+            assertThat(methodSpans).contains(attempt[3]);
+        });
+        assertThat(attempts).filteredOn(attempt -> "true".equals(attempt[4])).hasSize(1);
+        assertThat(Tracer.current()).isNull();
+    }
+
+    /**
+     * 루트에서 빠진 trace 는 자식까지 통째로 남기지 않는다. 단, 에러가 난 span 이 있으면 인자 없이 통째로 남긴다.
+     */
+    @Test
+    public void sampling() throws Exception {
+        List<String> lines = new CopyOnWriteArrayList<>();
+        TraceSink sink = new TraceSink(1024, (record, signature) ->
+                lines.add(record.getDepth() + " " + record.argSummary() + " " + record.isError()));
+        Tracer tracer = new Tracer(sink, 0, new AdaptiveSampler());
+        Method request = ExamService.class.getMethod("request", String.class);
+        Method save = ExamRepository.class.getMethod("save", String.class);
+
+        assertThat(tracer.begin(request, 0.0)).isFalse();
+        assertThat(tracer.begin(save, 1.0)).isFalse(); // 자식은 루트의 결정을 따른다.
+        tracer.captureArgs(new Object[]{"itemA"});
+        tracer.end(false);
+        tracer.end(false);
+
+        tracer.begin(request, 0.0);
+        tracer.begin(save, 1.0);
+        tracer.end(true);
+        tracer.end(false);
+        sink.close();
+
+        assertThat(lines).containsExactly("1 [] true", "0 [] false");
+        assertThat(tracer.getMetrics().histogram(sink.signatureId(save), SpanKind.METHOD).snapshot().getCount()).isEqualTo(2);
+    }
+
+    /**
+     * 호출이 초당 목표보다 많으면 다음 구간의 샘플링 확률을 목표 / 호출 수 로 낮춘다.
+     */
+    @Test
+    public void adaptiveSampler() throws Exception {
+        AdaptiveSampler sampler = new AdaptiveSampler(10, 500);
+        for (int i = 0; i < 10_000; i++) {
+            sampler.sample(0, 1.0);
+        }
+        Thread.sleep(1000);
+        sampler.sample(0, 1.0); // 구간이 바뀌면서 확률을 다시 계산한다.
+
+        assertThat(sampler.probability(0)).isLessThan(0.01);
+        assertThat(sampler.probability(1)).isEqualTo(1.0);
+        assertThat(sampler.sample(1, 0.0)).isFalse();
+    }
+}
@@ -0,0 +1,45 @@
+package hello.aop.exam.code;
+
+import hello.aop.exam.annotation.Batched;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+public class BatchedTarget {
+
+    private final List<Integer> batchSizes = new CopyOnWriteArrayList<>();
+
+    @Batched(maxSize = 10, maxDelayMicros = 50_000)
+    public String save(String itemId) {
+        throw new UnsupportedOperationException("saveAll 로 묶여서 호출되어야 한다.");
+    }
+
+    public List<Object> saveAll(List<String> itemIds) {
+        batchSizes.add(itemIds.size());
+        List<Object> results = new ArrayList<>();
+        for (String itemId : itemIds) {
+            results.add(itemId.equals("ex") ? new IllegalStateException("예외 발생") : "saved-" + itemId);
+        }
+        return results;
+    }
+
+    @Batched(value = "loadAll", maxSize = 5, maxDelayMicros = 1_000_000)
+    public CompletableFuture<String> load(String itemId) {
+        throw new UnsupportedOperationException("loadAll 로 묶여서 호출되어야 한다.");
+    }
+
+    public List<String> loadAll(List<String> itemIds) {
+        batchSizes.add(itemIds.size());
+        List<String> results = new ArrayList<>();
+        for (String itemId : itemIds) {
+            results.add("item-" + itemId);
+        }
+        return results;
+    }
+
+    public List<Integer> getBatchSizes() {
+        return batchSizes;
+    }
+}
@@ -0,0 +1,44 @@
+package hello.aop.exam.code;
+
+import hello.aop.exam.annotation.Bulkhead;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * release() 할 때까지 끝나지 않는 대상, 실행 중에 들어온 호출 수를 기록한다.
+ */
+public class BulkheadTarget {
+
+    private final CountDownLatch latch = new CountDownLatch(1);
+    private final AtomicInteger entered = new AtomicInteger();
+
+    @Bulkhead(maxConcurrentCalls = 2)
+    public String save(String itemId) {
+        return block();
+    }
+
+    @Bulkhead(maxConcurrentCalls = 2, maxWaitDuration = 2000)
+    public String saveWithWait(String itemId) {
+        return block();
+    }
+
+    public void release() {
+        latch.countDown();
+    }
+
+    public int getEntered() {
+        return entered.get();
+    }
+
+    private String block() {
+        entered.incrementAndGet();
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return "ok";
+    }
+}
@@ -0,0 +1,31 @@
+package hello.aop.exam.code;
+
+import hello.aop.exam.annotation.CircuitBreaker;
+import hello.aop.exam.annotation.Retry;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class CircuitBreakerTarget {
+
+    private final AtomicInteger calls = new AtomicInteger();
+    private volatile boolean fail = true;
+
+    @Retry(value = 2)
+    @CircuitBreaker(name = "target", windowSize = 4, minimumCalls = 4, failureRateThreshold = 50,
+            waitDurationInOpenState = 100, permittedCallsInHalfOpenState = 2)
+    public String call() {
+        calls.incrementAndGet();
+        if (fail) {
+            throw new IllegalStateException("예외 발생");
+        }
+        return "ok";
+    }
+
+    public void setFail(boolean fail) {
+        this.fail = fail;
+    }
+
+    public int getCalls() {
+        return calls.get();
+    }
+}
@@ -0,0 +1,42 @@
+package hello.aop.exam.code;
+
+import hello.aop.exam.annotation.Coalesce;
+import hello.aop.exam.annotation.Retry;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 200ms 걸리고, 처음 failCount 번은 실패하는 대상
+ */
+public class CoalesceTarget {
+
+    private final AtomicInteger attempts = new AtomicInteger();
+    private final int failCount;
+
+    public CoalesceTarget(int failCount) {
+        this.failCount = failCount;
+    }
+
+    @Coalesce
+    @Retry(value = 3)
+    public String find(String itemId) throws InterruptedException {
+        Thread.sleep(200);
+        if (attempts.incrementAndGet() <= failCount) {
+            throw new IllegalStateException("예외 발생");
+        }
+        return "item-" + itemId;
+    }
+
+    @Coalesce
+    public CompletableFuture<String> findAsync(String itemId) {
+        attempts.incrementAndGet();
+        return CompletableFuture.supplyAsync(() -> "item-" + itemId,
+                CompletableFuture.delayedExecutor(200, TimeUnit.MILLISECONDS));
+    }
+
+    public int getAttempts() {
+        return attempts.get();
+    }
+}
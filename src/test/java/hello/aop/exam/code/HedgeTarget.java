@@ -0,0 +1,45 @@
+package hello.aop.exam.code;
+
+import hello.aop.exam.annotation.Hedge;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 첫 호출만 느린 대상, 느린 호출이 인터럽트 되었는지 기록한다.
+ */
+public class HedgeTarget {
+
+    private final AtomicInteger calls = new AtomicInteger();
+    private final AtomicInteger interrupted = new AtomicInteger();
+
+    @Hedge(delay = 20)
+    public String find(String itemId) {
+        return slowOnFirstCall();
+    }
+
+    @Hedge(delay = 20, budget = 0, maxTokens = 0)
+    public String findWithoutBudget(String itemId) {
+        return slowOnFirstCall();
+    }
+
+    private String slowOnFirstCall() {
+        if (calls.incrementAndGet() == 1) {
+            try {
+                Thread.sleep(1000);
+            } catch (InterruptedException e) {
+                interrupted.incrementAndGet();
+                return "interrupted";
+            }
+            return "slow";
+        }
+        return "fast";
+    }
+
+    public int getCalls() {
+        return calls.get();
+    }
+
+    public int getInterrupted() {
+        return interrupted.get();
+    }
+}
@@ -0,0 +1,32 @@
+package hello.aop.exam.code;
+
+import hello.aop.exam.annotation.Memoize;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class MemoizeTarget {
+
+    private final AtomicInteger calls = new AtomicInteger();
+
+    @Memoize(maxSize = 100)
+    public String find(String itemId) {
+        calls.incrementAndGet();
+        return itemId == null ? null : "item-" + itemId;
+    }
+
+    @Memoize
+    public String findByRange(String itemId, int from, int to) {
+        calls.incrementAndGet();
+        return itemId + "[" + from + ".." + to + "]";
+    }
+
+    @Memoize(ttl = 100)
+    public String findWithTtl(String itemId) {
+        calls.incrementAndGet();
+        return "item-" + itemId;
+    }
+
+    public int getCalls() {
+        return calls.get();
+    }
+}
@@ -0,0 +1,26 @@
+package hello.aop.exam.code;
+
+import hello.aop.exam.annotation.RateLimit;
+
+public class RateLimitTarget {
+
+    @RateLimit(permitsPerSecond = 10, burst = 3)
+    public String save(String itemId) {
+        return "ok";
+    }
+
+    @RateLimit(permitsPerSecond = 10, timeout = 500)
+    public String saveWithTimeout(String itemId) {
+        return "ok";
+    }
+
+    @RateLimit(permitsPerSecond = 10, burst = 2, key = "itemId")
+    public String saveByItem(String itemId, int quantity) {
+        return "ok";
+    }
+
+    @RateLimit(permitsPerSecond = 100, burst = 1, key = "userId")
+    public String find(String userId) {
+        return "ok";
+    }
+}
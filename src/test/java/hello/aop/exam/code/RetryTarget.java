@@ -0,0 +1,44 @@
+package hello.aop.exam.code;
+
+import hello.aop.exam.annotation.Backoff;
+import hello.aop.exam.annotation.Retry;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 처음 failCount 번은 실패하고 이후 성공하는 대상
+ */
+public class RetryTarget {
+
+    private final AtomicInteger attempts = new AtomicInteger();
+    private final int failCount;
+
+    public RetryTarget() {
+        this(0);
+    }
+
+    public RetryTarget(int failCount) {
+        this.failCount = failCount;
+    }
+
+    @Retry(value = 3, backoff = Backoff.EXPONENTIAL, initialDelay = 50, maxDelay = 200)
+    public CompletableFuture<String> saveAsync(String itemId) {
+        if (attempts.incrementAndGet() <= failCount) {
+            return CompletableFuture.failedFuture(new IllegalStateException("예외 발생"));
+        }
+        return CompletableFuture.completedFuture("ok");
+    }
+
+    @Retry(value = 3, budget = "retryTarget")
+    public String save(String itemId) {
+        if (attempts.incrementAndGet() <= failCount) {
+            throw new IllegalStateException("예외 발생");
+        }
+        return "ok";
+    }
+
+    public int getAttempts() {
+        return attempts.get();
+    }
+}
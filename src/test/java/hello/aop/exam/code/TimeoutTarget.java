@@ -0,0 +1,39 @@
+package hello.aop.exam.code;
+
+import hello.aop.exam.annotation.Timeout;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * sleepMillis 만큼 걸리는 대상, 인터럽트 되었는지 기록한다.
+ */
+public class TimeoutTarget {
+
+    private final AtomicInteger interrupted = new AtomicInteger();
+
+    @Timeout(100)
+    public String save(long sleepMillis) {
+        try {
+            Thread.sleep(sleepMillis);
+        } catch (InterruptedException e) {
+            interrupted.incrementAndGet();
+            return "interrupted";
+        }
+        return "ok";
+    }
+
+    @Timeout(100)
+    public String fail() {
+        throw new IllegalStateException("예외 발생");
+    }
+
+    @Timeout(100)
+    public CompletableFuture<String> saveAsync() {
+        return new CompletableFuture<>(); // 완료되지 않는다.
+    }
+
+    public int getInterrupted() {
+        return interrupted.get();
+    }
+}
@@ -0,0 +1,37 @@
+package hello.aop.exam.trace;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.*;
+
+public class LatencyHistogramTest {
+
+    /**
+     * 구간 상한은 실제 값보다 작지 않고, 상대 오차는 1/32 이내다.
+     */
+    @Test
+    public void bucketError() {
+        for (long value = 1; value < (1L << 40); value = value * 3 + 1) {
+            long highest = LatencyHistogram.highestValue(LatencyHistogram.index(value));
+            assertThat(highest).isGreaterThanOrEqualTo(value);
+            assertThat(highest - value).isLessThanOrEqualTo(value / 32);
+        }
+    }
+
+    @Test
+    public void quantiles() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long i = 1; i <= 1000; i++) {
+            histogram.record(i * 1000); // 1us ~ 1ms
+        }
+
+        LatencyHistogram.Snapshot snapshot = histogram.snapshotAndReset();
+        assertThat(snapshot.getCount()).isEqualTo(1000);
+        assertThat(snapshot.getMax()).isEqualTo(1_000_000);
+        assertThat(snapshot.getP50()).isBetween(500_000L, 500_000L + 500_000 / 32);
+        assertThat(snapshot.getP99()).isBetween(990_000L, 990_000L + 990_000 / 32);
+        assertThat(snapshot.getP999()).isBetween(999_000L, 1_000_000L);
+
+        assertThat(histogram.snapshot().getCount()).isZero(); // 초기화 되었다.
+    }
+}
@@ -0,0 +1,77 @@
+package hello.aop.exam.trace;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.*;
+
+public class TraceRingBufferTest {
+
+    /**
+     * 가득 차면 기다리지 않고 버린 개수만 센다.
+     */
+    @Test
+    public void dropWhenFull() throws Exception {
+        TraceRingBuffer buffer = new TraceRingBuffer(4);
+        TraceRecord record = record(1, 0);
+        for (int i = 0; i < 4; i++) {
+            assertThat(buffer.offer(record)).isTrue();
+        }
+        assertThat(buffer.offer(record)).isFalse();
+        assertThat(buffer.getDropped()).isEqualTo(1);
+
+        assertThat(buffer.poll(new TraceRecord())).isTrue();
+        assertThat(buffer.offer(record)).isTrue(); // 한칸 비었으므로 다시 기록 가능
+    }
+
+    /**
+     * 여러 생산자가 동시에 기록해도 소비자는 각 레코드를 정확히 한번, 생산자별 순서대로 받는다.
+     */
+    @Test
+    public void multiProducer() throws Exception {
+        int producers = 4;
+        int perProducer = 100_000;
+        TraceRingBuffer buffer = new TraceRingBuffer(1024);
+
+        List<Thread> threads = new ArrayList<>();
+        for (int p = 0; p < producers; p++) {
+            int producer = p;
+            threads.add(new Thread(() -> {
+                TraceRecord record = record(producer, 0);
+                for (int n = 0; n < perProducer; ) {
+                    record.argCount = n;
+                    if (buffer.offer(record)) {
+                        n++;
+                    }
+                }
+            }));
+        }
+        threads.forEach(Thread::start);
+
+        int[] next = new int[producers];
+        TraceRecord record = new TraceRecord();
+        int received = 0;
+        while (received < producers * perProducer) {
+            if (buffer.poll(record)) {
+                int producer = record.getSignatureId();
+                assertThat(record.getArgCount()).isEqualTo(next[producer]);
+                next[producer]++;
+                received++;
+            }
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertThat(next).containsOnly(perProducer);
+    }
+
+    private static TraceRecord record(int signatureId, int argCount) {
+        TraceRecord record = new TraceRecord();
+        record.signatureId = signatureId;
+        record.kind = SpanKind.METHOD;
+        record.argCount = argCount;
+        return record;
+    }
+}
@@ -0,0 +1,19 @@
+package hello.aop.internalcall.code;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * 로드 시점 위빙 테스트용. 다른 테스트에서 먼저 로드되지 않도록 LoadTimeWeavingTest 에서만 이름으로 사용한다.
+ */
+@Slf4j
+public class SelfCallService {
+
+    public void external() {
+        log.info("call external");
+        internal(); // 내부 메서드 호출(this.internal())
+    }
+
+    public void internal() {
+        log.info("call internal");
+    }
+}
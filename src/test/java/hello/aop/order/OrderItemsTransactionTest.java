@@ -0,0 +1,42 @@
+package hello.aop.order;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.aop.support.AopUtils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * 자동 프록시로 만든 실제 빈에서도 orderItems() 는 묶음마다 트랜잭션 하나만 실행한다.
+ * orderItems() 자체는 PointCuts.bulkOrder() 로 빠져 있어서 바깥 트랜잭션이 생기지 않는다.
+ */
+@SpringBootTest
+@Import(OrderServiceTest.TransactionCountAspect.class)
+public class OrderItemsTransactionTest {
+
+    @Autowired
+    OrderService orderService;
+
+    @Autowired
+    OrderServiceTest.TransactionCountAspect transaction;
+
+    @Test
+    public void oneTransactionPerChunk() {
+        assertThat(AopUtils.isAopProxy(orderService)).isTrue(); // orderItem() 등 다른 메서드는 그대로 대상이다.
+        List<String> itemIds = new ArrayList<>();
+        for (int i = 0; i < OrderService.DEFAULT_CHUNK_SIZE * 2 + 500; i++) {
+            itemIds.add("bulk" + i);
+        }
+        int before = transaction.count.get();
+
+        List<Object> results = orderService.orderItems(itemIds);
+
+        assertThat(results).containsOnly("ok");
+        assertThat(transaction.count.get() - before).isEqualTo(3);
+    }
+}
@@ -0,0 +1,128 @@
+package hello.aop.order;
+
+import hello.aop.order.store.OrderStore;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.aop.aspectj.annotation.AspectJProxyFactory;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.*;
+
+public class OrderServiceTest {
+
+    @TempDir
+    Path directory;
+
+    OrderRepository orderRepository;
+    TransactionCountAspect transaction = new TransactionCountAspect();
+
+    @BeforeEach
+    void setUp() {
+        orderRepository = new OrderRepository(OrderStore.open(directory));
+    }
+
+    @AfterEach
+    void tearDown() {
+        orderRepository.destroy();
+    }
+
+    /**
+     * 트랜잭션 어드바이스는 상품마다가 아니라 묶음마다 한번 실행된다.
+     */
+    @Test
+    public void orderItems() {
+        OrderService orderService = orderService(new OrderChunkService(orderRepository), 100);
+        List<String> itemIds = new ArrayList<>();
+        for (int i = 0; i < 1050; i++) {
+            itemIds.add(i == 500 ? "ex" : "item" + i);
+        }
+
+        List<Object> results = orderService.orderItems(itemIds);
+
+        assertThat(transaction.count.get()).isEqualTo(11);
+        assertThat(results).hasSize(1050);
+        assertThat(results.get(500)).isInstanceOf(IllegalStateException.class);
+        assertThat(results).filteredOn("ok"::equals).hasSize(1049);
+        assertThat(orderRepository.exists("item1049")).isTrue();
+        orderService.destroy();
+    }
+
+    /**
+     * 묶음 하나가 실패해도 다른 묶음은 계속 진행한다.
+     */
+    @Test
+    public void chunkFailure() {
+        OrderChunkService failing = new OrderChunkService(orderRepository) {
+            @Override
+            public List<Object> orderChunk(List<String> itemIds) {
+                if (itemIds.contains("item0")) {
+                    throw new IllegalStateException("묶음 실패");
+                }
+                return super.orderChunk(itemIds);
+            }
+        };
+        OrderService orderService = orderService(failing, 10);
+        List<String> itemIds = new ArrayList<>();
+        for (int i = 0; i < 30; i++) {
+            itemIds.add("item" + i);
+        }
+
+        List<Object> results = orderService.orderItems(itemIds);
+
+        assertThat(results.subList(0, 10)).allMatch(IllegalStateException.class::isInstance);
+        assertThat(results.subList(10, 30)).containsOnly("ok");
+        assertThat(transaction.rollback.get()).isEqualTo(1);
+        orderService.destroy();
+    }
+
+    /**
+     * 저장할 수 없는 상품(null, 너무 긴 itemId)은 그 자리만 실패하고, 이미 저장한 상품은 성공으로 알린다.
+     */
+    @Test
+    public void itemFailure() {
+        List<String> itemIds = new ArrayList<>(List.of("a", "x".repeat(70_000), "b"));
+        itemIds.add(null);
+
+        List<Object> results = orderRepository.saveAll(itemIds);
+
+        assertThat(results.get(0)).isEqualTo("ok");
+        assertThat(results.get(1)).isInstanceOf(IllegalArgumentException.class);
+        assertThat(results.get(2)).isEqualTo("ok");
+        assertThat(results.get(3)).isInstanceOf(RuntimeException.class);
+        assertThat(orderRepository.exists("a")).isTrue();
+        assertThat(orderRepository.exists("b")).isTrue();
+    }
+
+    private OrderService orderService(OrderChunkService chunkService, int chunkSize) {
+        AspectJProxyFactory proxyFactory = new AspectJProxyFactory(chunkService);
+        proxyFactory.setProxyTargetClass(true);
+        proxyFactory.addAspect(transaction);
+        return new OrderService(orderRepository, proxyFactory.getProxy(), chunkSize, 4);
+    }
+
+    @Aspect
+    static class TransactionCountAspect {
+        final AtomicInteger count = new AtomicInteger();
+        final AtomicInteger rollback = new AtomicInteger();
+
+        @Around("hello.aop.order.aop.PointCuts.orderAndService()")
+        public Object doTransaction(ProceedingJoinPoint joinPoint) throws Throwable {
+            count.incrementAndGet();
+            try {
+                return joinPoint.proceed();
+            } catch (RuntimeException e) {
+                rollback.incrementAndGet();
+                throw e;
+            }
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package hello.aop.order.code;
+
+/**
+ * hello.aop.order 하위의 *Service 이므로 PointCuts.orderAndService() 의 대상이다.
+ */
+public class FusionTargetService {
+
+    public String order(String itemId) {
+        if (itemId.equals("ex")) {
+            throw new IllegalStateException("예외 발생!");
+        }
+        return "ok-" + itemId;
+    }
+
+    public int count(String itemId) {
+        return itemId.length();
+    }
+}
@@ -0,0 +1,148 @@
+package hello.aop.order.store;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.*;
+
+public class OrderIndexTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    public void offHeapIndex() {
+        OffHeapHashIndex index = new OffHeapHashIndex(16);
+        for (long key = 1; key <= 100_000; key++) {
+            index.put(key, key * 10);
+        }
+        assertThat(index.size()).isEqualTo(100_000);
+        assertThat(index.getCapacity()).isGreaterThanOrEqualTo(200_000); // 늘어났다.
+        for (long key = 1; key <= 100_000; key++) {
+            assertThat(index.get(key)).isEqualTo(key * 10);
+        }
+        assertThat(index.get(100_001)).isEqualTo(OffHeapHashIndex.MISSING);
+
+        assertThat(index.putIfGreater(1, 5)).isEqualTo(10);
+        assertThat(index.get(1)).isEqualTo(10); // 더 작은 값으로는 바꾸지 않는다.
+        index.putIfGreater(1, 20);
+        assertThat(index.get(1)).isEqualTo(20);
+    }
+
+    /**
+     * 쓰는 중(테이블을 늘리는 중 포함)에 읽어도 없거나 정확한 값만 나온다.
+     */
+    @Test
+    public void concurrentReads() throws Exception {
+        OffHeapHashIndex index = new OffHeapHashIndex(16);
+        AtomicBoolean done = new AtomicBoolean();
+        AtomicInteger wrong = new AtomicInteger();
+        List<Thread> readers = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            readers.add(new Thread(() -> {
+                while (!done.get()) {
+                    for (long key = 1; key <= 50_000; key += 7) {
+                        long value = index.get(key);
+                        if (value != OffHeapHashIndex.MISSING && value != key * 10) {
+                            wrong.incrementAndGet();
+                        }
+                    }
+                }
+            }));
+        }
+        readers.forEach(Thread::start);
+        for (long key = 1; key <= 200_000; key++) {
+            index.put(key, key * 10);
+        }
+        done.set(true);
+        for (Thread reader : readers) {
+            reader.join();
+        }
+        assertThat(wrong.get()).isZero();
+    }
+
+    /**
+     * 쓰는 중(테이블을 늘리는 중 포함)에 사본을 떠도 시작 전에 넣은 키는 모두 있고, 값이 깨진 항목은 없다.
+     */
+    @Test
+    public void snapshotWhileWriting() throws Exception {
+        OffHeapHashIndex index = new OffHeapHashIndex(16);
+        for (long key = 1; key <= 1_000; key++) {
+            index.put(key, key * 10);
+        }
+        AtomicBoolean done = new AtomicBoolean();
+        Thread writer = new Thread(() -> {
+            for (long key = 1_001; !done.get() && key <= 500_000; key++) {
+                index.put(key, key * 10);
+            }
+        });
+        writer.start();
+        try {
+            for (int i = 0; i < 20; i++) {
+                int before = index.size();
+                OffHeapHashIndex.Snapshot snapshot = index.snapshot();
+                BitSet keys = new BitSet();
+                List<Long> wrong = new ArrayList<>();
+                snapshot.forEach((key, value) -> {
+                    keys.set((int) key);
+                    if (value != key * 10) {
+                        wrong.add(key);
+                    }
+                });
+                assertThat(wrong).isEmpty();
+                assertThat(keys.cardinality()).isEqualTo(snapshot.size());
+                assertThat(keys.nextClearBit(1)).isGreaterThan(before); // 키는 1 부터 차례로 넣는다.
+            }
+        } finally {
+            done.set(true);
+            writer.join();
+        }
+    }
+
+    @Test
+    public void bloomFilter() {
+        BloomFilter bloomFilter = new BloomFilter(10_000, 0.01);
+        for (int i = 0; i < 10_000; i++) {
+            bloomFilter.put(ItemHash.hash("item" + i));
+        }
+        for (int i = 0; i < 10_000; i++) {
+            assertThat(bloomFilter.mightContain(ItemHash.hash("item" + i))).isTrue(); // 넣은 것은 항상 있다.
+        }
+        int falsePositives = 0;
+        for (int i = 0; i < 10_000; i++) {
+            if (bloomFilter.mightContain(ItemHash.hash("absent" + i))) {
+                falsePositives++;
+            }
+        }
+        assertThat(falsePositives).isLessThan(300); // 1% 목표, 여유를 둔다.
+    }
+
+    @Test
+    public void findByItemId() {
+        try (OrderStore store = OrderStore.open(directory)) {
+            store.save(new OrderRecord(1, "itemA", 0));
+            store.save(new OrderRecord(2, "itemB", 0));
+            store.save(new OrderRecord(3, "itemA", 0));
+
+            assertThat(store.findByItemId("itemA")).get().extracting(OrderRecord::getOrderId).isEqualTo(3L);
+            assertThat(store.exists("itemB")).isTrue();
+            assertThat(store.exists("itemC")).isFalse();
+            assertThat(store.getBloomRejectedCount()).isEqualTo(1);
+        }
+        try (OrderStore store = OrderStore.open(directory)) { // 로그에서 인덱스를 다시 만든다.
+            assertThat(store.findByItemId("itemA")).get().extracting(OrderRecord::getOrderId).isEqualTo(3L);
+            assertThat(store.getIndex().size()).isEqualTo(2);
+        }
+        try (OrderStore store = OrderStore.open(directory, OrderLog.DEFAULT_SEGMENT_SIZE, 0)) { // Bloom filter 없이
+            assertThat(store.exists("itemC")).isFalse();
+            assertThat(store.getBloomRejectedCount()).isZero();
+        }
+    }
+}
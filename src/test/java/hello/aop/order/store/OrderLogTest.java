@@ -0,0 +1,150 @@
+package hello.aop.order.store;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.*;
+
+public class OrderLogTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    public void appendAndRead() {
+        try (OrderLog orderLog = OrderLog.open(directory)) {
+            long first = orderLog.append(new OrderRecord(1, "itemA", 1000));
+            long second = orderLog.append(new OrderRecord(2, "상품B", 2000));
+            orderLog.sync();
+
+            assertThat(orderLog.read(first).getItemId()).isEqualTo("itemA");
+            assertThat(orderLog.read(second).getItemId()).isEqualTo("상품B");
+            assertThat(orderLog.read(second).getTimestampMillis()).isEqualTo(2000);
+            assertThat(orderLog.getDurableOffset()).isEqualTo(orderLog.getEndOffset());
+        }
+        try (OrderLog orderLog = OrderLog.open(directory)) {
+            assertThat(orderLog.getRecoveredRecords()).isEqualTo(2);
+            assertThat(readAll(orderLog)).extracting(OrderRecord::getOrderId).containsExactly(1L, 2L);
+        }
+    }
+
+    /**
+     * 여러 스레드가 append + sync 를 해도 force() 는 훨씬 적게 호출된다.
+     */
+    @Test
+    public void groupCommit() throws Exception {
+        try (OrderLog orderLog = OrderLog.open(directory)) {
+            List<Thread> threads = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                int thread = t;
+                threads.add(new Thread(() -> {
+                    for (int i = 0; i < 200; i++) {
+                        orderLog.append(new OrderRecord(thread * 1000L + i, "item" + i, 0));
+                        orderLog.sync();
+                    }
+                }));
+            }
+            threads.forEach(Thread::start);
+            for (Thread thread : threads) {
+                thread.join();
+            }
+
+            assertThat(orderLog.getAppendCount()).isEqualTo(1600);
+            assertThat(orderLog.getSyncCount()).isLessThan(1600);
+            assertThat(readAll(orderLog)).hasSize(1600);
+        }
+    }
+
+    @Test
+    public void segmentRolling() {
+        try (OrderLog orderLog = OrderLog.open(directory, 4096)) {
+            for (int i = 0; i < 500; i++) {
+                orderLog.append(new OrderRecord(i, "item" + i, 0));
+            }
+            orderLog.sync();
+            assertThat(orderLog.getSegmentCount()).isGreaterThan(1);
+        }
+        try (OrderLog orderLog = OrderLog.open(directory, 4096)) {
+            List<OrderRecord> records = readAll(orderLog);
+            assertThat(records).hasSize(500);
+            assertThat(records.get(499).getItemId()).isEqualTo("item499");
+        }
+    }
+
+    /**
+     * 쓰다가 죽어서 crc 가 맞지 않는 마지막 레코드는 복구할 때 잘라낸다.
+     */
+    @Test
+    public void truncateTornTail() throws Exception {
+        long end;
+        try (OrderLog orderLog = OrderLog.open(directory)) {
+            orderLog.append(new OrderRecord(1, "itemA", 0));
+            orderLog.append(new OrderRecord(2, "itemB", 0));
+            orderLog.sync();
+            end = orderLog.getEndOffset();
+        }
+        try (RandomAccessFile file = new RandomAccessFile(directory.resolve("orders-000000.log").toFile(), "rw")) {
+            file.seek(OrderLogFormat.position(end));
+            file.writeInt(30); // length 는 썼지만 payload 와 crc 는 반쯤만 쓴 레코드
+            file.writeInt(0x1234);
+            file.writeLong(3);
+        }
+
+        try (OrderLog orderLog = OrderLog.open(directory)) {
+            assertThat(orderLog.getRecoveredRecords()).isEqualTo(2);
+            assertThat(orderLog.getTruncatedBytes()).isGreaterThan(0);
+            assertThat(orderLog.getEndOffset()).isEqualTo(end);
+            orderLog.append(new OrderRecord(3, "itemC", 0));
+            orderLog.sync();
+        }
+        try (OrderLog orderLog = OrderLog.open(directory)) {
+            assertThat(orderLog.getTruncatedBytes()).isZero();
+            assertThat(readAll(orderLog)).extracting(OrderRecord::getItemId).containsExactly("itemA", "itemB", "itemC");
+        }
+    }
+
+    /**
+     * 잘린 레코드가 마지막이 아닌 세그먼트에 있으면 그 뒤의 세그먼트도 버린다.
+     */
+    @Test
+    public void dropSegmentsAfterTornRecord() throws Exception {
+        try (OrderLog orderLog = OrderLog.open(directory, 4096)) {
+            for (int i = 0; i < 500; i++) {
+                orderLog.append(new OrderRecord(i, "item" + i, 0));
+            }
+        }
+        try (RandomAccessFile file = new RandomAccessFile(directory.resolve("orders-000000.log").toFile(), "rw")) {
+            file.seek(OrderLogFormat.HEADER_SIZE + 4);
+            file.writeInt(0); // 첫 레코드의 crc 를 깨뜨린다.
+        }
+
+        try (OrderLog orderLog = OrderLog.open(directory, 4096)) {
+            assertThat(orderLog.getRecoveredRecords()).isZero();
+            assertThat(orderLog.getSegmentCount()).isEqualTo(1);
+            assertThat(Files.exists(directory.resolve("orders-000001.log"))).isFalse();
+        }
+    }
+
+    @Test
+    public void orderStore() {
+        try (OrderStore store = OrderStore.open(directory)) {
+            store.save(new OrderRecord(7, "itemA", 0));
+            store.save(new OrderRecord(3, "itemB", 0));
+        }
+        try (OrderStore store = OrderStore.open(directory)) {
+            assertThat(store.getLastOrderId()).isEqualTo(7);
+        }
+    }
+
+    private static List<OrderRecord> readAll(OrderLog orderLog) {
+        List<OrderRecord> records = new ArrayList<>();
+        orderLog.replay(0, (offset, record) -> records.add(record));
+        return records;
+    }
+}
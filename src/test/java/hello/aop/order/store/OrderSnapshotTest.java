@@ -0,0 +1,103 @@
+package hello.aop.order.store;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.RandomAccessFile;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.*;
+
+public class OrderSnapshotTest {
+
+    @TempDir
+    Path directory;
+
+    /**
+     * 스냅샷 뒤로 쓴 레코드만 다시 읽는다. (close 없이 다시 여는 것은 프로세스가 죽은 것과 같다.)
+     */
+    @Test
+    public void replaySuffix() {
+        OrderStore crashed = OrderStore.open(directory);
+        for (int i = 1; i <= 1000; i++) {
+            crashed.save(new OrderRecord(i, "item" + i % 100, 0));
+        }
+        assertThat(crashed.snapshot()).isNotNull();
+        assertThat(crashed.snapshot()).isNull(); // 바뀐 것이 없으면 찍지 않는다.
+        for (int i = 1001; i <= 1010; i++) {
+            crashed.save(new OrderRecord(i, "new" + i, 0));
+        }
+
+        try (OrderStore store = OrderStore.open(directory)) {
+            assertThat(store.getSnapshotEntries()).isEqualTo(100);
+            assertThat(store.getReplayedRecords()).isEqualTo(10);
+            assertThat(store.getLastOrderId()).isEqualTo(1010);
+            assertThat(store.findByItemId("item7")).get().extracting(OrderRecord::getOrderId).isEqualTo(907L);
+            assertThat(store.exists("new1005")).isTrue();
+        }
+        try (OrderStore store = OrderStore.open(directory)) { // close 할 때 찍은 스냅샷
+            assertThat(store.getReplayedRecords()).isZero();
+            assertThat(store.getIndex().size()).isEqualTo(110);
+        }
+    }
+
+    /**
+     * 가장 최근 스냅샷이 깨졌으면 이전 스냅샷과 그 뒤의 로그로 복구한다.
+     */
+    @Test
+    public void fallbackToPreviousSnapshot() throws Exception {
+        OrderStore crashed = OrderStore.open(directory);
+        crashed.save(new OrderRecord(1, "itemA", 0));
+        crashed.snapshot();
+        crashed.save(new OrderRecord(2, "itemB", 0));
+        Path latest = crashed.snapshot();
+
+        try (RandomAccessFile file = new RandomAccessFile(latest.toFile(), "rw")) {
+            file.seek(OrderSnapshot.HEADER_SIZE);
+            file.writeLong(12345); // 항목을 깨뜨린다.
+        }
+
+        try (OrderStore store = OrderStore.open(directory)) {
+            assertThat(store.getSnapshotEntries()).isEqualTo(1);
+            assertThat(store.getReplayedRecords()).isEqualTo(1);
+            assertThat(store.exists("itemA")).isTrue();
+            assertThat(store.exists("itemB")).isTrue();
+        }
+    }
+
+    /**
+     * 스냅샷을 찍는 동안에도 쓰기는 계속되고, 스냅샷 파일은 최근 KEEP 개만 남는다.
+     */
+    @Test
+    public void snapshotWhileWriting() throws Exception {
+        AtomicBoolean done = new AtomicBoolean();
+        AtomicLong written = new AtomicLong();
+        try (OrderStore store = OrderStore.open(directory)) {
+            Thread writer = new Thread(() -> {
+                while (!done.get()) {
+                    long orderId = written.incrementAndGet();
+                    store.append(new OrderRecord(orderId, "item" + orderId, 0));
+                }
+            });
+            writer.start();
+            for (int i = 0; i < 5; i++) {
+                Thread.sleep(20);
+                store.snapshot();
+            }
+            done.set(true);
+            writer.join();
+            store.sync();
+            assertThat(OrderSnapshot.list(directory)).hasSizeLessThanOrEqualTo(OrderSnapshot.KEEP);
+        }
+
+        try (OrderStore store = OrderStore.open(directory)) {
+            assertThat(store.getLastOrderId()).isEqualTo(written.get());
+            assertThat(store.getIndex().size()).isEqualTo((int) written.get());
+            List<Path> snapshots = OrderSnapshot.list(directory);
+            assertThat(snapshots).isNotEmpty();
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package hello.aop.order.store;
+
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 샤드 수(1, 2, 4, 8)별 주문 저장 처리량
+ *
+ *  ./gradlew benchmark --tests hello.aop.order.store.ShardedOrderStoreBenchmark
+ *
+ * 생산자 스레드 PRODUCERS 개가 각자 ORDERS 건을 submit 하고 모든 future 가 완료될 때까지의 시간을 잰다.
+ * 샤드 수가 코어 수보다 많으면 더 빨라지지 않는다.
+ */
+@Slf4j
+@Tag("benchmark")
+public class ShardedOrderStoreBenchmark {
+
+    static final int PRODUCERS = 8;
+    static final int ORDERS = 50_000;
+    static final int ITEMS = 10_000;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    public void throughput() throws Exception {
+        log.info("[benchmark] cores={}", Runtime.getRuntime().availableProcessors());
+        for (int shards : new int[]{1, 2, 4, 8}) {
+            for (int round = 0; round < 2; round++) { // 첫 라운드는 워밍업
+                Path shardDirectory = directory.resolve("shards-" + shards + "-" + round);
+                try (ShardedOrderStore store = ShardedOrderStore.open(shardDirectory, shards)) {
+                    long elapsed = run(store);
+                    log.info("[benchmark] shards={} round={} orders={} elapsed={}ms throughput={} ops/s",
+                            shards, round, PRODUCERS * ORDERS, TimeUnit.NANOSECONDS.toMillis(elapsed),
+                            PRODUCERS * ORDERS * TimeUnit.SECONDS.toNanos(1) / elapsed);
+                }
+            }
+        }
+    }
+
+    private long run(ShardedOrderStore store) throws Exception {
+        List<Thread> producers = new ArrayList<>();
+        List<CompletableFuture<OrderRecord>> last = new ArrayList<>();
+        long start = System.nanoTime();
+        for (int p = 0; p < PRODUCERS; p++) {
+            int producer = p;
+            CompletableFuture<OrderRecord> done = new CompletableFuture<>();
+            last.add(done);
+            Thread thread = new Thread(() -> {
+                List<CompletableFuture<OrderRecord>> futures = new ArrayList<>(ORDERS);
+                for (int i = 0; i < ORDERS; i++) {
+                    futures.add(store.submit("item" + (producer * ORDERS + i) % ITEMS));
+                }
+                CompletableFuture.allOf(futures.toArray(new CompletableFuture[0]))
+                        .whenComplete((v, e) -> {
+                            if (e != null) {
+                                done.completeExceptionally(e);
+                            } else {
+                                done.complete(null);
+                            }
+                        });
+            }, "producer-" + p);
+            producers.add(thread);
+            thread.start();
+        }
+        for (Thread thread : producers) {
+            thread.join();
+        }
+        CompletableFuture.allOf(last.toArray(new CompletableFuture[0])).get();
+        return System.nanoTime() - start;
+    }
+}
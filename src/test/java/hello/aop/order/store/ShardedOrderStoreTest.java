@@ -0,0 +1,131 @@
+package hello.aop.order.store;
+
+import hello.aop.order.OrderRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import static org.assertj.core.api.Assertions.*;
+
+public class ShardedOrderStoreTest {
+
+    @TempDir
+    Path directory;
+
+    /**
+     * 주문은 itemId 의 샤드에만 저장되고, 주문 번호는 샤드끼리 겹치지 않는다.
+     */
+    @Test
+    public void routing() {
+        try (ShardedOrderStore store = ShardedOrderStore.open(directory, 4, 64)) { // 작은 큐로 back pressure 도 거친다.
+            List<CompletableFuture<OrderRecord>> futures = new ArrayList<>();
+            for (int i = 0; i < 2000; i++) {
+                futures.add(store.submit("item" + i % 200));
+            }
+            Set<Long> orderIds = new HashSet<>();
+            for (CompletableFuture<OrderRecord> future : futures) {
+                OrderRecord record = future.join();
+                assertThat(orderIds.add(record.getOrderId())).isTrue();
+                assertThat((record.getOrderId() - 1) % 4).isEqualTo(store.shardOf(record.getItemId()));
+            }
+
+            int total = 0;
+            for (int i = 0; i < store.getShardCount(); i++) {
+                total += store.getShard(i).getIndex().size();
+            }
+            assertThat(total).isEqualTo(200);
+            assertThat(store.findByItemId("item7")).get().extracting(OrderRecord::getOrderId)
+                    .isEqualTo(futures.get(1807).join().getOrderId());
+            assertThat(store.exists("none")).isFalse();
+        }
+    }
+
+    /**
+     * openDefault() 로 열면 단일 저장소처럼 샤드마다 주기적으로 스냅샷을 찍는다.
+     */
+    @Test
+    public void periodicSnapshots() throws Exception {
+        System.setProperty(OrderStore.PATH_PROPERTY, directory.toString());
+        System.setProperty(OrderStore.SNAPSHOT_INTERVAL_PROPERTY, "50");
+        try (ShardedOrderStore store = ShardedOrderStore.openDefault(2)) {
+            for (int i = 0; i < 100; i++) {
+                store.submit("item" + i).join();
+            }
+            long deadline = System.currentTimeMillis() + 2000;
+            while (!hasSnapshots(2) && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            assertThat(hasSnapshots(2)).isTrue(); // close() 전에 찍혔다.
+        } finally {
+            System.clearProperty(OrderStore.PATH_PROPERTY);
+            System.clearProperty(OrderStore.SNAPSHOT_INTERVAL_PROPERTY);
+        }
+    }
+
+    /**
+     * 같은 묶음에 쓸 수 없는 상품이 있어도 그 상품의 future 만 실패한다.
+     */
+    @Test
+    public void itemFailure() {
+        try (ShardedOrderStore store = ShardedOrderStore.open(directory, 1)) {
+            CompletableFuture<OrderRecord> first = store.submit("a");
+            CompletableFuture<OrderRecord> tooLong = store.submit("x".repeat(70_000));
+            CompletableFuture<OrderRecord> second = store.submit("b");
+
+            assertThatThrownBy(tooLong::join).hasCauseInstanceOf(IllegalArgumentException.class);
+            assertThat(second.join().getOrderId()).isEqualTo(first.join().getOrderId() + 1); // 실패한 상품은 번호를 쓰지 않는다.
+            assertThat(store.exists("a")).isTrue();
+            assertThat(store.exists("b")).isTrue();
+        }
+    }
+
+    /**
+     * 다시 열면 샤드마다 마지막 번호에서 이어서 발급한다. 샤드 수는 바꿀 수 없다.
+     */
+    @Test
+    public void reopen() {
+        long lastOrderId;
+        try (ShardedOrderStore store = ShardedOrderStore.open(directory, 2)) {
+            store.submit("itemA").join();
+            lastOrderId = store.submit("itemA").join().getOrderId();
+        }
+        try (ShardedOrderStore store = ShardedOrderStore.open(directory, 2)) {
+            assertThat(store.findByItemId("itemA")).get().extracting(OrderRecord::getOrderId).isEqualTo(lastOrderId);
+            assertThat(store.submit("itemA").join().getOrderId()).isEqualTo(lastOrderId + 2);
+        }
+        assertThatThrownBy(() -> ShardedOrderStore.open(directory, 3)).isInstanceOf(IllegalStateException.class);
+    }
+
+    @Test
+    public void repository() throws Exception {
+        OrderRepository repository = new OrderRepository(ShardedOrderStore.open(directory, 2));
+        try {
+            assertThat(repository.saveAsync("itemA").join().getItemId()).isEqualTo("itemA");
+            assertThat(repository.save("itemB")).isEqualTo("ok");
+            assertThat(repository.saveAll(List.of("itemC", "ex", "itemD")))
+                    .hasSize(3).element(1).isInstanceOf(IllegalStateException.class);
+            assertThat(repository.exists("itemD")).isTrue();
+            assertThatThrownBy(() -> repository.save("ex")).isInstanceOf(IllegalStateException.class);
+            assertThatThrownBy(() -> repository.saveAsync("ex").join()).isInstanceOf(CompletionException.class);
+        } finally {
+            repository.destroy();
+        }
+    }
+
+    private boolean hasSnapshots(int shardCount) throws IOException {
+        for (int i = 0; i < shardCount; i++) {
+            if (OrderSnapshot.list(directory.resolve(String.format("shard-%02d", i))).isEmpty()) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,176 @@
+package hello.aop.support.eventlog;
+
+import hello.aop.internalcall.CallServiceV0;
+import hello.aop.internalcall.aop.CallLogAspect;
+import hello.aop.order.aop.AspectV6Advice;
+import hello.aop.order.code.FusionTargetService;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.aop.aspectj.annotation.AspectJProxyFactory;
+
+import java.io.StringWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.*;
+
+public class EventLogTest {
+
+    @TempDir
+    Path directory;
+
+    /**
+     * 세그먼트가 가득 차면 다음 파일로 넘어가고, 읽을 때는 쓴 순서대로 이어서 읽는다.
+     */
+    @Test
+    public void rollSegments() throws Exception {
+        int segmentSize = EventLogFormat.HEADER_SIZE + EventLogFormat.RECORD_SIZE * 10;
+        try (EventLogWriter writer = new EventLogWriter(directory, segmentSize)) {
+            for (int i = 0; i < 25; i++) {
+                writer.write(EventType.SPAN, "sig" + (i % 3), 1000 + i, i * 1000L, i + 1, 0, 7, 0, i == 24);
+            }
+            assertThat(writer.getWritten()).isEqualTo(25);
+        }
+
+        try (Stream<Path> files = Files.list(directory)) {
+            assertThat(files.map(path -> path.getFileName().toString()).collect(Collectors.toList()))
+                    .contains("events-000000.bin", "events-000001.bin", "events-000002.bin", "strings.bin");
+        }
+
+        List<EventLogReader.Event> events = new EventLogReader(directory).readAll();
+        assertThat(events).hasSize(25);
+        for (int i = 0; i < 25; i++) {
+            EventLogReader.Event event = events.get(i);
+            assertThat(event.getName()).isEqualTo("sig" + (i % 3));
+            assertThat(event.getTimestampMicros()).isEqualTo(1000 + i);
+            assertThat(event.getSpanId()).isEqualTo(i + 1);
+            assertThat(event.isError()).isEqualTo(i == 24);
+        }
+    }
+
+    @Test
+    public void multiThreadWrite() throws Exception {
+        int threads = 4;
+        int perThread = 10_000;
+        try (EventLogWriter writer = new EventLogWriter(directory, 64 * 1024)) {
+            List<Thread> workers = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                int threadId = t;
+                workers.add(new Thread(() -> {
+                    for (int i = 0; i < perThread; i++) {
+                        writer.write(EventType.SPAN, "thread" + threadId, i, 0, i, 0, threadId, 0, false);
+                    }
+                }));
+            }
+            workers.forEach(Thread::start);
+            for (Thread worker : workers) {
+                worker.join();
+            }
+        }
+
+        long[] counts = new long[threads];
+        new EventLogReader(directory).forEach(event -> {
+            assertThat(event.getName()).isEqualTo("thread" + event.getThreadId());
+            counts[event.getThreadId()]++;
+        });
+        assertThat(counts).containsOnly(perThread);
+    }
+
+    /**
+     * 세그먼트가 가득 찬 상태에서 close() 하면, 다음 세그먼트를 기다리던 스레드는 이벤트를 버리고 돌아온다.
+     */
+    @Test
+    public void closeWhileSegmentFull() throws Exception {
+        int segmentSize = EventLogFormat.HEADER_SIZE + EventLogFormat.RECORD_SIZE * 10;
+        EventLogWriter writer = new EventLogWriter(directory, segmentSize);
+        for (int i = 0; i < 10; i++) {
+            writer.write(EventType.SPAN, "sig", i, 0, i + 1, 0, 1, 0, false);
+        }
+
+        List<Thread> workers = new ArrayList<>();
+        synchronized (writer) { // roll() 에서 기다리게 한다.
+            for (int t = 0; t < 4; t++) {
+                Thread worker = new Thread(() -> {
+                    for (int i = 0; i < 100; i++) {
+                        writer.write(EventType.SPAN, "sig", i, 0, i + 1, 0, 2, 0, false);
+                    }
+                });
+                workers.add(worker);
+                worker.start();
+            }
+            for (Thread worker : workers) {
+                while (worker.getState() != Thread.State.BLOCKED) {
+                    Thread.sleep(1);
+                }
+            }
+            writer.close();
+        }
+
+        for (Thread worker : workers) {
+            worker.join(5000);
+            assertThat(worker.isAlive()).isFalse();
+        }
+        assertThat(writer.getWritten()).isEqualTo(10);
+        assertThat(new EventLogReader(directory).readAll()).hasSize(10);
+    }
+
+    /**
+     * AdviceEventLog 에 writer 가 있으면 AspectV6Advice, CallLogAspect 가 어드바이스 실행을 ADVICE 이벤트로 남긴다.
+     */
+    @Test
+    public void adviceEvents() throws Exception {
+        EventLogWriter previous = AdviceEventLog.setWriter(new EventLogWriter(directory));
+        try {
+            AspectJProxyFactory orderFactory = new AspectJProxyFactory(new FusionTargetService());
+            orderFactory.setProxyTargetClass(true);
+            orderFactory.addAspect(new AspectV6Advice());
+            FusionTargetService orderProxy = orderFactory.getProxy();
+            orderProxy.order("itemA");
+
+            AspectJProxyFactory callFactory = new AspectJProxyFactory(new CallServiceV0());
+            callFactory.setProxyTargetClass(true);
+            callFactory.addAspect(new CallLogAspect());
+            CallServiceV0 callProxy = callFactory.getProxy();
+            callProxy.external();
+        } finally {
+            AdviceEventLog.setWriter(previous).close();
+        }
+
+        List<EventLogReader.Event> events = new EventLogReader(directory).readAll();
+        assertThat(events).allMatch(event -> event.getType() == EventType.ADVICE);
+        assertThat(events).extracting(EventLogReader.Event::getName).contains(
+                "[트랜잭션 시작] String hello.aop.order.code.FusionTargetService.order(String)",
+                "[before] String hello.aop.order.code.FusionTargetService.order(String)",
+                "[after] String hello.aop.order.code.FusionTargetService.order(String)",
+                "[callLog] void hello.aop.internalcall.CallServiceV0.external()");
+    }
+
+    @Test
+    public void export() throws Exception {
+        try (EventLogWriter writer = new EventLogWriter(directory)) {
+            writer.write(EventType.SPAN, "void hello.aop.exam.ExamService.request(String)", 1000, 50_000, 1, 0, 1, 0, false);
+            writer.write(EventType.SPAN, "String hello.aop.exam.ExamRepository.save(String)", 1010, 20_000, 2, 1, 1, 1, true);
+            writer.write("[before] \"quoted\"", 1005, 1);
+        }
+        EventLogReader reader = new EventLogReader(directory);
+
+        StringWriter text = new StringWriter();
+        EventLogCli.writeText(reader, text);
+        assertThat(text.toString()).contains(
+                "1000 thread=1 void hello.aop.exam.ExamService.request(String) SPAN 50us span=1 parent=0",
+                "1010 thread=1 |-->String hello.aop.exam.ExamRepository.save(String) SPAN 20us span=2 parent=1 error",
+                "1005 thread=1 [before] \"quoted\" ADVICE");
+
+        StringWriter chrome = new StringWriter();
+        EventLogCli.writeChromeTrace(reader, chrome);
+        assertThat(chrome.toString())
+                .startsWith("{\"traceEvents\":[")
+                .contains("{\"name\":\"String hello.aop.exam.ExamRepository.save(String)\",\"cat\":\"SPAN\",\"ph\":\"X\",\"dur\":20.0,\"ts\":1010,\"pid\":1,\"tid\":1")
+                .contains("\"name\":\"[before] \\\"quoted\\\"\",\"cat\":\"ADVICE\",\"ph\":\"i\"")
+                .endsWith("]}\n");
+    }
+}
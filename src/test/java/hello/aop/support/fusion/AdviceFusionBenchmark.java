@@ -0,0 +1,73 @@
+package hello.aop.support.fusion;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import hello.aop.order.aop.AspectV5Order;
+import hello.aop.order.aop.AspectV6Advice;
+import hello.aop.order.code.FusionTargetService;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.slf4j.LoggerFactory;
+import org.springframework.aop.aspectj.annotation.AspectJProxyFactory;
+
+/**
+ * 어드바이스를 합치기 전과 후의 호출 한번당 비용
+ *
+ *  ./gradlew benchmark --tests hello.aop.support.fusion.AdviceFusionBenchmark
+ *
+ * AspectV6Advice(어드바이스 5개)와 AspectV5Order(@Around 2개)를 한 대상에 건다.
+ * 어드바이스의 로그 출력 비용이 결과를 덮지 않도록 측정하는 동안 hello.aop.order.aop 로그를 끈다.
+ */
+@Slf4j
+@Tag("benchmark")
+public class AdviceFusionBenchmark {
+
+    static final int CALLS = 2_000_000;
+
+    @Test
+    public void perCallOverhead() {
+        Logger aspectLogger = (Logger) LoggerFactory.getLogger("hello.aop.order.aop");
+        Level level = aspectLogger.getLevel();
+        aspectLogger.setLevel(Level.WARN);
+        try {
+            FusionTargetService target = new FusionTargetService();
+            FusionTargetService spring = proxy(false);
+            FusionTargetService fused = proxy(true);
+            for (int round = 0; round < 3; round++) { // 첫 라운드는 워밍업
+                log.info("[benchmark] round={} target={}ns spring={}ns fused={}ns", round,
+                        run(target), run(spring), run(fused));
+            }
+        } finally {
+            aspectLogger.setLevel(level);
+        }
+    }
+
+    private static FusionTargetService proxy(boolean fused) {
+        AspectJProxyFactory proxyFactory = new AspectJProxyFactory(new FusionTargetService());
+        proxyFactory.setProxyTargetClass(true);
+        if (fused) {
+            proxyFactory.setAdvisorChainFactory(new FusedAdvisorChainFactory());
+        }
+        proxyFactory.addAspect(new AspectV6Advice());
+        proxyFactory.addAspect(new AspectV5Order.TxAspect());
+        proxyFactory.addAspect(new AspectV5Order.LogAspect());
+        return proxyFactory.getProxy();
+    }
+
+    /**
+     * @return 호출 한번당 평균 ns
+     */
+    private static long run(FusionTargetService service) {
+        long sink = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < CALLS; i++) {
+            sink += service.order("itemA").length();
+        }
+        long elapsed = System.nanoTime() - start;
+        if (sink == 0) {
+            log.info("[benchmark] unreachable");
+        }
+        return elapsed / CALLS;
+    }
+}
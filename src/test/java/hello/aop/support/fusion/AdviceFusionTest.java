@@ -0,0 +1,192 @@
+package hello.aop.support.fusion;
+
+import hello.aop.order.code.FusionTargetService;
+import org.aspectj.lang.JoinPoint;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.After;
+import org.aspectj.lang.annotation.AfterReturning;
+import org.aspectj.lang.annotation.AfterThrowing;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.aspectj.lang.annotation.Before;
+import org.junit.jupiter.api.Test;
+import org.springframework.aop.aspectj.annotation.AspectJProxyFactory;
+import org.springframework.aop.config.AopConfigUtils;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.EnableAspectJAutoProxy;
+import org.springframework.core.annotation.Order;
+import org.springframework.mock.env.MockEnvironment;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.*;
+
+public class AdviceFusionTest {
+
+    /**
+     * 합쳐도 어드바이스 실행 순서, 반환 값, 예외가 같다.
+     */
+    @Test
+    public void sameOrder() {
+        List<String> expected = calls(false);
+        List<String> fused = calls(true);
+
+        assertThat(fused).isEqualTo(expected);
+        assertThat(fused).contains("before order", "around twice", "throwing order java.lang.IllegalStateException");
+    }
+
+    /**
+     * 값을 바인딩하는 args(itemId) 어드바이스는 그대로 두고 앞뒤만 합친다.
+     */
+    @Test
+    public void chain() throws Exception {
+        AspectJProxyFactory proxyFactory = proxyFactory(new ArrayList<>(), true);
+
+        List<Object> chain = proxyFactory.getInterceptorsAndDynamicInterceptionAdvice(
+                FusionTargetService.class.getMethod("order", String.class), FusionTargetService.class);
+
+        assertThat(chain).hasSize(4); // ExposeInvocationInterceptor, 합친 것(5), args(itemId), 합친 것(1)
+        assertThat(((FusedAdviceInterceptor) chain.get(1)).getAdviceCount()).isEqualTo(5);
+        assertThat(chain.get(2)).isNotInstanceOf(FusedAdviceInterceptor.class);
+        assertThat(((FusedAdviceInterceptor) chain.get(3)).getAdviceCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void context() {
+        MockEnvironment environment = new MockEnvironment().withProperty(AdviceFusionPostProcessor.PROPERTY, "true");
+        try (AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext()) {
+            context.setEnvironment(environment);
+            context.register(FusionConfig.class);
+            context.refresh();
+
+            assertThat(context.getBean(AopConfigUtils.AUTO_PROXY_CREATOR_BEAN_NAME)).isInstanceOf(FusingAspectJAutoProxyCreator.class);
+            assertThat(context.getBean(FusionTargetService.class).order("itemA")).isEqualTo("ok-itemA");
+            assertThat(context.getBean(RecordAspect.class).events).startsWith("around", "before order");
+        }
+    }
+
+    private List<String> calls(boolean fused) {
+        List<String> events = new ArrayList<>();
+        FusionTargetService proxy = (FusionTargetService) proxyFactory(events, fused).getProxy();
+
+        events.add("result " + proxy.order("itemA"));
+        assertThatThrownBy(() -> proxy.order("ex")).isInstanceOf(IllegalStateException.class);
+        events.add("result " + proxy.count("itemA"));
+        events.add("result " + proxy.order("twice"));
+        events.add("result " + proxy.order("upper"));
+        return events;
+    }
+
+    private AspectJProxyFactory proxyFactory(List<String> events, boolean fused) {
+        AspectJProxyFactory proxyFactory = new AspectJProxyFactory(new FusionTargetService());
+        proxyFactory.setProxyTargetClass(true);
+        if (fused) {
+            proxyFactory.setAdvisorChainFactory(new FusedAdvisorChainFactory());
+        }
+        proxyFactory.addAspect(new RecordAspect(events));
+        proxyFactory.addAspect(new ArgsAspect(events));
+        proxyFactory.addAspect(new RetryAspect(events));
+        return proxyFactory;
+    }
+
+    @Aspect
+    @Order(1)
+    static class RecordAspect {
+        final List<String> events;
+
+        RecordAspect(List<String> events) {
+            this.events = events;
+        }
+
+        @Around("execution(* hello.aop.order.code.FusionTargetService.*(..))")
+        public Object around(ProceedingJoinPoint joinPoint) throws Throwable {
+            events.add("around");
+            return joinPoint.proceed();
+        }
+
+        @Before("execution(* hello.aop.order.code.FusionTargetService.*(..))")
+        public void before(JoinPoint joinPoint) {
+            events.add("before " + joinPoint.getSignature().getName());
+        }
+
+        @After("execution(* hello.aop.order.code.FusionTargetService.*(..))")
+        public void after() {
+            events.add("after");
+        }
+
+        @AfterReturning(value = "execution(* hello.aop.order.code.FusionTargetService.*(..))", returning = "result")
+        public void returning(JoinPoint joinPoint, String result) { // String 을 반환할 때만
+            events.add("returning " + joinPoint.getSignature().getName() + " " + result);
+        }
+
+        @AfterThrowing(value = "execution(* hello.aop.order.code.FusionTargetService.*(..))", throwing = "ex")
+        public void throwing(JoinPoint joinPoint, IllegalStateException ex) {
+            events.add("throwing " + joinPoint.getSignature().getName() + " " + ex.getClass().getName());
+        }
+    }
+
+    @Aspect
+    @Order(2)
+    static class ArgsAspect {
+        final List<String> events;
+
+        ArgsAspect(List<String> events) {
+            this.events = events;
+        }
+
+        @Before("execution(* hello.aop.order.code.FusionTargetService.order(..)) && args(itemId)")
+        public void args(String itemId) {
+            events.add("args " + itemId);
+        }
+    }
+
+    /**
+     * twice 는 두번 진행하고, upper 는 인자를 바꿔서 진행한다.
+     */
+    @Aspect
+    @Order(3)
+    static class RetryAspect {
+        final List<String> events;
+
+        RetryAspect(List<String> events) {
+            this.events = events;
+        }
+
+        @Around("execution(* hello.aop.order.code.FusionTargetService.order(..))")
+        public Object retry(ProceedingJoinPoint joinPoint) throws Throwable {
+            String itemId = (String) joinPoint.getArgs()[0];
+            if (itemId.equals("twice")) {
+                events.add("around twice");
+                joinPoint.proceed();
+                return joinPoint.proceed();
+            }
+            if (itemId.equals("upper")) {
+                return joinPoint.proceed(new Object[]{"UPPER"});
+            }
+            return joinPoint.proceed();
+        }
+    }
+
+    @Configuration
+    @EnableAspectJAutoProxy(proxyTargetClass = true)
+    static class FusionConfig {
+
+        @Bean
+        static AdviceFusionPostProcessor adviceFusionPostProcessor() {
+            return new AdviceFusionPostProcessor();
+        }
+
+        @Bean
+        RecordAspect recordAspect() {
+            return new RecordAspect(new ArrayList<>());
+        }
+
+        @Bean
+        FusionTargetService fusionTargetService() {
+            return new FusionTargetService();
+        }
+    }
+}
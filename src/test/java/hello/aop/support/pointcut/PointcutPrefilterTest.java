@@ -0,0 +1,250 @@
+package hello.aop.support.pointcut;
+
+import hello.aop.exam.ExamRepository;
+import hello.aop.exam.ExamService;
+import hello.aop.internalcall.CallServiceV0;
+import hello.aop.member.MemberServiceImpl;
+import hello.aop.order.OrderRepository;
+import hello.aop.order.OrderService;
+import hello.aop.order.aop.AspectV6Advice;
+import hello.aop.order.aop.PointCuts;
+import hello.aop.order.code.FusionTargetService;
+import hello.aop.support.fusion.AdviceFusionPostProcessor;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.junit.jupiter.api.Test;
+import org.springframework.aop.aspectj.AspectJExpressionPointcut;
+import org.springframework.aop.config.AopConfigUtils;
+import org.springframework.aop.support.AopUtils;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.EnableAspectJAutoProxy;
+import org.springframework.mock.env.MockEnvironment;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.*;
+
+public class PointcutPrefilterTest {
+
+    // ExecutionTest, WithinTest 의 식과 order 애스펙트가 참조하는 포인트컷
+    static final List<String> EXPRESSIONS = List.of(
+            "execution(public String hello.aop.member.MemberServiceImpl.hello(String))",
+            "execution(* *(..))",
+            "execution(* hello(..))",
+            "execution(* hel*(..))",
+            "execution(* *el*(..))",
+            "execution(* nono(..))",
+            "execution(* hello.aop.member.*.*(..))",
+            "execution(* hello.aop.*.*(..))",
+            "execution(* hello.aop..*.*(..))",
+            "execution(* hello.aop.member.MemberService.*(..))",
+            "execution(* *(String, ..))",
+            "within(hello.aop.member.MemberServiceImpl)",
+            "within(hello.aop.member.*Service*)",
+            "within(hello.aop..*)",
+            "within(hello.aop.member.MemberService)",
+            "allOrder()",
+            "allService()",
+            "orderAndService()",
+            "hello.aop.order.aop.PointCuts.orderAndService()",
+            "within(hello.aop.internalcall..*) && !execution(* internal(..))",
+            "bean(orderService) || within(hello.aop.exam..*)",
+            "@annotation(hello.aop.exam.annotation.Trace)",
+            "execution(* *..*Repository.save(..))",
+            "within(hello.aop.support.pointcut.PointcutPrefilterTest)");
+
+    static final List<Class<?>> TARGETS = List.of(MemberServiceImpl.class, OrderService.class, OrderRepository.class,
+            ExamService.class, ExamRepository.class, CallServiceV0.class, FusionTargetService.class,
+            PointcutPrefilterTest.class, Nested.class, String.class);
+
+    /**
+     * AspectJ 가 맞다고 하는 (식, 클래스) 조합은 하나도 걸러내지 않는다.
+     */
+    @Test
+    public void neverRejectsMatch() {
+        PointcutPrefilter prefilter = PointcutPrefilter.of(EXPRESSIONS, Collections.nCopies(EXPRESSIONS.size(), PointCuts.class));
+
+        for (Class<?> target : TARGETS) {
+            BitSet candidates = prefilter.candidates(target);
+            for (int i = 0; i < EXPRESSIONS.size(); i++) {
+                if (AopUtils.canApply(pointcut(EXPRESSIONS.get(i)), target)) {
+                    assertThat(candidates.get(i)).as("%s %s", EXPRESSIONS.get(i), target.getSimpleName()).isTrue();
+                }
+            }
+        }
+    }
+
+    @Test
+    public void rejects() {
+        PointcutPrefilter prefilter = PointcutPrefilter.of(EXPRESSIONS, Collections.nCopies(EXPRESSIONS.size(), PointCuts.class));
+
+        assertThat(candidates(prefilter, MemberServiceImpl.class)).doesNotContain(
+                "execution(* nono(..))", // 메서드 이름
+                "execution(* hello.aop.*.*(..))", // 하위 패키지가 아니다.
+                "within(hello.aop.member.MemberService)", // within 은 부모 타입을 보지 않는다.
+                "allOrder()");
+        assertThat(candidates(prefilter, MemberServiceImpl.class)).contains(
+                "execution(* hello.aop.member.MemberService.*(..))", "within(hello.aop.member.*Service*)");
+        assertThat(candidates(prefilter, OrderRepository.class)).contains("allOrder()").doesNotContain("orderAndService()");
+        assertThat(candidates(prefilter, OrderService.class)).contains("orderAndService()", "hello.aop.order.aop.PointCuts.orderAndService()");
+        assertThat(candidates(prefilter, Nested.class)).contains("within(hello.aop.support.pointcut.PointcutPrefilterTest)"); // 바깥 클래스
+        assertThat(candidates(prefilter, String.class)).containsOnly(
+                "execution(* *(..))", "execution(* *(String, ..))",
+                "bean(orderService) || within(hello.aop.exam..*)", "@annotation(hello.aop.exam.annotation.Trace)");
+    }
+
+    /**
+     * 패키지 없이 쓴 타입 이름은 식을 선언한 클래스의 패키지와 java.lang 에서 찾는다.
+     */
+    @Test
+    public void unqualifiedTypeNames() {
+        List<String> expressions = List.of("within(MemberServiceImpl)", "execution(* MemberServiceImpl.*(..))",
+                "execution(* Member*.hello(..))", "within(String)", "within(*Repository)");
+        PointcutPrefilter prefilter = PointcutPrefilter.of(expressions, Collections.nCopies(expressions.size(), MemberServiceImpl.class));
+
+        for (Class<?> target : List.of(MemberServiceImpl.class, String.class, OrderRepository.class)) {
+            BitSet candidates = prefilter.candidates(target);
+            for (int i = 0; i < expressions.size(); i++) {
+                AspectJExpressionPointcut pointcut = new AspectJExpressionPointcut();
+                pointcut.setPointcutDeclarationScope(MemberServiceImpl.class);
+                pointcut.setExpression(expressions.get(i));
+                boolean matches = AopUtils.canApply(pointcut, target);
+                if (matches) {
+                    assertThat(candidates.get(i)).as("%s %s", expressions.get(i), target.getSimpleName()).isTrue();
+                }
+            }
+        }
+        assertThat(prefilter.candidates(MemberServiceImpl.class).get(0)).isTrue();
+        assertThat(prefilter.candidates(MemberServiceImpl.class).get(1)).isTrue();
+        assertThat(prefilter.candidates(OrderRepository.class).get(4)).isFalse(); // 다른 패키지의 *Repository
+    }
+
+    /**
+     * 판단할 수 없는 식은 항상 후보로 남긴다.
+     */
+    @Test
+    public void unindexed() {
+        List<String> expressions = List.of("bean(orderService)", "@annotation(hello.aop.exam.annotation.Trace)",
+                "!within(hello.aop.order..*)", "unknownPointcut()", "execution(@hello.aop.member.annotation.MethodAop * *(..))");
+        PointcutPrefilter prefilter = PointcutPrefilter.of(expressions, Collections.nCopies(expressions.size(), PointCuts.class));
+
+        for (int i = 0; i < expressions.size(); i++) {
+            assertThat(prefilter.isIndexed(i)).as(expressions.get(i)).isFalse();
+        }
+        assertThat(prefilter.candidates(String.class).cardinality()).isEqualTo(expressions.size());
+    }
+
+    @Test
+    public void context() {
+        MockEnvironment environment = new MockEnvironment().withProperty(PointcutPrefilterPostProcessor.PROPERTY, "true");
+        try (AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext()) {
+            context.setEnvironment(environment);
+            context.register(PrefilterConfig.class);
+            context.refresh();
+
+            PrefilteringAspectJAutoProxyCreator creator =
+                    context.getBean(AopConfigUtils.AUTO_PROXY_CREATOR_BEAN_NAME, PrefilteringAspectJAutoProxyCreator.class);
+            assertThat(AopUtils.isAopProxy(context.getBean(FusionTargetService.class))).isTrue();
+            assertThat(AopUtils.isAopProxy(context.getBean(MemberServiceImpl.class))).isFalse();
+            assertThat(creator.getRejectedCount()).isPositive();
+
+            context.getBean(FusionTargetService.class).order("itemA");
+            assertThat(context.getBean(CountingAspect.class).count).isEqualTo(1);
+        }
+    }
+
+    /**
+     * 어드바이스 합치기도 켜면 등록 순서와 관계없이 둘 다 하는 생성기로 바뀐다.
+     */
+    @Test
+    public void withAdviceFusion() {
+        MockEnvironment environment = new MockEnvironment().withProperty(PointcutPrefilterPostProcessor.PROPERTY, "true")
+                .withProperty(AdviceFusionPostProcessor.PROPERTY, "true");
+        try (AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext()) {
+            context.setEnvironment(environment);
+            context.register(PrefilterConfig.class, FusionConfig.class); // 사전 필터를 먼저 등록한다.
+            context.refresh();
+
+            FusingPrefilteringAspectJAutoProxyCreator creator =
+                    context.getBean(AopConfigUtils.AUTO_PROXY_CREATOR_BEAN_NAME, FusingPrefilteringAspectJAutoProxyCreator.class);
+            assertThat(creator.getRejectedCount()).isPositive();
+            context.getBean(FusionTargetService.class).order("itemA");
+            assertThat(context.getBean(CountingAspect.class).count).isEqualTo(1);
+        }
+    }
+
+    private static List<String> candidates(PointcutPrefilter prefilter, Class<?> target) {
+        List<String> result = new ArrayList<>();
+        prefilter.candidates(target).stream().forEach(i -> result.add(EXPRESSIONS.get(i)));
+        return result;
+    }
+
+    private static AspectJExpressionPointcut pointcut(String expression) {
+        AspectJExpressionPointcut pointcut = new AspectJExpressionPointcut();
+        pointcut.setPointcutDeclarationScope(PointCuts.class);
+        pointcut.setExpression(expression);
+        return pointcut;
+    }
+
+    static class Nested {
+        public String hello(String param) {
+            return param;
+        }
+    }
+
+    @Aspect
+    static class CountingAspect {
+        int count;
+
+        @Around("execution(* hello.aop.order..*(..)) && within(hello.aop.order.code.*)")
+        public Object count(ProceedingJoinPoint joinPoint) throws Throwable {
+            count++;
+            return joinPoint.proceed();
+        }
+    }
+
+    @Configuration
+    static class FusionConfig {
+
+        @Bean
+        static AdviceFusionPostProcessor adviceFusionPostProcessor() {
+            return new AdviceFusionPostProcessor();
+        }
+    }
+
+    @Configuration
+    @EnableAspectJAutoProxy
+    static class PrefilterConfig {
+
+        @Bean
+        static PointcutPrefilterPostProcessor pointcutPrefilterPostProcessor() {
+            return new PointcutPrefilterPostProcessor();
+        }
+
+        @Bean
+        public CountingAspect countingAspect() {
+            return new CountingAspect();
+        }
+
+        @Bean
+        public AspectV6Advice aspectV6Advice() {
+            return new AspectV6Advice();
+        }
+
+        @Bean
+        public FusionTargetService fusionTargetService() {
+            return new FusionTargetService();
+        }
+
+        @Bean
+        public MemberServiceImpl memberService() {
+            return new MemberServiceImpl();
+        }
+    }
+}
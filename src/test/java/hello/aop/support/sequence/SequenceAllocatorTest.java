@@ -0,0 +1,96 @@
+package hello.aop.support.sequence;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * 여러 스레드에서 동시에 발급해도 중복, 빈 번호가 없어야 한다.
+ */
+public class SequenceAllocatorTest {
+
+    static final int THREADS = 8;
+    static final int PER_THREAD = 64 * 1024; // blockSize 의 배수, 예약한 구간을 모두 사용한다.
+
+    @Test
+    public void strict() throws Exception {
+        SequenceAllocator allocator = SequenceAllocator.strict();
+        assertThat(allocator.next()).isEqualTo(1);
+        assertThat(allocator.next()).isEqualTo(2);
+
+        assertUniqueAndContiguous(SequenceAllocator.strict());
+    }
+
+    /**
+     * 한 스레드 안에서는 순서대로 증가한다.
+     */
+    @Test
+    public void strictOrderedPerThread() throws Exception {
+        SequenceAllocator allocator = SequenceAllocator.strict();
+        List<long[]> results = issue(allocator);
+        for (long[] values : results) {
+            for (int i = 1; i < values.length; i++) {
+                assertThat(values[i]).isGreaterThan(values[i - 1]);
+            }
+        }
+    }
+
+    @Test
+    public void highThroughput() throws Exception {
+        assertUniqueAndContiguous(SequenceAllocator.highThroughput(1024));
+    }
+
+    @Test
+    public void highThroughputSmallBlock() throws Exception {
+        assertUniqueAndContiguous(SequenceAllocator.highThroughput(1));
+    }
+
+    private void assertUniqueAndContiguous(SequenceAllocator allocator) throws Exception {
+        int total = THREADS * PER_THREAD;
+        BitSet seen = new BitSet(total + 1);
+        for (long[] values : issue(allocator)) {
+            for (long value : values) {
+                assertThat(value).isBetween(1L, (long) total);
+                assertThat(seen.get((int) value)).as("duplicate %d", value).isFalse();
+                seen.set((int) value);
+            }
+        }
+        assertThat(seen.cardinality()).isEqualTo(total); // 1 ~ total 모두 발급 (빈 번호 없음)
+    }
+
+    private List<long[]> issue(SequenceAllocator allocator) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<long[]>> futures = new ArrayList<>();
+            for (int t = 0; t < THREADS; t++) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    long[] values = new long[PER_THREAD];
+                    for (int i = 0; i < PER_THREAD; i++) {
+                        values[i] = allocator.next();
+                    }
+                    return values;
+                }));
+            }
+            start.countDown();
+
+            List<long[]> results = new ArrayList<>();
+            for (Future<long[]> future : futures) {
+                results.add(future.get(30, TimeUnit.SECONDS));
+            }
+            return results;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package hello.aop.support.weaving;
+
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.read.ListAppender;
+import hello.aop.exam.aop.TraceAspect;
+import hello.aop.internalcall.CallServiceV0;
+import hello.aop.internalcall.aop.CallLogAspect;
+import hello.aop.order.aop.AspectV6Advice;
+import org.aspectj.lang.annotation.Aspect;
+import org.aspectj.lang.annotation.Before;
+import org.junit.jupiter.api.Test;
+import org.slf4j.LoggerFactory;
+import org.springframework.aop.support.AopUtils;
+import org.springframework.beans.factory.support.RootBeanDefinition;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.core.OverridingClassLoader;
+import org.springframework.core.env.MapPropertySource;
+import org.springframework.instrument.classloading.InstrumentationLoadTimeWeaver;
+import org.springframework.util.StreamUtils;
+
+import java.io.InputStream;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.*;
+
+public class LoadTimeWeavingTest {
+
+    /**
+     * CallLogAspect 는 패키지, TraceAspect 는 어노테이션, AspectV6Advice 는 PointCuts 를 따라가서 범위를 정한다.
+     * 로드 시점 위빙으로 실행할 때 대상 클래스가 위빙 전에 로드되지 않도록 클래스 대신 이름으로 클래스 파일을 읽는다.
+     * 같은 이유로 aop.xml 의 Woven* 대신 같은 포인트컷의 원래 애스펙트를 쓴다.
+     */
+    @Test
+    public void scope() throws Exception {
+        WeavingScope scope = WeavingScope.of(List.of(CallLogAspect.class, TraceAspect.class, AspectV6Advice.class));
+
+        assertThat(matches(scope, "hello.aop.internalcall.CallServiceV0")).isTrue();
+        assertThat(matches(scope, "hello.aop.exam.ExamRepository")).isTrue();
+        assertThat(matches(scope, "hello.aop.order.OrderService")).isTrue();
+        assertThat(matches(scope, "hello.aop.exam.aop.TraceAspect")).isTrue(); // 애스펙트 자신
+        assertThat(matches(scope, ExtendedCallService.class.getName())).isTrue(); // 부모가 범위 안
+        assertThat(matches(scope, "hello.aop.member.MemberServiceImpl")).isFalse();
+        assertThat(matches(scope, LoadTimeWeavingTest.class.getName())).isFalse();
+        assertThat(scope.isUnbounded()).isFalse();
+    }
+
+    @Test
+    public void unboundedScope() {
+        assertThat(WeavingScope.of(List.of(UnboundedAspect.class)).isUnbounded()).isTrue();
+    }
+
+    /**
+     * 에이전트가 있을 때만 실행한다. ./gradlew test -Paop.mode=ltw
+     * 프록시 없이 바이트코드에 위빙되므로 내부 호출(this.internal())에도 어드바이스가 적용된다.
+     *
+     * 테스트 클래스를 찾을 때 같은 패키지의 클래스가 미리 로드되므로, 대상과 Woven* 애스펙트를 새 클래스 로더에서 다시 로드한다.
+     */
+    @Test
+    public void loadTimeWeaving() throws Exception {
+        assumeTrue(InstrumentationLoadTimeWeaver.isInstrumentationAvailable(), "-javaagent:spring-instrument.jar 필요");
+
+        ListAppender<ILoggingEvent> appender = new ListAppender<>();
+        appender.start();
+        Logger logger = (Logger) LoggerFactory.getLogger(CallLogAspect.class);
+        logger.addAppender(appender);
+        try (AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext()) {
+            context.setClassLoader(new OverridingClassLoader(getClass().getClassLoader()) {
+                @Override
+                protected boolean isEligibleForOverriding(String className) {
+                    return className.startsWith("hello.aop.internalcall.") || className.startsWith("hello.aop.support.weaving.Woven");
+                }
+            });
+            context.getEnvironment().getPropertySources()
+                    .addFirst(new MapPropertySource("ltw", Map.of(LoadTimeWeavingInitializer.PROPERTY, "true")));
+            new LoadTimeWeavingInitializer().initialize(context);
+            context.registerBeanDefinition("selfCallService", new RootBeanDefinition("hello.aop.internalcall.code.SelfCallService"));
+            context.refresh();
+
+            Object service = context.getBean("selfCallService");
+            assertThat(AopUtils.isAopProxy(service)).isFalse();
+            service.getClass().getMethod("external").invoke(service);
+
+            ScopedWeavingTransformer transformer = LoadTimeWeavingInitializer.getTransformer(context.getClassLoader());
+            assertThat(transformer).isNotNull();
+            assertThat(transformer.getWovenCount()).isPositive();
+        } finally {
+            logger.detachAppender(appender);
+        }
+        assertThat(appender.list).extracting(ILoggingEvent::getFormattedMessage).containsExactly(
+                "aop=void hello.aop.internalcall.code.SelfCallService.external()",
+                "aop=void hello.aop.internalcall.code.SelfCallService.internal()");
+    }
+
+    private static boolean matches(WeavingScope scope, String className) throws Exception {
+        String name = className.replace('.', '/');
+        try (InputStream in = LoadTimeWeavingTest.class.getClassLoader().getResourceAsStream(name + ".class")) {
+            return scope.matches(name, StreamUtils.copyToByteArray(in));
+        }
+    }
+
+    static class ExtendedCallService extends CallServiceV0 {
+    }
+
+    @Aspect
+    static class UnboundedAspect {
+        @Before("execution(* *..*Service.*(..)) || bean(orderService)")
+        public void doBefore() {
+        }
+    }
+}
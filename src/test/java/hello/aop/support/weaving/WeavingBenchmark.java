@@ -0,0 +1,82 @@
+package hello.aop.support.weaving;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import hello.aop.internalcall.CallServiceV0;
+import hello.aop.internalcall.aop.CallLogAspect;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.slf4j.LoggerFactory;
+import org.springframework.aop.support.AopUtils;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.context.annotation.EnableAspectJAutoProxy;
+import org.springframework.context.annotation.Import;
+
+/**
+ * 프록시 모드와 컴파일 시점 위빙 모드의 시작 시간, 호출 한번당 비용
+ *
+ *  ./gradlew benchmark --tests hello.aop.support.weaving.WeavingBenchmark
+ *  ./gradlew benchmark --tests hello.aop.support.weaving.WeavingBenchmark -Paop.mode=woven
+ *
+ * 같은 설정(CallLogAspect + CallServiceV0)으로 컨텍스트를 띄우고, 두 모드의 결과를 비교한다.
+ * 로그 출력 비용이 결과를 덮지 않도록 측정하는 동안 hello.aop.internalcall 로그를 끈다.
+ */
+@Slf4j
+@Tag("benchmark")
+public class WeavingBenchmark {
+
+    static final int STARTUPS = 20;
+    static final int CALLS = 2_000_000;
+
+    @Test
+    public void startupAndPerCall() {
+        Logger logger = (Logger) LoggerFactory.getLogger("hello.aop.internalcall");
+        Level level = logger.getLevel();
+        logger.setLevel(Level.WARN);
+        try {
+            String mode = WovenAspects.isEnabled() ? "woven" : "proxy";
+            for (int round = 0; round < 3; round++) { // 첫 라운드는 워밍업
+                log.info("[benchmark] mode={} round={} startup={}us", mode, round, startup() / 1000);
+            }
+            try (AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext(Config.class)) {
+                CallServiceV0 service = context.getBean(CallServiceV0.class);
+                for (int round = 0; round < 3; round++) {
+                    log.info("[benchmark] mode={} round={} proxy={} call={}ns", mode, round,
+                            AopUtils.isAopProxy(service), run(service));
+                }
+            }
+        } finally {
+            logger.setLevel(level);
+        }
+    }
+
+    /**
+     * @return 컨텍스트를 띄우고 빈을 처음 꺼내기까지 걸린 평균 ns
+     */
+    private static long startup() {
+        long start = System.nanoTime();
+        for (int i = 0; i < STARTUPS; i++) {
+            try (AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext(Config.class)) {
+                context.getBean(CallServiceV0.class);
+            }
+        }
+        return (System.nanoTime() - start) / STARTUPS;
+    }
+
+    /**
+     * @return 호출 한번당 평균 ns
+     */
+    private static long run(CallServiceV0 service) {
+        long start = System.nanoTime();
+        for (int i = 0; i < CALLS; i++) {
+            service.internal();
+        }
+        return (System.nanoTime() - start) / CALLS;
+    }
+
+    @EnableAspectJAutoProxy
+    @Import({CallLogAspect.class, CallServiceV0.class, WovenAspectsPostProcessor.class})
+    static class Config {
+    }
+}
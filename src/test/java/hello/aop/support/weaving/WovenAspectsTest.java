@@ -0,0 +1,61 @@
+package hello.aop.support.weaving;
+
+import hello.aop.exam.ExamRepository;
+import hello.aop.exam.aop.RetryAspect;
+import hello.aop.exam.aop.TimeoutAspect;
+import hello.aop.exam.aop.TraceAspect;
+import hello.aop.exam.trace.AdaptiveSampler;
+import hello.aop.exam.trace.SpanKind;
+import hello.aop.exam.trace.TraceSink;
+import hello.aop.exam.trace.Tracer;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.EnableAspectJAutoProxy;
+import org.springframework.context.annotation.Import;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.assertj.core.api.Assertions.*;
+
+public class WovenAspectsTest {
+
+    static final List<String> LINES = new CopyOnWriteArrayList<>();
+
+    /**
+     * ExamRepository.save 에는 @Trace 와 @Timeout 이 같이 붙어 있다.
+     * 위빙 모드에서도 Trace 가 Timeout 바깥(호출한 스레드)에서 실행되고, 재시도 span 은 그 아래에 남는다. (프록시 모드와 같다.)
+     */
+    @Test
+    public void keepsAspectOrder() {
+        LINES.clear();
+        try (AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext(Config.class)) {
+            ExamRepository repository = context.getBean(ExamRepository.class);
+            for (int i = 0; i < 5; i++) {
+                repository.save("item" + i); // 다섯번째는 한번 실패하고 재시도한다.
+            }
+            context.getBean(TraceAspect.class).getTracer().getSink().close();
+        }
+
+        String caller = String.valueOf(Thread.currentThread().getId());
+        assertThat(LINES).filteredOn(line -> line.startsWith(SpanKind.METHOD.name()))
+                .hasSize(5).allMatch(line -> line.endsWith(" " + caller));
+        assertThat(LINES).filteredOn(line -> line.startsWith(SpanKind.RETRY_ATTEMPT.name() + " 1 "))
+                .hasSize(6);
+    }
+
+    @Configuration
+    @EnableAspectJAutoProxy
+    @Import({WovenAspectsPostProcessor.class, TimeoutAspect.class, RetryAspect.class, ExamRepository.class})
+    static class Config {
+
+        @Bean
+        public TraceAspect traceAspect() {
+            TraceSink sink = new TraceSink(1024, (record, signature) ->
+                    LINES.add(record.getKind() + " " + record.getDepth() + " " + record.getThreadId()));
+            return new TraceAspect(new Tracer(sink, 0, new AdaptiveSampler()));
+        }
+    }
+}